@@ -0,0 +1,54 @@
+package org.mastodon.grapher.opengl;
+
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataColor;
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
+
+/**
+ * Interface for classes that get notified when the current data layout is
+ * patched after changes in the model graph or in the feature model.
+ * <p>
+ * The arrays of the layout and color passed to the listener are those of the
+ * previous notification or plot, unless they had to be reallocated. In that
+ * case the whole arrays must be uploaded again. Otherwise only the specified
+ * vertex and edge slots have changed. A slot range is empty when its start is
+ * not smaller than its end.
+ */
+public interface DataLayoutListener
+{
+	void dataLayoutUpdated( DataLayout layout, DataColor color, int vertexFrom, int vertexTo, int edgeFrom, int edgeTo );
+
+	/**
+	 * Notified when only the selection state of some slots changed. The
+	 * selection arrays are the same as those of the previous notification or
+	 * plot, unless they had to be reallocated.
+	 *
+	 * @param color
+	 *            the current colors and selection state.
+	 * @param vertexSlots
+	 *            the slots of the updated vertices, in no particular order.
+	 * @param edgeSlots
+	 *            the slots of the updated edges, in no particular order.
+	 */
+	default void dataSelectionUpdated( final DataColor color, final int[] vertexSlots, final int[] edgeSlots )
+	{}
+
+	/**
+	 * Notified when the filter values of all the vertex slots were computed
+	 * again, after the feature of a filter column changed. The filter array is
+	 * the same as that of the previous notification or plot, unless it had to
+	 * be reallocated, but it must be uploaded whole.
+	 *
+	 * @param layout
+	 *            the current layout.
+	 */
+	default void dataFilterUpdated( final DataLayout layout )
+	{}
+
+	/**
+	 * Notified when the current layout was cleared because it cannot be
+	 * patched, for instance after the graph was rebuilt and the pool indices
+	 * of the plotted objects became invalid. The layout must be computed again.
+	 */
+	default void dataLayoutInvalidated()
+	{}
+}
@@ -1,50 +1,91 @@
 package org.mastodon.grapher.opengl;
 
-import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.COLOR_NUM_CHANNELS;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.EXPLORATION_MAX_COLUMNS;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.FILTER_NUM_COLUMNS;
 import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.VERTEX_NUM_DIMENSIONS;
 
 import java.awt.Color;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.function.ToDoubleFunction;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
 
+import org.mastodon.RefPool;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
 import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
 import org.mastodon.feature.FeatureProjection;
-import org.mastodon.graph.Edges;
+import org.mastodon.graph.GraphListener;
 import org.mastodon.graph.algorithm.traversal.DepthFirstSearch;
 import org.mastodon.graph.algorithm.traversal.GraphSearch.SearchDirection;
 import org.mastodon.graph.algorithm.traversal.SearchListener;
-import org.mastodon.grapher.opengl.util.KdTreeWrapper;
+import org.mastodon.grapher.opengl.util.DensityGrid;
+import org.mastodon.grapher.opengl.util.InducedEdges;
+import org.mastodon.grapher.opengl.util.KdTree2D;
+import org.mastodon.grapher.opengl.util.PackedColors;
+import org.mastodon.grapher.opengl.util.Parallel;
+import org.mastodon.grapher.opengl.util.PointScan;
+import org.mastodon.grapher.opengl.util.Polygon2D;
+import org.mastodon.grapher.opengl.util.QueryPlanner;
+import org.mastodon.grapher.opengl.util.SpatialTiles;
+import org.mastodon.grapher.opengl.util.TimepointOffsets;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.model.HighlightModel;
 import org.mastodon.model.SelectionModel;
+import org.mastodon.spatial.VertexPositionListener;
 import org.mastodon.ui.coloring.GraphColorGenerator;
 import org.mastodon.views.context.Context;
 import org.mastodon.views.context.ContextListener;
 import org.mastodon.views.grapher.display.DataDisplayOptions;
 import org.mastodon.views.grapher.display.FeatureGraphConfig;
+import org.mastodon.views.grapher.display.FeatureGraphConfig.GraphDataItemsSource;
 import org.mastodon.views.grapher.display.FeatureSpecPair;
 import org.mastodon.views.grapher.display.style.DataDisplayStyle;
+import org.scijava.listeners.Listeners;
 
-import net.imglib2.algorithm.kdtree.ConvexPolytope;
-import net.imglib2.algorithm.kdtree.HyperPlane;
+import gnu.trove.list.array.TIntArrayList;
 
 public class DataLayoutMaker implements ContextListener< Spot >
 {
 
-	private FeatureProjection< Spot > ypVertex;
+	private FeatureColumn xColumn;
 
-	private FeatureProjection< Spot > xpVertex;
+	private FeatureColumn yColumn;
 
-	private FeatureProjection< Link > xpEdge;
+	private FeatureSpecPair xSpec;
 
-	private FeatureProjection< Link > ypEdge;
+	private FeatureSpecPair ySpec;
 
-	private boolean incomingEdge;
+	/**
+	 * Features of the filter columns, <code>null</code> for unused columns.
+	 */
+	private final FeatureSpecPair[] filterSpecs = new FeatureSpecPair[ FILTER_NUM_COLUMNS ];
+
+	private final FeatureColumn[] filterColumns = new FeatureColumn[ FILTER_NUM_COLUMNS ];
+
+	/**
+	 * Explored features, whose values are kept for all the plotted vertices
+	 * so that the axes can be swapped between them without computing the
+	 * layout again. Empty if not exploring.
+	 */
+	private FeatureSpecPair[] exploredSpecs = new FeatureSpecPair[ 0 ];
+
+	private FeatureColumn[] exploredColumns = new FeatureColumn[ 0 ];
+
+	/**
+	 * Explored columns of the X and Y axes, -1 if one of the axes is not
+	 * explored.
+	 */
+	private int xExplored = -1;
+
+	private int yExplored = -1;
 
 	private boolean paintEdges;
 
@@ -60,8 +101,6 @@ public class DataLayoutMaker implements ContextListener< Spot >
 
 	private RefSet< Spot > vertices;
 
-	private RefSet< Link > edges;
-
 	private String xlabel;
 
 	private String ylabel;
@@ -70,10 +109,145 @@ public class DataLayoutMaker implements ContextListener< Spot >
 
 	private final GraphColorGenerator< Spot, Link > graphColorGenerator;
 
-	private KdTreeWrapper< Spot > kdtree;
+	/**
+	 * Index of the vertex positions for selection queries. <code>null</code>
+	 * until it is built in the background for the current positions.
+	 */
+	private KdTree2D kdtree;
+
+	/**
+	 * Incremented each time the vertex positions change, so that an index
+	 * built from older positions is discarded.
+	 */
+	private long positionsVersion;
+
+	/**
+	 * If <code>true</code>, an index build is queued and has not started yet.
+	 */
+	private boolean indexBuildQueued;
+
+	/**
+	 * Decides whether selection queries use the index or scan the layout.
+	 */
+	private final QueryPlanner queryPlanner = new QueryPlanner();
+
+	/**
+	 * Builds the selection index in the background, one at a time.
+	 */
+	private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor( r -> {
+		final Thread thread = new Thread( r, "OpenGL grapher index" );
+		thread.setDaemon( true );
+		return thread;
+	} );
 
 	private final DataDisplayStyle style;
 
+	private final FeatureColumnCache columns;
+
+	private final GraphChangeHandler handler;
+
+	private boolean parallel = true;
+
+	private boolean sortByTime;
+
+	private final Listeners.List< DataLayoutListener > layoutListeners;
+
+	/*
+	 * Current layout. Vertices and edges are stored in slots. The arrays may
+	 * be larger than the number of vertices and edges, to accommodate vertices
+	 * and edges added after the layout was computed.
+	 */
+
+	/**
+	 * Vertex slot to vertex pool index.
+	 */
+	private int[] vertexIds = new int[ 0 ];
+
+	/**
+	 * Vertex pool index to vertex slot, -1 if the vertex is not plotted.
+	 */
+	private int[] vertexSlots = new int[ 0 ];
+
+	private int nVertices;
+
+	/**
+	 * Edge slot to edge pool index.
+	 */
+	private int[] edgeIds = new int[ 0 ];
+
+	/**
+	 * Edge pool index to edge slot, -1 if the edge is not plotted.
+	 */
+	private int[] edgeSlots = new int[ 0 ];
+
+	private int nEdges;
+
+	private float[] xyPos = new float[ 0 ];
+
+	/**
+	 * Values of the filter columns, <code>FILTER_NUM_COLUMNS</code> per vertex
+	 * slot. Missing values are stored as positive infinity, so that bounded
+	 * ranges hide them, and unused columns as 0.
+	 */
+	private float[] filterValues = new float[ 0 ];
+
+	/**
+	 * Values of the explored features, one per explored feature and per
+	 * vertex slot.
+	 */
+	private float[] exploredValues = new float[ 0 ];
+
+	/**
+	 * Source and target vertex slots of each edge slot.
+	 */
+	private int[] edgeIndices = new int[ 0 ];
+
+	private int[] vertexColors = new int[ 0 ];
+
+	private int[] edgeColors = new int[ 0 ];
+
+	/**
+	 * Selection state of the plotted vertices and edges, 1 if selected, 0
+	 * otherwise.
+	 */
+	private byte[] vertexSelection = new byte[ 0 ];
+
+	private byte[] edgeSelection = new byte[ 0 ];
+
+	/**
+	 * Tiles of vertex slots, sorted in a quadtree when the layout is
+	 * computed, and tiles of edge slots, grouped by the tile of their source
+	 * vertex. <code>null</code> if the vertices have no position.
+	 */
+	private SpatialTiles vertexTiles;
+
+	private SpatialTiles edgeTiles;
+
+	/**
+	 * Offset tables of the vertex slots per timepoint, and of the edge slots
+	 * per timepoint of their later vertex. <code>null</code> if the slots are
+	 * not sorted by timepoint. The spatial tiles are then nested in the
+	 * timepoints.
+	 */
+	private TimepointOffsets vertexTimepoints;
+
+	private TimepointOffsets edgeTimepoints;
+
+	/**
+	 * Pool indices of the vertices and edges that were selected when the
+	 * colors were last computed.
+	 */
+	private final BitSet coloredSelectedVertices = new BitSet();
+
+	private final BitSet coloredSelectedEdges = new BitSet();
+
+	/**
+	 * Incremented each time the current layout is patched or its settings
+	 * change, so that a layout or colors computed in the meantime are
+	 * computed again.
+	 */
+	private long modifications;
+
 	public DataLayoutMaker(
 			final ModelGraph graph,
 			final HighlightModel< Spot, Link > highlight,
@@ -87,118 +261,966 @@ public class DataLayoutMaker implements ContextListener< Spot >
 		this.featureModel = featureModel;
 		this.graphColorGenerator = options.values.getGraphColorGenerator();
 		style = options.values.getStyle();
+		this.layoutListeners = new Listeners.SynchronizedList<>();
+		// The cache must be notified of changes before the layout is patched.
+		this.columns = new FeatureColumnCache( graph, featureModel );
+		this.handler = new GraphChangeHandler();
+		graph.addGraphListener( handler );
+		graph.addVertexPositionListener( handler );
+		featureModel.listeners().add( handler );
 	}
 
-	private void setXFeatureVertex( final FeatureProjection< Spot > xproj )
+	/**
+	 * Stops following the changes of the graph and of the feature model. The
+	 * current layout is not patched anymore, and the selection index is not
+	 * built anymore. Meant to be called when the view is closed.
+	 */
+	public void close()
 	{
-		this.xpVertex = xproj;
-		this.xpEdge = null;
+		graph.removeGraphListener( handler );
+		graph.removeVertexPositionListener( handler );
+		featureModel.listeners().remove( handler );
+		columns.close();
+		synchronized ( this )
+		{
+			indexExecutor.shutdownNow();
+		}
 	}
 
-	private void setYFeatureVertex( final FeatureProjection< Spot > yproj )
+	/**
+	 * Returns the listeners notified when the current layout is patched after
+	 * a change in the graph or in the feature model.
+	 *
+	 * @return the layout listeners.
+	 */
+	public Listeners< DataLayoutListener > layoutListeners()
 	{
-		this.ypVertex = yproj;
-		this.ypEdge = null;
+		return layoutListeners;
 	}
 
-	private void setXFeatureEdge( final FeatureProjection< Link > xproj, final boolean incoming )
+	/**
+	 * Sets whether the screen edges will be generated.
+	 *
+	 * @param paintEdges
+	 *            if <code>true</code> the screen edges will be generated.
+	 */
+	private void setPaintEdges( final boolean paintEdges )
 	{
-		this.xpEdge = xproj;
-		this.incomingEdge = incoming;
-		this.xpVertex = null;
+		this.paintEdges = paintEdges;
 	}
 
-	private void setYFeatureEdge( final FeatureProjection< Link > yproj, final boolean incoming )
+	/**
+	 * Sets whether the layout is computed in parallel. The output does not
+	 * depend on this setting: each worker fills a disjoint slice of the
+	 * output arrays. Single-threaded computation is meant for tests and
+	 * debugging.
+	 *
+	 * @param parallel
+	 *            if <code>true</code> the layout is computed with several
+	 *            threads.
+	 */
+	public void setParallel( final boolean parallel )
 	{
-		this.ypEdge = yproj;
-		this.incomingEdge = incoming;
-		this.ypVertex = null;
+		this.parallel = parallel;
 	}
 
 	/**
-	 * Sets whether the screen edges will be generated.
-	 * 
-	 * @param paintEdges
-	 *            if <code>true</code> the screen edges will be generated.
+	 * Sets whether the vertex and edge slots are sorted by timepoint, so that
+	 * the plot can be restricted to a time window by drawing a single range of
+	 * slots. Takes effect when the layout is next computed.
+	 *
+	 * @param sortByTime
+	 *            if <code>true</code> the slots are sorted by timepoint.
 	 */
-	private void setPaintEdges( final boolean paintEdges )
+	public synchronized void setSortByTime( final boolean sortByTime )
 	{
-		this.paintEdges = paintEdges;
+		this.sortByTime = sortByTime;
+		modifications++;
 	}
 
 	/**
 	 * Returns a new data layout containing the data points position and their
 	 * links based on the current feature specifications for the current
-	 * vertices in the data graph.
-	 * 
+	 * vertices in the data graph. The colors are computed with it, and are
+	 * returned by {@link #getColor()}.
+	 * <p>
+	 * The graph is read under its read lock, which is released before the
+	 * points are sorted in tiles. The layout is computed in new arrays,
+	 * without the lock of this instance, so that selection queries and
+	 * patches are not blocked meanwhile, and swapped in once complete. If the
+	 * layout was patched in the meantime, it is computed again, holding the
+	 * read lock until the swap.
+	 * <p>
+	 * If the calling thread is interrupted, the computation stops and a
+	 * {@link CancellationException} is thrown. The current layout is then
+	 * empty until this method is called again.
+	 *
 	 * @return a new {@link DataLayout}.
 	 */
 	public DataLayout layout()
 	{
-		kdtree = null;
-		if ( vertices.isEmpty() )
-			return new DataLayout( new float[] {}, new int[] {}, new float[] {} );
+		try
+		{
+			for ( int attempt = 0;; attempt++ )
+			{
+				final DataLayout l = computeLayout( attempt > 0 );
+				if ( l != null )
+					return l;
+			}
+		}
+		catch ( final CancellationException e )
+		{
+			synchronized ( this )
+			{
+				clearLayout();
+			}
+			throw e;
+		}
+	}
 
-		/*
-		 * Vertex pos.
-		 */
+	private void clearLayout()
+	{
+		Arrays.fill( vertexSlots, -1 );
+		Arrays.fill( edgeSlots, -1 );
+		nVertices = 0;
+		nEdges = 0;
+		vertexIds = new int[ 0 ];
+		edgeIds = new int[ 0 ];
+		xyPos = new float[ 0 ];
+		filterValues = new float[ 0 ];
+		exploredValues = new float[ 0 ];
+		edgeIndices = new int[ 0 ];
+		vertexTiles = null;
+		edgeTiles = null;
+		vertexTimepoints = null;
+		edgeTimepoints = null;
+		modifications++;
+		invalidateIndex();
+	}
 
-		final float[] xyPos = new float[ VERTEX_NUM_DIMENSIONS * vertices.size() ];
-		if ( ( xpVertex != null || xpEdge != null ) && ( ypVertex != null || ypEdge != null ) )
+	/**
+	 * Computes the layout in new arrays and swaps them in.
+	 *
+	 * @param holdLock
+	 *            if <code>true</code>, the read lock of the graph is held until
+	 *            the layout is swapped in.
+	 * @return the new layout, or <code>null</code> if the current layout was
+	 *         patched or its settings changed in the meantime.
+	 */
+	private DataLayout computeLayout( final boolean holdLock )
+	{
+		final long version;
+		final RefSet< Spot > vertices;
+		final boolean paintEdges;
+		final boolean sortByTime;
+		final FeatureColumn xc;
+		final FeatureColumn yc;
+		final FeatureColumn[] fc;
+		final FeatureColumn[] ec;
+		synchronized ( this )
 		{
-			int i = 0;
-			for ( final Spot v : vertices )
+			version = modifications;
+			vertices = this.vertices;
+			paintEdges = this.paintEdges;
+			sortByTime = this.sortByTime;
+			xc = xColumn;
+			yc = yColumn;
+			fc = filterColumns.clone();
+			ec = exploredColumns.clone();
+		}
+
+		final Slots s = new Slots();
+		final boolean positioned;
+		int[] timepoints = null;
+		final Lock lock = graph.getLock().readLock();
+		lock.lock();
+		boolean locked = true;
+		try
+		{
+			/*
+			 * Vertex slots.
+			 */
+
+			checkCancelled();
+			final int nv = ( vertices == null ) ? 0 : vertices.size();
+			s.nVertices = nv;
+			s.vertexIds = new int[ nv ];
+			int k = 0;
+			if ( nv > 0 )
+				for ( final Spot v : vertices )
+					s.vertexIds[ k++ ] = v.getInternalPoolIndex();
+			s.vertexSlots = slotsOf( s.vertexIds, nv );
+
+			/*
+			 * Edge slots.
+			 */
+
+			checkCancelled();
+			s.edgeIds = ( paintEdges && nv > 0 )
+					? InducedEdges.collect(
+							graph,
+							graph.vertices().getRefPool(),
+							graph.edges().getRefPool(),
+							s.vertexIds,
+							InducedEdges.toBitSet( s.vertexIds ),
+							parallel )
+					: new int[ 0 ];
+			final int ne = s.edgeIds.length;
+			s.nEdges = ne;
+			s.edgeSlots = slotsOf( s.edgeIds, ne );
+
+			/*
+			 * Values of the vertices, ends of the edges and colors.
+			 */
+
+			checkCancelled();
+			positioned = xc != null && yc != null && nv > 0;
+			s.xyPos = new float[ VERTEX_NUM_DIMENSIONS * nv ];
+			if ( positioned )
+				computeVertexPositions( xc, yc, s.vertexIds, s.xyPos, 0, nv );
+			checkCancelled();
+			s.filterValues = new float[ FILTER_NUM_COLUMNS * nv ];
+			computeFilterValues( fc, s.vertexIds, s.filterValues, 0, nv );
+			s.nExplored = ec.length;
+			s.exploredValues = new float[ ec.length * nv ];
+			computeExploredValues( ec, s.vertexIds, s.exploredValues, 0, nv );
+			checkCancelled();
+			s.edgeIndices = new int[ 2 * ne ];
+			computeEdgeIndices( s.edgeIds, s.vertexSlots, s.edgeIndices, 0, ne );
+			if ( positioned && sortByTime )
+				timepoints = timepointsOf( s.vertexIds, nv );
+			checkCancelled();
+			computeColors( s );
+			checkCancelled();
+
+			if ( !holdLock )
+			{
+				lock.unlock();
+				locked = false;
+			}
+
+			/*
+			 * Tiles.
+			 */
+
+			if ( positioned )
+			{
+				sortVerticesInTiles( s, timepoints );
+				checkCancelled();
+				sortEdgesInTiles( s );
+			}
+
+			synchronized ( this )
 			{
-				final float x = ( float ) getXFeatureValue( v );
-				final float y = ( float ) getYFeatureValue( v );
-				xyPos[ i++ ] = x;
-				xyPos[ i++ ] = y;
+				if ( version != modifications )
+					return null;
+				vertexIds = s.vertexIds;
+				vertexSlots = s.vertexSlots;
+				nVertices = s.nVertices;
+				edgeIds = s.edgeIds;
+				edgeSlots = s.edgeSlots;
+				nEdges = s.nEdges;
+				xyPos = s.xyPos;
+				filterValues = s.filterValues;
+				exploredValues = s.exploredValues;
+				edgeIndices = s.edgeIndices;
+				vertexTiles = s.vertexTiles;
+				edgeTiles = s.edgeTiles;
+				vertexTimepoints = s.vertexTimepoints;
+				edgeTimepoints = s.edgeTimepoints;
+				swapColors( s );
+				invalidateIndex();
+				return currentLayout();
 			}
-			final List< ToDoubleFunction< Spot > > posFuns = new ArrayList<>( 2 );
-			posFuns.add( v -> getXFeatureValue( v ) );
-			posFuns.add( v -> getYFeatureValue( v ) );
-			kdtree = new KdTreeWrapper<>( vertices, graph.vertices().getRefPool(), posFuns );
 		}
+		finally
+		{
+			if ( locked )
+				lock.unlock();
+		}
+	}
 
-		/*
-		 * Edge indices.
-		 */
+	/**
+	 * Returns the slot of each pool index, -1 for the pool indices without a
+	 * slot.
+	 */
+	private static int[] slotsOf( final int[] ids, final int n )
+	{
+		int maxId = -1;
+		for ( int i = 0; i < n; i++ )
+			maxId = Math.max( maxId, ids[ i ] );
+		final int[] slots = new int[ maxId + 1 ];
+		Arrays.fill( slots, -1 );
+		for ( int i = 0; i < n; i++ )
+			slots[ ids[ i ] ] = i;
+		return slots;
+	}
+
+	/**
+	 * Returns the timepoint of the vertices with the specified pool indices.
+	 */
+	private int[] timepointsOf( final int[] ids, final int n )
+	{
+		final int[] timepoints = new int[ n ];
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		final Spot ref = graph.vertexRef();
+		for ( int i = 0; i < n; i++ )
+			timepoints[ i ] = pool.getObject( ids[ i ], ref ).getTimepoint();
+		graph.releaseRef( ref );
+		return timepoints;
+	}
+
+	/**
+	 * Reorders the vertex slots so that each tile of a quadtree over their
+	 * positions is a contiguous range of slots. If the timepoints of the
+	 * vertices are specified, the slots are sorted by timepoint, with one
+	 * quadtree per timepoint. The edges are pointed to the new slots.
+	 */
+	private static void sortVerticesInTiles( final Slots s, final int[] timepoints )
+	{
+		final int n = s.nVertices;
+		final int[] order = new int[ n ];
+		if ( timepoints != null )
+		{
+			s.vertexTimepoints = TimepointOffsets.sort( timepoints, n, order );
+			s.vertexTiles = SpatialTiles.quadtree( s.xyPos, s.vertexTimepoints.starts(), SpatialTiles.DEFAULT_MAX_PER_TILE, order );
+		}
+		else
+		{
+			s.vertexTiles = SpatialTiles.quadtree( s.xyPos, n, SpatialTiles.DEFAULT_MAX_PER_TILE, order );
+		}
+		final int k = s.nExplored;
+		final int[] newSlots = new int[ n ];
+		final int[] sortedIds = new int[ n ];
+		final float[] sortedPos = new float[ VERTEX_NUM_DIMENSIONS * n ];
+		final float[] sortedFilter = new float[ FILTER_NUM_COLUMNS * n ];
+		final float[] sortedExplored = new float[ k * n ];
+		final int[] sortedColors = new int[ n ];
+		final byte[] sortedSelection = new byte[ n ];
+		for ( int slot = 0; slot < n; slot++ )
+		{
+			final int i = order[ slot ];
+			newSlots[ i ] = slot;
+			sortedIds[ slot ] = s.vertexIds[ i ];
+			s.vertexSlots[ sortedIds[ slot ] ] = slot;
+			System.arraycopy( s.xyPos, VERTEX_NUM_DIMENSIONS * i, sortedPos, VERTEX_NUM_DIMENSIONS * slot, VERTEX_NUM_DIMENSIONS );
+			System.arraycopy( s.filterValues, FILTER_NUM_COLUMNS * i, sortedFilter, FILTER_NUM_COLUMNS * slot, FILTER_NUM_COLUMNS );
+			System.arraycopy( s.exploredValues, k * i, sortedExplored, k * slot, k );
+			sortedColors[ slot ] = s.vertexColors[ i ];
+			sortedSelection[ slot ] = s.vertexSelection[ i ];
+		}
+		s.vertexIds = sortedIds;
+		s.xyPos = sortedPos;
+		s.filterValues = sortedFilter;
+		s.exploredValues = sortedExplored;
+		s.vertexColors = sortedColors;
+		s.vertexSelection = sortedSelection;
+		for ( int i = 0; i < 2 * s.nEdges; i++ )
+			s.edgeIndices[ i ] = newSlots[ s.edgeIndices[ i ] ];
+	}
+
+	/**
+	 * Reorders the edge slots so that the edges whose source vertex is in the
+	 * same vertex tile are a contiguous range of slots, and makes these
+	 * ranges the edge tiles. Counting sort over the vertex tiles. If the
+	 * vertex slots are sorted by timepoint, the edges are grouped by their
+	 * later vertex instead, so that they are also sorted by timepoint.
+	 */
+	private static void sortEdgesInTiles( final Slots s )
+	{
+		final int n = s.nEdges;
+		final int nTiles = s.vertexTiles.numTiles();
+		final int[] edgeTile = new int[ n ];
+		final int[] starts = new int[ nTiles + 1 ];
+		for ( int e = 0; e < n; e++ )
+		{
+			final int t = s.vertexTiles.tileOf( edgeKeyVertex( s.edgeIndices, s.vertexTimepoints, e ) );
+			edgeTile[ e ] = t;
+			starts[ t + 1 ]++;
+		}
+		for ( int t = 0; t < nTiles; t++ )
+			starts[ t + 1 ] += starts[ t ];
+
+		final int[] next = Arrays.copyOf( starts, nTiles );
+		final int[] sortedIds = new int[ n ];
+		final int[] sortedIndices = new int[ 2 * n ];
+		final int[] sortedColors = new int[ n ];
+		final byte[] sortedSelection = new byte[ n ];
+		for ( int e = 0; e < n; e++ )
+		{
+			final int slot = next[ edgeTile[ e ] ]++;
+			sortedIds[ slot ] = s.edgeIds[ e ];
+			s.edgeSlots[ sortedIds[ slot ] ] = slot;
+			sortedIndices[ 2 * slot ] = s.edgeIndices[ 2 * e ];
+			sortedIndices[ 2 * slot + 1 ] = s.edgeIndices[ 2 * e + 1 ];
+			sortedColors[ slot ] = s.edgeColors[ e ];
+			sortedSelection[ slot ] = s.edgeSelection[ e ];
+		}
+		s.edgeIds = sortedIds;
+		s.edgeIndices = sortedIndices;
+		s.edgeColors = sortedColors;
+		s.edgeSelection = sortedSelection;
+
+		s.edgeTiles = new SpatialTiles( starts );
+		for ( int slot = 0; slot < n; slot++ )
+			includeEdge( s.edgeTiles, s.edgeIndices, s.xyPos, slot );
 
-		final int[] edgeIndices;
-		final float[] edgePositions;
-		if ( paintEdges )
+		if ( s.vertexTimepoints != null )
 		{
-			edgeIndices = new int[ edges.size() * 2 ];
-			edgePositions = new float[ edges.size() * 2 * VERTEX_NUM_DIMENSIONS ];
+			final int nTimepoints = s.vertexTimepoints.numTimepoints();
+			final int[] timeStarts = new int[ nTimepoints + 1 ];
+			for ( int slot = 0; slot < n; slot++ )
+				timeStarts[ s.vertexTimepoints.timepointOf( edgeKeyVertex( s.edgeIndices, s.vertexTimepoints, slot ) ) + 1 ]++;
+			for ( int t = 0; t < nTimepoints; t++ )
+				timeStarts[ t + 1 ] += timeStarts[ t ];
+			s.edgeTimepoints = new TimepointOffsets( timeStarts );
+		}
+	}
+
+	/**
+	 * Returns the vertex slot that decides the tile of the specified edge
+	 * slot: its source vertex, or its later vertex if the vertex slots are
+	 * sorted by timepoint.
+	 */
+	private static int edgeKeyVertex( final int[] edgeIndices, final TimepointOffsets vertexTimepoints, final int slot )
+	{
+		final int source = edgeIndices[ 2 * slot ];
+		if ( vertexTimepoints == null )
+			return source;
+		return Math.max( source, edgeIndices[ 2 * slot + 1 ] );
+	}
+
+	/**
+	 * Expands the bounds of the tile of the specified vertex slot to its
+	 * current position.
+	 */
+	private void includeVertex( final int slot )
+	{
+		if ( vertexTiles != null )
+			vertexTiles.include( slot, xyPos[ VERTEX_NUM_DIMENSIONS * slot ], xyPos[ VERTEX_NUM_DIMENSIONS * slot + 1 ] );
+	}
+
+	/**
+	 * Expands the bounds of the tile of the specified edge slot to the
+	 * current positions of its source and target.
+	 */
+	private void includeEdge( final int slot )
+	{
+		if ( edgeTiles != null )
+			includeEdge( edgeTiles, edgeIndices, xyPos, slot );
+	}
+
+	private static void includeEdge( final SpatialTiles edgeTiles, final int[] edgeIndices, final float[] xyPos, final int slot )
+	{
+		final int source = edgeIndices[ 2 * slot ];
+		final int target = edgeIndices[ 2 * slot + 1 ];
+		edgeTiles.include( slot, xyPos[ VERTEX_NUM_DIMENSIONS * source ], xyPos[ VERTEX_NUM_DIMENSIONS * source + 1 ] );
+		edgeTiles.include( slot, xyPos[ VERTEX_NUM_DIMENSIONS * target ], xyPos[ VERTEX_NUM_DIMENSIONS * target + 1 ] );
+	}
 
-			final Spot sref = vertices.createRef();
-			final Spot tref = vertices.createRef();
-			int ii = 0;
-			int ip = 0;
-			for ( final Link e : edges )
+	private static void checkCancelled()
+	{
+		if ( Thread.currentThread().isInterrupted() )
+			throw new CancellationException( "Layout computation was interrupted." );
+	}
+
+	/**
+	 * Computes the positions of the vertices in the specified slots of the
+	 * current layout.
+	 */
+	private void computeVertexPositions( final int from, final int to )
+	{
+		computeVertexPositions( xColumn, yColumn, vertexIds, xyPos, from, to );
+	}
+
+	/**
+	 * Computes the positions of the vertices in the specified slots, in
+	 * parallel.
+	 */
+	private void computeVertexPositions( final FeatureColumn xc, final FeatureColumn yc, final int[] vertexIds, final float[] xyPos, final int from, final int to )
+	{
+		if ( xc == null || yc == null )
+			return;
+
+		// Grow the columns once, not while the workers fill them.
+		int maxId = -1;
+		for ( int i = from; i < to; i++ )
+			maxId = Math.max( maxId, vertexIds[ i ] );
+		xc.ensureCapacity( maxId + 1 );
+		yc.ensureCapacity( maxId + 1 );
+
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		Parallel.forEachChunk( to - from, parallel, ( chunk, start, end ) -> {
+			final Spot ref = graph.vertexRef();
+			try
+			{
+				for ( int i = from + start; i < from + end; i++ )
+				{
+					final Spot v = pool.getObject( vertexIds[ i ], ref );
+					xyPos[ VERTEX_NUM_DIMENSIONS * i ] = ( float ) xc.get( v );
+					xyPos[ VERTEX_NUM_DIMENSIONS * i + 1 ] = ( float ) yc.get( v );
+				}
+			}
+			finally
+			{
+				graph.releaseRef( ref );
+			}
+		} );
+	}
+
+	/**
+	 * Computes the values of the filter columns of the vertices in the
+	 * specified slots of the current layout.
+	 */
+	private void computeFilterValues( final int from, final int to )
+	{
+		computeFilterValues( filterColumns.clone(), vertexIds, filterValues, from, to );
+	}
+
+	/**
+	 * Computes the values of the filter columns of the vertices in the
+	 * specified slots, in parallel.
+	 */
+	private void computeFilterValues( final FeatureColumn[] columns, final int[] vertexIds, final float[] filterValues, final int from, final int to )
+	{
+		int maxId = -1;
+		for ( int i = from; i < to; i++ )
+			maxId = Math.max( maxId, vertexIds[ i ] );
+		for ( final FeatureColumn c : columns )
+			if ( c != null )
+				c.ensureCapacity( maxId + 1 );
+
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		Parallel.forEachChunk( to - from, parallel, ( chunk, start, end ) -> {
+			final Spot ref = graph.vertexRef();
+			try
+			{
+				for ( int i = from + start; i < from + end; i++ )
+				{
+					final Spot v = pool.getObject( vertexIds[ i ], ref );
+					for ( int c = 0; c < FILTER_NUM_COLUMNS; c++ )
+					{
+						final float value = columns[ c ] == null ? 0f : ( float ) columns[ c ].get( v );
+						filterValues[ FILTER_NUM_COLUMNS * i + c ] = Float.isNaN( value ) ? Float.POSITIVE_INFINITY : value;
+					}
+				}
+			}
+			finally
 			{
-				final Spot source = e.getSource( sref );
-				final Spot target = e.getTarget( tref );
-				final float xs = ( float ) getXFeatureValue( source );
-				final float ys = ( float ) getYFeatureValue( source );
-				final float xt = ( float ) getXFeatureValue( target );
-				final float yt = ( float ) getYFeatureValue( target );
-				edgePositions[ ip++ ] = xs;
-				edgePositions[ ip++ ] = ys;
-				edgePositions[ ip++ ] = xt;
-				edgePositions[ ip++ ] = yt;
-				edgeIndices[ ii ] = ii++;
-				edgeIndices[ ii ] = ii++;
+				graph.releaseRef( ref );
+			}
+		} );
+	}
+
+	/**
+	 * Sets the feature of a filter column. Its values are computed for the
+	 * plotted vertices, and for the vertices plotted later, so that the
+	 * vertices can be filtered by a range of this feature when they are drawn.
+	 *
+	 * @param column
+	 *            the filter column, less than
+	 *            <code>FILTER_NUM_COLUMNS</code>.
+	 * @param feature
+	 *            the feature, <code>null</code> to clear the column.
+	 */
+	public void setFilter( final int column, final FeatureSpecPair feature )
+	{
+		final Lock lock = graph.getLock().readLock();
+		lock.lock();
+		try
+		{
+			synchronized ( this )
+			{
+				filterSpecs[ column ] = feature;
+				filterColumns[ column ] = ( feature == null ) ? null : getColumn( feature );
+				computeFilterValues( 0, nVertices );
+				modifications++;
+				final DataLayout l = currentLayout();
+				layoutListeners.list.forEach( listener -> listener.dataFilterUpdated( l ) );
 			}
-			vertices.releaseRef( sref );
-			vertices.releaseRef( tref );
 		}
-		else
+		finally
 		{
-			edgeIndices = new int[] {};
-			edgePositions = new float[] {};
+			lock.unlock();
 		}
-		return new DataLayout( xyPos, edgeIndices, edgePositions );
+	}
+
+	/**
+	 * Computes the values of the explored features of the vertices in the
+	 * specified slots of the current layout.
+	 */
+	private void computeExploredValues( final int from, final int to )
+	{
+		computeExploredValues( exploredColumns, vertexIds, exploredValues, from, to );
+	}
+
+	/**
+	 * Computes the values of the explored features of the vertices in the
+	 * specified slots, in parallel.
+	 */
+	private void computeExploredValues( final FeatureColumn[] columns, final int[] vertexIds, final float[] exploredValues, final int from, final int to )
+	{
+		final int k = columns.length;
+		if ( k == 0 )
+			return;
+
+		int maxId = -1;
+		for ( int i = from; i < to; i++ )
+			maxId = Math.max( maxId, vertexIds[ i ] );
+		for ( final FeatureColumn c : columns )
+			if ( c != null )
+				c.ensureCapacity( maxId + 1 );
+
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		Parallel.forEachChunk( to - from, parallel, ( chunk, start, end ) -> {
+			final Spot ref = graph.vertexRef();
+			try
+			{
+				for ( int i = from + start; i < from + end; i++ )
+				{
+					final Spot v = pool.getObject( vertexIds[ i ], ref );
+					for ( int c = 0; c < k; c++ )
+						exploredValues[ k * i + c ] = columns[ c ] == null ? Float.NaN : ( float ) columns[ c ].get( v );
+				}
+			}
+			finally
+			{
+				graph.releaseRef( ref );
+			}
+		} );
+	}
+
+	/**
+	 * Starts exploring the specified features. Their values are computed for
+	 * the plotted vertices, and for the vertices plotted later, and drawn
+	 * from a GPU buffer. The axes can then be swapped between them with
+	 * {@link #swapAxes(FeatureGraphConfig)}, which does not compute the layout
+	 * again.
+	 *
+	 * @param features
+	 *            the features to explore, at most
+	 *            <code>EXPLORATION_MAX_COLUMNS</code>. Empty to stop
+	 *            exploring.
+	 */
+	public void explore( final List< FeatureSpecPair > features )
+	{
+		if ( features.size() > EXPLORATION_MAX_COLUMNS )
+			throw new IllegalArgumentException( "Cannot explore more than " + EXPLORATION_MAX_COLUMNS + " features." );
+
+		final Lock lock = graph.getLock().readLock();
+		lock.lock();
+		try
+		{
+			synchronized ( this )
+			{
+				exploredSpecs = features.toArray( new FeatureSpecPair[ 0 ] );
+				exploredColumns = new FeatureColumn[ exploredSpecs.length ];
+				for ( int c = 0; c < exploredSpecs.length; c++ )
+					exploredColumns[ c ] = getColumn( exploredSpecs[ c ] );
+				// A new array, uploaded whole.
+				exploredValues = new float[ exploredSpecs.length * vertexIds.length ];
+				computeExploredValues( 0, nVertices );
+				updateExploredAxes();
+				notifyLayoutUpdated( 0, 0, 0, 0 );
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the explored features.
+	 *
+	 * @return a new array, empty if not exploring.
+	 */
+	public synchronized FeatureSpecPair[] getExploredFeatures()
+	{
+		return exploredSpecs.clone();
+	}
+
+	/**
+	 * Swaps the axes for the features of the specified graph config without
+	 * computing the layout again, if both features are explored and the
+	 * config plots the same vertices and edges. The positions are copied from
+	 * the explored values, and the overlays draw the explored columns of the
+	 * new axes, which are already uploaded.
+	 * <p>
+	 * The tiles keep their slots, so the culling is coarser until the next
+	 * layout. Copying the positions and refitting the tiles takes time
+	 * proportional to the number of vertices, so this method should not be
+	 * called on the EDT.
+	 *
+	 * @param gc
+	 *            the graph config.
+	 * @return the updated layout, or <code>null</code> if the config needs a
+	 *         new layout, with {@link #setConfig(FeatureGraphConfig)} and
+	 *         {@link #layout()}.
+	 */
+	public synchronized DataLayout swapAxes( final FeatureGraphConfig gc )
+	{
+		final boolean sameVertices = gc.itemSource() == GraphDataItemsSource.KEEP_CURRENT
+				|| ( gc.itemSource() == GraphDataItemsSource.CONTEXT && trackContext );
+		if ( !sameVertices || gc.drawConnected() != paintEdges )
+			return null;
+		final int x = indexOf( exploredSpecs, gc.getXFeature() );
+		final int y = indexOf( exploredSpecs, gc.getYFeature() );
+		if ( x < 0 || y < 0 || exploredColumns[ x ] == null || exploredColumns[ y ] == null )
+			return null;
+
+		xSpec = exploredSpecs[ x ];
+		ySpec = exploredSpecs[ y ];
+		xColumn = exploredColumns[ x ];
+		yColumn = exploredColumns[ y ];
+		xExplored = x;
+		yExplored = y;
+		updateLabels();
+
+		// Selection queries and tiles still use the positions. Copied to a
+		// new array, which the overlays take under their lock when notified:
+		// the previous array may be uploaded meanwhile. They do not upload
+		// it, as they draw the explored columns.
+		final int k = exploredSpecs.length;
+		final float[] xyPos = new float[ this.xyPos.length ];
+		final float[] exploredValues = this.exploredValues;
+		Parallel.forEachChunk( nVertices, parallel, ( chunk, from, to ) -> {
+			for ( int i = from; i < to; i++ )
+			{
+				xyPos[ VERTEX_NUM_DIMENSIONS * i ] = exploredValues[ k * i + x ];
+				xyPos[ VERTEX_NUM_DIMENSIONS * i + 1 ] = exploredValues[ k * i + y ];
+			}
+		} );
+		this.xyPos = xyPos;
+		resetTileBounds();
+		invalidateIndex();
+		buildIndexLater();
+		notifyLayoutUpdated( 0, 0, 0, 0 );
+		return currentLayout();
+	}
+
+	/**
+	 * Draws the axes from the explored values if both are explored.
+	 */
+	private void updateExploredAxes()
+	{
+		final int x = indexOf( exploredSpecs, xSpec );
+		final int y = indexOf( exploredSpecs, ySpec );
+		final boolean explored = x >= 0 && y >= 0;
+		xExplored = explored ? x : -1;
+		yExplored = explored ? y : -1;
+	}
+
+	private static int indexOf( final FeatureSpecPair[] specs, final FeatureSpecPair spec )
+	{
+		if ( spec == null )
+			return -1;
+		for ( int i = 0; i < specs.length; i++ )
+			if ( spec.equals( specs[ i ] ) )
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns the range of the finite values of a filter column over the
+	 * plotted vertices.
+	 *
+	 * @param column
+	 *            the filter column.
+	 * @return the min and max values, or <code>null</code> if the column is
+	 *         unused or has no finite value.
+	 */
+	public synchronized double[] getFilterRange( final int column )
+	{
+		if ( filterColumns[ column ] == null )
+			return null;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for ( int i = 0; i < nVertices; i++ )
+		{
+			final float value = filterValues[ FILTER_NUM_COLUMNS * i + column ];
+			if ( Float.isInfinite( value ) )
+				continue;
+			min = Math.min( min, value );
+			max = Math.max( max, value );
+		}
+		return min > max ? null : new double[] { min, max };
+	}
+
+	/**
+	 * Computes the source and target vertex slots of the edges in the
+	 * specified slots of the current layout.
+	 */
+	private void computeEdgeIndices( final int from, final int to )
+	{
+		computeEdgeIndices( edgeIds, vertexSlots, edgeIndices, from, to );
+	}
+
+	/**
+	 * Computes the source and target vertex slots of the edges in the
+	 * specified slots, in parallel. Edges are drawn from the vertex positions,
+	 * so they do not need to be updated when vertices move.
+	 */
+	private void computeEdgeIndices( final int[] edgeIds, final int[] vertexSlots, final int[] edgeIndices, final int from, final int to )
+	{
+		final RefPool< Link > pool = graph.edges().getRefPool();
+		Parallel.forEachChunk( to - from, parallel, ( chunk, start, end ) -> {
+			final Link eref = graph.edgeRef();
+			final Spot sref = graph.vertexRef();
+			final Spot tref = graph.vertexRef();
+			try
+			{
+				for ( int i = from + start; i < from + end; i++ )
+				{
+					final Link e = pool.getObject( edgeIds[ i ], eref );
+					edgeIndices[ 2 * i ] = vertexSlots[ e.getSource( sref ).getInternalPoolIndex() ];
+					edgeIndices[ 2 * i + 1 ] = vertexSlots[ e.getTarget( tref ).getInternalPoolIndex() ];
+				}
+			}
+			finally
+			{
+				graph.releaseRef( eref );
+				graph.releaseRef( sref );
+				graph.releaseRef( tref );
+			}
+		} );
+	}
+
+	/**
+	 * Discards the selection index. Queries scan the layout until it is built
+	 * again.
+	 */
+	private void invalidateIndex()
+	{
+		kdtree = null;
+		positionsVersion++;
+		queryPlanner.changed( System.nanoTime() );
+	}
+
+	/**
+	 * Returns the object that decides whether selection queries use an index
+	 * or scan the layout. Its mode can be set to force either.
+	 *
+	 * @return the query planner.
+	 */
+	public QueryPlanner queryPlanner()
+	{
+		return queryPlanner;
+	}
+
+	/**
+	 * Builds the selection index of the current vertex positions in the
+	 * background, unless it is already built or queued, or the
+	 * {@link #queryPlanner()} finds that it would not pay off. Meant to be
+	 * called once the layout is shown, so that the index does not delay the
+	 * first frame. Until the index is ready, selection queries scan the
+	 * layout.
+	 */
+	public synchronized void buildIndexLater()
+	{
+		if ( kdtree != null || indexBuildQueued || xColumn == null || yColumn == null
+				|| indexExecutor.isShutdown()
+				|| !queryPlanner.shouldIndex( nVertices, System.nanoTime() ) )
+			return;
+		indexBuildQueued = true;
+		indexExecutor.execute( this::buildIndex );
+	}
+
+	private void buildIndex()
+	{
+		// Copy the positions, which are patched in place, and build outside of the lock.
+		final long version;
+		final float[] xy;
+		final int[] ids;
+		final int n;
+		synchronized ( this )
+		{
+			indexBuildQueued = false;
+			if ( kdtree != null )
+				return;
+			version = positionsVersion;
+			n = nVertices;
+			xy = Arrays.copyOf( xyPos, VERTEX_NUM_DIMENSIONS * n );
+			ids = Arrays.copyOf( vertexIds, n );
+		}
+		final KdTree2D tree = KdTree2D.build( xy, ids, n, parallel );
+		synchronized ( this )
+		{
+			if ( version == positionsVersion )
+				kdtree = tree;
+		}
+	}
+
+	/**
+	 * Computes the density grid of the current vertex positions. The
+	 * positions are copied under the lock, since they are patched in place,
+	 * and the grid is computed outside of it.
+	 *
+	 * @param resolution
+	 *            the number of cells along X and Y.
+	 * @return a new density grid.
+	 */
+	public DensityGrid densityGrid( final int resolution )
+	{
+		final float[] xy;
+		final int n;
+		synchronized ( this )
+		{
+			n = nVertices;
+			xy = Arrays.copyOf( xyPos, VERTEX_NUM_DIMENSIONS * n );
+		}
+		return DensityGrid.compute( xy, n, resolution );
+	}
+
+	/**
+	 * Returns the vertex pool index of each vertex slot of the current layout.
+	 * Exposed for tests.
+	 */
+	synchronized int[] getVertexIds()
+	{
+		return Arrays.copyOf( vertexIds, nVertices );
+	}
+
+	/**
+	 * Returns the edge pool index of each edge slot of the current layout.
+	 * Exposed for tests.
+	 */
+	synchronized int[] getEdgeIds()
+	{
+		return Arrays.copyOf( edgeIds, nEdges );
+	}
+
+	/**
+	 * Passes the current layout and colors, as last patched, to the specified
+	 * consumer. It runs under the monitor of this maker, so no patch is
+	 * notified to the layout listeners meanwhile, and a listener drawing them
+	 * cannot go back to an older state.
+	 *
+	 * @param consumer
+	 *            the consumer of the current layout and colors.
+	 */
+	public synchronized void withCurrentLayout( final BiConsumer< DataLayout, DataColor > consumer )
+	{
+		consumer.accept( currentLayout(), currentColor() );
+	}
+
+	/**
+	 * Returns the current layout, as last patched. Exposed for tests.
+	 */
+	synchronized DataLayout getCurrentLayout()
+	{
+		return currentLayout();
+	}
+
+	private DataLayout currentLayout()
+	{
+		return new DataLayout( xyPos, filterValues, exploredValues, exploredSpecs.length, xExplored, yExplored,
+				edgeIndices, nVertices, nEdges, vertexTiles, edgeTiles, vertexTimepoints, edgeTimepoints );
+	}
+
+	private DataColor currentColor()
+	{
+		return new DataColor( vertexColors, edgeColors, vertexSelection, edgeSelection );
 	}
 
 	public float[][] getHighlightVertexData()
@@ -233,210 +1255,370 @@ public class DataLayoutMaker implements ContextListener< Spot >
 	}
 
 	/**
-	 * Returns a new color specification for the objects displayed based on the
-	 * color generator specified at construction.
-	 * 
+	 * Computes the colors of the current layout again, for instance after the
+	 * color generator changed.
+	 * <p>
+	 * As for {@link #layout()}, the graph is read under its read lock, the
+	 * colors are computed in new arrays without the lock of this instance,
+	 * and swapped in once complete.
+	 *
 	 * @return a new {@link DataColor}, to be used by the OpenGL logic.
 	 */
 	public DataColor color()
 	{
-		if ( vertices.isEmpty() )
-			return new DataColor( new float[] {}, new float[] {} );
+		for ( int attempt = 0;; attempt++ )
+		{
+			final DataColor c = computeColor( attempt > 0 );
+			if ( c != null )
+				return c;
+		}
+	}
 
-		/*
-		 * Vertex colors.
-		 */
+	/**
+	 * Returns the colors of the current layout, computed with it by
+	 * {@link #layout()} or by {@link #color()}, and patched since.
+	 *
+	 * @return the current {@link DataColor}.
+	 */
+	public synchronized DataColor getColor()
+	{
+		return currentColor();
+	}
 
-		final int n = vertices.size();
-		final float[] vertexColors = new float[ COLOR_NUM_CHANNELS * n ];
-		final float[] tmp = new float[ 4 ];
-		int i = 0;
-		for ( final Spot spot : vertices )
+	/**
+	 * Computes the colors in new arrays and swaps them in.
+	 *
+	 * @param holdLock
+	 *            if <code>true</code>, the read lock of the graph is held until
+	 *            the colors are swapped in.
+	 * @return the new colors, or <code>null</code> if the current layout was
+	 *         patched in the meantime.
+	 */
+	private DataColor computeColor( final boolean holdLock )
+	{
+		final long version;
+		final Slots s = new Slots();
+		synchronized ( this )
 		{
-			// RGBA
-			colorVertex( spot, tmp );
-			vertexColors[ i++ ] = tmp[ 0 ];
-			vertexColors[ i++ ] = tmp[ 1 ];
-			vertexColors[ i++ ] = tmp[ 2 ];
-			vertexColors[ i++ ] = tmp[ 3 ];
+			version = modifications;
+			s.vertexIds = vertexIds.clone();
+			s.nVertices = nVertices;
+			s.edgeIds = edgeIds.clone();
+			s.nEdges = nEdges;
 		}
 
-		/*
-		 * Edge colors.
-		 */
+		final Lock lock = graph.getLock().readLock();
+		lock.lock();
+		boolean locked = true;
+		try
+		{
+			computeColors( s );
+			if ( !holdLock )
+			{
+				lock.unlock();
+				locked = false;
+			}
+			synchronized ( this )
+			{
+				if ( version != modifications )
+					return null;
+				swapColors( s );
+				return currentColor();
+			}
+		}
+		finally
+		{
+			if ( locked )
+				lock.unlock();
+		}
+	}
+
+	/**
+	 * Computes the base colors and the selection state of the vertices and
+	 * edges of the specified slots, in new arrays as long as the slot arrays.
+	 */
+	private void computeColors( final Slots s )
+	{
+		s.vertexColors = new int[ s.vertexIds.length ];
+		s.vertexSelection = new byte[ s.vertexIds.length ];
+		s.edgeColors = new int[ s.edgeIds.length ];
+		s.edgeSelection = new byte[ s.edgeIds.length ];
+		snapshotSelection( s.selectedVertices, s.selectedEdges );
+		colorVertices( s.vertexIds, s.vertexColors, s.vertexSelection, 0, s.nVertices );
+		colorEdges( s.edgeIds, s.edgeColors, s.edgeSelection, 0, s.nEdges );
+	}
+
+	/**
+	 * Makes the computed colors current. The selection may have changed since
+	 * it was read, so the selection state is updated.
+	 */
+	private void swapColors( final Slots s )
+	{
+		vertexColors = s.vertexColors;
+		vertexSelection = s.vertexSelection;
+		edgeColors = s.edgeColors;
+		edgeSelection = s.edgeSelection;
+		coloredSelectedVertices.clear();
+		coloredSelectedVertices.or( s.selectedVertices );
+		coloredSelectedEdges.clear();
+		coloredSelectedEdges.or( s.selectedEdges );
+		modifications++;
+		patchSelection( new TIntArrayList(), new TIntArrayList() );
+	}
+
+	/**
+	 * Updates the selection state of the plotted vertices and edges whose
+	 * selection changed since the colors were last computed, and notifies the
+	 * layout listeners of the updated slots. The base colors are not
+	 * recomputed.
+	 * <p>
+	 * The cost is proportional to the number of selected objects before and
+	 * after the change, not to the number of plotted objects.
+	 */
+	public synchronized void updateSelection()
+	{
+		final TIntArrayList changedVertexSlots = new TIntArrayList();
+		final TIntArrayList changedEdgeSlots = new TIntArrayList();
+		patchSelection( changedVertexSlots, changedEdgeSlots );
+		if ( changedVertexSlots.isEmpty() && changedEdgeSlots.isEmpty() )
+			return;
+		final DataColor c = currentColor();
+		final int[] vs = changedVertexSlots.toArray();
+		final int[] es = changedEdgeSlots.toArray();
+		layoutListeners.list.forEach( l -> l.dataSelectionUpdated( c, vs, es ) );
+	}
 
-		final Color eColor = style.getEdgeColor();
-		final int eRed = eColor.getRed();
-		final int eGreen = eColor.getGreen();
-		final int eBlue = eColor.getBlue();
-		final int eAlpha = eColor.getAlpha();
-
-		final Color seColor = style.getSelectedEdgeColor();
-		final int seRed = seColor.getRed();
-		final int seGreen = seColor.getGreen();
-		final int seBlue = seColor.getBlue();
-		final int seAlpha = seColor.getAlpha();
-
-		final float[] edgeColors;
-		int j = 0;
-		if ( paintEdges )
-		{
-			edgeColors = new float[ edges.size() * COLOR_NUM_CHANNELS * 2 ];
-			final Spot sref = vertices.createRef();
-			final Spot tref = vertices.createRef();
-			for ( final Link e : edges )
+	/**
+	 * Updates the selection state of the plotted vertices and edges whose
+	 * selection changed since the colors were last computed.
+	 *
+	 * @param changedVertexSlots
+	 *            receives the slots of the updated vertices.
+	 * @param changedEdgeSlots
+	 *            receives the slots of the updated edges.
+	 */
+	private void patchSelection( final TIntArrayList changedVertexSlots, final TIntArrayList changedEdgeSlots )
+	{
+		final RefPool< Spot > vpool = graph.vertices().getRefPool();
+		final RefPool< Link > epool = graph.edges().getRefPool();
+		final Spot vref = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		try
+		{
+			// Deselected vertices.
+			for ( int id = coloredSelectedVertices.nextSetBit( 0 ); id >= 0; id = coloredSelectedVertices.nextSetBit( id + 1 ) )
 			{
-				e.getSource( sref );
-				e.getTarget( tref );
-
-				final int a;
-				final int r;
-				final int g;
-				final int b;
-				if ( selection.isSelected( e ) )
+				final Spot v = vpool.getObject( id, vref );
+				if ( !selection.isSelected( v ) )
 				{
-					a = seAlpha;
-					r = seRed;
-					g = seGreen;
-					b = seBlue;
+					coloredSelectedVertices.clear( id );
+					updateVertexSelection( v, changedVertexSlots );
 				}
-				else
+			}
+			// Newly selected vertices.
+			for ( final Spot v : selection.getSelectedVertices() )
+			{
+				final int id = v.getInternalPoolIndex();
+				if ( !coloredSelectedVertices.get( id ) )
 				{
-					final int c = graphColorGenerator.color( e, sref, tref );
-					if ( c == 0 )
-					{
-						// Default cColor from the style.
-						a = eAlpha;
-						r = eRed;
-						g = eGreen;
-						b = eBlue;
-					}
-					else
-					{
-						// Color from the colormap.
-						a = ( c >> 24 ) & 0xFF;
-						r = ( c >> 16 ) & 0xFF;
-						g = ( c >> 8 ) & 0xFF;
-						b = c & 255;
-					}
+					coloredSelectedVertices.set( id );
+					updateVertexSelection( v, changedVertexSlots );
+				}
+			}
+			// Deselected edges.
+			for ( int id = coloredSelectedEdges.nextSetBit( 0 ); id >= 0; id = coloredSelectedEdges.nextSetBit( id + 1 ) )
+			{
+				final Link e = epool.getObject( id, eref );
+				if ( !selection.isSelected( e ) )
+				{
+					coloredSelectedEdges.clear( id );
+					updateEdgeSelection( e, changedEdgeSlots );
+				}
+			}
+			// Newly selected edges.
+			for ( final Link e : selection.getSelectedEdges() )
+			{
+				final int id = e.getInternalPoolIndex();
+				if ( !coloredSelectedEdges.get( id ) )
+				{
+					coloredSelectedEdges.set( id );
+					updateEdgeSelection( e, changedEdgeSlots );
 				}
-
-				// RGBA
-				edgeColors[ j++ ] = r / 255f;
-				edgeColors[ j++ ] = g / 255f;
-				edgeColors[ j++ ] = b / 255f;
-				edgeColors[ j++ ] = a / 255f;
-				edgeColors[ j++ ] = r / 255f;
-				edgeColors[ j++ ] = g / 255f;
-				edgeColors[ j++ ] = b / 255f;
-				edgeColors[ j++ ] = a / 255f;
 			}
-			vertices.releaseRef( sref );
-			vertices.releaseRef( tref );
 		}
-		else
+		finally
 		{
-			edgeColors = new float[] {};
+			graph.releaseRef( vref );
+			graph.releaseRef( eref );
 		}
+	}
 
-		return new DataColor( vertexColors, edgeColors );
+	private void updateVertexSelection( final Spot v, final TIntArrayList changedSlots )
+	{
+		final int slot = vertexSlot( v );
+		if ( slot < 0 )
+			return;
+		vertexSelection[ slot ] = selectionState( selection.isSelected( v ) );
+		changedSlots.add( slot );
 	}
 
-	private void colorVertex( final Spot spot, final float[] out )
+	private void updateEdgeSelection( final Link e, final TIntArrayList changedSlots )
 	{
-		final Color vColor = style.getSimplifiedVertexFillColor();
-		final int vRed = vColor.getRed();
-		final int vGreen = vColor.getGreen();
-		final int vBlue = vColor.getBlue();
-		final int vAlpha = vColor.getAlpha();
-
-		final Color svColor = style.getSelectedSimplifiedVertexFillColor();
-		final int svRed = svColor.getRed();
-		final int svGreen = svColor.getGreen();
-		final int svBlue = svColor.getBlue();
-		final int svAlpha = svColor.getAlpha();
-
-		final int a;
-		final int r;
-		final int g;
-		final int b;
-		if ( selection.isSelected( spot ) )
-		{
-			r = svRed;
-			g = svGreen;
-			b = svBlue;
-			a = svAlpha;
-		}
-		else
+		final int slot = edgeSlot( e );
+		if ( slot < 0 )
+			return;
+		edgeSelection[ slot ] = selectionState( selection.isSelected( e ) );
+		changedSlots.add( slot );
+	}
+
+	private static byte selectionState( final boolean selected )
+	{
+		return selected ? ( byte ) 1 : ( byte ) 0;
+	}
+
+	/**
+	 * Stores the pool indices of the currently selected vertices and edges,
+	 * before computing all the colors.
+	 */
+	private void snapshotSelection( final BitSet selectedVertices, final BitSet selectedEdges )
+	{
+		for ( final Spot v : selection.getSelectedVertices() )
+			selectedVertices.set( v.getInternalPoolIndex() );
+		for ( final Link e : selection.getSelectedEdges() )
+			selectedEdges.set( e.getInternalPoolIndex() );
+	}
+
+	/**
+	 * Computes the base colors and the selection state of the vertices in the
+	 * specified slots of the current layout.
+	 */
+	private void colorVertices( final int from, final int to )
+	{
+		colorVertices( vertexIds, vertexColors, vertexSelection, from, to );
+	}
+
+	/**
+	 * Computes the base colors and the selection state of the vertices in the
+	 * specified slots.
+	 */
+	private void colorVertices( final int[] vertexIds, final int[] vertexColors, final byte[] vertexSelection, final int from, final int to )
+	{
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		final Spot ref = graph.vertexRef();
+		try
 		{
-			final int c = graphColorGenerator.color( spot );
-			if ( c == 0 )
-			{
-				a = vAlpha;
-				r = vRed;
-				g = vGreen;
-				b = vBlue;
-			}
-			else
+			for ( int i = from; i < to; i++ )
 			{
-				// Color from the colormap.
-				a = ( c >> 24 ) & 0xFF;
-				r = ( c >> 16 ) & 0xFF;
-				g = ( c >> 8 ) & 0xFF;
-				b = c & 255;
+				final Spot spot = pool.getObject( vertexIds[ i ], ref );
+				vertexColors[ i ] = PackedColors.fromARGB( vertexColor( spot ) );
+				vertexSelection[ i ] = selectionState( selection.isSelected( spot ) );
 			}
 		}
-		out[ 0 ] = ( r / 255f );
-		out[ 1 ] = ( g / 255f );
-		out[ 2 ] = ( b / 255f );
-		out[ 3 ] = ( a / 255f );
+		finally
+		{
+			graph.releaseRef( ref );
+		}
 	}
 
-	private void setVertices( final RefSet< Spot > vertices )
+	/**
+	 * Computes the base colors and the selection state of the edges in the
+	 * specified slots of the current layout.
+	 */
+	private void colorEdges( final int from, final int to )
 	{
-		this.vertices = vertices;
-		this.edges = RefCollections.createRefSet( graph.edges(), vertices.size() );
-		final Spot sref = vertices.createRef();
-		final Spot tref = vertices.createRef();
-		for ( final Spot v : vertices )
+		colorEdges( edgeIds, edgeColors, edgeSelection, from, to );
+	}
+
+	/**
+	 * Computes the base colors and the selection state of the edges in the
+	 * specified slots.
+	 */
+	private void colorEdges( final int[] edgeIds, final int[] edgeColors, final byte[] edgeSelection, final int from, final int to )
+	{
+		final RefPool< Link > pool = graph.edges().getRefPool();
+		final Link eref = graph.edgeRef();
+		final Spot sref = graph.vertexRef();
+		final Spot tref = graph.vertexRef();
+		try
 		{
-			for ( final Link e : v.edges() )
+			for ( int i = from; i < to; i++ )
 			{
-				final Spot source = e.getSource( sref );
-				final Spot target = e.getTarget( tref );
-				if ( vertices.contains( source ) && vertices.contains( target ) )
-					edges.add( e );
+				final Link e = pool.getObject( edgeIds[ i ], eref );
+				edgeColors[ i ] = PackedColors.fromARGB( edgeColor( e, sref, tref ) );
+				edgeSelection[ i ] = selectionState( selection.isSelected( e ) );
 			}
 		}
-		vertices.releaseRef( sref );
-		vertices.releaseRef( tref );
+		finally
+		{
+			graph.releaseRef( eref );
+			graph.releaseRef( sref );
+			graph.releaseRef( tref );
+		}
 	}
 
-	private final double getXFeatureValue( final Spot v )
+	/**
+	 * Returns the ARGB base color of the specified spot. The selection is
+	 * rendered by the shaders on top of the base color.
+	 */
+	private int vertexColor( final Spot spot )
 	{
-		return getFeatureValue( v, xpVertex, xpEdge );
+		final int c = graphColorGenerator.color( spot );
+		if ( c == 0 )
+			return style.getSimplifiedVertexFillColor().getRGB();
+
+		// Color from the colormap.
+		return c;
 	}
 
-	private final double getYFeatureValue( final Spot v )
+	/**
+	 * Returns the ARGB base color of the specified link.
+	 */
+	private int edgeColor( final Link e, final Spot sref, final Spot tref )
 	{
-		return getFeatureValue( v, ypVertex, ypEdge );
+		final int c = graphColorGenerator.color( e, e.getSource( sref ), e.getTarget( tref ) );
+		if ( c == 0 )
+			return style.getEdgeColor().getRGB();
+
+		// Color from the colormap.
+		return c;
 	}
 
-	private final double getFeatureValue( final Spot v, final FeatureProjection< Spot > xpv, final FeatureProjection< Link > xpe )
+	private void colorVertex( final Spot spot, final float[] out )
 	{
-		if ( xpv != null )
-			return xpv.value( v );
+		final int c = selection.isSelected( spot )
+				? style.getSelectedSimplifiedVertexFillColor().getRGB()
+				: vertexColor( spot );
+		putColor( out, 0, c );
+	}
 
-		if ( xpe != null )
-		{
-			final Edges< Link > edges = ( incomingEdge )
-					? v.incomingEdges()
-					: v.outgoingEdges();
-			if ( edges.size() != 1 )
-				return Double.NaN;
-			return xpe.value( edges.iterator().next() );
-		}
-		return Double.NaN;
+	/**
+	 * Writes the specified ARGB color as RGBA floats.
+	 */
+	private static void putColor( final float[] out, final int offset, final int c )
+	{
+		out[ offset ] = ( ( c >> 16 ) & 0xFF ) / 255f;
+		out[ offset + 1 ] = ( ( c >> 8 ) & 0xFF ) / 255f;
+		out[ offset + 2 ] = ( c & 0xFF ) / 255f;
+		out[ offset + 3 ] = ( ( c >> 24 ) & 0xFF ) / 255f;
+	}
+
+	/**
+	 * Sets the vertices to plot. The edges to plot are the edges between
+	 * these vertices, and are collected when the layout is computed.
+	 */
+	private void setVertices( final RefSet< Spot > vertices )
+	{
+		this.vertices = vertices;
+	}
+
+	private final double getXFeatureValue( final Spot v )
+	{
+		return xColumn == null ? Double.NaN : xColumn.get( v );
+	}
+
+	private final double getYFeatureValue( final Spot v )
+	{
+		return yColumn == null ? Double.NaN : yColumn.get( v );
 	}
 
 	/**
@@ -455,104 +1637,232 @@ public class DataLayoutMaker implements ContextListener< Spot >
 	 */
 	public RefSet< Spot > getSpotWithin( final double x1, final double y1, final double x2, final double y2 )
 	{
-		final RefSet< Spot > set = RefCollections.createRefSet( graph.vertices() );
-		if ( kdtree == null )
-			return set;
-
-		final double lx1 = Math.min( x1, x2 );
-		final double lx2 = Math.max( x1, x2 );
-		final double ly1 = Math.min( y1, y2 );
-		final double ly2 = Math.max( y1, y2 );
-
-		// Make hyperplanes for transform view.
-		final HyperPlane hpMinX = new HyperPlane( new double[] { 1., 0. }, lx1 );
-		final HyperPlane hpMaxX = new HyperPlane( new double[] { -1., 0. }, -lx2 );
-		final HyperPlane hpMinY = new HyperPlane( new double[] { 0., 1. }, ly1 );
-		final HyperPlane hpMaxY = new HyperPlane( new double[] { 0., -1. }, -ly2 );
-
-		// Convex polytope from hyperplanes.
-		final ConvexPolytope polytope = new ConvexPolytope( hpMinX, hpMinY, hpMaxX, hpMaxY );
-
-		return kdtree.getObjsWithin( polytope );
+		final int[] ids = getSpotIdsWithin( x1, y1, x2, y2 );
+		final RefSet< Spot > set = RefCollections.createRefSet( graph.vertices(), ids.length );
+		final RefPool< Spot > pool = graph.vertices().getRefPool();
+		final Spot ref = graph.vertexRef();
+		for ( final int id : ids )
+			set.add( pool.getObject( id, ref ) );
+		graph.releaseRef( ref );
+		return set;
 	}
 
-	public void setConfig( final FeatureGraphConfig gc )
+	/**
+	 * Returns the pool indices of the data vertices that are painted according
+	 * to this layout instance, within the specified <b>screen
+	 * coordinates</b>. Unlike {@link #getSpotWithin(double, double, double, double)},
+	 * no object is created per vertex.
+	 *
+	 * @param x1
+	 *            x min in screen coordinates.
+	 * @param y1
+	 *            y min in screen coordinates.
+	 * @param x2
+	 *            x max in screen coordinates.
+	 * @param y2
+	 *            y max in screen coordinates.
+	 * @return a new array of vertex pool indices.
+	 */
+	public synchronized int[] getSpotIdsWithin( final double x1, final double y1, final double x2, final double y2 )
 	{
-		trackContext = false;
-
-		// X feature projection.
-		final FeatureSpecPair spx = gc.getXFeature();
-		final String xunits;
-		if ( spx.isEdgeFeature() )
+		if ( xColumn == null || yColumn == null )
+			return new int[ 0 ];
+
+		final double minX = Math.min( x1, x2 );
+		final double maxX = Math.max( x1, x2 );
+		final double minY = Math.min( y1, y2 );
+		final double maxY = Math.max( y1, y2 );
+		final TIntArrayList ids = new TIntArrayList();
+		queryPlanner.queried( System.nanoTime() );
+		if ( kdtree != null )
 		{
-			final FeatureProjection< Link > xproj = spx.getProjection( featureModel );
-			setXFeatureEdge( xproj, spx.isIncomingEdge() );
-			xunits = xproj.units();
+			kdtree.range( minX, maxX, minY, maxY, ids );
 		}
 		else
 		{
-			final FeatureProjection< Spot > xproj = spx.getProjection( featureModel );
-			setXFeatureVertex( xproj );
-			xunits = xproj.units();
+			PointScan.range( xyPos, vertexIds, nVertices, minX, maxX, minY, maxY, parallel, ids );
+			// The query rate may now justify the index.
+			buildIndexLater();
 		}
+		return ids.toArray();
+	}
 
-		// Y feature projection.
-		final String yunits;
-		final FeatureSpecPair spy = gc.getYFeature();
-		if ( spy.isEdgeFeature() )
-		{
-			final FeatureProjection< Link > yproj = spy.getProjection( featureModel );
-			setYFeatureEdge( yproj, spy.isIncomingEdge() );
-			yunits = yproj.units();
-		}
-		else
+	/**
+	 * Returns <code>true</code> if the vertex with the specified pool index
+	 * is in the current layout.
+	 *
+	 * @param id
+	 *            the vertex pool index.
+	 * @return whether the vertex is plotted.
+	 */
+	public synchronized boolean isPlotted( final int id )
+	{
+		return id >= 0 && id < vertexSlots.length && vertexSlots[ id ] >= 0;
+	}
+
+	/**
+	 * Returns the pool index of the plotted vertex nearest to the specified
+	 * position in layout coordinates, within a maximal distance in screen
+	 * pixels.
+	 *
+	 * @param x
+	 *            the X position, in layout coordinates.
+	 * @param y
+	 *            the Y position, in layout coordinates.
+	 * @param scaleX
+	 *            the number of pixels per layout unit along X.
+	 * @param scaleY
+	 *            the number of pixels per layout unit along Y.
+	 * @param maxDistance
+	 *            the maximal distance, in pixels.
+	 * @return the vertex pool index, or -1 if no vertex is close enough.
+	 */
+	public synchronized int getNearestSpotId( final double x, final double y, final double scaleX, final double scaleY, final double maxDistance )
+	{
+		if ( xColumn == null || yColumn == null )
+			return -1;
+
+		queryPlanner.queried( System.nanoTime() );
+		if ( kdtree != null )
 		{
-			final FeatureProjection< Spot > yproj = spy.getProjection( featureModel );
-			setYFeatureVertex( yproj );
-			yunits = yproj.units();
+			final int[] id = new int[ 1 ];
+			final double[] distance = new double[ 1 ];
+			return kdtree.nearest( x, y, scaleX, scaleY, maxDistance, id, distance ) == 0 ? -1 : id[ 0 ];
 		}
+		final int id = PointScan.nearest( xyPos, vertexIds, nVertices, x, y, scaleX, scaleY, maxDistance, parallel );
+		buildIndexLater();
+		return id;
+	}
 
-		// Vertices to plot.
-		final RefSet< Spot > selectedVertices = selection.getSelectedVertices();
-		final RefSet< Link > selectedEdges = selection.getSelectedEdges();
-		switch ( gc.itemSource() )
-		{
-		case CONTEXT:
+	/**
+	 * Returns the pool indices of the data vertices that are painted according
+	 * to this layout instance, inside the specified polygon in layout
+	 * coordinates.
+	 *
+	 * @param polygon
+	 *            the polygon, for instance a lasso drawn by the user.
+	 * @return a new array of vertex pool indices.
+	 */
+	public synchronized int[] getSpotIdsWithin( final Polygon2D polygon )
+	{
+		if ( xColumn == null || yColumn == null )
+			return new int[ 0 ];
+
+		final TIntArrayList ids = new TIntArrayList();
+		queryPlanner.queried( System.nanoTime() );
+		if ( kdtree != null )
 		{
-			trackContext = true;
-			setVertices( fromContext() );
-			break;
+			kdtree.polygon( polygon, parallel, ids );
 		}
-		case SELECTION:
+		else
 		{
-			setVertices( selection.getSelectedVertices() );
-			break;
+			PointScan.polygon( xyPos, vertexIds, nVertices, polygon, parallel, ids );
+			buildIndexLater();
 		}
-		case TRACK_OF_SELECTION:
+		return ids.toArray();
+	}
+
+	/**
+	 * Sets the features and the vertices to plot. The vertices are collected
+	 * under the read lock of the graph. Takes effect when the layout is next
+	 * computed.
+	 *
+	 * @param gc
+	 *            the graph config.
+	 */
+	public void setConfig( final FeatureGraphConfig gc )
+	{
+		final Lock lock = graph.getLock().readLock();
+		lock.lock();
+		try
 		{
-			final RefSet< Spot > vertices = fromTrackOfSelection( selectedVertices, selectedEdges );
-			setVertices( vertices );
-			break;
+			// Vertices to plot, null to keep the current ones.
+			final RefSet< Spot > vertices;
+			switch ( gc.itemSource() )
+			{
+			case CONTEXT:
+			{
+				vertices = fromContext();
+				break;
+			}
+			case SELECTION:
+			{
+				// Copy, so that the plotted vertices do not follow the selection.
+				final RefSet< Spot > selectedVertices = selection.getSelectedVertices();
+				vertices = RefCollections.createRefSet( graph.vertices(), selectedVertices.size() );
+				vertices.addAll( selectedVertices );
+				break;
+			}
+			case TRACK_OF_SELECTION:
+			{
+				vertices = fromTrackOfSelection( selection.getSelectedVertices(), selection.getSelectedEdges() );
+				break;
+			}
+			case KEEP_CURRENT:
+			default:
+				vertices = null;
+				break;
+			}
+
+			synchronized ( this )
+			{
+				trackContext = gc.itemSource() == GraphDataItemsSource.CONTEXT;
+
+				// X feature projection.
+				xSpec = gc.getXFeature();
+				xColumn = getColumn( xSpec );
+
+				// Y feature projection.
+				ySpec = gc.getYFeature();
+				yColumn = getColumn( ySpec );
+				updateExploredAxes();
+
+				if ( vertices != null )
+					setVertices( vertices );
+
+				// Draw plot edges.
+				setPaintEdges( gc.drawConnected() );
+
+				updateLabels();
+				modifications++;
+			}
 		}
-		case KEEP_CURRENT:
-		default:
-			break;
+		finally
+		{
+			lock.unlock();
 		}
+	}
 
-		// Draw plot edges.
-		setPaintEdges( gc.drawConnected() );
-
-		String xlabel = gc.getXFeature().toString();
+	private void updateLabels()
+	{
+		String xlabel = xSpec.toString();
+		final String xunits = xColumn.units();
 		if ( !xunits.isEmpty() )
 			xlabel += " (" + xunits + ")";
 		this.xlabel = xlabel;
 
-		String ylabel = gc.getYFeature().toString();
+		String ylabel = ySpec.toString();
+		final String yunits = yColumn.units();
 		if ( !yunits.isEmpty() )
 			ylabel += " (" + yunits + ")";
 		this.ylabel = ylabel;
 	}
 
+	/**
+	 * Returns the feature column for the specified feature, or
+	 * <code>null</code> if the feature is not in the feature model.
+	 */
+	private FeatureColumn getColumn( final FeatureSpecPair sp )
+	{
+		if ( sp.isEdgeFeature() )
+		{
+			final FeatureProjection< Link > proj = sp.getProjection( featureModel );
+			return proj == null ? null : columns.edgeColumn( proj, sp.isIncomingEdge() );
+		}
+		final FeatureProjection< Spot > proj = sp.getProjection( featureModel );
+		return proj == null ? null : columns.vertexColumn( proj );
+	}
+
 	public String getXLabel()
 	{
 		return xlabel;
@@ -640,35 +1950,548 @@ public class DataLayoutMaker implements ContextListener< Spot >
 		this.context = context;
 	}
 
+	/*
+	 * Incremental layout updates.
+	 */
+
+	private void notifyLayoutUpdated( final int vertexFrom, final int vertexTo, final int edgeFrom, final int edgeTo )
+	{
+		modifications++;
+		if ( vertexTo > vertexFrom )
+		{
+			// The layout is already shown.
+			invalidateIndex();
+			buildIndexLater();
+		}
+		final DataLayout l = currentLayout();
+		final DataColor c = currentColor();
+		layoutListeners.list.forEach( listener -> listener.dataLayoutUpdated( l, c, vertexFrom, vertexTo, edgeFrom, edgeTo ) );
+	}
+
+	/**
+	 * Returns <code>true</code> if new vertices of the graph should be added
+	 * to the plot.
+	 */
+	private boolean plotsWholeGraph()
+	{
+		return trackContext && context == null;
+	}
+
+	private int vertexSlot( final Spot v )
+	{
+		final int id = v.getInternalPoolIndex();
+		return id < vertexSlots.length ? vertexSlots[ id ] : -1;
+	}
+
+	private int edgeSlot( final Link e )
+	{
+		final int id = e.getInternalPoolIndex();
+		return id < edgeSlots.length ? edgeSlots[ id ] : -1;
+	}
+
+	/**
+	 * Makes sure the layout arrays can store the specified number of vertices
+	 * and edges, reallocating them if needed.
+	 */
+	private void ensureCapacity( final int nv, final int ne )
+	{
+		if ( nv > vertexIds.length )
+		{
+			final int capacity = Math.max( nv, vertexIds.length + ( vertexIds.length >> 1 ) + 16 );
+			vertexIds = Arrays.copyOf( vertexIds, capacity );
+			xyPos = Arrays.copyOf( xyPos, VERTEX_NUM_DIMENSIONS * capacity );
+			filterValues = Arrays.copyOf( filterValues, FILTER_NUM_COLUMNS * capacity );
+			exploredValues = Arrays.copyOf( exploredValues, exploredSpecs.length * capacity );
+			vertexColors = Arrays.copyOf( vertexColors, capacity );
+			vertexSelection = Arrays.copyOf( vertexSelection, capacity );
+		}
+		if ( ne > edgeIds.length )
+		{
+			final int capacity = Math.max( ne, edgeIds.length + ( edgeIds.length >> 1 ) + 16 );
+			edgeIds = Arrays.copyOf( edgeIds, capacity );
+			edgeIndices = Arrays.copyOf( edgeIndices, 2 * capacity );
+			edgeColors = Arrays.copyOf( edgeColors, capacity );
+			edgeSelection = Arrays.copyOf( edgeSelection, capacity );
+		}
+	}
+
+	private static int[] ensureSize( final int[] arr, final int size )
+	{
+		if ( size <= arr.length )
+			return arr;
+		final int newSize = Math.max( size, arr.length + ( arr.length >> 1 ) );
+		final int[] out = Arrays.copyOf( arr, newSize );
+		Arrays.fill( out, arr.length, newSize, -1 );
+		return out;
+	}
+
+	private synchronized void addVertex( final Spot v )
+	{
+		if ( !plotsWholeGraph() || vertexSlot( v ) >= 0 )
+			return;
+
+		ensureCapacity( nVertices + 1, nEdges );
+		final int[] edgeRange = new int[] { Integer.MAX_VALUE, 0 };
+		final int slot = ( vertexTimepoints == null )
+				? nVertices
+				: vertexTimepoints.insert( v.getTimepoint(), ( from, to ) -> moveVertexSlot( from, to, edgeRange ) );
+		nVertices++;
+		final int id = v.getInternalPoolIndex();
+		vertexIds[ slot ] = id;
+		vertexSlots = ensureSize( vertexSlots, id + 1 );
+		vertexSlots[ id ] = slot;
+		vertices.add( v );
+		computeVertexPositions( slot, slot + 1 );
+		computeFilterValues( slot, slot + 1 );
+		computeExploredValues( slot, slot + 1 );
+		includeVertex( slot );
+		colorVertices( slot, slot + 1 );
+		notifyLayoutUpdated( slot, nVertices, edgeRange[ 0 ], edgeRange[ 1 ] );
+	}
+
+	private synchronized void removeVertex( final Spot v )
+	{
+		final int slot = vertexSlot( v );
+		if ( slot < 0 )
+			return;
+
+		// Edges are normally removed before their vertices.
+		for ( final Link e : v.edges() )
+			removeEdge( e );
+
+		final int[] edgeRange = new int[] { Integer.MAX_VALUE, 0 };
+		if ( vertexTimepoints == null )
+		{
+			// Move the last vertex in the freed slot.
+			final int last = nVertices - 1;
+			if ( slot != last )
+				moveVertexSlot( last, slot, edgeRange );
+		}
+		else
+		{
+			// Keep the timepoints contiguous.
+			vertexTimepoints.remove( slot, ( from, to ) -> moveVertexSlot( from, to, edgeRange ) );
+		}
+		nVertices--;
+		vertexSlots[ v.getInternalPoolIndex() ] = -1;
+		vertices.remove( v );
+		// Slots up to the last one may have moved.
+		final int vertexTo = ( vertexTimepoints == null ) ? slot + 1 : Math.max( slot + 1, nVertices );
+		notifyLayoutUpdated( slot, vertexTo, edgeRange[ 0 ], edgeRange[ 1 ] );
+	}
+
+	/**
+	 * Moves the vertex in the specified slot to another slot, and points its
+	 * edges to the new slot.
+	 *
+	 * @param edgeRange
+	 *            the range of edge slots that changed, expanded with the
+	 *            edges of the moved vertex.
+	 */
+	private void moveVertexSlot( final int from, final int to, final int[] edgeRange )
+	{
+		final int movedId = vertexIds[ from ];
+		vertexIds[ to ] = movedId;
+		vertexSlots[ movedId ] = to;
+		System.arraycopy( xyPos, VERTEX_NUM_DIMENSIONS * from, xyPos, VERTEX_NUM_DIMENSIONS * to, VERTEX_NUM_DIMENSIONS );
+		System.arraycopy( filterValues, FILTER_NUM_COLUMNS * from, filterValues, FILTER_NUM_COLUMNS * to, FILTER_NUM_COLUMNS );
+		final int k = exploredSpecs.length;
+		System.arraycopy( exploredValues, k * from, exploredValues, k * to, k );
+		vertexColors[ to ] = vertexColors[ from ];
+		vertexSelection[ to ] = vertexSelection[ from ];
+		includeVertex( to );
+
+		// The edges of the moved vertex must point to its new slot.
+		final Spot ref = graph.vertexRef();
+		final Spot moved = graph.vertices().getRefPool().getObject( movedId, ref );
+		for ( final Link e : moved.edges() )
+		{
+			final int es = edgeSlot( e );
+			if ( es < 0 )
+				continue;
+			computeEdgeIndices( es, es + 1 );
+			includeEdge( es );
+			edgeRange[ 0 ] = Math.min( edgeRange[ 0 ], es );
+			edgeRange[ 1 ] = Math.max( edgeRange[ 1 ], es + 1 );
+		}
+		graph.releaseRef( ref );
+	}
+
+	private synchronized void addEdge( final Link e )
+	{
+		if ( !paintEdges || edgeSlot( e ) >= 0 )
+			return;
+
+		final Spot ref = graph.vertexRef();
+		final boolean plotted = vertexSlot( e.getSource( ref ) ) >= 0 && vertexSlot( e.getTarget( ref ) ) >= 0;
+		final int timepoint = Math.max( e.getSource( ref ).getTimepoint(), e.getTarget( ref ).getTimepoint() );
+		graph.releaseRef( ref );
+		if ( !plotted )
+			return;
+
+		ensureCapacity( nVertices, nEdges + 1 );
+		final int slot = ( edgeTimepoints == null )
+				? nEdges
+				: edgeTimepoints.insert( timepoint, this::moveEdgeSlot );
+		nEdges++;
+		final int id = e.getInternalPoolIndex();
+		edgeIds[ slot ] = id;
+		edgeSlots = ensureSize( edgeSlots, id + 1 );
+		edgeSlots[ id ] = slot;
+		computeEdgeIndices( slot, slot + 1 );
+		includeEdge( slot );
+		colorEdges( slot, slot + 1 );
+		notifyLayoutUpdated( 0, 0, slot, nEdges );
+	}
+
+	private synchronized void removeEdge( final Link e )
+	{
+		final int slot = edgeSlot( e );
+		if ( slot < 0 )
+			return;
+
+		if ( edgeTimepoints == null )
+		{
+			// Move the last edge in the freed slot.
+			final int last = nEdges - 1;
+			if ( slot != last )
+				moveEdgeSlot( last, slot );
+		}
+		else
+		{
+			// Keep the timepoints contiguous.
+			edgeTimepoints.remove( slot, this::moveEdgeSlot );
+		}
+		nEdges--;
+		edgeSlots[ e.getInternalPoolIndex() ] = -1;
+		final int edgeTo = ( edgeTimepoints == null ) ? slot + 1 : Math.max( slot + 1, nEdges );
+		notifyLayoutUpdated( 0, 0, slot, edgeTo );
+	}
+
+	/**
+	 * Moves the edge in the specified slot to another slot.
+	 */
+	private void moveEdgeSlot( final int from, final int to )
+	{
+		final int movedId = edgeIds[ from ];
+		edgeIds[ to ] = movedId;
+		edgeSlots[ movedId ] = to;
+		edgeIndices[ 2 * to ] = edgeIndices[ 2 * from ];
+		edgeIndices[ 2 * to + 1 ] = edgeIndices[ 2 * from + 1 ];
+		edgeColors[ to ] = edgeColors[ from ];
+		edgeSelection[ to ] = edgeSelection[ from ];
+		includeEdge( to );
+	}
+
+	private synchronized void moveVertex( final Spot v )
+	{
+		final int slot = vertexSlot( v );
+		if ( slot < 0 )
+			return;
+
+		// Edges follow their vertices in the shared position buffer, but
+		// their tiles must include the new position.
+		computeVertexPositions( slot, slot + 1 );
+		computeFilterValues( slot, slot + 1 );
+		computeExploredValues( slot, slot + 1 );
+		includeVertex( slot );
+		for ( final Link e : v.edges() )
+		{
+			final int es = edgeSlot( e );
+			if ( es >= 0 )
+				includeEdge( es );
+		}
+		notifyLayoutUpdated( slot, slot + 1, 0, 0 );
+	}
+
+	private synchronized void refreshPositions()
+	{
+		// Features might have been replaced by new instances.
+		if ( xSpec != null )
+		{
+			final FeatureColumn xc = getColumn( xSpec );
+			if ( xc != null )
+				xColumn = xc;
+		}
+		if ( ySpec != null )
+		{
+			final FeatureColumn yc = getColumn( ySpec );
+			if ( yc != null )
+				yColumn = yc;
+		}
+		for ( int c = 0; c < FILTER_NUM_COLUMNS; c++ )
+		{
+			if ( filterSpecs[ c ] == null )
+				continue;
+			final FeatureColumn fc = getColumn( filterSpecs[ c ] );
+			if ( fc != null )
+				filterColumns[ c ] = fc;
+		}
+		for ( int c = 0; c < exploredSpecs.length; c++ )
+		{
+			final FeatureColumn ec = getColumn( exploredSpecs[ c ] );
+			if ( ec != null )
+				exploredColumns[ c ] = ec;
+		}
+		computeVertexPositions( 0, nVertices );
+		computeFilterValues( 0, nVertices );
+		computeExploredValues( 0, nVertices );
+		resetTileBounds();
+		notifyLayoutUpdated( 0, nVertices, 0, 0 );
+	}
+
+	/**
+	 * Fits the tile bounds to the positions, after all the points moved: the
+	 * tiles keep their slots, but not their bounds.
+	 */
+	private void resetTileBounds()
+	{
+		if ( vertexTiles == null )
+			return;
+		vertexTiles.resetBounds();
+		for ( int slot = 0; slot < nVertices; slot++ )
+			includeVertex( slot );
+		edgeTiles.resetBounds();
+		for ( int slot = 0; slot < nEdges; slot++ )
+			includeEdge( slot );
+	}
+
+	/**
+	 * Pool indices of removed objects may be reused, so removed objects must
+	 * not be compared to the selection anymore.
+	 */
+	private synchronized void forgetSelected( final BitSet selected, final int id )
+	{
+		selected.clear( id );
+		// The selection read by a layout in progress may contain it.
+		modifications++;
+	}
+
+	/**
+	 * Clears the layout after the graph was rebuilt, and asks the listeners to
+	 * compute it again. Pool indices are not valid anymore, so the layout
+	 * cannot be patched, and computing it here would block the thread that
+	 * rebuilt the graph.
+	 */
+	private void rebuild()
+	{
+		synchronized ( this )
+		{
+			// The vertices plotted from the context are collected again with
+			// the config.
+			setVertices( RefCollections.createRefSet( graph.vertices() ) );
+			coloredSelectedVertices.clear();
+			coloredSelectedEdges.clear();
+			clearLayout();
+			notifyLayoutUpdated( 0, 0, 0, 0 );
+		}
+		layoutListeners.list.forEach( DataLayoutListener::dataLayoutInvalidated );
+	}
+
+	/**
+	 * Patches the current layout when the graph or the features change.
+	 */
+	private class GraphChangeHandler implements GraphListener< Spot, Link >, VertexPositionListener< Spot >, FeatureModelListener
+	{
+
+		@Override
+		public void graphRebuilt()
+		{
+			rebuild();
+		}
+
+		@Override
+		public void vertexAdded( final Spot vertex )
+		{
+			addVertex( vertex );
+		}
+
+		@Override
+		public void vertexRemoved( final Spot vertex )
+		{
+			forgetSelected( coloredSelectedVertices, vertex.getInternalPoolIndex() );
+			removeVertex( vertex );
+		}
+
+		@Override
+		public void edgeAdded( final Link edge )
+		{
+			addEdge( edge );
+		}
+
+		@Override
+		public void edgeRemoved( final Link edge )
+		{
+			forgetSelected( coloredSelectedEdges, edge.getInternalPoolIndex() );
+			removeEdge( edge );
+		}
+
+		@Override
+		public void vertexPositionChanged( final Spot vertex )
+		{
+			moveVertex( vertex );
+		}
+
+		@Override
+		public void featureModelChanged()
+		{
+			refreshPositions();
+		}
+	}
+
+	/**
+	 * Arrays of a layout or of its colors, computed outside of the lock of the
+	 * maker and swapped in once complete.
+	 */
+	private static final class Slots
+	{
+		private int[] vertexIds;
+
+		private int[] vertexSlots;
+
+		private int nVertices;
+
+		private int[] edgeIds;
+
+		private int[] edgeSlots;
+
+		private int nEdges;
+
+		private float[] xyPos;
+
+		private float[] filterValues;
+
+		private float[] exploredValues;
+
+		private int nExplored;
+
+		private int[] edgeIndices;
+
+		private int[] vertexColors;
+
+		private int[] edgeColors;
+
+		private byte[] vertexSelection;
+
+		private byte[] edgeSelection;
+
+		private final BitSet selectedVertices = new BitSet();
+
+		private final BitSet selectedEdges = new BitSet();
+
+		private SpatialTiles vertexTiles;
+
+		private SpatialTiles edgeTiles;
+
+		private TimepointOffsets vertexTimepoints;
+
+		private TimepointOffsets edgeTimepoints;
+	}
+
+	/**
+	 * The positions of the data points, and the source and target vertex
+	 * slots of the edges. The arrays may be larger than needed, only the first
+	 * {@link #nVertices} vertices and {@link #nEdges} edges are to be drawn.
+	 * <p>
+	 * The vertex and edge slots are grouped in spatial tiles, so that only the
+	 * tiles visible in the view need to be drawn. The tiles are
+	 * <code>null</code> if the layout has no positions.
+	 * <p>
+	 * The filter values of each vertex are drawn as an attribute, to hide the
+	 * vertices out of the filter ranges in the shaders.
+	 * <p>
+	 * The values of the explored features are kept next to the positions.
+	 * If both axes are explored features, the points are drawn from their
+	 * explored columns, so that swapping the axes does not upload anything.
+	 * <p>
+	 * If the slots are sorted by timepoint, the offset tables give the range
+	 * of vertex and edge slots of a time window. An edge belongs to the
+	 * timepoint of its later vertex. The tables are <code>null</code>
+	 * otherwise.
+	 */
 	public static final class DataLayout
 	{
 		public final float[] verticesPos;
 
+		public final float[] verticesFilter;
+
+		public final float[] verticesExplored;
+
+		public final int nExplored;
+
+		/**
+		 * Explored columns of the X and Y axes, -1 to draw the positions.
+		 */
+		public final int xExplored;
+
+		public final int yExplored;
+
 		public final int[] edgeIndices;
 
-		public final float[] edgePositions;
+		public final int nVertices;
+
+		public final int nEdges;
+
+		public final SpatialTiles vertexTiles;
+
+		public final SpatialTiles edgeTiles;
+
+		public final TimepointOffsets vertexTimepoints;
+
+		public final TimepointOffsets edgeTimepoints;
 
 		public DataLayout(
 				final float[] verticesPos,
+				final float[] verticesFilter,
+				final float[] verticesExplored,
+				final int nExplored,
+				final int xExplored,
+				final int yExplored,
 				final int[] edgeIndices,
-				final float[] edgePositions )
+				final int nVertices,
+				final int nEdges,
+				final SpatialTiles vertexTiles,
+				final SpatialTiles edgeTiles,
+				final TimepointOffsets vertexTimepoints,
+				final TimepointOffsets edgeTimepoints )
 		{
 			this.verticesPos = verticesPos;
+			this.verticesFilter = verticesFilter;
+			this.verticesExplored = verticesExplored;
+			this.nExplored = nExplored;
+			this.xExplored = xExplored;
+			this.yExplored = yExplored;
 			this.edgeIndices = edgeIndices;
-			this.edgePositions = edgePositions;
+			this.nVertices = nVertices;
+			this.nEdges = nEdges;
+			this.vertexTiles = vertexTiles;
+			this.edgeTiles = edgeTiles;
+			this.vertexTimepoints = vertexTimepoints;
+			this.edgeTimepoints = edgeTimepoints;
 		}
 	}
 
+	/**
+	 * Base colors of the plotted vertices and edges, packed as RGBA bytes with
+	 * {@link PackedColors}, and their selection state, 1 if selected and 0
+	 * otherwise. There is one value per vertex and one per edge.
+	 */
 	public static final class DataColor
 	{
-		public final float[] verticesColor;
+		public final int[] verticesColor;
+
+		public final int[] edgesColor;
+
+		public final byte[] verticesSelection;
 
-		public final float[] edgesColor;
+		public final byte[] edgesSelection;
 
-		public DataColor( final float[] verticesColor, final float[] edgesColor )
+		public DataColor( final int[] verticesColor, final int[] edgesColor, final byte[] verticesSelection, final byte[] edgesSelection )
 		{
 			this.verticesColor = verticesColor;
 			this.edgesColor = edgesColor;
+			this.verticesSelection = verticesSelection;
+			this.edgesSelection = edgesSelection;
 		}
 	}
 }
@@ -0,0 +1,187 @@
+package org.mastodon.grapher.opengl;
+
+import java.util.Arrays;
+
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.graph.Edges;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * A column of feature values for the spots of the model graph, stored in a
+ * primitive array indexed by the spot pool index.
+ * <p>
+ * The values are read from a {@link FeatureProjection} the first time they
+ * are requested, then served from the array until they are invalidated. The
+ * column can be backed by a spot feature projection, or by a link feature
+ * projection, in which case the value of a spot is the value of its single
+ * incoming or outgoing link, and <code>NaN</code> if the spot does not have
+ * exactly one such link.
+ * <p>
+ * The column is shared by the layout workers, the EDT and the graph
+ * listeners, so its arrays are only accessed under its monitor. Values are
+ * read from the projection outside of it, so that several threads can fill
+ * the column at once. A value read while the column is invalidated is
+ * returned but not cached, as it may be stale. Calling
+ * {@link #ensureCapacity(int)} before filling the column avoids growing it
+ * while the other threads wait.
+ */
+public class FeatureColumn
+{
+
+	private final FeatureProjection< Spot > vertexProjection;
+
+	private final FeatureProjection< Link > edgeProjection;
+
+	private final boolean incomingEdge;
+
+	/**
+	 * The cached values, indexed by spot pool index.
+	 */
+	private double[] values;
+
+	/**
+	 * A value is valid if its stamp equals the current generation.
+	 */
+	private int[] stamps;
+
+	private int generation;
+
+	/**
+	 * Incremented at each invalidation, so that a value computed while the
+	 * column was invalidated is not cached.
+	 */
+	private int invalidations;
+
+	FeatureColumn( final FeatureProjection< Spot > vertexProjection )
+	{
+		this( vertexProjection, null, false );
+	}
+
+	FeatureColumn( final FeatureProjection< Link > edgeProjection, final boolean incomingEdge )
+	{
+		this( null, edgeProjection, incomingEdge );
+	}
+
+	private FeatureColumn(
+			final FeatureProjection< Spot > vertexProjection,
+			final FeatureProjection< Link > edgeProjection,
+			final boolean incomingEdge )
+	{
+		this.vertexProjection = vertexProjection;
+		this.edgeProjection = edgeProjection;
+		this.incomingEdge = incomingEdge;
+		this.values = new double[ 0 ];
+		this.stamps = new int[ 0 ];
+		this.generation = 1;
+	}
+
+	/**
+	 * Returns the feature value of the specified spot, reading it from the
+	 * feature projection if it is not cached yet.
+	 *
+	 * @param v
+	 *            the spot.
+	 * @return the feature value.
+	 */
+	public double get( final Spot v )
+	{
+		final int id = v.getInternalPoolIndex();
+		final int invalidationsBefore;
+		synchronized ( this )
+		{
+			if ( id < stamps.length && stamps[ id ] == generation )
+				return values[ id ];
+			invalidationsBefore = invalidations;
+		}
+
+		final double val = compute( v );
+		synchronized ( this )
+		{
+			if ( invalidations == invalidationsBefore )
+			{
+				ensureCapacity( id + 1 );
+				values[ id ] = val;
+				stamps[ id ] = generation;
+			}
+		}
+		return val;
+	}
+
+	/**
+	 * Returns the units of the feature projection backing this column.
+	 *
+	 * @return the units.
+	 */
+	public String units()
+	{
+		return ( vertexProjection != null )
+				? vertexProjection.units()
+				: edgeProjection.units();
+	}
+
+	/**
+	 * Makes sure the column can store the values of spots with a pool index
+	 * strictly smaller than the specified size, without reallocating.
+	 *
+	 * @param size
+	 *            the number of spot pool indices to store.
+	 */
+	synchronized void ensureCapacity( final int size )
+	{
+		if ( size <= stamps.length )
+			return;
+
+		final int newSize = Math.max( size, stamps.length + ( stamps.length >> 1 ) );
+		values = Arrays.copyOf( values, newSize );
+		stamps = Arrays.copyOf( stamps, newSize );
+	}
+
+	/**
+	 * Invalidates all the values of this column.
+	 */
+	public synchronized void invalidate()
+	{
+		invalidations++;
+		generation++;
+		if ( generation == 0 )
+		{
+			// Wrapped around. Reset stamps so that none of them is valid.
+			Arrays.fill( stamps, 0 );
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Invalidates the value of the spot with the specified pool index.
+	 *
+	 * @param id
+	 *            the spot pool index.
+	 */
+	public synchronized void invalidate( final int id )
+	{
+		invalidations++;
+		if ( id < stamps.length )
+			stamps[ id ] = 0;
+	}
+
+	boolean isBackedBy( final FeatureProjection< ? > projection, final boolean incoming )
+	{
+		if ( vertexProjection != null )
+			return vertexProjection == projection;
+		return edgeProjection == projection && incomingEdge == incoming;
+	}
+
+	private double compute( final Spot v )
+	{
+		if ( vertexProjection != null )
+			return vertexProjection.value( v );
+
+		final Edges< Link > edges = ( incomingEdge )
+				? v.incomingEdges()
+				: v.outgoingEdges();
+		if ( edges.size() != 1 )
+			return Double.NaN;
+		return edgeProjection.value( edges.iterator().next() );
+	}
+}
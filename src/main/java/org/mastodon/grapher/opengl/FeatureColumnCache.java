@@ -0,0 +1,184 @@
+package org.mastodon.grapher.opengl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.grapher.opengl.overlays.DataPointsOverlay;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.spatial.VertexPositionListener;
+
+/**
+ * Keeps the {@link FeatureColumn}s used to lay out the data points, and
+ * invalidates them when the feature model or the graph changes.
+ * <p>
+ * The feature model does not say which feature was changed when it notifies
+ * its listeners, so all the columns are invalidated then. Each column is
+ * refilled lazily, the next time its values are requested. Changes to single
+ * spots and links only invalidate the values of the spots they touch.
+ * <p>
+ * Only the most recently used columns are kept.
+ */
+public class FeatureColumnCache implements FeatureModelListener, GraphListener< Spot, Link >, VertexPositionListener< Spot >
+{
+
+	/**
+	 * Maximal number of columns kept in the cache: enough for the X and Y
+	 * columns, the filter columns, the explored columns, and the columns of
+	 * the previous axes.
+	 */
+	private static final int MAX_COLUMNS = 2 + DataPointsOverlay.FILTER_NUM_COLUMNS + DataPointsOverlay.EXPLORATION_MAX_COLUMNS + 2;
+
+	/**
+	 * The columns, from the most recently used to the least recently used.
+	 */
+	private final List< FeatureColumn > columns;
+
+	private final ModelGraph graph;
+
+	private final FeatureModel featureModel;
+
+	public FeatureColumnCache( final ModelGraph graph, final FeatureModel featureModel )
+	{
+		this.graph = graph;
+		this.featureModel = featureModel;
+		this.columns = new ArrayList<>( MAX_COLUMNS + 1 );
+		featureModel.listeners().add( this );
+		graph.addGraphListener( this );
+		graph.addVertexPositionListener( this );
+	}
+
+	/**
+	 * Stops listening to the graph and to the feature model. The columns are
+	 * not invalidated anymore, so they must not be used after this call.
+	 */
+	public void close()
+	{
+		featureModel.listeners().remove( this );
+		graph.removeGraphListener( this );
+		graph.removeVertexPositionListener( this );
+	}
+
+	/**
+	 * Returns the column of values for the specified spot feature projection.
+	 *
+	 * @param projection
+	 *            the spot feature projection.
+	 * @return the feature column.
+	 */
+	public synchronized FeatureColumn vertexColumn( final FeatureProjection< Spot > projection )
+	{
+		final FeatureColumn column = lookup( projection, false );
+		return column != null ? column : store( new FeatureColumn( projection ) );
+	}
+
+	/**
+	 * Returns the column of values for the specified link feature projection.
+	 * The value of a spot is the value of its single incoming or outgoing
+	 * link.
+	 *
+	 * @param projection
+	 *            the link feature projection.
+	 * @param incoming
+	 *            if <code>true</code> the incoming link of the spots is used,
+	 *            otherwise their outgoing link.
+	 * @return the feature column.
+	 */
+	public synchronized FeatureColumn edgeColumn( final FeatureProjection< Link > projection, final boolean incoming )
+	{
+		final FeatureColumn column = lookup( projection, incoming );
+		return column != null ? column : store( new FeatureColumn( projection, incoming ) );
+	}
+
+	private FeatureColumn lookup( final FeatureProjection< ? > projection, final boolean incoming )
+	{
+		final Iterator< FeatureColumn > it = columns.iterator();
+		while ( it.hasNext() )
+		{
+			final FeatureColumn column = it.next();
+			if ( column.isBackedBy( projection, incoming ) )
+			{
+				// Move to front.
+				it.remove();
+				columns.add( 0, column );
+				return column;
+			}
+		}
+		return null;
+	}
+
+	private FeatureColumn store( final FeatureColumn column )
+	{
+		columns.add( 0, column );
+		if ( columns.size() > MAX_COLUMNS )
+			columns.remove( columns.size() - 1 );
+		return column;
+	}
+
+	private synchronized void invalidate( final int id )
+	{
+		for ( final FeatureColumn column : columns )
+			column.invalidate( id );
+	}
+
+	private void invalidateEnds( final Link edge )
+	{
+		final Spot ref = graph.vertexRef();
+		invalidate( edge.getSource( ref ).getInternalPoolIndex() );
+		invalidate( edge.getTarget( ref ).getInternalPoolIndex() );
+		graph.releaseRef( ref );
+	}
+
+	/*
+	 * Listener methods.
+	 */
+
+	@Override
+	public synchronized void featureModelChanged()
+	{
+		columns.forEach( FeatureColumn::invalidate );
+	}
+
+	@Override
+	public void graphRebuilt()
+	{
+		featureModelChanged();
+	}
+
+	@Override
+	public void vertexAdded( final Spot vertex )
+	{
+		invalidate( vertex.getInternalPoolIndex() );
+	}
+
+	@Override
+	public void vertexRemoved( final Spot vertex )
+	{
+		invalidate( vertex.getInternalPoolIndex() );
+	}
+
+	@Override
+	public void edgeAdded( final Link edge )
+	{
+		// Values read from links depend on the number of links of a spot.
+		invalidateEnds( edge );
+	}
+
+	@Override
+	public void edgeRemoved( final Link edge )
+	{
+		invalidateEnds( edge );
+	}
+
+	@Override
+	public void vertexPositionChanged( final Spot vertex )
+	{
+		invalidate( vertex.getInternalPoolIndex() );
+	}
+}
@@ -0,0 +1,250 @@
+package org.mastodon.grapher.opengl;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureProjectionSpec;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.grapher.opengl.overlays.DataPointsOverlay;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.views.grapher.display.FeatureSpecPair;
+
+/**
+ * Range sliders to filter the plotted points by feature values.
+ * <p>
+ * Each row picks the vertex feature of one filter column of the layout, and
+ * bounds its values with two sliders. Moving a slider only changes the range
+ * applied in the shaders: the layout is not recomputed. The values of a
+ * column are only computed when its feature is picked, on a background
+ * thread. A slider at its end leaves the range unbounded on that side, so that
+ * the points without a value are not hidden.
+ */
+public class FeatureFilterPanel extends JPanel
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String NONE = "None";
+
+	private static final int SLIDER_MAX = 1000;
+
+	private final PointCloudPanel pointCloudPanel;
+
+	private final int nSources;
+
+	private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor( r -> {
+		final Thread thread = new Thread( r, "OpenGL grapher filter" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	private final List< Row > rows = new ArrayList<>();
+
+	public FeatureFilterPanel( final PointCloudPanel pointCloudPanel, final int nSources )
+	{
+		super( new GridBagLayout() );
+		this.pointCloudPanel = pointCloudPanel;
+		this.nSources = nSources;
+		setBorder( BorderFactory.createTitledBorder( "Filters" ) );
+
+		final GridBagConstraints c = new GridBagConstraints();
+		c.insets = new Insets( 2, 2, 2, 2 );
+		c.fill = GridBagConstraints.HORIZONTAL;
+		c.weightx = 1.;
+		c.gridx = 0;
+		c.gridy = 0;
+		for ( int i = 0; i < DataPointsOverlay.FILTER_NUM_COLUMNS; i++ )
+		{
+			final Row row = new Row( i );
+			rows.add( row );
+			add( row.feature, c );
+			c.gridy++;
+			add( row.minSlider, c );
+			c.gridy++;
+			add( row.maxSlider, c );
+			c.gridy++;
+			add( row.label, c );
+			c.gridy++;
+		}
+	}
+
+	/**
+	 * Updates the features that can be picked, after the feature model
+	 * changed. Rows keep their feature if it is still in the model, and the
+	 * layout then updates their values. Only the rows whose feature is not in
+	 * the model anymore are cleared.
+	 *
+	 * @param featureModel
+	 *            the feature model.
+	 */
+	public void setFeatures( final FeatureModel featureModel )
+	{
+		final List< Object > items = new ArrayList<>();
+		items.add( NONE );
+		items.addAll( vertexFeatures( featureModel, nSources ) );
+		for ( final Row row : rows )
+			row.setItems( items );
+	}
+
+	/**
+	 * Stops the thread computing the values of the filter columns. Meant to
+	 * be called on the EDT when the view is closed.
+	 */
+	public void dispose()
+	{
+		filterExecutor.shutdownNow();
+	}
+
+	/**
+	 * Lists the vertex features with one value per vertex, one per source for
+	 * the features computed on each source.
+	 */
+	static List< FeatureSpecPair > vertexFeatures( final FeatureModel featureModel, final int nSources )
+	{
+		final List< FeatureSpecPair > pairs = new ArrayList<>();
+		for ( final FeatureSpec< ?, ? > spec : featureModel.getFeatureSpecs() )
+		{
+			if ( !Spot.class.isAssignableFrom( spec.getTargetClass() ) )
+				continue;
+			for ( final FeatureProjectionSpec projectionSpec : spec.getProjectionSpecs() )
+			{
+				switch ( spec.getMultiplicity() )
+				{
+				case SINGLE:
+					pairs.add( new FeatureSpecPair( spec, projectionSpec, false, false ) );
+					break;
+				case ON_SOURCES:
+					for ( int s = 0; s < nSources; s++ )
+						pairs.add( new FeatureSpecPair( spec, projectionSpec, s, false, false ) );
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		pairs.sort( ( a, b ) -> a.toString().compareToIgnoreCase( b.toString() ) );
+		return pairs;
+	}
+
+	private class Row
+	{
+
+		private final int column;
+
+		private final JComboBox< Object > feature = new JComboBox<>( new Object[] { NONE } );
+
+		private final JSlider minSlider = new JSlider( 0, SLIDER_MAX, 0 );
+
+		private final JSlider maxSlider = new JSlider( 0, SLIDER_MAX, SLIDER_MAX );
+
+		private final JLabel label = new JLabel( " " );
+
+		/**
+		 * Range of the values of the column, <code>null</code> if it has
+		 * none. Only accessed on the event dispatch thread.
+		 */
+		private double[] range;
+
+		/**
+		 * If <code>true</code>, the combo box is being filled, and its
+		 * events are ignored.
+		 */
+		private boolean updating;
+
+		private Row( final int column )
+		{
+			this.column = column;
+			minSlider.setEnabled( false );
+			maxSlider.setEnabled( false );
+			feature.addActionListener( e -> {
+				if ( !updating )
+					featureChanged();
+			} );
+			minSlider.addChangeListener( e -> {
+				if ( maxSlider.getValue() < minSlider.getValue() )
+					maxSlider.setValue( minSlider.getValue() );
+				rangeChanged();
+			} );
+			maxSlider.addChangeListener( e -> {
+				if ( minSlider.getValue() > maxSlider.getValue() )
+					minSlider.setValue( maxSlider.getValue() );
+				rangeChanged();
+			} );
+		}
+
+		private void setItems( final List< Object > items )
+		{
+			final String selected = feature.getSelectedItem().toString();
+			updating = true;
+			feature.setModel( new DefaultComboBoxModel<>( items.toArray() ) );
+			feature.setSelectedIndex( 0 );
+			for ( final Object item : items )
+				if ( item.toString().equals( selected ) )
+					feature.setSelectedItem( item );
+			updating = false;
+			if ( !feature.getSelectedItem().toString().equals( selected ) )
+				featureChanged();
+		}
+
+		private void featureChanged()
+		{
+			if ( filterExecutor.isShutdown() )
+				return;
+			final Object item = feature.getSelectedItem();
+			final FeatureSpecPair spec = ( item instanceof FeatureSpecPair ) ? ( FeatureSpecPair ) item : null;
+			minSlider.setEnabled( false );
+			maxSlider.setEnabled( false );
+			filterExecutor.execute( () -> {
+				final DataLayoutMaker layout = pointCloudPanel.getDataLayout();
+				pointCloudPanel.setFilter( column, spec );
+				final double[] r = layout.getFilterRange( column );
+				SwingUtilities.invokeLater( () -> {
+					range = r;
+					minSlider.setEnabled( r != null );
+					maxSlider.setEnabled( r != null );
+					rangeChanged();
+				} );
+			} );
+		}
+
+		private void rangeChanged()
+		{
+			final float min = range == null ? Float.NEGATIVE_INFINITY : toValue( minSlider.getValue(), Float.NEGATIVE_INFINITY );
+			final float max = range == null ? Float.POSITIVE_INFINITY : toValue( maxSlider.getValue(), Float.POSITIVE_INFINITY );
+			label.setText( range == null ? " " : String.format( "%s to %s", format( min ), format( max ) ) );
+			pointCloudPanel.setFilterRange( column, min, max );
+		}
+
+		/**
+		 * Maps a slider position to a value of the column.
+		 *
+		 * @param unbounded
+		 *            the value at the end of the slider.
+		 */
+		private float toValue( final int position, final float unbounded )
+		{
+			if ( position == ( unbounded < 0 ? 0 : SLIDER_MAX ) )
+				return unbounded;
+			return ( float ) ( range[ 0 ] + ( range[ 1 ] - range[ 0 ] ) * position / SLIDER_MAX );
+		}
+
+		private String format( final float value )
+		{
+			return Float.isInfinite( value ) ? ( value < 0 ? "-∞" : "∞" ) : String.format( "%.3g", value );
+		}
+	}
+}
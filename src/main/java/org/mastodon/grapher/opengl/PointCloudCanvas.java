@@ -1,25 +1,22 @@
 package org.mastodon.grapher.opengl;
 
 import static org.lwjgl.opengl.GL.createCapabilities;
+import static org.lwjgl.opengl.GL.setCapabilities;
 import static org.lwjgl.opengl.GL11.GL_BLEND;
 import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_CULL_FACE;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
-import static org.lwjgl.opengl.GL11.GL_MODELVIEW;
 import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_ALPHA;
-import static org.lwjgl.opengl.GL11.GL_PROJECTION;
 import static org.lwjgl.opengl.GL11.GL_SRC_ALPHA;
 import static org.lwjgl.opengl.GL11.glBlendFunc;
 import static org.lwjgl.opengl.GL11.glClear;
 import static org.lwjgl.opengl.GL11.glClearColor;
 import static org.lwjgl.opengl.GL11.glDisable;
 import static org.lwjgl.opengl.GL11.glEnable;
-import static org.lwjgl.opengl.GL11.glLoadIdentity;
-import static org.lwjgl.opengl.GL11.glMatrixMode;
-import static org.lwjgl.opengl.GL11.glOrtho;
 import static org.lwjgl.opengl.GL11.glViewport;
 import static org.lwjgl.opengl.GL11C.GL_DEPTH_BUFFER_BIT;
 
+import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ComponentAdapter;
@@ -32,9 +29,17 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.opengl.awt.AWTGLCanvas;
+import org.lwjgl.opengl.awt.GLData;
+import org.mastodon.grapher.opengl.overlays.FrameView;
 import org.mastodon.grapher.opengl.overlays.GLOverlayRenderer;
+import org.mastodon.grapher.opengl.overlays.OffscreenLayer;
+import org.mastodon.grapher.opengl.overlays.ViewUniformBuffer;
 import org.mastodon.views.grapher.datagraph.ScreenTransform;
 import org.mastodon.views.grapher.display.style.DataDisplayStyle;
 import org.scijava.listeners.Listeners;
@@ -69,6 +74,7 @@ public class PointCloudCanvas extends AWTGLCanvas
 			frameBufferWidth = ( int ) ( w * sx );
 			frameBufferHeight = ( int ) ( h * sy );
 			overlayRenderers.list.forEach( r -> r.setCanvasSize( w, h ) );
+			dataOverlayRenderers.list.forEach( r -> r.setCanvasSize( w, h ) );
 			if ( handler != null )
 				handler.setCanvasSize( frameBufferWidth, frameBufferHeight, true );
 		}
@@ -76,17 +82,64 @@ public class PointCloudCanvas extends AWTGLCanvas
 
 	private final Listeners.List< GLOverlayRenderer > overlayRenderers;
 
+	private final Listeners.List< GLOverlayRenderer > dataOverlayRenderers;
+
 	/**
-	 * Used to read from the screen transform state.
+	 * Used to read from the screen transform state. Only read where the
+	 * canvas is rendered, see {@link #setTransform(ScreenTransform)}.
 	 */
-	final ScreenTransform transform;
+	private final ScreenTransform transform;
 
 	final DataDisplayStyle style;
 
+	/**
+	 * Overlays added since the last frame, whose {@link GLOverlayRenderer#init()}
+	 * method must be called with the OpenGL context current.
+	 */
+	private final Queue< GLOverlayRenderer > overlaysToInit = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Tasks to run once the next frame is shown.
+	 */
+	private final Queue< Runnable > afterNextFrame = new ConcurrentLinkedQueue<>();
+
+	private final ViewUniformBuffer view = new ViewUniformBuffer();
+
+	/**
+	 * The data overlays, rendered only when the data or the view changed.
+	 */
+	private final OffscreenLayer dataLayer = new OffscreenLayer();
+
+	/**
+	 * The view of the current frame, and the view the data layer was rendered
+	 * with.
+	 */
+	private final FrameView frameView = new FrameView();
+
+	/**
+	 * Created once with the context, and made current at each frame.
+	 */
+	private GLCapabilities capabilities;
+
+	/**
+	 * The background color the clear color was computed from.
+	 */
+	private Color clearColorSource;
+
+	private final float[] clearColor = new float[ 4 ];
+
 	public PointCloudCanvas(final DataDisplayStyle style )
 	{
-		super();
-		overlayRenderers = new Listeners.SynchronizedList<>( r -> r.setCanvasSize( getWidth(), getHeight() ) );
+		super( coreProfile() );
+		overlayRenderers = new Listeners.SynchronizedList<>( r -> {
+			r.setCanvasSize( getWidth(), getHeight() );
+			overlaysToInit.add( r );
+		} );
+		dataOverlayRenderers = new Listeners.SynchronizedList<>( r -> {
+			r.setCanvasSize( getWidth(), getHeight() );
+			overlaysToInit.add( r );
+			frameView.invalidateDataLayer();
+		} );
 
 		this.transform = new ScreenTransform( -1, 1, -1, 1, 400, 400 );
 		this.addComponentListener( listener );
@@ -104,13 +157,45 @@ public class PointCloudCanvas extends AWTGLCanvas
 	/**
 	 * OverlayRenderers can be added/removed here.
 	 * {@link GLOverlayRenderer#paint()} is invoked for each renderer (in
-	 * the order they were added).
+	 * the order they were added) at each frame, on top of the data overlays.
 	 */
 	public Listeners< GLOverlayRenderer > overlays()
 	{
 		return overlayRenderers;
 	}
 
+	/**
+	 * Overlays drawing the data can be added/removed here. They are rendered
+	 * to an offscreen layer, which is reused until the view changes or
+	 * {@link #invalidateDataLayer()} is called. Interactive overlays, such as
+	 * the selection box, must be added to {@link #overlays()} instead.
+	 */
+	public Listeners< GLOverlayRenderer > dataOverlays()
+	{
+		return dataOverlayRenderers;
+	}
+
+	/**
+	 * Requests the data overlays to be rendered again at the next frame,
+	 * after their content changed.
+	 */
+	public void invalidateDataLayer()
+	{
+		frameView.invalidateDataLayer();
+	}
+
+	/**
+	 * Runs the specified task once, on the rendering thread, after the next
+	 * frame is shown. Used to defer work that is not needed to show the data.
+	 *
+	 * @param task
+	 *            the task. Must be quick, or hand its work to another thread.
+	 */
+	public void runAfterNextFrame( final Runnable task )
+	{
+		afterNextFrame.add( task );
+	}
+
 	/**
 	 * Add new event handler. Depending on the interfaces implemented by
 	 * <code>handler</code> calls {@link Component#addKeyListener(KeyListener)},
@@ -182,10 +267,26 @@ public class PointCloudCanvas extends AWTGLCanvas
 	}
 
 
+	/**
+	 * Requests an OpenGL 3.3 core profile context. The rendering only uses
+	 * shaders, vertex arrays and buffers, which are available in software
+	 * with Mesa's llvmpipe renderer.
+	 */
+	private static GLData coreProfile()
+	{
+		final GLData data = new GLData();
+		data.majorVersion = 3;
+		data.minorVersion = 3;
+		data.profile = GLData.Profile.CORE;
+		// Required on macOS for core profiles.
+		data.forwardCompatible = true;
+		return data;
+	}
+
 	@Override
 	public void initGL()
 	{
-		createCapabilities();
+		capabilities = createCapabilities();
 		
 		glDisable( GL_DEPTH_TEST );
 		glDisable( GL_CULL_FACE );
@@ -194,27 +295,69 @@ public class PointCloudCanvas extends AWTGLCanvas
 		glEnable( GL_BLEND );
 		glBlendFunc( GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA );
 
-		overlayRenderers.list.forEach( GLOverlayRenderer::init );
+		view.init();
+		dataLayer.init();
 	}
 
 	@Override
 	public void paintGL()
 	{
-		createCapabilities();
-		final float[] gbColArr = new float[ 4 ];
-		style.getBackgroundColor().getComponents( gbColArr );
-		glClearColor( gbColArr[ 0 ], gbColArr[ 1 ], gbColArr[ 2 ], gbColArr[ 3 ] );
-		glClear( GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT );
-
-		glMatrixMode( GL_PROJECTION );
-		glLoadIdentity();
-		glOrtho( transform.getMinX(), transform.getMaxX(), transform.getMinY(), transform.getMaxY(), -1, 1 );
-		glViewport( 0, 0, getFrameBufferWidth(), getFrameBufferHeight() );
-		glMatrixMode( GL_MODELVIEW );
+		// Must not allocate: paintGL() is called at each frame.
+		setCapabilities( capabilities );
+		final Color bg = style.getBackgroundColor();
+		if ( bg != clearColorSource )
+		{
+			clearColorSource = bg;
+			bg.getComponents( clearColor );
+		}
+		glClearColor( clearColor[ 0 ], clearColor[ 1 ], clearColor[ 2 ], clearColor[ 3 ] );
+
+		frameView.set( transform, getFrameBufferWidth(), getFrameBufferHeight() );
+		final double minX = frameView.getMinX();
+		final double maxX = frameView.getMaxX();
+		final double minY = frameView.getMinY();
+		final double maxY = frameView.getMaxY();
+		final int width = frameView.getWidth();
+		final int height = frameView.getHeight();
+		view.setOrtho( minX, maxX, minY, maxY );
+		glViewport( 0, 0, width, height );
+
+		GLOverlayRenderer overlay;
+		while ( ( overlay = overlaysToInit.poll() ) != null )
+			overlay.init();
+
+		// Data overlays, only rendered again when something changed.
+		if ( width > 0 && height > 0 )
+		{
+			if ( frameView.isDataLayerStale() )
+			{
+				dataLayer.bind( width, height );
+				glClear( GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT );
+				paintOverlays( dataOverlayRenderers.list, minX, maxX, minY, maxY );
+				dataLayer.unbind();
+			}
+			dataLayer.copyToCanvas();
+		}
 
-		overlayRenderers.list.forEach( GLOverlayRenderer::paint );
+		// Interactive overlays, at each frame.
+		paintOverlays( overlayRenderers.list, minX, maxX, minY, maxY );
 
 		swapBuffers();
+
+		Runnable task;
+		while ( ( task = afterNextFrame.poll() ) != null )
+			task.run();
+	}
+
+	private static void paintOverlays( final List< GLOverlayRenderer > overlays, final double minX, final double maxX, final double minY, final double maxY )
+	{
+		// Indexed, so that no iterator is allocated.
+		for ( int i = 0; i < overlays.size(); i++ )
+		{
+			final GLOverlayRenderer r = overlays.get( i );
+			r.setView( minX, maxX, minY, maxY );
+			r.paint();
+		}
 	}
 
 	public int getFrameBufferWidth()
@@ -227,6 +370,13 @@ public class PointCloudCanvas extends AWTGLCanvas
 		return frameBufferHeight;
 	}
 
+	/**
+	 * Sets the transform the next frame is rendered with. Must be called
+	 * where the canvas is rendered: on the render thread if there is one.
+	 *
+	 * @param transform
+	 *            the screen transform, copied.
+	 */
 	public void setTransform( final ScreenTransform transform )
 	{
 		this.transform.set( transform );
@@ -3,10 +3,19 @@ package org.mastodon.grapher.opengl;
 import java.awt.BorderLayout;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.swing.Box;
+import javax.swing.JButton;
 import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
@@ -14,6 +23,7 @@ import org.mastodon.app.ui.GroupLocksPanel;
 import org.mastodon.app.ui.ViewFrame;
 import org.mastodon.feature.FeatureModel;
 import org.mastodon.feature.FeatureModel.FeatureModelListener;
+import org.mastodon.grapher.opengl.overlays.DataPointsOverlay;
 import org.mastodon.grouping.GroupHandle;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.ModelGraph;
@@ -26,6 +36,7 @@ import org.mastodon.undo.UndoPointMarker;
 import org.mastodon.util.FeatureUtils;
 import org.mastodon.views.context.ContextChooser;
 import org.mastodon.views.grapher.display.DataDisplayOptions;
+import org.mastodon.views.grapher.display.FeatureSpecPair;
 import org.mastodon.views.grapher.display.GrapherSidePanel;
 import org.scijava.ui.behaviour.MouseAndKeyHandler;
 
@@ -37,6 +48,8 @@ public class PointCloudFrame extends ViewFrame
 
 	private final GrapherSidePanel sidePanel;
 
+	private final FeatureFilterPanel filterPanel;
+
 	public PointCloudFrame(
 			final ModelGraph graph,
 			final FeatureModel featureModel,
@@ -60,7 +73,7 @@ public class PointCloudFrame extends ViewFrame
 
 		// Update color when the selection or style changes.
 		optional.values.getStyle().updateListeners().add( () -> dataDisplayPanel.updateColor() );
-		selection.listeners().add( () -> dataDisplayPanel.updateColor() );
+		selection.listeners().add( () -> dataDisplayPanel.updateSelection() );
 		highlight.listeners().add( () -> dataDisplayPanel.updateHighlight() );
 
 		/*
@@ -69,11 +82,20 @@ public class PointCloudFrame extends ViewFrame
 
 		final ContextChooser< Spot > contextChooser = new ContextChooser<>( dataDisplayPanel );
 		sidePanel = new GrapherSidePanel( nSources, contextChooser );
-		sidePanel.getBtnPlot().addActionListener( e -> dataDisplayPanel.plot( sidePanel.getGraphConfig() ) );
-
-		final FeatureModelListener featureModelListener = () -> sidePanel.setFeatures(
-				FeatureUtils.collectFeatureMap( featureModel, Spot.class ),
-				FeatureUtils.collectFeatureMap( featureModel, Link.class ) );
+		sidePanel.getBtnPlot().addActionListener( e -> dataDisplayPanel.plotOrSwapAxes( sidePanel.getGraphConfig() ) );
+
+		// Range filters below the side panel.
+		filterPanel = new FeatureFilterPanel( dataDisplayPanel, nSources );
+		final JPanel leftPanel = new JPanel( new BorderLayout() );
+		leftPanel.add( sidePanel, BorderLayout.CENTER );
+		leftPanel.add( filterPanel, BorderLayout.SOUTH );
+
+		final FeatureModelListener featureModelListener = () -> {
+			sidePanel.setFeatures(
+					FeatureUtils.collectFeatureMap( featureModel, Spot.class ),
+					FeatureUtils.collectFeatureMap( featureModel, Link.class ) );
+			filterPanel.setFeatures( featureModel );
+		};
 		featureModel.listeners().add( featureModelListener );
 		featureModelListener.featureModelChanged();
 
@@ -81,7 +103,7 @@ public class PointCloudFrame extends ViewFrame
 		 * Main panel is a split pane.
 		 */
 
-		final JSplitPane mainPanel = new JSplitPane( JSplitPane.HORIZONTAL_SPLIT, sidePanel, dataDisplayPanel );
+		final JSplitPane mainPanel = new JSplitPane( JSplitPane.HORIZONTAL_SPLIT, leftPanel, dataDisplayPanel );
 		mainPanel.setOneTouchExpandable( true );
 		mainPanel.setContinuousLayout( true );
 		mainPanel.setBorder( null );
@@ -97,6 +119,11 @@ public class PointCloudFrame extends ViewFrame
 		settingsPanel.add( navigationLocksPanel );
 		settingsPanel.add( Box.createHorizontalGlue() );
 
+		// Features whose axes can be swapped without a new layout.
+		final JButton exploreButton = new JButton( "Explore features..." );
+		exploreButton.addActionListener( e -> chooseExploredFeatures( featureModel, nSources ) );
+		settingsPanel.add( exploreButton );
+
 		//		final ContextChooserPanel< ? > contextChooserPanel = new ContextChooserPanel<>( contextChooser );
 		//		settingsPanel.add( contextChooserPanel );
 
@@ -106,6 +133,8 @@ public class PointCloudFrame extends ViewFrame
 			@Override
 			public void windowClosing( final WindowEvent e )
 			{
+				featureModel.listeners().remove( featureModelListener );
+				filterPanel.dispose();
 				dataDisplayPanel.stop();
 			}
 		} );
@@ -128,11 +157,47 @@ public class PointCloudFrame extends ViewFrame
 			setLocation( x, y );
 	}
 
+	/**
+	 * Asks for the features to explore, among the vertex features.
+	 */
+	private void chooseExploredFeatures( final FeatureModel featureModel, final int nSources )
+	{
+		final List< FeatureSpecPair > features = FeatureFilterPanel.vertexFeatures( featureModel, nSources );
+		final JList< FeatureSpecPair > list = new JList<>( features.toArray( new FeatureSpecPair[ 0 ] ) );
+		list.setSelectionMode( ListSelectionModel.MULTIPLE_INTERVAL_SELECTION );
+		final Set< String > explored = new HashSet<>();
+		for ( final FeatureSpecPair f : dataDisplayPanel.getDataLayout().getExploredFeatures() )
+			explored.add( f.toString() );
+		for ( int i = 0; i < features.size(); i++ )
+			if ( explored.contains( features.get( i ).toString() ) )
+				list.addSelectionInterval( i, i );
+
+		final String message = "Features to explore, at most " + DataPointsOverlay.EXPLORATION_MAX_COLUMNS
+				+ ".\nPlotting two of them as X and Y swaps the axes without a new layout.";
+		final int answer = JOptionPane.showConfirmDialog( this, new Object[] { message, new JScrollPane( list ) },
+				"Explore features", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE );
+		if ( answer != JOptionPane.OK_OPTION )
+			return;
+		final List< FeatureSpecPair > selected = list.getSelectedValuesList();
+		if ( selected.size() > DataPointsOverlay.EXPLORATION_MAX_COLUMNS )
+		{
+			JOptionPane.showMessageDialog( this, "Cannot explore more than " + DataPointsOverlay.EXPLORATION_MAX_COLUMNS + " features.",
+					"Explore features", JOptionPane.ERROR_MESSAGE );
+			return;
+		}
+		dataDisplayPanel.explore( selected );
+	}
+
 	public GrapherSidePanel getVertexSidePanel()
 	{
 		return sidePanel;
 	}
 
+	public FeatureFilterPanel getFilterPanel()
+	{
+		return filterPanel;
+	}
+
 	public PointCloudPanel getDataDisplayPanel()
 	{
 		return dataDisplayPanel;
@@ -11,22 +11,36 @@ import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.Box;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollBar;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataColor;
 import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
 import org.mastodon.grapher.opengl.overlays.DataEdgesOverlay;
 import org.mastodon.grapher.opengl.overlays.DataPointsOverlay;
+import org.mastodon.grapher.opengl.overlays.DensityOverlay;
 import org.mastodon.grapher.opengl.overlays.HighlightOverlay;
+import org.mastodon.grapher.opengl.overlays.LevelOfDetail;
+import org.mastodon.grapher.opengl.util.DensityGrid;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.views.context.Context;
 import org.mastodon.views.context.ContextListener;
 import org.mastodon.views.grapher.datagraph.ScreenTransform;
 import org.mastodon.views.grapher.display.FeatureGraphConfig;
+import org.mastodon.views.grapher.display.FeatureSpecPair;
 import org.mastodon.views.grapher.display.ScreenTransformState;
 import org.mastodon.views.grapher.display.style.DataDisplayStyle;
 
@@ -39,6 +53,12 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Delay before the density grid is computed again after the layout was
+	 * patched, so that a burst of edits only computes it once.
+	 */
+	private static final long DENSITY_DELAY_MS = 200;
+
 	private final PointCloudCanvas canvas;
 
 	private final PainterThread painterThread;
@@ -84,7 +104,101 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 
 	private final HighlightOverlay highlightOverlay;
 
+	private final DensityOverlay densityOverlay;
+
+	private final LevelOfDetail levelOfDetail;
+
+	private final JProgressBar progressBar;
+
+	/**
+	 * Renders the canvas on the EDT. Created once, not at each frame.
+	 */
+	private final Runnable renderCanvas;
+
+	/**
+	 * The thread owning the OpenGL context, or <code>null</code> if the
+	 * canvas is rendered on the EDT.
+	 */
+	private final RenderThread renderThread;
+
+	/**
+	 * A copy of the screen transform for the axes and the scroll bars, never
+	 * modified: replaced when the transform changes. The transform of the
+	 * canvas is only read where the canvas is rendered.
+	 */
+	private volatile ScreenTransform viewTransform;
+
+	/**
+	 * The view and layout bounds the axes and scroll bars were last updated
+	 * for.
+	 */
+	private final double[] axesView = new double[ 8 ];
+
+	/**
+	 * Computes the plots and the density grids in the background, one at a
+	 * time, so that a density grid is never handed over after the grid of a
+	 * newer plot.
+	 */
+	private final ScheduledExecutorService plotExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+		final Thread thread = new Thread( r, "OpenGL grapher plot" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	private Future< ? > plotJob;
+
+	/**
+	 * The latest request to explore features, see {@link #explore(List)}.
+	 */
+	private Future< ? > exploreJob;
+
+	/**
+	 * The graph config of the latest plot request, plotted again if the layout
+	 * is invalidated. <code>null</code> until the first plot request.
+	 */
+	private FeatureGraphConfig config;
+
+	/**
+	 * Incremented at each plot request. Only the latest request is handed to
+	 * the overlays.
+	 */
+	private long plotRequest;
+
+	/**
+	 * If <code>true</code>, a density update is scheduled and has not started
+	 * yet.
+	 */
+	private final AtomicBoolean densityQueued = new AtomicBoolean();
+
+	/**
+	 * If <code>true</code>, the layout was patched since the density grid was
+	 * computed, and the grid is computed again once the heatmap is visible.
+	 */
+	private volatile boolean densityStale;
+
+	/**
+	 * Creates a panel rendered on a dedicated thread, if the platform
+	 * supports it.
+	 *
+	 * @param layout
+	 *            the layout of the data to plot.
+	 */
 	public PointCloudPanel( final DataLayoutMaker layout )
+	{
+		this( layout, RenderThread.isSupported() );
+	}
+
+	/**
+	 * Creates a panel.
+	 *
+	 * @param layout
+	 *            the layout of the data to plot.
+	 * @param useRenderThread
+	 *            if <code>true</code>, the canvas is rendered on a dedicated
+	 *            thread owning the OpenGL context. Otherwise it is rendered
+	 *            on the EDT.
+	 */
+	public PointCloudPanel( final DataLayoutMaker layout, final boolean useRenderThread )
 	{
 		super( new BorderLayout(), false );
 		this.layout = layout;
@@ -94,26 +208,72 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 
 		// Core canvas and painter thread.
 		this.canvas = new PointCloudCanvas( layout.getStyle() );
+		this.renderCanvas = canvas::render;
+		this.renderThread = useRenderThread ? new RenderThread( canvas ) : null;
+		Arrays.fill( axesView, Double.NaN );
 		this.painterThread = new PainterThread( this );
 
 		// Screen transform.
 		this.screenTransform = new ScreenTransformState( new ScreenTransform( -1, 1, -1, 1, w, h ) );
+		this.viewTransform = new ScreenTransform();
+		screenTransform.get( viewTransform );
 		this.transformHandler = new InertialScreenTransformEventHandlerOpenGL( screenTransform );
 		canvas.setTransformEventHandler( transformHandler );
 		screenTransform.listeners().add( this );
 
 		// Overlays for the canvas.
-		this.dataEdgesOverlay = new DataEdgesOverlay( layout );
-		this.dataPointsOverlay = new DataPointsOverlay( layout, transformHandler );
+		this.levelOfDetail = new LevelOfDetail();
+		levelOfDetail.setView( screenTransform.get() );
+		this.densityOverlay = new DensityOverlay( levelOfDetail );
+		this.dataPointsOverlay = new DataPointsOverlay( layout.getStyle(), transformHandler, levelOfDetail );
+		this.dataEdgesOverlay = new DataEdgesOverlay( dataPointsOverlay, layout.getStyle() );
 		this.highlightOverlay = new HighlightOverlay( layout );
 		dataPointsOverlay.getLayoutChangeListeners().add( this );
-		canvas.overlays().add( dataEdgesOverlay );
-		canvas.overlays().add( dataPointsOverlay );
+		layout.layoutListeners().add( dataEdgesOverlay );
+		layout.layoutListeners().add( dataPointsOverlay );
+		layout.layoutListeners().add( new DataLayoutListener()
+		{
+			/**
+			 * Explored columns of the axes of the latest layout, to compute
+			 * the density grid again when the axes are swapped. Only accessed
+			 * by the notifying thread, under the layout lock.
+			 */
+			private int xExplored = -1;
+
+			private int yExplored = -1;
+
+			@Override
+			public void dataLayoutUpdated( final DataLayout l, final DataColor c, final int vf, final int vt, final int ef, final int et )
+			{
+				final boolean axesSwapped = l.xExplored != xExplored || l.yExplored != yExplored;
+				xExplored = l.xExplored;
+				yExplored = l.yExplored;
+				if ( vf < vt || axesSwapped )
+					densityStale = true;
+				dataChanged();
+			}
+
+			@Override
+			public void dataFilterUpdated( final DataLayout l )
+			{
+				dataChanged();
+			}
+
+			@Override
+			public void dataLayoutInvalidated()
+			{
+				// Called by the thread that changed the graph.
+				SwingUtilities.invokeLater( () -> replot() );
+			}
+		} );
+		canvas.dataOverlays().add( densityOverlay );
+		canvas.dataOverlays().add( dataEdgesOverlay );
+		canvas.dataOverlays().add( dataPointsOverlay );
 		canvas.overlays().add( highlightOverlay );
 
 		// Bottom axis.
-		final JPanel xAxis = new MyXAxisPanel( canvas.transform );
-		final JPanel yAxis = new MyYAxisPanel( canvas.transform );
+		final JPanel xAxis = new MyXAxisPanel();
+		final JPanel yAxis = new MyYAxisPanel();
 
 		// Add main canvas.
 		final JPanel mainPanel = new JPanel();
@@ -123,6 +283,14 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 		mainPanel.add( yAxis, BorderLayout.WEST );
 		add( mainPanel, BorderLayout.CENTER );
 
+		// Progress indicator for plots computed in the background.
+		progressBar = new JProgressBar();
+		progressBar.setIndeterminate( true );
+		progressBar.setString( "Computing plot..." );
+		progressBar.setStringPainted( true );
+		progressBar.setVisible( false );
+		add( progressBar, BorderLayout.NORTH );
+
 		// Add scroll bars.
 		xScrollBar = new JScrollBar( JScrollBar.HORIZONTAL );
 		yScrollBar = new JScrollBar( JScrollBar.VERTICAL );
@@ -165,25 +333,35 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 		add( xScrollPanel, BorderLayout.SOUTH );
 
 		painterThread.start();
+		if ( renderThread != null )
+			renderThread.start();
 	}
 
 	@Override
 	public void paint()
 	{
+		if ( renderThread != null )
+			renderThread.requestRender();
+		else
+			SwingUtilities.invokeLater( renderCanvas );
+
+		// The axes and scroll bars only change with the view and the layout.
+		if ( !isAxesStale() )
+			return;
 		repaint();
-		SwingUtilities.invokeLater( canvas::render );
 
 		// adjust scrollbars sizes
+		final ScreenTransform t = viewTransform;
 		xScrollScale = 10000.0 / ( layoutMaxX - layoutMinX + 2 );
-		final int xval = ( int ) ( xScrollScale * canvas.transform.getMinX() );
-		final int xext = ( int ) ( xScrollScale * ( canvas.transform.getMaxX() - canvas.transform.getMinX() ) );
+		final int xval = ( int ) ( xScrollScale * t.getMinX() );
+		final int xext = ( int ) ( xScrollScale * ( t.getMaxX() - t.getMinX() ) );
 		final int xmin = ( int ) ( xScrollScale * layoutMinX );
 		final int xmax = ( int ) ( xScrollScale * layoutMaxX );
 		yScrollScale = 10000.0 / ( layoutMaxY - layoutMinY + 2 );
-		final int yext = ( int ) ( yScrollScale * ( canvas.transform.getMaxY() - canvas.transform.getMinY() ) );
+		final int yext = ( int ) ( yScrollScale * ( t.getMaxY() - t.getMinY() ) );
 		final int ymin = ( int ) ( yScrollScale * layoutMinY );
 		final int ymax = ( int ) ( yScrollScale * layoutMaxY );
-		final int yval = ( int ) ( yScrollScale * ( layoutMinY + layoutMaxY - canvas.transform.getMaxY() ) );
+		final int yval = ( int ) ( yScrollScale * ( layoutMinY + layoutMaxY - t.getMaxY() ) );
 
 		ignoreScrollBarChanges = true;
 		xScrollBar.setValues( xval, xext, xmin, xmax );
@@ -191,6 +369,29 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 		ignoreScrollBarChanges = false;
 	}
 
+	/**
+	 * Returns <code>true</code> if the view or the layout bounds changed since
+	 * the axes and scroll bars were last updated, and records them.
+	 */
+	private boolean isAxesStale()
+	{
+		final ScreenTransform t = viewTransform;
+		if ( t.getMinX() == axesView[ 0 ] && t.getMaxX() == axesView[ 1 ]
+				&& t.getMinY() == axesView[ 2 ] && t.getMaxY() == axesView[ 3 ]
+				&& layoutMinX == axesView[ 4 ] && layoutMaxX == axesView[ 5 ]
+				&& layoutMinY == axesView[ 6 ] && layoutMaxY == axesView[ 7 ] )
+			return false;
+		axesView[ 0 ] = t.getMinX();
+		axesView[ 1 ] = t.getMaxX();
+		axesView[ 2 ] = t.getMinY();
+		axesView[ 3 ] = t.getMaxY();
+		axesView[ 4 ] = layoutMinX;
+		axesView[ 5 ] = layoutMaxX;
+		axesView[ 6 ] = layoutMinY;
+		axesView[ 7 ] = layoutMaxY;
+		return true;
+	}
+
 	public PointCloudCanvas getCanvas()
 	{
 		return canvas;
@@ -199,10 +400,32 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 	@Override
 	public void transformChanged( final ScreenTransform transform )
 	{
-		canvas.setTransform( transform );
+		// The transform may change again before the copy is read.
+		final ScreenTransform t = new ScreenTransform();
+		t.set( transform );
+		viewTransform = t;
+		if ( renderThread != null )
+			renderThread.submit( () -> canvas.setTransform( t ) );
+		else
+			canvas.setTransform( transform );
+		levelOfDetail.setView( transform );
+		if ( densityStale )
+			updateDensityLater();
 		painterThread.requestRepaint();
 	}
 
+	/**
+	 * Runs the specified command where the canvas is rendered: queued to the
+	 * render thread if there is one, otherwise right away.
+	 */
+	private void onRenderer( final Runnable command )
+	{
+		if ( renderThread != null )
+			renderThread.submit( command );
+		else
+			command.run();
+	}
+
 	@Override
 	public void contextChanged( final Context< Spot > context )
 	{
@@ -219,26 +442,173 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 		return screenTransform;
 	}
 
+	/**
+	 * Returns the settings that decide when the points are drawn as a density
+	 * heatmap. Call {@link #dataChanged()} after changing them.
+	 */
+	public LevelOfDetail getLevelOfDetail()
+	{
+		return levelOfDetail;
+	}
+
+	/**
+	 * Returns the overlay drawing the density heatmap, to configure its
+	 * colormap. Call {@link #dataChanged()} after changing it.
+	 */
+	public DensityOverlay getDensityOverlay()
+	{
+		return densityOverlay;
+	}
+
 	public void stop()
 	{
 		System.out.println( "Window closing." ); // DEBUG
 		painterThread.interrupt();
+		if ( renderThread != null )
+			renderThread.interrupt();
+		plotExecutor.shutdownNow();
+		layout.close();
 	}
 
+	/**
+	 * Plots the data specified by the graph config.
+	 * <p>
+	 * The layout is computed in a background thread, and is handed to the
+	 * overlays once complete. A plot request cancels the one in flight, if
+	 * any.
+	 *
+	 * @param gc
+	 *            the graph config.
+	 */
 	public void plot( final FeatureGraphConfig gc )
 	{
-		layout.setConfig( gc );
-		final DataLayout dataLayout = layout.layout();
-		dataPointsOverlay.draw( dataLayout );
-		dataEdgesOverlay.draw( dataLayout );
-		painterThread.requestRepaint();
+		plot( gc, null );
+	}
+
+	/**
+	 * Plots the data specified by the graph config, and runs the specified
+	 * callback on the EDT once the new layout is displayed. The callback is
+	 * not run if the plot is cancelled or fails.
+	 *
+	 * @param gc
+	 *            the graph config.
+	 * @param onPlotted
+	 *            the callback, may be <code>null</code>.
+	 */
+	public synchronized void plot( final FeatureGraphConfig gc, final Runnable onPlotted )
+	{
+		if ( plotJob != null )
+			plotJob.cancel( true );
+		config = gc;
+		final long request = ++plotRequest;
+		progressBar.setVisible( true );
+		plotJob = plotExecutor.submit( () -> {
+			try
+			{
+				// The layout only holds its lock to swap in the new arrays.
+				layout.setConfig( gc );
+				layout.layout();
+				if ( Thread.currentThread().isInterrupted() )
+					return;
+				densityStale = false;
+				final DensityGrid densityGrid = layout.densityGrid( DensityGrid.DEFAULT_RESOLUTION );
+				if ( Thread.currentThread().isInterrupted() )
+					return;
+				SwingUtilities.invokeLater( () -> {
+					if ( !isLatestPlot( request ) )
+						return;
+					onRenderer( () -> {
+						densityOverlay.draw( densityGrid );
+						// Patched since it was computed: the overlays take
+						// the current layout, not an older snapshot.
+						layout.withCurrentLayout( ( l, c ) -> {
+							dataPointsOverlay.draw( l, c );
+							dataEdgesOverlay.draw( l, c );
+						} );
+						dataChanged();
+						// Selection queries scan the layout until then.
+						canvas.runAfterNextFrame( layout::buildIndexLater );
+						// The callback may depend on the new layout bounds.
+						SwingUtilities.invokeLater( () -> {
+							progressBar.setVisible( false );
+							if ( onPlotted != null )
+								onPlotted.run();
+						} );
+					} );
+				} );
+			}
+			catch ( final CancellationException e )
+			{
+				// Superseded by a newer plot request.
+			}
+			catch ( final RuntimeException e )
+			{
+				e.printStackTrace();
+				SwingUtilities.invokeLater( () -> {
+					if ( isLatestPlot( request ) )
+						progressBar.setVisible( false );
+				} );
+			}
+		} );
+	}
+
+	/**
+	 * Computes the density grid again after a short delay, on the plot thread,
+	 * unless it is already scheduled.
+	 */
+	private void updateDensityLater()
+	{
+		if ( plotExecutor.isShutdown() || !densityQueued.compareAndSet( false, true ) )
+			return;
+		plotExecutor.schedule( this::updateDensity, DENSITY_DELAY_MS, TimeUnit.MILLISECONDS );
+	}
+
+	private void updateDensity()
+	{
+		densityQueued.set( false );
+		// Only computed when the heatmap is visible.
+		if ( !densityStale || levelOfDetail.getDensityWeight() <= 0f )
+			return;
+		densityStale = false;
+		final DensityGrid densityGrid = layout.densityGrid( DensityGrid.DEFAULT_RESOLUTION );
+		// Handed over the same way as the plots, so that it stays in order with them.
+		SwingUtilities.invokeLater( () -> onRenderer( () -> {
+			densityOverlay.draw( densityGrid );
+			dataChanged();
+		} ) );
+	}
+
+	/**
+	 * Plots the data of the latest graph config again, on the plot thread.
+	 */
+	private synchronized void replot()
+	{
+		if ( config != null && !plotExecutor.isShutdown() )
+			plot( config );
+	}
+
+	private synchronized boolean isLatestPlot( final long request )
+	{
+		return request == plotRequest;
+	}
+
+	/**
+	 * Updates only the plotted objects whose selection state changed.
+	 */
+	public void updateSelection()
+	{
+		layout.updateSelection();
+		dataChanged();
 	}
 
 	public void updateColor()
 	{
-		dataPointsOverlay.updateColors();
-		dataEdgesOverlay.updateColors();
-		painterThread.requestRepaint();
+		final DataColor dataColor = layout.color();
+		onRenderer( () -> {
+			dataPointsOverlay.updateColors( dataColor );
+			dataEdgesOverlay.updateColors( dataColor );
+			dataChanged();
+		} );
 	}
 
 	public void updateHighlight()
@@ -247,11 +617,156 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 		painterThread.requestRepaint();
 	}
 
+	/**
+	 * Restricts the plotted points and edges to the specified timepoints. Only
+	 * applies if the layout is sorted by timepoint, see
+	 * {@link DataLayoutMaker#setSortByTime(boolean)}. The layout is then not
+	 * recomputed: each overlay draws a single range of slots, culled by the
+	 * view. The density heatmap still shows all the timepoints.
+	 *
+	 * @param from
+	 *            the first timepoint to plot.
+	 * @param to
+	 *            the last timepoint to plot, inclusive.
+	 */
+	public void setTimeWindow( final int from, final int to )
+	{
+		dataPointsOverlay.setTimeWindow( from, to );
+		dataEdgesOverlay.setTimeWindow( from, to );
+		dataChanged();
+	}
+
+	/**
+	 * Plots all the timepoints again, after
+	 * {@link #setTimeWindow(int, int)}.
+	 */
+	public void clearTimeWindow()
+	{
+		setTimeWindow( Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Plots the data specified by the graph config. If only its axes changed
+	 * and both are explored features, see {@link #explore(List)}, the axes
+	 * are swapped on the plot thread without computing the layout again, and
+	 * the next frame shows them. Otherwise the data are plotted with
+	 * {@link #plot(FeatureGraphConfig)}.
+	 *
+	 * @param gc
+	 *            the graph config.
+	 */
+	public synchronized void plotOrSwapAxes( final FeatureGraphConfig gc )
+	{
+		// Only swapped once the explored values match the plotted vertices.
+		if ( !isDone( plotJob ) || !isDone( exploreJob ) )
+		{
+			plot( gc );
+			return;
+		}
+		final long request = ++plotRequest;
+		plotJob = plotExecutor.submit( () -> {
+			try
+			{
+				final DataLayout l = layout.swapAxes( gc );
+				if ( l == null )
+					SwingUtilities.invokeLater( () -> {
+						if ( isLatestPlot( request ) )
+							plot( gc );
+					} );
+				else
+					transformHandler.layoutChanged( l.verticesPos );
+			}
+			catch ( final RuntimeException e )
+			{
+				e.printStackTrace();
+			}
+		} );
+	}
+
+	/**
+	 * Starts exploring the specified features. Their values are computed for
+	 * the plotted vertices and uploaded once, on the plot thread, so that
+	 * {@link #plotOrSwapAxes(FeatureGraphConfig)} can swap the axes between
+	 * them.
+	 *
+	 * @param features
+	 *            the features to explore, at most
+	 *            {@link DataPointsOverlay#EXPLORATION_MAX_COLUMNS}. Empty to
+	 *            stop exploring.
+	 */
+	public synchronized void explore( final List< FeatureSpecPair > features )
+	{
+		exploreJob = plotExecutor.submit( () -> {
+			try
+			{
+				layout.explore( features );
+			}
+			catch ( final RuntimeException e )
+			{
+				e.printStackTrace();
+			}
+		} );
+	}
+
+	private static boolean isDone( final Future< ? > job )
+	{
+		return job == null || job.isDone();
+	}
+
+	/**
+	 * Sets the feature of a filter column. The plotted vertices get the values
+	 * of this feature, and are then filtered with
+	 * {@link #setFilterRange(int, float, float)}.
+	 *
+	 * @param column
+	 *            the filter column, less than
+	 *            {@link DataPointsOverlay#FILTER_NUM_COLUMNS}.
+	 * @param feature
+	 *            the feature, <code>null</code> to clear the column.
+	 */
+	public void setFilter( final int column, final FeatureSpecPair feature )
+	{
+		layout.setFilter( column, feature );
+	}
+
+	/**
+	 * Hides the points with a value of a filter column out of the specified
+	 * range, and their edges. The layout is not recomputed, and no data is
+	 * uploaded: the range is applied in the shaders. The density heatmap and
+	 * the selection still include the hidden points.
+	 *
+	 * @param column
+	 *            the filter column.
+	 * @param min
+	 *            the min value, {@link Float#NEGATIVE_INFINITY} for no bound.
+	 * @param max
+	 *            the max value, {@link Float#POSITIVE_INFINITY} for no bound.
+	 */
+	public void setFilterRange( final int column, final float min, final float max )
+	{
+		dataPointsOverlay.setFilterRange( column, min, max );
+		dataChanged();
+	}
+
+	/**
+	 * Repaints the interactive overlays only. The data are not drawn again.
+	 */
 	public void overlayChanged()
 	{
 		painterThread.requestRepaint();
 	}
 
+	/**
+	 * Repaints the data overlays, after their content or settings changed.
+	 */
+	public void dataChanged()
+	{
+		canvas.invalidateDataLayer();
+		if ( densityStale )
+			updateDensityLater();
+		painterThread.requestRepaint();
+	}
+
 	public DataLayoutMaker getDataLayout()
 	{
 		return layout;
@@ -280,17 +795,15 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 
 		private static final long serialVersionUID = 1L;
 
-		private final ScreenTransform t;
-
-		public MyYAxisPanel( final ScreenTransform t )
+		public MyYAxisPanel()
 		{
-			this.t = t;
 			setPreferredSize( new Dimension( axesWidth, axesHeight ) );
 		}
 
 		@Override
 		protected void paintComponent( final Graphics g )
 		{
+			final ScreenTransform t = viewTransform;
 			final Color bgColor = layout.getStyle().getBackgroundColor();
 			final Color fgColor = Color.BLACK;
 			final Font tickFont = getFont().deriveFont( getFont().getSize2D() - 2f );
@@ -371,17 +884,15 @@ public class PointCloudPanel extends JPanel implements Paintable, ContextListene
 
 		private static final long serialVersionUID = 1L;
 
-		private final ScreenTransform t;
-
-		public MyXAxisPanel( final ScreenTransform t )
+		public MyXAxisPanel()
 		{
-			this.t = t;
 			setPreferredSize( new Dimension( axesWidth, axesHeight ) );
 		}
 
 		@Override
 		protected void paintComponent( final Graphics g )
 		{
+			final ScreenTransform t = viewTransform;
 			final Color bgColor = layout.getStyle().getBackgroundColor();
 			final Color fgColor = Color.BLACK;
 			final Font tickFont = getFont().deriveFont( getFont().getSize2D() - 2f );
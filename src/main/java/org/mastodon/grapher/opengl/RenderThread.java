@@ -0,0 +1,97 @@
+package org.mastodon.grapher.opengl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread that owns the OpenGL context of a {@link PointCloudCanvas} and
+ * renders it, instead of the EDT.
+ * <p>
+ * Changes to the data or to the view are queued as commands, and run on this
+ * thread before the next frame. Render requests are coalesced: however many
+ * requests arrive during a frame, a single frame follows. A slow frame
+ * therefore does not block Swing input, and Swing work does not delay
+ * frames.
+ */
+public class RenderThread extends Thread
+{
+
+	private final PointCloudCanvas canvas;
+
+	private final Queue< Runnable > commands = new ConcurrentLinkedQueue<>();
+
+	private boolean renderRequested;
+
+	public RenderThread( final PointCloudCanvas canvas )
+	{
+		super( "OpenGL grapher render" );
+		this.canvas = canvas;
+		setDaemon( true );
+	}
+
+	/**
+	 * Returns <code>true</code> if the canvas can be rendered from a thread
+	 * other than the EDT on this platform. On macOS, the AWT drawing surface
+	 * must be locked from the EDT.
+	 */
+	public static boolean isSupported()
+	{
+		return !System.getProperty( "os.name", "" ).toLowerCase().startsWith( "mac" );
+	}
+
+	/**
+	 * Requests a new frame.
+	 */
+	public synchronized void requestRender()
+	{
+		renderRequested = true;
+		notify();
+	}
+
+	/**
+	 * Runs the specified command on this thread before the next frame, and
+	 * requests that frame.
+	 *
+	 * @param command
+	 *            the command.
+	 */
+	public void submit( final Runnable command )
+	{
+		commands.add( command );
+		requestRender();
+	}
+
+	@Override
+	public void run()
+	{
+		while ( !isInterrupted() )
+		{
+			synchronized ( this )
+			{
+				try
+				{
+					while ( !renderRequested )
+						wait();
+				}
+				catch ( final InterruptedException e )
+				{
+					break;
+				}
+				renderRequested = false;
+			}
+
+			try
+			{
+				Runnable command;
+				while ( ( command = commands.poll() ) != null )
+					command.run();
+				canvas.render();
+			}
+			catch ( final RuntimeException e )
+			{
+				// Keep rendering the next frames.
+				e.printStackTrace();
+			}
+		}
+	}
+}
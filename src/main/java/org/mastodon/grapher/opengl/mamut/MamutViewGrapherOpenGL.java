@@ -9,6 +9,8 @@ import static org.mastodon.mamut.MamutMenuBuilder.viewMenu;
 
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +28,8 @@ import org.mastodon.grapher.opengl.PointCloudFrame;
 import org.mastodon.grapher.opengl.PointCloudPanel;
 import org.mastodon.grapher.opengl.overlays.BoxSelectionBehaviour;
 import org.mastodon.grapher.opengl.overlays.DataDisplayZoomGL;
+import org.mastodon.grapher.opengl.overlays.HoverHighlighter;
+import org.mastodon.grapher.opengl.overlays.LassoSelectionBehaviour;
 import org.mastodon.mamut.MainWindow;
 import org.mastodon.mamut.MamutMenuBuilder;
 import org.mastodon.mamut.ProjectModel;
@@ -110,8 +114,7 @@ public class MamutViewGrapherOpenGL extends MamutView< ViewGraph< Spot, Link, Sp
 
 //		contextListener.setContextListener( dataDisplayPanel );
 
-		dataDisplayPanel.plot( gcv );
-		dataDisplayPanel.getTransformEventHandler().zoomTo( -10000, 10000, -10000, 10000 );
+		dataDisplayPanel.plot( gcv, () -> dataDisplayPanel.getTransformEventHandler().zoomTo( -10000, 10000, -10000, 10000 ) );
 		dataDisplayPanel.getTransformEventHandler().install( viewBehaviours );
 
 		// Select with a box.
@@ -123,6 +126,30 @@ public class MamutViewGrapherOpenGL extends MamutView< ViewGraph< Spot, Link, Sp
 				selectionModel,
 				model.getGraph().getLock() );
 
+		// Select with a freehand lasso.
+		LassoSelectionBehaviour.install(
+				viewBehaviours,
+				dataDisplayPanel,
+				model.getGraph(),
+				focusModel,
+				selectionModel,
+				model.getGraph().getLock() );
+
+		// Highlight the vertex under the mouse.
+		final HoverHighlighter hoverHighlighter = HoverHighlighter.install(
+				dataDisplayPanel,
+				model.getGraph(),
+				highlightModel,
+				model.getGraph().getLock() );
+		frame.addWindowListener( new WindowAdapter()
+		{
+			@Override
+			public void windowClosing( final WindowEvent e )
+			{
+				hoverHighlighter.dispose();
+			}
+		} );
+
 		// Zoom with a box.
 		DataDisplayZoomGL.install( viewBehaviours, dataDisplayPanel );
 
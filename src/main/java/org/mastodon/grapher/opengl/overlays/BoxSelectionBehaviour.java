@@ -1,12 +1,13 @@
 package org.mastodon.grapher.opengl.overlays;
 
-import java.util.Iterator;
+import java.awt.Color;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.lwjgl.opengl.GL33;
-import org.mastodon.collection.RefSet;
+import org.mastodon.RefPool;
 import org.mastodon.grapher.opengl.DataLayoutMaker;
 import org.mastodon.grapher.opengl.PointCloudPanel;
+import org.mastodon.grapher.opengl.util.InducedEdges;
+import org.mastodon.grapher.opengl.util.SelectionBatch;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
@@ -25,6 +26,12 @@ import org.scijava.ui.behaviour.util.Behaviours;
  * The selection happens in layout space, so it also selects vertices inside
  * dense ranges. A vertex is inside the bounding box if its layout coordinate is
  * inside the bounding box.
+ * <p>
+ * The vertices and the edges between them are collected as pool indices, and
+ * applied to the selection model in one batch.
+ * <p>
+ * A click without a drag selects and focuses the nearest vertex, or toggles its
+ * selection when adding to the selection.
  */
 public class BoxSelectionBehaviour extends AbstractNamedBehaviour implements DragBehaviour, GLOverlayRenderer
 {
@@ -37,6 +44,11 @@ public class BoxSelectionBehaviour extends AbstractNamedBehaviour implements Dra
 
 	private static final String[] BOX_ADD_SELECT_KEYS = new String[] { "shift button1" };
 
+	/**
+	 * Maximal distance between a click and the vertex it selects, in pixels.
+	 */
+	private static final double CLICK_RADIUS = HoverHighlighter.DEFAULT_RADIUS;
+
 	/**
 	 * Coordinates where mouse dragging started in layout coords.
 	 */
@@ -59,6 +71,8 @@ public class BoxSelectionBehaviour extends AbstractNamedBehaviour implements Dra
 
 	private final PointCloudPanel pointCloudPanel;
 
+	private final ShapeRenderer shapes = new ShapeRenderer();
+
 	private final ReentrantReadWriteLock lock;
 
 	private final ModelGraph graph;
@@ -135,54 +149,137 @@ public class BoxSelectionBehaviour extends AbstractNamedBehaviour implements Dra
 		}
 		else
 		{
-			selection.clearSelection();
+			lock.readLock().lock();
+			try
+			{
+				selectAt( x, y, addToSelection );
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
 		}
 		pointCloudPanel.overlayChanged();
 	}
 
+	@Override
+	public void init()
+	{
+		shapes.init();
+	}
+
 	@Override
 	public void paint()
 	{
 		if ( !dragging )
 			return;
 
-		GL33.glColor3f( 1.0f, 0.0f, 0.0f ); // Red color
-		GL33.glBegin( GL33.GL_LINE_LOOP );
-		GL33.glVertex2f( oX, oY );
-		GL33.glVertex2f( eX, oY );
-		GL33.glVertex2f( eX, eY );
-		GL33.glVertex2f( oX, eY );
-		GL33.glEnd();
+		shapes.drawRectangle( Color.RED, oX, oY, eX, eY );
 	}
 
 	private void selectWithin( final float x1, final float y1, final float x2, final float y2, final boolean addToSelection )
 	{
-		selection.pauseListeners();
-
-		if ( !addToSelection )
-			selection.clearSelection();
+		final DataLayoutMaker layout = pointCloudPanel.getDataLayout();
+		final int[] vertexIds = layout.getSpotIdsWithin( x1, y1, x2, y2 );
+		select( graph, focus, selection, vertexIds, addToSelection );
+	}
 
+	/**
+	 * Selects the vertex nearest to the specified screen position, within
+	 * {@link #CLICK_RADIUS} pixels, and focuses it. If
+	 * <code>addToSelection</code> is <code>true</code>, the selection of this
+	 * vertex is toggled instead. A click far from any vertex clears the
+	 * selection.
+	 */
+	private void selectAt( final int x, final int y, final boolean addToSelection )
+	{
+		screenTransformState.get( t );
 		final DataLayoutMaker layout = pointCloudPanel.getDataLayout();
-		final RefSet< Spot > vs = layout.getSpotWithin( x1, y1, x2, y2 );
-		final Spot vertexRef = graph.vertexRef();
-		for ( final Spot v : vs )
+		final int id = layout.getNearestSpotId(
+				t.screenToLayoutX( x ),
+				t.screenToLayoutY( y ),
+				t.getScaleX(),
+				t.getScaleY(),
+				CLICK_RADIUS );
+		selectClicked( graph, focus, selection, id, addToSelection );
+	}
+
+	/**
+	 * Selects and focuses the clicked vertex, or toggles its selection if
+	 * <code>addToSelection</code> is <code>true</code>. A click far from any
+	 * vertex clears the selection, unless <code>addToSelection</code> is
+	 * <code>true</code>. The caller must hold the read lock of the graph.
+	 *
+	 * @param id
+	 *            the pool index of the clicked vertex, -1 if no vertex was
+	 *            clicked.
+	 */
+	static void selectClicked(
+			final ModelGraph graph,
+			final FocusModel< Spot > focus,
+			final SelectionModel< Spot, Link > selection,
+			final int id,
+			final boolean addToSelection )
+	{
+		if ( id < 0 )
 		{
-			selection.setSelected( v, true );
-			for ( final Link e : v.outgoingEdges() )
+			if ( !addToSelection )
+				selection.clearSelection();
+			return;
+		}
+
+		final Spot ref = graph.vertexRef();
+		try
+		{
+			final Spot vertex = graph.vertices().getRefPool().getObject( id, ref );
+			selection.pauseListeners();
+			try
+			{
+				if ( addToSelection )
+				{
+					selection.setSelected( vertex, !selection.isSelected( vertex ) );
+				}
+				else
+				{
+					selection.clearSelection();
+					selection.setSelected( vertex, true );
+				}
+			}
+			finally
 			{
-				final Spot t = e.getTarget( vertexRef );
-				if ( vs.contains( t ) )
-					selection.setSelected( e, true );
+				selection.resumeListeners();
 			}
+			focus.focusVertex( vertex );
 		}
+		finally
+		{
+			graph.releaseRef( ref );
+		}
+	}
 
-		final Iterator< Spot > it = vs.iterator();
-		if ( it.hasNext() )
-			focus.focusVertex( it.next() );
-
-		graph.releaseRef( vertexRef );
+	/**
+	 * Selects the specified vertices and the edges between them in one batch,
+	 * and focuses the first vertex. The caller must hold the read lock of the
+	 * graph.
+	 */
+	static void select(
+			final ModelGraph graph,
+			final FocusModel< Spot > focus,
+			final SelectionModel< Spot, Link > selection,
+			final int[] vertexIds,
+			final boolean addToSelection )
+	{
+		final RefPool< Spot > vertexPool = graph.vertices().getRefPool();
+		final RefPool< Link > edgePool = graph.edges().getRefPool();
+		final int[] edgeIds = InducedEdges.collect( graph, vertexPool, edgePool, vertexIds, InducedEdges.toBitSet( vertexIds ), true );
+		SelectionBatch.select( graph, vertexPool, edgePool, selection, vertexIds, edgeIds, addToSelection );
 
-		selection.resumeListeners();
+		if ( vertexIds.length > 0 )
+		{
+			final Spot ref = graph.vertexRef();
+			focus.focusVertex( vertexPool.getObject( vertexIds[ 0 ], ref ) );
+			graph.releaseRef( ref );
+		}
 	}
 
 	public static void install(
@@ -32,7 +32,6 @@ import static org.mastodon.views.grapher.display.DataDisplayZoom.TOGGLE_ZOOM;
 import static org.mastodon.views.grapher.display.DataDisplayZoom.TOGGLE_ZOOM_KEYS;
 import static org.mastodon.views.grapher.display.DataDisplayZoom.ZOOM_GRAPH_OVERLAY_COLOR;
 
-import org.lwjgl.opengl.GL33;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Vertex;
 import org.mastodon.grapher.opengl.InertialScreenTransformEventHandlerOpenGL;
@@ -178,17 +177,19 @@ public class DataDisplayZoomGL< V extends Vertex< E > & HasTimepoint & HasLabel,
 
 		private final ScreenTransform t;
 
-		private final float a, r, g, b;
+		private final ShapeRenderer shapes;
 
 		public ZoomOverlay()
 		{
 			paint = false;
 			t = new ScreenTransform();
-			// Color.
-			r = ZOOM_GRAPH_OVERLAY_COLOR.getRed() / 255f;
-			g = ZOOM_GRAPH_OVERLAY_COLOR.getGreen() / 255f;
-			b = ZOOM_GRAPH_OVERLAY_COLOR.getBlue() / 255f;
-			a = ZOOM_GRAPH_OVERLAY_COLOR.getAlpha() / 255f;
+			shapes = new ShapeRenderer();
+		}
+
+		@Override
+		public void init()
+		{
+			shapes.init();
 		}
 
 		@Override
@@ -208,14 +209,7 @@ public class DataDisplayZoomGL< V extends Vertex< E > & HasTimepoint & HasLabel,
 			final float sex = ( float ) t.screenToLayoutX( ex );
 			final float sey = ( float ) t.screenToLayoutY( ey );
 
-			GL33.glColor4f( r, g, b, a );
-
-			GL33.glBegin( GL33.GL_LINE_LOOP );
-			GL33.glVertex2f( sox, soy );
-			GL33.glVertex2f( sex, soy );
-			GL33.glVertex2f( sex, sey );
-			GL33.glVertex2f( sox, sey );
-			GL33.glEnd();
+			shapes.drawRectangle( ZOOM_GRAPH_OVERLAY_COLOR, sox, soy, sex, sey );
 		}
 	}
 }
@@ -1,61 +1,159 @@
 package org.mastodon.grapher.opengl.overlays;
 
-import static org.lwjgl.opengl.GL11.GL_COLOR_ARRAY;
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_LINES;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
-import static org.lwjgl.opengl.GL11.GL_VERTEX_ARRAY;
-import static org.lwjgl.opengl.GL11.glColorPointer;
-import static org.lwjgl.opengl.GL11.glDisableClientState;
+import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL11.glDrawElements;
-import static org.lwjgl.opengl.GL11.glEnableClientState;
-import static org.lwjgl.opengl.GL11.glVertexPointer;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE1;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
 import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
 import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 import static org.lwjgl.opengl.GL15.glBindBuffer;
 import static org.lwjgl.opengl.GL15.glBufferData;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
-import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
-
-import org.mastodon.grapher.opengl.DataLayoutMaker;
+import static org.lwjgl.opengl.GL30.GL_R8UI;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL31.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL31.glTexBuffer;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.FILTER_ATTRIBUTE;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.FILTER_NUM_COLUMNS;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.POSITION_ATTRIBUTE;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.VERTEX_NUM_DIMENSIONS;
+
+import java.util.BitSet;
+
+import org.mastodon.grapher.opengl.DataLayoutListener;
 import org.mastodon.grapher.opengl.DataLayoutMaker.DataColor;
 import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
 import org.mastodon.grapher.opengl.LayoutChangeListener;
+import org.mastodon.grapher.opengl.util.SpatialTiles;
+import org.mastodon.grapher.opengl.util.TimepointOffsets;
+import org.mastodon.views.grapher.display.style.DataDisplayStyle;
 import org.scijava.listeners.Listeners;
 
-public class DataEdgesOverlay implements GLOverlayRenderer
+/**
+ * Draws the edges between the data points.
+ * <p>
+ * Edges are drawn as indexed lines from the vertex position buffer of the
+ * {@link DataPointsOverlay}, so that only the source and target vertex slots
+ * of each edge are stored. Edge colors and selection states are stored once
+ * per edge in buffer textures, looked up in the fragment shader with the
+ * index of the line being drawn. This requires OpenGL 3.1.
+ * <p>
+ * Edges are grouped in tiles by the layout, and only the tiles intersecting
+ * the view are drawn. Edges with a vertex hidden by the filter ranges of the
+ * points overlay are hidden too, using its filter value buffer. If the axes
+ * are explored features, the edges are drawn from the explored columns of the
+ * points overlay as well.
+ */
+public class DataEdgesOverlay implements GLOverlayRenderer, DataLayoutListener
 {
 
-	public static final int VERTEX_SIZE = 2; // X, Y
-
 	public static final int COLOR_SIZE = 4; // R, G, B, alpha
 
+	private static final int COLOR_TEXTURE_UNIT = 0;
+
+	private static final int SELECTION_TEXTURE_UNIT = 1;
+
+	private ShaderProgram program;
+
+	private int vao;
+
 	private int iboEdgeIndexHandle;
 
-	private int vboEdgePositionHandle;
+	private int tboEdgeColorHandle;
 
-	private int vboEdgeColorHandle;
+	private int tboEdgeSelectionHandle;
+
+	private int edgeColorTexture;
+
+	private int edgeSelectionTexture;
 
 	private int[] edgeIndexData = new int[] {};
 
-	private float[] edgePosData = new float[] {};
+	private int[] edgesColorData = new int[] {};
+
+	private byte[] edgesSelectionData = new byte[] {};
+
+	private int nEdges;
+
+	/**
+	 * Tiles of edge slots, <code>null</code> to draw all the edges.
+	 */
+	private SpatialTiles tiles;
 
-	private float[] edgesColorData = new float[] {};
+	/**
+	 * Edge slots per timepoint of their later vertex, <code>null</code> if
+	 * the edges are not sorted by timepoint.
+	 */
+	private TimepointOffsets timepoints;
 
-	private boolean updateXY;
+	/**
+	 * First and last timepoints to draw, if the edges are sorted by
+	 * timepoint.
+	 */
+	private int timeFrom = Integer.MIN_VALUE;
+
+	private int timeTo = Integer.MAX_VALUE;
+
+	/**
+	 * Slot ranges of the visible tiles, reused across frames.
+	 */
+	private int[] visibleRanges = new int[ 2 ];
+
+	private double viewMinX;
+
+	private double viewMaxX;
+
+	private double viewMinY;
+
+	private double viewMaxY;
+
+	private boolean updateIndices;
 
 	private boolean updateColor;
 
-	private final DataLayoutMaker layout;
+	private boolean updateSelection;
+
+	/**
+	 * Range of edge slots to upload, when the whole buffers do not need to be
+	 * uploaded.
+	 */
+	private int dirtyFrom = Integer.MAX_VALUE;
+
+	private int dirtyTo = 0;
+
+	/**
+	 * Slots whose selection state only changed.
+	 */
+	private final BitSet dirtySelectionSlots = new BitSet();
+
+	/**
+	 * Filter ranges of the frame being painted, reused across frames. Only
+	 * accessed by the thread painting.
+	 */
+	private final float[] paintFilterMin = new float[ FILTER_NUM_COLUMNS ];
+
+	private final float[] paintFilterMax = new float[ FILTER_NUM_COLUMNS ];
+
+	private final DataPointsOverlay pointsOverlay;
+
+	private final DataDisplayStyle style;
 
 	private final Listeners.List< LayoutChangeListener > layoutChangeListeners;
 
-	public DataEdgesOverlay( final DataLayoutMaker layout )
+	public DataEdgesOverlay( final DataPointsOverlay pointsOverlay, final DataDisplayStyle style )
 	{
-		this.layout = layout;
+		this.pointsOverlay = pointsOverlay;
+		this.style = style;
 		this.layoutChangeListeners = new Listeners.SynchronizedList<>();
 	}
 
@@ -64,106 +162,313 @@ public class DataEdgesOverlay implements GLOverlayRenderer
 		return layoutChangeListeners;
 	}
 
-	private void putCoords( final int[] indices, final float[] edgePosData )
+	private synchronized void putIndices( final int[] indices, final int nEdges )
 	{
 		this.edgeIndexData = indices;
-		this.edgePosData = edgePosData;
-		this.updateXY = true;
+		this.nEdges = nEdges;
+		this.updateIndices = true;
 	}
 
-	private void putColors( final float[] edgesColor )
+	private synchronized void putColors( final DataColor c )
 	{
-		this.edgesColorData = edgesColor;
+		this.edgesColorData = c.edgesColor;
+		this.edgesSelectionData = c.edgesSelection;
 		this.updateColor = true;
+		this.updateSelection = true;
+	}
+
+	/**
+	 * Sets the timepoints to draw. Only applies if the edges are sorted by
+	 * timepoint. The edges whose later vertex is in the first timepoint are
+	 * not drawn, so that no edge leaves the window.
+	 *
+	 * @param from
+	 *            the first timepoint to draw.
+	 * @param to
+	 *            the last timepoint to draw, inclusive.
+	 */
+	public synchronized void setTimeWindow( final int from, final int to )
+	{
+		this.timeFrom = from;
+		this.timeTo = to;
+	}
+
+	@Override
+	public void setView( final double minX, final double maxX, final double minY, final double maxY )
+	{
+		this.viewMinX = minX;
+		this.viewMaxX = maxX;
+		this.viewMinY = minY;
+		this.viewMaxY = maxY;
 	}
 
 	@Override
 	public void init()
 	{
 		// New handles.
-		this.vboEdgePositionHandle = glGenBuffers();
 		this.iboEdgeIndexHandle = glGenBuffers();
-		this.vboEdgeColorHandle = glGenBuffers();
+		this.tboEdgeColorHandle = glGenBuffers();
+		this.tboEdgeSelectionHandle = glGenBuffers();
+		this.edgeColorTexture = createBufferTexture( tboEdgeColorHandle, GL_RGBA8 );
+		this.edgeSelectionTexture = createBufferTexture( tboEdgeSelectionHandle, GL_R8UI );
+		this.program = ShaderProgram.fromResources( DataEdgesOverlay.class, "edges.vert", "edges.frag", DataPointsOverlay.ATTRIBUTES );
+
+		// The vertex array records the index buffer. The position and filter
+		// buffers are owned by the points overlay, and attached when drawing.
+		// The attributes are bound at the locations of the points program.
+		this.vao = glGenVertexArrays();
+		glBindVertexArray( vao );
+		glBindBuffer( GL_ELEMENT_ARRAY_BUFFER, iboEdgeIndexHandle );
+		glEnableVertexAttribArray( POSITION_ATTRIBUTE );
+		glEnableVertexAttribArray( FILTER_ATTRIBUTE );
+		glBindVertexArray( 0 );
+	}
+
+	private static int createBufferTexture( final int buffer, final int format )
+	{
+		// Binding the buffer creates it, so that it can be attached.
+		glBindBuffer( GL_TEXTURE_BUFFER, buffer );
+		glBindBuffer( GL_TEXTURE_BUFFER, 0 );
+		final int texture = glGenTextures();
+		glBindTexture( GL_TEXTURE_BUFFER, texture );
+		glTexBuffer( GL_TEXTURE_BUFFER, format, buffer );
+		glBindTexture( GL_TEXTURE_BUFFER, 0 );
+		return texture;
 	}
 
 	@Override
 	public void paint()
 	{
-		if ( updateXY )
+		final int nRanges;
+		synchronized ( this )
 		{
-			updateXY = false;
-
-			// Update edge indices.
-			glBindBuffer( GL_ELEMENT_ARRAY_BUFFER, iboEdgeIndexHandle );
-			glBufferData( GL_ELEMENT_ARRAY_BUFFER, edgeIndexData, GL_STATIC_DRAW );
-			glBindBuffer( GL_ELEMENT_ARRAY_BUFFER, 0 );
-
-			// Update edge position.
-			glBindBuffer( GL_ARRAY_BUFFER, vboEdgePositionHandle );
-			glBufferData( GL_ARRAY_BUFFER, edgePosData, GL_STATIC_DRAW );
-			glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			nRanges = snapshotFrame();
+			if ( updateIndices )
+			{
+				updateIndices = false;
+
+				// Update edge indices. The index buffer binding belongs to
+				// the vertex array.
+				glBindVertexArray( vao );
+				glBufferData( GL_ELEMENT_ARRAY_BUFFER, edgeIndexData, GL_DYNAMIC_DRAW );
+				glBindVertexArray( 0 );
+			}
+			else if ( dirtyFrom < dirtyTo )
+			{
+				// Patch edge indices.
+				glBindVertexArray( vao );
+				GLBuffers.subData( GL_ELEMENT_ARRAY_BUFFER, edgeIndexData, 2 * dirtyFrom, 2 * dirtyTo );
+				glBindVertexArray( 0 );
+			}
+			if ( updateColor )
+			{
+				updateColor = false;
+
+				// Update edge colors.
+				glBindBuffer( GL_TEXTURE_BUFFER, tboEdgeColorHandle );
+				glBufferData( GL_TEXTURE_BUFFER, edgesColorData, GL_DYNAMIC_DRAW );
+				glBindBuffer( GL_TEXTURE_BUFFER, 0 );
+			}
+			else if ( dirtyFrom < dirtyTo )
+			{
+				// Patch edge colors.
+				glBindBuffer( GL_TEXTURE_BUFFER, tboEdgeColorHandle );
+				GLBuffers.subData( GL_TEXTURE_BUFFER, edgesColorData, dirtyFrom, dirtyTo );
+				glBindBuffer( GL_TEXTURE_BUFFER, 0 );
+			}
+			if ( updateSelection )
+			{
+				updateSelection = false;
+
+				// Update edge selection state.
+				glBindBuffer( GL_TEXTURE_BUFFER, tboEdgeSelectionHandle );
+				GLBuffers.data( GL_TEXTURE_BUFFER, edgesSelectionData, GL_DYNAMIC_DRAW );
+				glBindBuffer( GL_TEXTURE_BUFFER, 0 );
+			}
+			else if ( mergeDirtySelection() )
+			{
+				// Patch edge selection state.
+				glBindBuffer( GL_TEXTURE_BUFFER, tboEdgeSelectionHandle );
+				GLBuffers.subData( GL_TEXTURE_BUFFER, edgesSelectionData, dirtySelectionSlots, 1 );
+				glBindBuffer( GL_TEXTURE_BUFFER, 0 );
+			}
+			clearDirtySlots();
 		}
-		if ( updateColor )
-		{
-			updateColor = false;
+		if ( nRanges == 0 )
+			return;
 
-			// Update edge colors.
-			glBindBuffer( GL_ARRAY_BUFFER, vboEdgeColorHandle );
-			glBufferData( GL_ARRAY_BUFFER, edgesColorData, GL_STATIC_DRAW );
-			glBindBuffer( GL_ARRAY_BUFFER, 0 );
-		}
+		// Make sure the edges are drawn with the current vertex positions.
+		final int vboVertexPositionHandle = pointsOverlay.flushPositions();
+		snapshotFilterRanges();
 
 		/*
 		 * Enable.
 		 */
 
-		glEnableClientState( GL_VERTEX_ARRAY );
-		glEnableClientState( GL_COLOR_ARRAY );
+		program.use();
+		program.setColor( "selectedColor", style.getSelectedEdgeColor() );
+		glActiveTexture( GL_TEXTURE0 + COLOR_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_BUFFER, edgeColorTexture );
+		program.setInt( "edgeColors", COLOR_TEXTURE_UNIT );
+		glActiveTexture( GL_TEXTURE0 + SELECTION_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_BUFFER, edgeSelectionTexture );
+		program.setInt( "edgeSelection", SELECTION_TEXTURE_UNIT );
+		program.setVec4( "filterMin", paintFilterMin );
+		program.setVec4( "filterMax", paintFilterMax );
+		glBindVertexArray( vao );
 
 		/*
 		 * Draw edges.
 		 */
 
-		// Enable and set the position attribute.
-		glEnableVertexAttribArray( 1 );
-		glVertexAttribPointer( 1, VERTEX_SIZE, GL_FLOAT, false, 0, 0 );
-
-		// Edge positions.
-		glBindBuffer( GL_ARRAY_BUFFER, vboEdgePositionHandle );
-		glVertexPointer( VERTEX_SIZE, GL_FLOAT, 0, 0 );
+		// Vertex positions, shared with the points overlay.
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexPositionHandle );
+		glVertexAttribPointer( POSITION_ATTRIBUTE, VERTEX_NUM_DIMENSIONS, GL_FLOAT, false, 0, 0 );
+		glBindBuffer( GL_ARRAY_BUFFER, pointsOverlay.getFilterBufferHandle() );
+		glVertexAttribPointer( FILTER_ATTRIBUTE, FILTER_NUM_COLUMNS, GL_FLOAT, false, 0, 0 );
 		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		program.setInt( "explored", pointsOverlay.bindExploredAxes() ? 1 : 0 );
 
-		// Edge colors.
-		glBindBuffer( GL_ARRAY_BUFFER, vboEdgeColorHandle );
-		glColorPointer( COLOR_SIZE, GL_FLOAT, 0, 0 );
-		glBindBuffer( GL_ARRAY_BUFFER, 0 );
-
-		// Draw the line segments using the indices.
-		glBindBuffer( GL_ELEMENT_ARRAY_BUFFER, iboEdgeIndexHandle );
-		glDrawElements( GL_LINES, edgeIndexData.length, GL_UNSIGNED_INT, 0 );
-		glBindBuffer( GL_ELEMENT_ARRAY_BUFFER, 0 );
-
-		// Disable the position attribute.
-		glDisableVertexAttribArray( 1 );
+		// Draw the line segments of the visible tiles using the source and
+		// target vertex slots.
+		for ( int r = 0; r < nRanges; r++ )
+		{
+			final int from = visibleRanges[ 2 * r ];
+			final int to = visibleRanges[ 2 * r + 1 ];
+			program.setInt( "firstEdge", from );
+			glDrawElements( GL_LINES, 2 * ( to - from ), GL_UNSIGNED_INT, 2L * from * Integer.BYTES );
+		}
 
 		/*
 		 * Disable.
 		 */
 
-		glDisableClientState( GL_COLOR_ARRAY );
-		glDisableClientState( GL_VERTEX_ARRAY );
+		glBindVertexArray( 0 );
+		glBindTexture( GL_TEXTURE_BUFFER, 0 );
+		glActiveTexture( GL_TEXTURE0 + COLOR_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_BUFFER, 0 );
+		ShaderProgram.unuse();
 	}
 
-	public void draw( final DataLayout l )
+	/**
+	 * Takes the slot ranges of the visible tiles within the time window, that
+	 * the next frame is drawn with. Called at each frame, so it must not
+	 * allocate once the range array is large enough.
+	 *
+	 * @return the number of visible ranges, 0 if there is no edge to draw.
+	 */
+	synchronized int snapshotFrame()
 	{
-		putCoords( l.edgeIndices, l.edgePositions );
-		final DataColor c = layout.color();
-		putColors( c.edgesColor );
+		// Slots of the time window.
+		final int from;
+		final int to;
+		if ( timepoints == null )
+		{
+			from = 0;
+			to = nEdges;
+		}
+		else
+		{
+			from = Math.min( nEdges, timepoints.from( timeFrom + 1 ) );
+			to = Math.min( nEdges, timepoints.to( timeTo ) );
+		}
+		if ( to <= from )
+			return 0;
+		if ( tiles == null )
+		{
+			visibleRanges[ 0 ] = from;
+			visibleRanges[ 1 ] = to;
+			return 1;
+		}
+		final int size = 2 * ( tiles.numTiles() + 1 );
+		if ( visibleRanges.length < size )
+			visibleRanges = new int[ size ];
+		return tiles.visibleRanges( viewMinX, viewMaxX, viewMinY, viewMaxY, from, to, visibleRanges );
 	}
 
-	public void updateColors()
+	/**
+	 * Takes the filter ranges of the points overlay, that the next frame is
+	 * drawn with. Called at each frame, so it must not allocate.
+	 */
+	void snapshotFilterRanges()
 	{
-		final DataColor c = layout.color();
-		putColors( c.edgesColor );
+		pointsOverlay.getFilterRanges( paintFilterMin, paintFilterMax );
+	}
+
+	/**
+	 * Adds the patched slots to the slots whose selection state must be
+	 * uploaded.
+	 *
+	 * @return <code>true</code> if there are slots to upload.
+	 */
+	synchronized boolean mergeDirtySelection()
+	{
+		if ( dirtyFrom < dirtyTo )
+			dirtySelectionSlots.set( dirtyFrom, dirtyTo );
+		return !dirtySelectionSlots.isEmpty();
+	}
+
+	/**
+	 * Forgets the patched slots, once they are uploaded.
+	 */
+	synchronized void clearDirtySlots()
+	{
+		dirtyFrom = Integer.MAX_VALUE;
+		dirtyTo = 0;
+		dirtySelectionSlots.clear();
+	}
+
+	public synchronized void draw( final DataLayout l, final DataColor c )
+	{
+		putIndices( l.edgeIndices, l.nEdges );
+		tiles = l.edgeTiles;
+		timepoints = l.edgeTimepoints;
+		putColors( c );
+	}
+
+	public void updateColors( final DataColor c )
+	{
+		putColors( c );
+	}
+
+	@Override
+	public synchronized void dataSelectionUpdated( final DataColor c, final int[] vertexSlots, final int[] edgeSlots )
+	{
+		if ( c.edgesSelection != edgesSelectionData )
+		{
+			edgesSelectionData = c.edgesSelection;
+			updateSelection = true;
+			return;
+		}
+		for ( final int slot : edgeSlots )
+			dirtySelectionSlots.set( slot );
+	}
+
+	@Override
+	public synchronized void dataLayoutUpdated( final DataLayout l, final DataColor c, final int vertexFrom, final int vertexTo, final int edgeFrom, final int edgeTo )
+	{
+		nEdges = l.nEdges;
+		tiles = l.edgeTiles;
+		timepoints = l.edgeTimepoints;
+		if ( l.edgeIndices != edgeIndexData )
+		{
+			edgeIndexData = l.edgeIndices;
+			updateIndices = true;
+		}
+		if ( c.edgesColor != edgesColorData )
+		{
+			edgesColorData = c.edgesColor;
+			updateColor = true;
+		}
+		if ( c.edgesSelection != edgesSelectionData )
+		{
+			edgesSelectionData = c.edgesSelection;
+			updateSelection = true;
+		}
+		if ( edgeFrom < edgeTo )
+		{
+			dirtyFrom = Math.min( dirtyFrom, edgeFrom );
+			dirtyTo = Math.max( dirtyTo, edgeTo );
+		}
 	}
 }
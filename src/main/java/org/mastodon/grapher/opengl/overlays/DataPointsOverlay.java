@@ -1,29 +1,35 @@
 package org.mastodon.grapher.opengl.overlays;
 
-import static org.lwjgl.opengl.GL11.GL_COLOR_ARRAY;
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_POINTS;
-import static org.lwjgl.opengl.GL11.GL_VERTEX_ARRAY;
-import static org.lwjgl.opengl.GL11.glColorPointer;
-import static org.lwjgl.opengl.GL11.glDisableClientState;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL11.glDrawArrays;
-import static org.lwjgl.opengl.GL11.glEnableClientState;
 import static org.lwjgl.opengl.GL11.glPointSize;
-import static org.lwjgl.opengl.GL11.glVertexPointer;
 import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
 import static org.lwjgl.opengl.GL15.glBindBuffer;
 import static org.lwjgl.opengl.GL15.glBufferData;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
 
-import org.mastodon.grapher.opengl.DataLayoutMaker;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.mastodon.grapher.opengl.DataLayoutListener;
 import org.mastodon.grapher.opengl.DataLayoutMaker.DataColor;
 import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
 import org.mastodon.grapher.opengl.InertialScreenTransformEventHandlerOpenGL;
 import org.mastodon.grapher.opengl.LayoutChangeListener;
+import org.mastodon.grapher.opengl.util.SpatialTiles;
+import org.mastodon.grapher.opengl.util.TimepointOffsets;
+import org.mastodon.views.grapher.display.style.DataDisplayStyle;
 import org.scijava.listeners.Listeners;
 
-public class DataPointsOverlay implements GLOverlayRenderer
+public class DataPointsOverlay implements GLOverlayRenderer, DataLayoutListener
 {
 
 	public static final int VERTEX_NUM_DIMENSIONS = 2; // X, Y
@@ -32,29 +38,187 @@ public class DataPointsOverlay implements GLOverlayRenderer
 
 	public static final float DEFAULT_POINT_SIZE = 5.1f;
 
+	public static final int FILTER_NUM_COLUMNS = 4; // Drawn as a vec4.
+
+	public static final int EXPLORATION_MAX_COLUMNS = 8;
+
+	/*
+	 * Attribute locations of the data shader program.
+	 */
+
+	static final int POSITION_ATTRIBUTE = 0;
+
+	static final int COLOR_ATTRIBUTE = 1;
+
+	static final int SELECTED_ATTRIBUTE = 2;
+
+	static final int FILTER_ATTRIBUTE = 3;
+
+	static final int EXPLORED_X_ATTRIBUTE = 4;
+
+	static final int EXPLORED_Y_ATTRIBUTE = 5;
+
+	/**
+	 * Attribute names, in the order of their locations. Shared by the points
+	 * and edges programs, so that they can draw from the same buffers.
+	 */
+	static final String[] ATTRIBUTES = { "position", "color", "selected", "filterValues", "exploredX", "exploredY" };
+
+	/**
+	 * Creates the shader program used to draw data points and edges.
+	 */
+	static ShaderProgram createDataProgram()
+	{
+		return ShaderProgram.fromResources( DataPointsOverlay.class, "data.vert", "data.frag", ATTRIBUTES );
+	}
+
+	private ShaderProgram program;
+
+	private int vao;
+
 	private int vboVertexPositionHandle;
 
 	private int vboVertexColorHandle;
 
+	private int vboVertexSelectionHandle;
+
+	private int vboVertexFilterHandle;
+
+	private int vboVertexExploredHandle;
+
 	private float[] vertexPosData = new float[] {};
 
-	private float[] vertexColorData = new float[] {};
+	private int[] vertexColorData = new int[] {};
+
+	private byte[] vertexSelectionData = new byte[] {};
+
+	private float[] vertexFilterData = new float[] {};
+
+	private float[] vertexExploredData = new float[] {};
+
+	/**
+	 * Number of explored columns, and explored columns drawn on the X and Y
+	 * axes, -1 to draw the positions.
+	 */
+	private int nExplored;
+
+	private int xExplored = -1;
+
+	private int yExplored = -1;
+
+	/**
+	 * Ranges of the filter columns. The points with a value out of the range
+	 * of a column are not drawn. Unbounded ranges draw all the points, even
+	 * those without a value.
+	 */
+	private final float[] filterMin = new float[ FILTER_NUM_COLUMNS ];
+
+	private final float[] filterMax = new float[ FILTER_NUM_COLUMNS ];
+
+	/**
+	 * Filter ranges of the frame being painted, reused across frames. Only
+	 * accessed by the thread painting.
+	 */
+	private final float[] paintFilterMin = new float[ FILTER_NUM_COLUMNS ];
+
+	private final float[] paintFilterMax = new float[ FILTER_NUM_COLUMNS ];
+
+	/**
+	 * Slots of the time window of the frame being painted. Only accessed by
+	 * the thread painting.
+	 */
+	private int paintFrom;
+
+	private int paintTo;
+
+	private int nVertices;
+
+	/**
+	 * Tiles of vertex slots, <code>null</code> to draw all the vertices.
+	 */
+	private SpatialTiles tiles;
+
+	/**
+	 * Vertex slots per timepoint, <code>null</code> if the vertices are not
+	 * sorted by timepoint.
+	 */
+	private TimepointOffsets timepoints;
+
+	/**
+	 * First and last timepoints to draw, if the vertices are sorted by
+	 * timepoint.
+	 */
+	private int timeFrom = Integer.MIN_VALUE;
+
+	private int timeTo = Integer.MAX_VALUE;
+
+	/**
+	 * Slot ranges of the visible tiles, reused across frames.
+	 */
+	private int[] visibleRanges = new int[ 2 ];
+
+	private double viewMinX;
+
+	private double viewMaxX;
+
+	private double viewMinY;
+
+	private double viewMaxY;
+
+	private int canvasWidth = 1;
+
+	private int canvasHeight = 1;
 
 	private boolean updateXY;
 
+	/**
+	 * If <code>true</code>, the position buffer was not uploaded after an axis
+	 * swap, and must be uploaded before the positions are drawn again.
+	 */
+	private boolean stalePositionBuffer;
+
+	private boolean updateFilter;
+
+	private boolean updateExplored;
+
 	private boolean updateColor;
 
-	private final DataLayoutMaker layout;
+	private boolean updateSelection;
+
+	/**
+	 * Range of vertex slots to upload, when the whole buffers do not need to
+	 * be uploaded. Positions have their own range, because they are also
+	 * uploaded when the edges are drawn.
+	 */
+	private int dirtyFrom = Integer.MAX_VALUE;
+
+	private int dirtyTo = 0;
+
+	private int dirtyXYFrom = Integer.MAX_VALUE;
+
+	private int dirtyXYTo = 0;
+
+	/**
+	 * Slots whose selection state only changed.
+	 */
+	private final BitSet dirtySelectionSlots = new BitSet();
+
+	private final DataDisplayStyle style;
 
 	private final InertialScreenTransformEventHandlerOpenGL transformHandler;
 
+	private final LevelOfDetail levelOfDetail;
+
 	private final Listeners.List< LayoutChangeListener > layoutChangeListeners;
 
-	public DataPointsOverlay( final DataLayoutMaker layout, final InertialScreenTransformEventHandlerOpenGL transformHandler )
+	public DataPointsOverlay( final DataDisplayStyle style, final InertialScreenTransformEventHandlerOpenGL transformHandler, final LevelOfDetail levelOfDetail )
 	{
-		this.layout = layout;
+		this.style = style;
 		this.transformHandler = transformHandler;
+		this.levelOfDetail = levelOfDetail;
 		this.layoutChangeListeners = new Listeners.SynchronizedList<>();
+		Arrays.fill( filterMin, Float.NEGATIVE_INFINITY );
+		Arrays.fill( filterMax, Float.POSITIVE_INFINITY );
 	}
 
 	public Listeners.List< LayoutChangeListener > getLayoutChangeListeners()
@@ -62,16 +226,30 @@ public class DataPointsOverlay implements GLOverlayRenderer
 		return layoutChangeListeners;
 	}
 
-	private void putCoords( final float[] vertexPosData )
+	private synchronized void putCoords( final DataLayout l )
 	{
-		this.vertexPosData = vertexPosData;
+		this.vertexPosData = l.verticesPos;
+		this.vertexFilterData = l.verticesFilter;
+		this.vertexExploredData = l.verticesExplored;
+		this.nVertices = l.nVertices;
+		this.nExplored = l.nExplored;
+		this.xExplored = l.xExplored;
+		this.yExplored = l.yExplored;
 		this.updateXY = true;
+		this.stalePositionBuffer = false;
+		this.updateFilter = true;
+		this.updateExplored = true;
+		updateBounds();
+	}
+
+	private void updateBounds()
+	{
 		// Update min & max.
 		float minX = Float.POSITIVE_INFINITY;
 		float minY = Float.POSITIVE_INFINITY;
 		float maxX = Float.NEGATIVE_INFINITY;
 		float maxY = Float.NEGATIVE_INFINITY;
-		for ( int i = 0; i < vertexPosData.length; i++ )
+		for ( int i = 0; i < VERTEX_NUM_DIMENSIONS * nVertices; i++ )
 		{
 			final float x = vertexPosData[ i ];
 			minX = Math.min( minX, x );
@@ -86,13 +264,75 @@ public class DataPointsOverlay implements GLOverlayRenderer
 		final float layoutMinY = minY;
 		final float layoutMaxX = maxX;
 		final float layoutMaxY = maxY;
+		levelOfDetail.setData( nVertices, layoutMinX, layoutMaxX, layoutMinY, layoutMaxY );
 		layoutChangeListeners.list.forEach( l -> l.layoutChanged( layoutMinX, layoutMaxX, layoutMinY, layoutMaxY ) );
 	}
 
-	private void putColors( final float[] verticesColor )
+	private synchronized void putColors( final DataColor c )
 	{
-		this.vertexColorData = verticesColor;
+		this.vertexColorData = c.verticesColor;
+		this.vertexSelectionData = c.verticesSelection;
 		this.updateColor = true;
+		this.updateSelection = true;
+	}
+
+	/**
+	 * Sets the timepoints to draw. Only applies if the vertices are sorted by
+	 * timepoint, in which case the window is drawn as a single range of slots.
+	 *
+	 * @param from
+	 *            the first timepoint to draw.
+	 * @param to
+	 *            the last timepoint to draw, inclusive.
+	 */
+	public synchronized void setTimeWindow( final int from, final int to )
+	{
+		this.timeFrom = from;
+		this.timeTo = to;
+	}
+
+	/**
+	 * Sets the range of a filter column. The points with a value of this
+	 * column out of the range are not drawn, nor are their edges. The filter
+	 * is applied in the shaders, so changing the range does not upload
+	 * anything but the bounds.
+	 *
+	 * @param column
+	 *            the filter column, less than {@link #FILTER_NUM_COLUMNS}.
+	 * @param min
+	 *            the min value, {@link Float#NEGATIVE_INFINITY} for no bound.
+	 * @param max
+	 *            the max value, {@link Float#POSITIVE_INFINITY} for no bound.
+	 */
+	public synchronized void setFilterRange( final int column, final float min, final float max )
+	{
+		filterMin[ column ] = min;
+		filterMax[ column ] = max;
+	}
+
+	/**
+	 * Copies the ranges of the filter columns, for the edges overlay.
+	 */
+	synchronized void getFilterRanges( final float[] min, final float[] max )
+	{
+		System.arraycopy( filterMin, 0, min, 0, FILTER_NUM_COLUMNS );
+		System.arraycopy( filterMax, 0, max, 0, FILTER_NUM_COLUMNS );
+	}
+
+	@Override
+	public void setCanvasSize( final int width, final int height )
+	{
+		this.canvasWidth = Math.max( 1, width );
+		this.canvasHeight = Math.max( 1, height );
+	}
+
+	@Override
+	public void setView( final double minX, final double maxX, final double minY, final double maxY )
+	{
+		this.viewMinX = minX;
+		this.viewMaxX = maxX;
+		this.viewMinY = minY;
+		this.viewMaxY = maxY;
 	}
 
 	@Override
@@ -101,6 +341,37 @@ public class DataPointsOverlay implements GLOverlayRenderer
 		// New handles.
 		this.vboVertexPositionHandle = glGenBuffers();
 		this.vboVertexColorHandle = glGenBuffers();
+		this.vboVertexSelectionHandle = glGenBuffers();
+		this.vboVertexFilterHandle = glGenBuffers();
+		this.vboVertexExploredHandle = glGenBuffers();
+		this.program = createDataProgram();
+
+		// The vertex array records the attribute layout once.
+		this.vao = glGenVertexArrays();
+		glBindVertexArray( vao );
+
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexPositionHandle );
+		glEnableVertexAttribArray( POSITION_ATTRIBUTE );
+		glVertexAttribPointer( POSITION_ATTRIBUTE, VERTEX_NUM_DIMENSIONS, GL_FLOAT, false, 0, 0 );
+
+		// Packed RGBA bytes, normalized to [0, 1].
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexColorHandle );
+		glEnableVertexAttribArray( COLOR_ATTRIBUTE );
+		glVertexAttribPointer( COLOR_ATTRIBUTE, COLOR_NUM_CHANNELS, GL_UNSIGNED_BYTE, true, 0, 0 );
+
+		// 0 or 1, not normalized.
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexSelectionHandle );
+		glEnableVertexAttribArray( SELECTED_ATTRIBUTE );
+		glVertexAttribPointer( SELECTED_ATTRIBUTE, 1, GL_UNSIGNED_BYTE, false, 0, 0 );
+
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexFilterHandle );
+		glEnableVertexAttribArray( FILTER_ATTRIBUTE );
+		glVertexAttribPointer( FILTER_ATTRIBUTE, FILTER_NUM_COLUMNS, GL_FLOAT, false, 0, 0 );
+
+		// The explored columns are attached when drawing, as they depend on
+		// the axes.
+		glBindVertexArray( 0 );
+		glBindBuffer( GL_ARRAY_BUFFER, 0 );
 	}
 
 	@Override
@@ -108,68 +379,340 @@ public class DataPointsOverlay implements GLOverlayRenderer
 	{
 		glPointSize( DEFAULT_POINT_SIZE );
 
-		if ( updateXY )
+		final int nRanges;
+		synchronized ( this )
 		{
-			updateXY = false;
+			nRanges = snapshotFrame();
+			flushPositions();
+			if ( updateColor )
+			{
+				updateColor = false;
+
+				// Vertex colors.
+				glBindBuffer( GL_ARRAY_BUFFER, vboVertexColorHandle );
+				glBufferData( GL_ARRAY_BUFFER, vertexColorData, GL_DYNAMIC_DRAW );
+				glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			}
+			else if ( dirtyFrom < dirtyTo )
+			{
+				// Patch vertex colors.
+				glBindBuffer( GL_ARRAY_BUFFER, vboVertexColorHandle );
+				GLBuffers.subData( GL_ARRAY_BUFFER, vertexColorData, dirtyFrom, dirtyTo );
+				glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			}
+			if ( updateSelection )
+			{
+				updateSelection = false;
+
+				// Vertex selection state.
+				glBindBuffer( GL_ARRAY_BUFFER, vboVertexSelectionHandle );
+				GLBuffers.data( GL_ARRAY_BUFFER, vertexSelectionData, GL_DYNAMIC_DRAW );
+				glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			}
+			else if ( mergeDirtySelection() )
+			{
+				// Patch vertex selection state.
+				glBindBuffer( GL_ARRAY_BUFFER, vboVertexSelectionHandle );
+				GLBuffers.subData( GL_ARRAY_BUFFER, vertexSelectionData, dirtySelectionSlots, 1 );
+				glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			}
+			clearDirtySlots();
+		}
 
+		// Faded out when the density heatmap is drawn instead.
+		final float opacity = 1f - levelOfDetail.getDensityWeight();
+		if ( opacity <= 0f )
+			return;
+
+		/*
+		 * Draw vertices as points.
+		 */
+
+		program.use();
+		program.setColor( "selectedColor", style.getSelectedSimplifiedVertexFillColor() );
+		program.setFloat( "opacity", opacity );
+		program.setVec4( "filterMin", paintFilterMin );
+		program.setVec4( "filterMax", paintFilterMax );
+		glBindVertexArray( vao );
+		program.setInt( "explored", bindExploredAxes() ? 1 : 0 );
+		if ( nRanges < 0 )
+			glDrawArrays( GL_POINTS, paintFrom, Math.max( 0, paintTo - paintFrom ) );
+		else
+			for ( int r = 0; r < nRanges; r++ )
+				glDrawArrays( GL_POINTS, visibleRanges[ 2 * r ], visibleRanges[ 2 * r + 1 ] - visibleRanges[ 2 * r ] );
+		glBindVertexArray( 0 );
+		ShaderProgram.unuse();
+	}
+
+	/**
+	 * Takes the state the next frame is drawn with: the filter ranges, the
+	 * slots of the time window, and the slot ranges of the visible tiles.
+	 * Called at each frame, so it must not allocate once the range array is
+	 * large enough.
+	 *
+	 * @return the number of visible ranges, or -1 if all the slots of the
+	 *         time window must be drawn.
+	 */
+	synchronized int snapshotFrame()
+	{
+		getFilterRanges( paintFilterMin, paintFilterMax );
+		paintFrom = ( timepoints == null ) ? 0 : Math.min( nVertices, timepoints.from( timeFrom ) );
+		paintTo = ( timepoints == null ) ? nVertices : Math.min( nVertices, timepoints.to( timeTo ) );
+		return updateVisibleRanges( paintFrom, paintTo );
+	}
+
+	/**
+	 * Adds the patched slots to the slots whose selection state must be
+	 * uploaded.
+	 *
+	 * @return <code>true</code> if there are slots to upload.
+	 */
+	synchronized boolean mergeDirtySelection()
+	{
+		if ( dirtyFrom < dirtyTo )
+			dirtySelectionSlots.set( dirtyFrom, dirtyTo );
+		return !dirtySelectionSlots.isEmpty();
+	}
+
+	/**
+	 * Forgets the patched slots, once they are uploaded.
+	 */
+	synchronized void clearDirtySlots()
+	{
+		dirtyFrom = Integer.MAX_VALUE;
+		dirtyTo = 0;
+		dirtySelectionSlots.clear();
+	}
+
+	/**
+	 * Computes the slot ranges of the tiles visible in the view, within the
+	 * specified slots, with a margin of one point size so that points on the
+	 * border are not clipped.
+	 *
+	 * @return the number of ranges, or -1 if all the specified slots must be
+	 *         drawn.
+	 */
+	private int updateVisibleRanges( final int from, final int to )
+	{
+		if ( tiles == null )
+			return -1;
+		final int size = 2 * ( tiles.numTiles() + 1 );
+		if ( visibleRanges.length < size )
+			visibleRanges = new int[ size ];
+		final double mx = DEFAULT_POINT_SIZE * ( viewMaxX - viewMinX ) / canvasWidth;
+		final double my = DEFAULT_POINT_SIZE * ( viewMaxY - viewMinY ) / canvasHeight;
+		return tiles.visibleRanges( viewMinX - mx, viewMaxX + mx, viewMinY - my, viewMaxY + my, from, to, visibleRanges );
+	}
+
+	/**
+	 * Uploads the pending changes of the vertex positions and filter values,
+	 * and returns the handle of the position buffer. The edges overlay draws
+	 * from this buffer, indexing it with vertex slots. Must be called with the
+	 * OpenGL context current.
+	 *
+	 * @return the handle of the vertex position buffer.
+	 */
+	synchronized int flushPositions()
+	{
+		if ( takePositionUpload() )
+		{
 			// Update vertex XY.
 			glBindBuffer( GL_ARRAY_BUFFER, vboVertexPositionHandle );
-			glBufferData( GL_ARRAY_BUFFER, vertexPosData, GL_STATIC_DRAW );
-			glVertexPointer( VERTEX_NUM_DIMENSIONS, GL_FLOAT, 0, 0 );
+			glBufferData( GL_ARRAY_BUFFER, vertexPosData, GL_DYNAMIC_DRAW );
 			glBindBuffer( GL_ARRAY_BUFFER, 0 );
 		}
-		if ( updateColor )
+		else if ( dirtyXYFrom < dirtyXYTo )
 		{
-			updateColor = false;
-
-			// Vertex colors.
-			glBindBuffer( GL_ARRAY_BUFFER, vboVertexColorHandle );
-			glBufferData( GL_ARRAY_BUFFER, vertexColorData, GL_STATIC_DRAW );
+			// Patch vertex XY.
+			glBindBuffer( GL_ARRAY_BUFFER, vboVertexPositionHandle );
+			GLBuffers.subData( GL_ARRAY_BUFFER, vertexPosData, VERTEX_NUM_DIMENSIONS * dirtyXYFrom, VERTEX_NUM_DIMENSIONS * dirtyXYTo );
 			glBindBuffer( GL_ARRAY_BUFFER, 0 );
 		}
+		if ( updateFilter )
+		{
+			updateFilter = false;
 
-		/*
-		 * Enable.
-		 */
+			// Update vertex filter values.
+			glBindBuffer( GL_ARRAY_BUFFER, vboVertexFilterHandle );
+			glBufferData( GL_ARRAY_BUFFER, vertexFilterData, GL_DYNAMIC_DRAW );
+			glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		}
+		else if ( dirtyXYFrom < dirtyXYTo )
+		{
+			// Patch vertex filter values.
+			glBindBuffer( GL_ARRAY_BUFFER, vboVertexFilterHandle );
+			GLBuffers.subData( GL_ARRAY_BUFFER, vertexFilterData, FILTER_NUM_COLUMNS * dirtyXYFrom, FILTER_NUM_COLUMNS * dirtyXYTo );
+			glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		}
+		if ( updateExplored )
+		{
+			updateExplored = false;
 
-		glEnableClientState( GL_VERTEX_ARRAY );
-		glEnableClientState( GL_COLOR_ARRAY );
+			// Update the values of the explored features.
+			glBindBuffer( GL_ARRAY_BUFFER, vboVertexExploredHandle );
+			glBufferData( GL_ARRAY_BUFFER, vertexExploredData, GL_DYNAMIC_DRAW );
+			glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		}
+		else if ( dirtyXYFrom < dirtyXYTo && nExplored > 0 )
+		{
+			// Patch the values of the explored features.
+			glBindBuffer( GL_ARRAY_BUFFER, vboVertexExploredHandle );
+			GLBuffers.subData( GL_ARRAY_BUFFER, vertexExploredData, nExplored * dirtyXYFrom, nExplored * dirtyXYTo );
+			glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		}
+		dirtyXYFrom = Integer.MAX_VALUE;
+		dirtyXYTo = 0;
+		return vboVertexPositionHandle;
+	}
 
-		/*
-		 * Draw vertices.
-		 */
+	/**
+	 * Returns <code>true</code> if the whole position buffer must be uploaded,
+	 * and clears this request.
+	 *
+	 * @return <code>true</code> if the position buffer must be uploaded.
+	 */
+	synchronized boolean takePositionUpload()
+	{
+		final boolean upload = updateXY;
+		updateXY = false;
+		return upload;
+	}
 
-		// Vertex colors.
-		glBindBuffer( GL_ARRAY_BUFFER, vboVertexPositionHandle );
-		glVertexPointer( VERTEX_NUM_DIMENSIONS, GL_FLOAT, 0, 0 );
+	/**
+	 * Attaches the explored columns of the X and Y axes to the bound vertex
+	 * array, if both axes are explored. Swapping the axes then only changes
+	 * the offsets of these attributes in the buffer of explored values. Must
+	 * be called with the OpenGL context current, after
+	 * {@link #flushPositions()}.
+	 *
+	 * @return <code>true</code> if the positions must be read from the
+	 *         explored columns, <code>false</code> if they must be read from
+	 *         the position buffer.
+	 */
+	synchronized boolean bindExploredAxes()
+	{
+		if ( xExplored < 0 || yExplored < 0 )
+		{
+			glDisableVertexAttribArray( EXPLORED_X_ATTRIBUTE );
+			glDisableVertexAttribArray( EXPLORED_Y_ATTRIBUTE );
+			return false;
+		}
+		final int stride = Float.BYTES * nExplored;
+		glBindBuffer( GL_ARRAY_BUFFER, vboVertexExploredHandle );
+		glEnableVertexAttribArray( EXPLORED_X_ATTRIBUTE );
+		glVertexAttribPointer( EXPLORED_X_ATTRIBUTE, 1, GL_FLOAT, false, stride, ( long ) Float.BYTES * xExplored );
+		glEnableVertexAttribArray( EXPLORED_Y_ATTRIBUTE );
+		glVertexAttribPointer( EXPLORED_Y_ATTRIBUTE, 1, GL_FLOAT, false, stride, ( long ) Float.BYTES * yExplored );
 		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		return true;
+	}
 
-		glBindBuffer( GL_ARRAY_BUFFER, vboVertexColorHandle );
-		glColorPointer( COLOR_NUM_CHANNELS, GL_FLOAT, 0, 0 );
-		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+	/**
+	 * Returns the handle of the vertex filter value buffer, shared with the
+	 * edges overlay. Uploaded by {@link #flushPositions()}.
+	 *
+	 * @return the handle of the vertex filter value buffer.
+	 */
+	int getFilterBufferHandle()
+	{
+		return vboVertexFilterHandle;
+	}
 
-		// Draw vertices as points.
-		glDrawArrays( GL_POINTS, 0, vertexPosData.length / VERTEX_NUM_DIMENSIONS );
+	public void draw( final DataLayout l, final DataColor c )
+	{
+		synchronized ( this )
+		{
+			putCoords( l );
+			tiles = l.vertexTiles;
+			timepoints = l.vertexTimepoints;
+			putColors( c );
+		}
+		transformHandler.layoutChanged( l.verticesPos );
+	}
 
-		/*
-		 * Disable.
-		 */
+	public void updateColors( final DataColor c )
+	{
+		putColors( c );
+	}
 
-		glDisableClientState( GL_COLOR_ARRAY );
-		glDisableClientState( GL_VERTEX_ARRAY );
+	@Override
+	public synchronized void dataSelectionUpdated( final DataColor c, final int[] vertexSlots, final int[] edgeSlots )
+	{
+		if ( c.verticesSelection != vertexSelectionData )
+		{
+			vertexSelectionData = c.verticesSelection;
+			updateSelection = true;
+			return;
+		}
+		for ( final int slot : vertexSlots )
+			dirtySelectionSlots.set( slot );
 	}
 
-	public void draw( final DataLayout l )
+	@Override
+	public synchronized void dataFilterUpdated( final DataLayout l )
 	{
-		putCoords( l.verticesPos );
-		final DataColor c = layout.color();
-		putColors( c.verticesColor );
-		transformHandler.layoutChanged( l.verticesPos );
+		vertexFilterData = l.verticesFilter;
+		updateFilter = true;
 	}
 
-	public void updateColors()
+	@Override
+	public synchronized void dataLayoutUpdated( final DataLayout l, final DataColor c, final int vertexFrom, final int vertexTo, final int edgeFrom, final int edgeTo )
 	{
-		final DataColor c = layout.color();
-		putColors( c.verticesColor );
+		nVertices = l.nVertices;
+		tiles = l.vertexTiles;
+		timepoints = l.vertexTimepoints;
+		levelOfDetail.setNumPoints( nVertices );
+		final boolean axesSwapped = l.xExplored != xExplored || l.yExplored != yExplored;
+		if ( l.verticesPos != vertexPosData )
+		{
+			vertexPosData = l.verticesPos;
+			// Axes swapped between explored features: the positions are
+			// drawn from the explored values, already uploaded.
+			if ( axesSwapped && l.xExplored >= 0 && l.yExplored >= 0 && l.verticesExplored == vertexExploredData )
+				stalePositionBuffer = true;
+			else
+				updateXY = true;
+		}
+		if ( l.verticesFilter != vertexFilterData )
+		{
+			vertexFilterData = l.verticesFilter;
+			updateFilter = true;
+		}
+		if ( l.verticesExplored != vertexExploredData )
+		{
+			vertexExploredData = l.verticesExplored;
+			updateExplored = true;
+		}
+		nExplored = l.nExplored;
+		if ( axesSwapped )
+		{
+			// Axes swapped: only the attribute offsets and the bounds change.
+			xExplored = l.xExplored;
+			yExplored = l.yExplored;
+			updateBounds();
+		}
+		if ( stalePositionBuffer && ( xExplored < 0 || yExplored < 0 ) )
+		{
+			// Drawn from the positions again.
+			stalePositionBuffer = false;
+			updateXY = true;
+		}
+		if ( c.verticesColor != vertexColorData )
+		{
+			vertexColorData = c.verticesColor;
+			updateColor = true;
+		}
+		if ( c.verticesSelection != vertexSelectionData )
+		{
+			vertexSelectionData = c.verticesSelection;
+			updateSelection = true;
+		}
+		if ( vertexFrom < vertexTo )
+		{
+			dirtyFrom = Math.min( dirtyFrom, vertexFrom );
+			dirtyTo = Math.max( dirtyTo, vertexTo );
+			dirtyXYFrom = Math.min( dirtyXYFrom, vertexFrom );
+			dirtyXYTo = Math.max( dirtyXYTo, vertexTo );
+		}
 	}
 }
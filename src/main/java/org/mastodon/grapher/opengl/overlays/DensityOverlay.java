@@ -0,0 +1,269 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_LINEAR_MIPMAP_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_RED;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLE_STRIP;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.GL_R32F;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.POSITION_ATTRIBUTE;
+import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.VERTEX_NUM_DIMENSIONS;
+
+import org.mastodon.grapher.opengl.util.DensityGrid;
+import org.mastodon.grapher.opengl.util.PackedColors;
+
+/**
+ * Draws the density of the data points as a heatmap, when there are too many
+ * points per pixel for them to be drawn individually.
+ * <p>
+ * The density grid is uploaded as a floating-point texture with mipmaps, so
+ * that the GPU samples the resolution level matching the current zoom. The
+ * point count under each pixel is mapped to a color with a configurable
+ * colormap, on a logarithmic scale. The heatmap is cross-faded with the
+ * points as specified by the {@link LevelOfDetail}.
+ * <p>
+ * The grid is computed elsewhere, off the render thread, and handed over with
+ * {@link #draw(DensityGrid)}. Painting only uploads it.
+ */
+public class DensityOverlay implements GLOverlayRenderer
+{
+
+	/**
+	 * Number of colors in the colormap texture.
+	 */
+	public static final int COLORMAP_SIZE = 256;
+
+	/**
+	 * Viridis, sampled at 5 stops, as ARGB colors.
+	 */
+	public static final int[] VIRIDIS = new int[] {
+			0xFF440154, 0xFF3B528B, 0xFF21908C, 0xFF5DC963, 0xFFFDE725 };
+
+	private static final int DENSITY_TEXTURE_UNIT = 0;
+
+	private static final int COLORMAP_TEXTURE_UNIT = 1;
+
+	private ShaderProgram program;
+
+	private int vao;
+
+	private int vboQuadHandle;
+
+	private int densityTexture;
+
+	private int colormapTexture;
+
+	private DensityGrid grid;
+
+	private boolean updateGrid;
+
+	private int[] colormap = interpolate( COLORMAP_SIZE, VIRIDIS );
+
+	private boolean updateColormap = true;
+
+	/**
+	 * Corners of the quad covering the grid, reused at each upload.
+	 */
+	private final float[] quad = new float[ 4 * VERTEX_NUM_DIMENSIONS ];
+
+	private final LevelOfDetail levelOfDetail;
+
+	public DensityOverlay( final LevelOfDetail levelOfDetail )
+	{
+		this.levelOfDetail = levelOfDetail;
+	}
+
+	/**
+	 * Sets the colormap of the heatmap. The specified colors are interpolated
+	 * linearly, from the lowest to the highest density.
+	 *
+	 * @param argb
+	 *            at least 2 ARGB colors, as returned by
+	 *            {@link java.awt.Color#getRGB()}.
+	 */
+	public synchronized void setColormap( final int... argb )
+	{
+		this.colormap = interpolate( COLORMAP_SIZE, argb );
+		this.updateColormap = true;
+	}
+
+	/**
+	 * Sets the density grid to draw.
+	 *
+	 * @param grid
+	 *            the density grid.
+	 */
+	public synchronized void draw( final DensityGrid grid )
+	{
+		this.grid = grid;
+		this.updateGrid = true;
+	}
+
+	@Override
+	public void init()
+	{
+		this.program = ShaderProgram.fromResources( DensityOverlay.class, "density.vert", "density.frag", "position" );
+		this.densityTexture = createTexture( GL_LINEAR_MIPMAP_LINEAR );
+		this.colormapTexture = createTexture( GL_LINEAR );
+
+		// Quad covering the grid, updated with the grid.
+		this.vboQuadHandle = glGenBuffers();
+		this.vao = glGenVertexArrays();
+		glBindVertexArray( vao );
+		glBindBuffer( GL_ARRAY_BUFFER, vboQuadHandle );
+		glEnableVertexAttribArray( POSITION_ATTRIBUTE );
+		glVertexAttribPointer( POSITION_ATTRIBUTE, VERTEX_NUM_DIMENSIONS, GL_FLOAT, false, 0, 0 );
+		glBindVertexArray( 0 );
+		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+	}
+
+	private static int createTexture( final int minFilter )
+	{
+		final int texture = glGenTextures();
+		glBindTexture( GL_TEXTURE_2D, texture );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, minFilter );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE );
+		glBindTexture( GL_TEXTURE_2D, 0 );
+		return texture;
+	}
+
+	@Override
+	public void paint()
+	{
+		final float weight = levelOfDetail.getDensityWeight();
+		if ( weight <= 0f )
+			return;
+
+		final DensityGrid g;
+		synchronized ( this )
+		{
+			if ( grid == null )
+				return;
+			g = grid;
+			if ( updateGrid )
+			{
+				updateGrid = false;
+
+				// Density levels.
+				glBindTexture( GL_TEXTURE_2D, densityTexture );
+				glTexImage2D( GL_TEXTURE_2D, 0, GL_R32F, g.width, g.height, 0, GL_RED, GL_FLOAT, g.counts );
+				glGenerateMipmap( GL_TEXTURE_2D );
+				glBindTexture( GL_TEXTURE_2D, 0 );
+
+				// Grid bounds.
+				glBindBuffer( GL_ARRAY_BUFFER, vboQuadHandle );
+				quad[ 0 ] = g.minX;
+				quad[ 1 ] = g.minY;
+				quad[ 2 ] = g.maxX;
+				quad[ 3 ] = g.minY;
+				quad[ 4 ] = g.minX;
+				quad[ 5 ] = g.maxY;
+				quad[ 6 ] = g.maxX;
+				quad[ 7 ] = g.maxY;
+				glBufferData( GL_ARRAY_BUFFER, quad, GL_STATIC_DRAW );
+				glBindBuffer( GL_ARRAY_BUFFER, 0 );
+			}
+			if ( updateColormap )
+			{
+				updateColormap = false;
+				glBindTexture( GL_TEXTURE_2D, colormapTexture );
+				glTexImage2D( GL_TEXTURE_2D, 0, GL_RGBA8, COLORMAP_SIZE, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, colormap );
+				glBindTexture( GL_TEXTURE_2D, 0 );
+			}
+		}
+
+		/*
+		 * Enable.
+		 */
+
+		program.use();
+		glActiveTexture( GL_TEXTURE0 + DENSITY_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_2D, densityTexture );
+		program.setInt( "density", DENSITY_TEXTURE_UNIT );
+		glActiveTexture( GL_TEXTURE0 + COLORMAP_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_2D, colormapTexture );
+		program.setInt( "colormap", COLORMAP_TEXTURE_UNIT );
+		program.setVec2( "gridMin", g.minX, g.minY );
+		program.setVec2( "gridMax", g.maxX, g.maxY );
+		program.setVec2( "gridSize", g.width, g.height );
+		program.setFloat( "maxCount", g.maxCount );
+		program.setFloat( "opacity", weight );
+
+		/*
+		 * Draw heatmap.
+		 */
+
+		glBindVertexArray( vao );
+		glDrawArrays( GL_TRIANGLE_STRIP, 0, 4 );
+
+		/*
+		 * Disable.
+		 */
+
+		glBindVertexArray( 0 );
+		glBindTexture( GL_TEXTURE_2D, 0 );
+		glActiveTexture( GL_TEXTURE0 + DENSITY_TEXTURE_UNIT );
+		glBindTexture( GL_TEXTURE_2D, 0 );
+		ShaderProgram.unuse();
+	}
+
+	/**
+	 * Interpolates linearly the specified colors.
+	 *
+	 * @param size
+	 *            the number of colors to return.
+	 * @param argb
+	 *            at least 2 ARGB colors.
+	 * @return a new array of <code>size</code> packed RGBA colors.
+	 */
+	private static int[] interpolate( final int size, final int... argb )
+	{
+		if ( argb.length < 2 )
+			throw new IllegalArgumentException( "A colormap needs at least 2 colors." );
+		final int[] out = new int[ size ];
+		for ( int i = 0; i < size; i++ )
+		{
+			final double pos = ( double ) i * ( argb.length - 1 ) / ( size - 1 );
+			final int k = Math.min( argb.length - 2, ( int ) pos );
+			final double t = pos - k;
+			int color = 0;
+			for ( int shift = 0; shift < 32; shift += 8 )
+			{
+				final int c0 = ( argb[ k ] >>> shift ) & 0xFF;
+				final int c1 = ( argb[ k + 1 ] >>> shift ) & 0xFF;
+				final int c = ( int ) Math.round( c0 + t * ( c1 - c0 ) );
+				color |= c << shift;
+			}
+			out[ i ] = PackedColors.fromARGB( color );
+		}
+		return out;
+	}
+}
@@ -0,0 +1,122 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import org.mastodon.views.grapher.datagraph.ScreenTransform;
+
+/**
+ * The view a frame is drawn with, read from the screen transform when the
+ * frame starts, and the view the data layer was last rendered with.
+ * <p>
+ * Its methods are called at each frame, so they must not allocate.
+ */
+public class FrameView
+{
+
+	private double minX;
+
+	private double maxX;
+
+	private double minY;
+
+	private double maxY;
+
+	private int width;
+
+	private int height;
+
+	/**
+	 * If <code>true</code>, the data layer must be rendered again at the next
+	 * frame.
+	 */
+	private volatile boolean dataLayerDirty = true;
+
+	/**
+	 * The view and size the data layer was rendered with.
+	 */
+	private final double[] dataLayerView = new double[] { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+
+	private int dataLayerWidth;
+
+	private int dataLayerHeight;
+
+	/**
+	 * Reads the view of the next frame.
+	 *
+	 * @param transform
+	 *            the screen transform.
+	 * @param width
+	 *            the width of the frame buffer.
+	 * @param height
+	 *            the height of the frame buffer.
+	 */
+	public void set( final ScreenTransform transform, final int width, final int height )
+	{
+		this.minX = transform.getMinX();
+		this.maxX = transform.getMaxX();
+		this.minY = transform.getMinY();
+		this.maxY = transform.getMaxY();
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Requests the data layer to be rendered again at the next frame, even if
+	 * the view did not change.
+	 */
+	public void invalidateDataLayer()
+	{
+		dataLayerDirty = true;
+	}
+
+	/**
+	 * Returns <code>true</code> if the data layer must be rendered again for
+	 * the current view, and records the view it is rendered with.
+	 *
+	 * @return <code>true</code> if the data layer is stale.
+	 */
+	public boolean isDataLayerStale()
+	{
+		if ( !dataLayerDirty
+				&& width == dataLayerWidth && height == dataLayerHeight
+				&& minX == dataLayerView[ 0 ] && maxX == dataLayerView[ 1 ]
+				&& minY == dataLayerView[ 2 ] && maxY == dataLayerView[ 3 ] )
+			return false;
+		dataLayerDirty = false;
+		dataLayerWidth = width;
+		dataLayerHeight = height;
+		dataLayerView[ 0 ] = minX;
+		dataLayerView[ 1 ] = maxX;
+		dataLayerView[ 2 ] = minY;
+		dataLayerView[ 3 ] = maxY;
+		return true;
+	}
+
+	public double getMinX()
+	{
+		return minX;
+	}
+
+	public double getMaxX()
+	{
+		return maxX;
+	}
+
+	public double getMinY()
+	{
+		return minY;
+	}
+
+	public double getMaxY()
+	{
+		return maxY;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+}
@@ -0,0 +1,187 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Static utilities to upload parts of Java arrays to OpenGL buffers.
+ */
+public class GLBuffers
+{
+
+	/**
+	 * Creates the data store of the buffer bound to the specified target from
+	 * the specified array. LWJGL has no <code>byte[]</code> overload of
+	 * <code>glBufferData</code>.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload.
+	 * @param usage
+	 *            the usage hint, e.g. <code>GL_DYNAMIC_DRAW</code>.
+	 */
+	public static void data( final int target, final byte[] data, final int usage )
+	{
+		if ( data.length == 0 )
+		{
+			glBufferData( target, 0L, usage );
+			return;
+		}
+		final ByteBuffer buffer = MemoryUtil.memAlloc( data.length );
+		try
+		{
+			buffer.put( data ).flip();
+			glBufferData( target, buffer, usage );
+		}
+		finally
+		{
+			MemoryUtil.memFree( buffer );
+		}
+	}
+
+	/**
+	 * Uploads the elements <code>[from, to[</code> of the specified array to
+	 * the same range of the buffer bound to the specified target.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload from.
+	 * @param from
+	 *            the first element to upload, inclusive.
+	 * @param to
+	 *            the last element to upload, exclusive.
+	 */
+	public static void subData( final int target, final float[] data, final int from, final int to )
+	{
+		if ( from >= to )
+			return;
+		final FloatBuffer buffer = MemoryUtil.memAllocFloat( to - from );
+		try
+		{
+			buffer.put( data, from, to - from ).flip();
+			glBufferSubData( target, ( long ) from * Float.BYTES, buffer );
+		}
+		finally
+		{
+			MemoryUtil.memFree( buffer );
+		}
+	}
+
+	/**
+	 * Uploads the elements <code>[from, to[</code> of the specified array to
+	 * the same range of the buffer bound to the specified target.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload from.
+	 * @param from
+	 *            the first element to upload, inclusive.
+	 * @param to
+	 *            the last element to upload, exclusive.
+	 */
+	public static void subData( final int target, final int[] data, final int from, final int to )
+	{
+		if ( from >= to )
+			return;
+		final IntBuffer buffer = MemoryUtil.memAllocInt( to - from );
+		try
+		{
+			buffer.put( data, from, to - from ).flip();
+			glBufferSubData( target, ( long ) from * Integer.BYTES, buffer );
+		}
+		finally
+		{
+			MemoryUtil.memFree( buffer );
+		}
+	}
+
+	/**
+	 * Uploads the elements <code>[from, to[</code> of the specified array to
+	 * the same range of the buffer bound to the specified target.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload from.
+	 * @param from
+	 *            the first element to upload, inclusive.
+	 * @param to
+	 *            the last element to upload, exclusive.
+	 */
+	public static void subData( final int target, final byte[] data, final int from, final int to )
+	{
+		if ( from >= to )
+			return;
+		final ByteBuffer buffer = MemoryUtil.memAlloc( to - from );
+		try
+		{
+			buffer.put( data, from, to - from ).flip();
+			glBufferSubData( target, from, buffer );
+		}
+		finally
+		{
+			MemoryUtil.memFree( buffer );
+		}
+	}
+
+	/**
+	 * Uploads the slots set in the specified bitset, one range of consecutive
+	 * slots at a time.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload from.
+	 * @param slots
+	 *            the slots to upload.
+	 * @param slotSize
+	 *            the number of elements per slot.
+	 */
+	public static void subData( final int target, final int[] data, final BitSet slots, final int slotSize )
+	{
+		int from = slots.nextSetBit( 0 );
+		while ( from >= 0 )
+		{
+			final int to = slots.nextClearBit( from );
+			subData( target, data, slotSize * from, slotSize * to );
+			from = slots.nextSetBit( to );
+		}
+	}
+
+	/**
+	 * Uploads the slots set in the specified bitset, one range of consecutive
+	 * slots at a time.
+	 *
+	 * @param target
+	 *            the buffer target, e.g. <code>GL_ARRAY_BUFFER</code>.
+	 * @param data
+	 *            the array to upload from.
+	 * @param slots
+	 *            the slots to upload.
+	 * @param slotSize
+	 *            the number of elements per slot.
+	 */
+	public static void subData( final int target, final byte[] data, final BitSet slots, final int slotSize )
+	{
+		int from = slots.nextSetBit( 0 );
+		while ( from >= 0 )
+		{
+			final int to = slots.nextClearBit( from );
+			subData( target, data, slotSize * from, slotSize * to );
+			from = slots.nextSetBit( to );
+		}
+	}
+
+	private GLBuffers()
+	{}
+}
@@ -10,16 +10,37 @@ public interface GLOverlayRenderer
 {
 
 	/**
-	 * Prepare overlay. Called by the {@link AWTGLCanvas#initGL()} method.
+	 * Prepare overlay. Called once with the OpenGL context current, before
+	 * the first {@link #paint()} following the addition of the overlay to the
+	 * canvas.
 	 */
 	default void init()
 	{}
 
 	/**
-	 * Render overlay. Called by the {@link AWTGLCanvas#paintGL()} method.
+	 * Render overlay. Called by the {@link AWTGLCanvas#paintGL()} method,
+	 * with an OpenGL 3.3 core profile context. Shader programs get the view
+	 * transform from the {@link ViewUniformBuffer}.
 	 */
 	void paint();
 
+	/**
+	 * Called before each {@link #paint()} with the window of layout
+	 * coordinates visible in the canvas, so that the overlay can skip drawing
+	 * what is outside of it.
+	 *
+	 * @param minX
+	 *            the min X of the visible window.
+	 * @param maxX
+	 *            the max X of the visible window.
+	 * @param minY
+	 *            the min Y of the visible window.
+	 * @param maxY
+	 *            the max Y of the visible window.
+	 */
+	default void setView( final double minX, final double maxX, final double minY, final double maxY )
+	{}
+
 	/**
 	 * This is called, when the screen size of the canvas (the component
 	 * displaying the image and generating mouse events) changes. This can be
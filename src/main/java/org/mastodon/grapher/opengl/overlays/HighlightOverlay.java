@@ -1,55 +1,51 @@
 package org.mastodon.grapher.opengl.overlays;
 
+import static org.lwjgl.opengl.GL11.GL_POINTS;
+import static org.lwjgl.opengl.GL11.glPointSize;
 import static org.mastodon.grapher.opengl.overlays.DataPointsOverlay.DEFAULT_POINT_SIZE;
 
-import org.lwjgl.opengl.GL33;
+import java.awt.Color;
+
 import org.mastodon.grapher.opengl.DataLayoutMaker;
 
 public class HighlightOverlay implements GLOverlayRenderer
 {
 
-	private float[] highlightedVertexCol;
+	private Color highlightedVertexCol;
 
 	private float[] highlightedVertexPos;
 
 	private final DataLayoutMaker layout;
 
-	private float[] highlightedVertexBg;
+	private Color highlightedVertexBg;
+
+	private final ShapeRenderer shapes = new ShapeRenderer();
 
 	public HighlightOverlay( final DataLayoutMaker layout )
 	{
 		this.layout = layout;
 	}
 
+	@Override
+	public void init()
+	{
+		shapes.init();
+	}
+
 	@Override
 	public void paint()
 	{
-		if ( highlightedVertexPos == null )
+		final float[] pos = highlightedVertexPos;
+		if ( pos == null )
 			return;
 
 		final float size = 2 * DEFAULT_POINT_SIZE;
 
-		GL33.glPointSize( size + 2 );
-		GL33.glColor4f(
-				highlightedVertexBg[ 0 ],
-				highlightedVertexBg[ 1 ],
-				highlightedVertexBg[ 2 ],
-				highlightedVertexBg[ 3 ] );
-
-		GL33.glBegin( GL33.GL_POINTS );
-		GL33.glVertex2f( highlightedVertexPos[ 0 ], highlightedVertexPos[ 1 ] );
-		GL33.glEnd();
-
-		GL33.glPointSize( size );
-		GL33.glColor4f(
-				highlightedVertexCol[ 0 ],
-				highlightedVertexCol[ 1 ],
-				highlightedVertexCol[ 2 ],
-				highlightedVertexCol[ 3 ] );
-
-		GL33.glBegin( GL33.GL_POINTS );
-		GL33.glVertex2f( highlightedVertexPos[ 0 ], highlightedVertexPos[ 1 ] );
-		GL33.glEnd();
+		glPointSize( size + 2 );
+		shapes.draw( GL_POINTS, highlightedVertexBg, pos );
+
+		glPointSize( size );
+		shapes.draw( GL_POINTS, highlightedVertexCol, pos );
 	}
 
 	public void update()
@@ -63,9 +59,14 @@ public class HighlightOverlay implements GLOverlayRenderer
 		}
 		else
 		{
+			highlightedVertexCol = toColor( out[ 1 ] );
+			highlightedVertexBg = toColor( out[ 2 ] );
 			highlightedVertexPos = out[ 0 ];
-			highlightedVertexCol = out[ 1 ];
-			highlightedVertexBg = out[ 2 ];
 		}
 	}
+
+	private static Color toColor( final float[] rgba )
+	{
+		return new Color( rgba[ 0 ], rgba[ 1 ], rgba[ 2 ], rgba[ 3 ] );
+	}
 }
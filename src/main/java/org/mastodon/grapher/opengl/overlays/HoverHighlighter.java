@@ -0,0 +1,208 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.swing.SwingUtilities;
+
+import org.mastodon.grapher.opengl.DataLayoutMaker;
+import org.mastodon.grapher.opengl.PointCloudCanvas;
+import org.mastodon.grapher.opengl.PointCloudPanel;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.HighlightModel;
+import org.mastodon.views.grapher.datagraph.ScreenTransform;
+import org.mastodon.views.grapher.display.ScreenTransformState;
+
+/**
+ * Highlights the vertex nearest to the mouse when it moves over the
+ * {@link PointCloudCanvas}.
+ * <p>
+ * The mouse position is converted to layout coordinates, and the nearest
+ * vertex within {@link #DEFAULT_RADIUS} pixels is found with the spatial index
+ * of the layout. Queries run on a background thread and are coalesced: while
+ * a query runs, only the last mouse position is kept for the next one. The
+ * highlight model is only updated when the highlighted vertex changes.
+ */
+public class HoverHighlighter extends MouseAdapter
+{
+
+	/**
+	 * Maximal distance between the mouse and the highlighted vertex, in
+	 * pixels.
+	 */
+	public static final double DEFAULT_RADIUS = 10.;
+
+	private final PointCloudPanel pointCloudPanel;
+
+	private final ScreenTransformState screenTransformState;
+
+	private final ModelGraph graph;
+
+	private final HighlightModel< Spot, Link > highlight;
+
+	private final ReentrantReadWriteLock lock;
+
+	private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor( r -> {
+		final Thread thread = new Thread( r, "OpenGL grapher hover" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * If <code>true</code>, a query is queued and has not started yet.
+	 */
+	private final AtomicBoolean queryQueued = new AtomicBoolean();
+
+	private volatile int mouseX;
+
+	private volatile int mouseY;
+
+	private volatile boolean mouseInside;
+
+	private volatile double radius = DEFAULT_RADIUS;
+
+	private volatile long queryTime;
+
+	/**
+	 * Only accessed by the query thread.
+	 */
+	private final ScreenTransform t = new ScreenTransform();
+
+	/**
+	 * Pool index of the vertex highlighted by the last query, -1 if none.
+	 * Only accessed by the query thread.
+	 */
+	private int highlighted = -1;
+
+	public HoverHighlighter(
+			final PointCloudPanel pointCloudPanel,
+			final ModelGraph graph,
+			final HighlightModel< Spot, Link > highlight,
+			final ReentrantReadWriteLock lock )
+	{
+		this.pointCloudPanel = pointCloudPanel;
+		this.screenTransformState = pointCloudPanel.getScreenTransform();
+		this.graph = graph;
+		this.highlight = highlight;
+		this.lock = lock;
+	}
+
+	/**
+	 * Sets the maximal distance between the mouse and the highlighted vertex.
+	 *
+	 * @param radius
+	 *            the distance, in pixels.
+	 */
+	public void setRadius( final double radius )
+	{
+		this.radius = radius;
+	}
+
+	/**
+	 * Returns how long the last nearest vertex query took.
+	 *
+	 * @return the duration, in nanoseconds.
+	 */
+	public long getQueryTime()
+	{
+		return queryTime;
+	}
+
+	@Override
+	public void mouseMoved( final MouseEvent e )
+	{
+		mouseX = e.getX();
+		mouseY = e.getY();
+		mouseInside = true;
+		requestQuery();
+	}
+
+	@Override
+	public void mouseExited( final MouseEvent e )
+	{
+		mouseInside = false;
+		requestQuery();
+	}
+
+	/**
+	 * Stops following the mouse, and stops the query thread. Meant to be
+	 * called on the EDT when the view is closed.
+	 */
+	public void dispose()
+	{
+		pointCloudPanel.getCanvas().removeMouseListener( this );
+		pointCloudPanel.getCanvas().removeMouseMotionListener( this );
+		queryExecutor.shutdownNow();
+	}
+
+	private void requestQuery()
+	{
+		if ( queryExecutor.isShutdown() )
+			return;
+		if ( queryQueued.compareAndSet( false, true ) )
+			queryExecutor.execute( this::query );
+	}
+
+	private void query()
+	{
+		queryQueued.set( false );
+		final DataLayoutMaker layout = pointCloudPanel.getDataLayout();
+		int id = -1;
+		if ( mouseInside )
+		{
+			screenTransformState.get( t );
+			final long start = System.nanoTime();
+			id = layout.getNearestSpotId(
+					t.screenToLayoutX( mouseX ),
+					t.screenToLayoutY( mouseY ),
+					t.getScaleX(),
+					t.getScaleY(),
+					radius );
+			queryTime = System.nanoTime() - start;
+		}
+		if ( id == highlighted )
+			return;
+		highlighted = id;
+		final int vertexId = id;
+		SwingUtilities.invokeLater( () -> apply( layout, vertexId ) );
+	}
+
+	private void apply( final DataLayoutMaker layout, final int id )
+	{
+		lock.readLock().lock();
+		try
+		{
+			// The vertex may have been removed since the query.
+			if ( id < 0 || !layout.isPlotted( id ) )
+			{
+				highlight.clearHighlight();
+				return;
+			}
+			final Spot ref = graph.vertexRef();
+			highlight.highlightVertex( graph.vertices().getRefPool().getObject( id, ref ) );
+			graph.releaseRef( ref );
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public static HoverHighlighter install(
+			final PointCloudPanel panel,
+			final ModelGraph graph,
+			final HighlightModel< Spot, Link > highlight,
+			final ReentrantReadWriteLock lock )
+	{
+		final HoverHighlighter highlighter = new HoverHighlighter( panel, graph, highlight, lock );
+		panel.getCanvas().addMouseListener( highlighter );
+		panel.getCanvas().addMouseMotionListener( highlighter );
+		return highlighter;
+	}
+}
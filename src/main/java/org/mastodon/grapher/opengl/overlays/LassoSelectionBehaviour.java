@@ -0,0 +1,219 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL11.GL_LINE_LOOP;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.grapher.opengl.DataLayoutMaker;
+import org.mastodon.grapher.opengl.PointCloudPanel;
+import org.mastodon.grapher.opengl.util.Polygon2D;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.FocusModel;
+import org.mastodon.model.SelectionModel;
+import org.mastodon.views.grapher.datagraph.ScreenTransform;
+import org.mastodon.views.grapher.display.ScreenTransformState;
+import org.scijava.ui.behaviour.DragBehaviour;
+import org.scijava.ui.behaviour.util.AbstractNamedBehaviour;
+import org.scijava.ui.behaviour.util.Behaviours;
+
+/**
+ * Behaviour to select vertices and edges inside a freehand lasso drawn with a
+ * mouse drag.
+ * <p>
+ * As for {@link BoxSelectionBehaviour}, the selection happens in layout space.
+ * The lasso does not have to be convex. The vertices in its bounding box are
+ * found with the spatial index of the layout, and tested against the lasso in
+ * parallel. The selection is applied in one batch when the drag ends.
+ */
+public class LassoSelectionBehaviour extends AbstractNamedBehaviour implements DragBehaviour, GLOverlayRenderer
+{
+
+	public static final String LASSO_SELECT = "data lasso selection";
+
+	public static final String LASSO_ADD_SELECT = "data lasso add to selection";
+
+	private static final String[] LASSO_SELECT_KEYS = new String[] { "ctrl button1" };
+
+	private static final String[] LASSO_ADD_SELECT_KEYS = new String[] { "ctrl shift button1" };
+
+	/**
+	 * Points closer than this to the previous point of the lasso, in pixels,
+	 * are skipped.
+	 */
+	private static final double MIN_POINT_DISTANCE = 2.;
+
+	/**
+	 * Lasso points in layout coordinates, interleaved. Accessed while
+	 * synchronized on this behaviour, as they are painted on the rendering
+	 * thread.
+	 */
+	private float[] points = new float[ 256 ];
+
+	private int nPoints;
+
+	/**
+	 * Screen coordinates of the last lasso point.
+	 */
+	private int lastX, lastY;
+
+	private final boolean addToSelection;
+
+	private final ScreenTransform t;
+
+	private final ScreenTransformState screenTransformState;
+
+	private final PointCloudPanel pointCloudPanel;
+
+	private final ShapeRenderer shapes = new ShapeRenderer();
+
+	private final ReentrantReadWriteLock lock;
+
+	private final ModelGraph graph;
+
+	private final SelectionModel< Spot, Link > selection;
+
+	private final FocusModel< Spot > focus;
+
+	public LassoSelectionBehaviour(
+			final String name,
+			final boolean addToSelection,
+			final PointCloudPanel pointCloudPanel,
+			final ModelGraph graph,
+			final FocusModel< Spot > focus,
+			final SelectionModel< Spot, Link > selection,
+			final ReentrantReadWriteLock lock )
+	{
+		super( name );
+		this.addToSelection = addToSelection;
+		this.pointCloudPanel = pointCloudPanel;
+		this.graph = graph;
+		this.focus = focus;
+		this.selection = selection;
+		this.lock = lock;
+		this.t = new ScreenTransform();
+		this.screenTransformState = pointCloudPanel.getScreenTransform();
+		pointCloudPanel.getCanvas().overlays().add( this );
+	}
+
+	@Override
+	public void init( final int x, final int y )
+	{
+		screenTransformState.get( t );
+		synchronized ( this )
+		{
+			nPoints = 0;
+		}
+		addPoint( x, y );
+		pointCloudPanel.overlayChanged();
+	}
+
+	@Override
+	public void drag( final int x, final int y )
+	{
+		final double dx = x - lastX;
+		final double dy = y - lastY;
+		if ( dx * dx + dy * dy < MIN_POINT_DISTANCE * MIN_POINT_DISTANCE )
+			return;
+		addPoint( x, y );
+		pointCloudPanel.overlayChanged();
+	}
+
+	@Override
+	public void end( final int x, final int y )
+	{
+		addPoint( x, y );
+		final double[] polygon;
+		synchronized ( this )
+		{
+			polygon = new double[ 2 * nPoints ];
+			for ( int i = 0; i < polygon.length; i++ )
+				polygon[ i ] = points[ i ];
+			nPoints = 0;
+		}
+
+		// A click or a tiny lasso selects nothing.
+		if ( polygon.length >= 6 )
+		{
+			lock.readLock().lock();
+			try
+			{
+				selectWithin( new Polygon2D( polygon ) );
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+		pointCloudPanel.overlayChanged();
+	}
+
+	/**
+	 * Appends the specified screen position to the lasso, in layout
+	 * coordinates. The transform is the one of the start of the drag.
+	 */
+	private synchronized void addPoint( final int x, final int y )
+	{
+		lastX = x;
+		lastY = y;
+		if ( 2 * nPoints + 2 > points.length )
+			points = Arrays.copyOf( points, 2 * points.length );
+		points[ 2 * nPoints ] = ( float ) t.screenToLayoutX( x );
+		points[ 2 * nPoints + 1 ] = ( float ) t.screenToLayoutY( y );
+		nPoints++;
+	}
+
+	@Override
+	public void init()
+	{
+		shapes.init();
+	}
+
+	@Override
+	public synchronized void paint()
+	{
+		if ( nPoints < 2 )
+			return;
+
+		shapes.draw( GL_LINE_LOOP, Color.RED, points, nPoints );
+	}
+
+	private void selectWithin( final Polygon2D polygon )
+	{
+		final DataLayoutMaker layout = pointCloudPanel.getDataLayout();
+		final int[] vertexIds = layout.getSpotIdsWithin( polygon );
+		BoxSelectionBehaviour.select( graph, focus, selection, vertexIds, addToSelection );
+	}
+
+	public static void install(
+			final Behaviours behaviours,
+			final PointCloudPanel panel,
+			final ModelGraph graph,
+			final FocusModel< Spot > focus,
+			final SelectionModel< Spot, Link > selection,
+			final ReentrantReadWriteLock lock )
+	{
+		final LassoSelectionBehaviour lassoSelectBehaviour = new LassoSelectionBehaviour(
+				LASSO_SELECT,
+				false,
+				panel,
+				graph,
+				focus,
+				selection,
+				lock );
+		behaviours.namedBehaviour( lassoSelectBehaviour, LASSO_SELECT_KEYS );
+
+		final LassoSelectionBehaviour lassoAddSelectBehaviour = new LassoSelectionBehaviour(
+				LASSO_ADD_SELECT,
+				true,
+				panel,
+				graph,
+				focus,
+				selection,
+				lock );
+		behaviours.namedBehaviour( lassoAddSelectBehaviour, LASSO_ADD_SELECT_KEYS );
+	}
+}
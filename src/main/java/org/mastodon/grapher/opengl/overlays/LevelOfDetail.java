@@ -0,0 +1,120 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import org.mastodon.views.grapher.datagraph.ScreenTransform;
+
+/**
+ * Decides whether the data points are drawn individually or as a density
+ * heatmap, from the number of points per screen pixel.
+ * <p>
+ * The number of points per pixel is estimated from the number of points, the
+ * area of their bounding box and the current zoom, assuming the points are
+ * evenly spread. Around the threshold, the points and the heatmap are
+ * cross-faded over a factor of 2 on either side, so that zooming in and out
+ * does not switch abruptly between the two.
+ */
+public class LevelOfDetail
+{
+
+	/**
+	 * Default number of points per pixel above which the heatmap is drawn.
+	 */
+	public static final double DEFAULT_THRESHOLD = 1.;
+
+	private double threshold = DEFAULT_THRESHOLD;
+
+	private boolean enabled = true;
+
+	private int nPoints;
+
+	private double layoutArea = 1.;
+
+	private double pixelsPerLayoutArea = 1.;
+
+	/**
+	 * Sets the number of points per pixel above which the heatmap is drawn.
+	 *
+	 * @param threshold
+	 *            the threshold, strictly positive.
+	 */
+	public synchronized void setThreshold( final double threshold )
+	{
+		if ( threshold <= 0. )
+			throw new IllegalArgumentException( "The threshold must be strictly positive: " + threshold );
+		this.threshold = threshold;
+	}
+
+	public synchronized double getThreshold()
+	{
+		return threshold;
+	}
+
+	/**
+	 * Enables or disables the heatmap. When disabled, the points are always
+	 * drawn individually.
+	 *
+	 * @param enabled
+	 *            whether the heatmap can be drawn.
+	 */
+	public synchronized void setEnabled( final boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	public synchronized boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets the number of points and their bounding box, in layout
+	 * coordinates.
+	 */
+	public synchronized void setData( final int nPoints, final float minX, final float maxX, final float minY, final float maxY )
+	{
+		this.nPoints = nPoints;
+		final double area = ( ( double ) maxX - minX ) * ( ( double ) maxY - minY );
+		this.layoutArea = ( area > 0. ) ? area : 1.;
+	}
+
+	/**
+	 * Sets the number of points, keeping their bounding box.
+	 */
+	public synchronized void setNumPoints( final int nPoints )
+	{
+		this.nPoints = nPoints;
+	}
+
+	/**
+	 * Sets the current view.
+	 *
+	 * @param transform
+	 *            the screen transform.
+	 */
+	public synchronized void setView( final ScreenTransform transform )
+	{
+		final double area = transform.getScaleX() * transform.getScaleY();
+		this.pixelsPerLayoutArea = ( area > 0. && !Double.isNaN( area ) ) ? area : 1.;
+	}
+
+	/**
+	 * Returns the estimated number of points per screen pixel.
+	 */
+	public synchronized double getPointsPerPixel()
+	{
+		return nPoints / ( layoutArea * pixelsPerLayoutArea );
+	}
+
+	/**
+	 * Returns the opacity of the heatmap, from 0 (points only) to 1 (heatmap
+	 * only). The points are drawn with the complementary opacity.
+	 */
+	public synchronized float getDensityWeight()
+	{
+		if ( !enabled || nPoints == 0 )
+			return 0f;
+		// 0 at threshold / 2, 1 at threshold * 2.
+		final double t = ( Math.log( getPointsPerPixel() / threshold ) / Math.log( 2. ) + 1. ) / 2.;
+		final double c = Math.max( 0., Math.min( 1., t ) );
+		return ( float ) ( c * c * ( 3. - 2. * c ) );
+	}
+}
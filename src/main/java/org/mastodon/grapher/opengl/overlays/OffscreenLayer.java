@@ -0,0 +1,105 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_NEAREST;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_COMPLETE;
+import static org.lwjgl.opengl.GL30.GL_READ_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glBlitFramebuffer;
+import static org.lwjgl.opengl.GL30.glCheckFramebufferStatus;
+import static org.lwjgl.opengl.GL30.glFramebufferTexture2D;
+import static org.lwjgl.opengl.GL30.glGenFramebuffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A framebuffer object with a color texture of the size of the canvas. Layers
+ * that only change with the data or the view are rendered once in it, and the
+ * texture is copied to the canvas at each frame.
+ */
+public class OffscreenLayer
+{
+
+	private int framebuffer;
+
+	private int texture;
+
+	private int width;
+
+	private int height;
+
+	/**
+	 * Creates the framebuffer and its texture. Must be called with the OpenGL
+	 * context current.
+	 */
+	public void init()
+	{
+		framebuffer = glGenFramebuffers();
+		texture = glGenTextures();
+		glBindTexture( GL_TEXTURE_2D, texture );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST );
+		glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST );
+		glBindTexture( GL_TEXTURE_2D, 0 );
+		glBindFramebuffer( GL_FRAMEBUFFER, framebuffer );
+		glFramebufferTexture2D( GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture, 0 );
+		glBindFramebuffer( GL_FRAMEBUFFER, 0 );
+	}
+
+	/**
+	 * Binds the framebuffer to render to, resizing its texture if needed.
+	 *
+	 * @param width
+	 *            the width of the canvas, in pixels.
+	 * @param height
+	 *            the height of the canvas, in pixels.
+	 */
+	public void bind( final int width, final int height )
+	{
+		if ( width != this.width || height != this.height )
+		{
+			this.width = width;
+			this.height = height;
+			glBindTexture( GL_TEXTURE_2D, texture );
+			glTexImage2D( GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, ( ByteBuffer ) null );
+			glBindTexture( GL_TEXTURE_2D, 0 );
+		}
+		glBindFramebuffer( GL_FRAMEBUFFER, framebuffer );
+		if ( glCheckFramebufferStatus( GL_FRAMEBUFFER ) != GL_FRAMEBUFFER_COMPLETE )
+		{
+			glBindFramebuffer( GL_FRAMEBUFFER, 0 );
+			throw new IllegalStateException( "Incomplete offscreen framebuffer of size " + width + " x " + height );
+		}
+	}
+
+	/**
+	 * Renders to the canvas again.
+	 */
+	public void unbind()
+	{
+		glBindFramebuffer( GL_FRAMEBUFFER, 0 );
+	}
+
+	/**
+	 * Copies the content of the layer to the canvas.
+	 */
+	public void copyToCanvas()
+	{
+		glBindFramebuffer( GL_READ_FRAMEBUFFER, framebuffer );
+		glBindFramebuffer( GL_DRAW_FRAMEBUFFER, 0 );
+		glBlitFramebuffer( 0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT, GL_NEAREST );
+		glBindFramebuffer( GL_READ_FRAMEBUFFER, 0 );
+	}
+}
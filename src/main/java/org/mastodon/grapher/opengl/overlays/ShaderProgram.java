@@ -0,0 +1,249 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL20.GL_COMPILE_STATUS;
+import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
+import static org.lwjgl.opengl.GL20.glAttachShader;
+import static org.lwjgl.opengl.GL20.glBindAttribLocation;
+import static org.lwjgl.opengl.GL20.glCompileShader;
+import static org.lwjgl.opengl.GL20.glCreateProgram;
+import static org.lwjgl.opengl.GL20.glCreateShader;
+import static org.lwjgl.opengl.GL20.glDeleteShader;
+import static org.lwjgl.opengl.GL20.glDetachShader;
+import static org.lwjgl.opengl.GL20.glGetProgramInfoLog;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL20.glGetShaderInfoLog;
+import static org.lwjgl.opengl.GL20.glGetShaderi;
+import static org.lwjgl.opengl.GL20.glGetUniformLocation;
+import static org.lwjgl.opengl.GL20.glLinkProgram;
+import static org.lwjgl.opengl.GL20.glShaderSource;
+import static org.lwjgl.opengl.GL20.glUniform1f;
+import static org.lwjgl.opengl.GL20.glUniform1i;
+import static org.lwjgl.opengl.GL20.glUniform2f;
+import static org.lwjgl.opengl.GL20.glUniform4f;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A linked OpenGL shader program, made of a vertex shader and a fragment
+ * shader.
+ * <p>
+ * Vertex attributes are bound to fixed locations, given by their position in
+ * the list passed at construction, so that the overlays can set their
+ * attribute pointers without querying the program. Programs that declare the
+ * <code>View</code> uniform block get the view transform of the
+ * {@link ViewUniformBuffer}. Must be created and used with the OpenGL context
+ * current.
+ */
+public class ShaderProgram
+{
+
+	private final int handle;
+
+	private final Map< String, Integer > uniformLocations = new HashMap<>();
+
+	/**
+	 * Compiles and links a new shader program.
+	 *
+	 * @param vertexSource
+	 *            the source of the vertex shader.
+	 * @param fragmentSource
+	 *            the source of the fragment shader.
+	 * @param attributes
+	 *            the names of the vertex attributes. Each is bound to its
+	 *            index in this list.
+	 * @throws IllegalStateException
+	 *             if a shader cannot be compiled or the program cannot be
+	 *             linked.
+	 */
+	public ShaderProgram( final String vertexSource, final String fragmentSource, final String... attributes )
+	{
+		final int vs = compile( GL_VERTEX_SHADER, vertexSource );
+		final int fs = compile( GL_FRAGMENT_SHADER, fragmentSource );
+		handle = glCreateProgram();
+		glAttachShader( handle, vs );
+		glAttachShader( handle, fs );
+		for ( int i = 0; i < attributes.length; i++ )
+			glBindAttribLocation( handle, i, attributes[ i ] );
+		glLinkProgram( handle );
+		glDetachShader( handle, vs );
+		glDetachShader( handle, fs );
+		glDeleteShader( vs );
+		glDeleteShader( fs );
+		if ( glGetProgrami( handle, GL_LINK_STATUS ) == GL_FALSE )
+			throw new IllegalStateException( "Could not link shader program:\n" + glGetProgramInfoLog( handle ) );
+
+		// Shared view transform.
+		final int viewBlock = glGetUniformBlockIndex( handle, ViewUniformBuffer.BLOCK_NAME );
+		if ( viewBlock != GL_INVALID_INDEX )
+			glUniformBlockBinding( handle, viewBlock, ViewUniformBuffer.BINDING );
+	}
+
+	/**
+	 * Compiles and links a new shader program from shader sources stored as
+	 * resources next to the specified class.
+	 *
+	 * @param cl
+	 *            the class to load the resources with.
+	 * @param vertexResource
+	 *            the name of the vertex shader resource.
+	 * @param fragmentResource
+	 *            the name of the fragment shader resource.
+	 * @param attributes
+	 *            the names of the vertex attributes. Each is bound to its
+	 *            index in this list.
+	 * @return a new shader program.
+	 */
+	public static ShaderProgram fromResources( final Class< ? > cl, final String vertexResource, final String fragmentResource, final String... attributes )
+	{
+		return new ShaderProgram( readResource( cl, vertexResource ), readResource( cl, fragmentResource ), attributes );
+	}
+
+	public void use()
+	{
+		glUseProgram( handle );
+	}
+
+	public static void unuse()
+	{
+		glUseProgram( 0 );
+	}
+
+	/**
+	 * Returns the location of the specified uniform, -1 if the program does
+	 * not have it.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @return the uniform location.
+	 */
+	public int uniform( final String name )
+	{
+		// Not computeIfAbsent(): the capturing lambda would be allocated at
+		// each call, and this is called for each uniform at each frame.
+		final Integer location = uniformLocations.get( name );
+		if ( location != null )
+			return location.intValue();
+		final int l = glGetUniformLocation( handle, name );
+		uniformLocations.put( name, Integer.valueOf( l ) );
+		return l;
+	}
+
+	/**
+	 * Sets a <code>vec4</code> uniform to the RGBA components of the
+	 * specified color. The program must be in use.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @param color
+	 *            the color.
+	 */
+	public void setColor( final String name, final Color color )
+	{
+		glUniform4f( uniform( name ),
+				color.getRed() / 255f,
+				color.getGreen() / 255f,
+				color.getBlue() / 255f,
+				color.getAlpha() / 255f );
+	}
+
+	/**
+	 * Sets an <code>int</code> or sampler uniform. The program must be in
+	 * use.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @param value
+	 *            the value.
+	 */
+	public void setInt( final String name, final int value )
+	{
+		glUniform1i( uniform( name ), value );
+	}
+
+	/**
+	 * Sets a <code>float</code> uniform. The program must be in use.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @param value
+	 *            the value.
+	 */
+	public void setFloat( final String name, final float value )
+	{
+		glUniform1f( uniform( name ), value );
+	}
+
+	/**
+	 * Sets a <code>vec2</code> uniform. The program must be in use.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @param x
+	 *            the first component.
+	 * @param y
+	 *            the second component.
+	 */
+	public void setVec2( final String name, final float x, final float y )
+	{
+		glUniform2f( uniform( name ), x, y );
+	}
+
+	/**
+	 * Sets a <code>vec4</code> uniform. The program must be in use.
+	 *
+	 * @param name
+	 *            the uniform name.
+	 * @param values
+	 *            the four components.
+	 */
+	public void setVec4( final String name, final float[] values )
+	{
+		glUniform4f( uniform( name ), values[ 0 ], values[ 1 ], values[ 2 ], values[ 3 ] );
+	}
+
+	private static int compile( final int type, final String source )
+	{
+		final int shader = glCreateShader( type );
+		glShaderSource( shader, source );
+		glCompileShader( shader );
+		if ( glGetShaderi( shader, GL_COMPILE_STATUS ) == GL_FALSE )
+		{
+			final String log = glGetShaderInfoLog( shader );
+			glDeleteShader( shader );
+			throw new IllegalStateException( "Could not compile shader:\n" + log );
+		}
+		return shader;
+	}
+
+	private static String readResource( final Class< ? > cl, final String name )
+	{
+		try (final InputStream is = cl.getResourceAsStream( name ))
+		{
+			if ( is == null )
+				throw new IllegalStateException( "Could not find shader resource " + name );
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[ 4096 ];
+			int n;
+			while ( ( n = is.read( buffer ) ) > 0 )
+				out.write( buffer, 0, n );
+			return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+		}
+		catch ( final IOException e )
+		{
+			throw new IllegalStateException( "Could not read shader resource " + name, e );
+		}
+	}
+}
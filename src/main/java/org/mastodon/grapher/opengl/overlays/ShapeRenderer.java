@@ -0,0 +1,125 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_LINE_LOOP;
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+
+import java.awt.Color;
+
+/**
+ * Draws small shapes of a single color, such as the selection box or the
+ * highlighted vertex, from a few vertices uploaded at each draw.
+ * <p>
+ * Replaces the immediate mode (<code>glBegin</code> / <code>glEnd</code>),
+ * which is not available in the core profile.
+ */
+public class ShapeRenderer
+{
+
+	private static final int POSITION_ATTRIBUTE = 0;
+
+	private ShaderProgram program;
+
+	private int vao;
+
+	private int vbo;
+
+	/**
+	 * Corners of the rectangles, reused across frames.
+	 */
+	private final float[] rectangle = new float[ 8 ];
+
+	/**
+	 * Creates the shader program and the buffers. Must be called with the
+	 * OpenGL context current.
+	 */
+	public void init()
+	{
+		program = ShaderProgram.fromResources( ShapeRenderer.class, "shape.vert", "shape.frag", "position" );
+		vao = glGenVertexArrays();
+		vbo = glGenBuffers();
+		glBindVertexArray( vao );
+		glBindBuffer( GL_ARRAY_BUFFER, vbo );
+		glEnableVertexAttribArray( POSITION_ATTRIBUTE );
+		glVertexAttribPointer( POSITION_ATTRIBUTE, 2, GL_FLOAT, false, 0, 0 );
+		glBindVertexArray( 0 );
+		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+	}
+
+	/**
+	 * Draws the specified vertices, in layout coordinates.
+	 *
+	 * @param mode
+	 *            the primitive mode, e.g. <code>GL_LINE_LOOP</code>.
+	 * @param color
+	 *            the color of the shape.
+	 * @param xy
+	 *            the X and Y coordinates of the vertices, interleaved.
+	 */
+	public void draw( final int mode, final Color color, final float... xy )
+	{
+		draw( mode, color, xy, xy.length / 2 );
+	}
+
+	/**
+	 * Draws the outline of the specified rectangle, in layout coordinates.
+	 *
+	 * @param color
+	 *            the color of the outline.
+	 * @param x1
+	 *            the X coordinate of a corner.
+	 * @param y1
+	 *            the Y coordinate of a corner.
+	 * @param x2
+	 *            the X coordinate of the opposite corner.
+	 * @param y2
+	 *            the Y coordinate of the opposite corner.
+	 */
+	public void drawRectangle( final Color color, final float x1, final float y1, final float x2, final float y2 )
+	{
+		rectangle[ 0 ] = x1;
+		rectangle[ 1 ] = y1;
+		rectangle[ 2 ] = x2;
+		rectangle[ 3 ] = y1;
+		rectangle[ 4 ] = x2;
+		rectangle[ 5 ] = y2;
+		rectangle[ 6 ] = x1;
+		rectangle[ 7 ] = y2;
+		draw( GL_LINE_LOOP, color, rectangle, 4 );
+	}
+
+	/**
+	 * Draws the first vertices of the specified array, in layout coordinates.
+	 *
+	 * @param mode
+	 *            the primitive mode, e.g. <code>GL_LINE_STRIP</code>.
+	 * @param color
+	 *            the color of the shape.
+	 * @param xy
+	 *            the X and Y coordinates of the vertices, interleaved. May be
+	 *            longer than needed, so that it can be reused.
+	 * @param nVertices
+	 *            the number of vertices to draw.
+	 */
+	public void draw( final int mode, final Color color, final float[] xy, final int nVertices )
+	{
+		program.use();
+		program.setColor( "color", color );
+		glBindBuffer( GL_ARRAY_BUFFER, vbo );
+		glBufferData( GL_ARRAY_BUFFER, xy, GL_STREAM_DRAW );
+		glBindBuffer( GL_ARRAY_BUFFER, 0 );
+		glBindVertexArray( vao );
+		glDrawArrays( mode, 0, nVertices );
+		glBindVertexArray( 0 );
+		ShaderProgram.unuse();
+	}
+}
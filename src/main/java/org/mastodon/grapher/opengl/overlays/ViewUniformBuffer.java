@@ -0,0 +1,86 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+
+/**
+ * The uniform buffer holding the view transform shared by all the shader
+ * programs of a canvas.
+ * <p>
+ * Shaders declare it as:
+ *
+ * <pre>
+ * layout( std140 ) uniform View
+ * {
+ * 	mat4 projection;
+ * };
+ * </pre>
+ *
+ * and {@link ShaderProgram} binds this block to {@link #BINDING} when it links
+ * a program. The canvas updates the buffer once per frame, so that overlays do
+ * not need to set the view transform themselves.
+ */
+public class ViewUniformBuffer
+{
+
+	/**
+	 * Name of the uniform block in the shaders.
+	 */
+	public static final String BLOCK_NAME = "View";
+
+	/**
+	 * Uniform buffer binding point of the view transform.
+	 */
+	public static final int BINDING = 0;
+
+	private static final int MATRIX_SIZE = 16;
+
+	private final float[] projection = new float[ MATRIX_SIZE ];
+
+	private int handle;
+
+	/**
+	 * Creates the uniform buffer and binds it to {@link #BINDING}. Must be
+	 * called with the OpenGL context current.
+	 */
+	public void init()
+	{
+		handle = glGenBuffers();
+		glBindBuffer( GL_UNIFORM_BUFFER, handle );
+		glBufferData( GL_UNIFORM_BUFFER, ( long ) MATRIX_SIZE * Float.BYTES, GL_DYNAMIC_DRAW );
+		glBindBuffer( GL_UNIFORM_BUFFER, 0 );
+		glBindBufferBase( GL_UNIFORM_BUFFER, BINDING, handle );
+	}
+
+	/**
+	 * Sets the view to an orthographic projection of the specified layout
+	 * rectangle. Must be called with the OpenGL context current.
+	 *
+	 * @param minX
+	 *            the layout X coordinate of the left border.
+	 * @param maxX
+	 *            the layout X coordinate of the right border.
+	 * @param minY
+	 *            the layout Y coordinate of the bottom border.
+	 * @param maxY
+	 *            the layout Y coordinate of the top border.
+	 */
+	public void setOrtho( final double minX, final double maxX, final double minY, final double maxY )
+	{
+		// Column-major, same as glOrtho( minX, maxX, minY, maxY, -1, 1 ).
+		projection[ 0 ] = ( float ) ( 2. / ( maxX - minX ) );
+		projection[ 5 ] = ( float ) ( 2. / ( maxY - minY ) );
+		projection[ 10 ] = -1f;
+		projection[ 12 ] = ( float ) ( -( maxX + minX ) / ( maxX - minX ) );
+		projection[ 13 ] = ( float ) ( -( maxY + minY ) / ( maxY - minY ) );
+		projection[ 15 ] = 1f;
+		glBindBuffer( GL_UNIFORM_BUFFER, handle );
+		glBufferSubData( GL_UNIFORM_BUFFER, 0, projection );
+		glBindBuffer( GL_UNIFORM_BUFFER, 0 );
+	}
+}
@@ -0,0 +1,110 @@
+package org.mastodon.grapher.opengl.util;
+
+/**
+ * A 2D histogram of point positions over their bounding box.
+ * <p>
+ * The grid is the finest level of a multi-resolution density pyramid: coarser
+ * levels are obtained by averaging blocks of cells, which is what OpenGL
+ * mipmaps of the grid do.
+ */
+public class DensityGrid
+{
+
+	/**
+	 * Default number of cells along X and Y.
+	 */
+	public static final int DEFAULT_RESOLUTION = 1024;
+
+	public final float minX;
+
+	public final float maxX;
+
+	public final float minY;
+
+	public final float maxY;
+
+	public final int width;
+
+	public final int height;
+
+	/**
+	 * Point counts, row by row, starting at <code>minY</code>.
+	 */
+	public final float[] counts;
+
+	/**
+	 * The largest point count in a cell.
+	 */
+	public final float maxCount;
+
+	private DensityGrid( final float minX, final float maxX, final float minY, final float maxY, final int width, final int height, final float[] counts, final float maxCount )
+	{
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+		this.width = width;
+		this.height = height;
+		this.counts = counts;
+		this.maxCount = maxCount;
+	}
+
+	/**
+	 * Computes the density grid of the specified points. Points with a NaN
+	 * coordinate are ignored.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param n
+	 *            the number of points to use, from the start of the array.
+	 * @param resolution
+	 *            the number of cells along X and Y.
+	 * @return a new density grid.
+	 */
+	public static DensityGrid compute( final float[] xy, final int n, final int resolution )
+	{
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		for ( int i = 0; i < n; i++ )
+		{
+			final float x = xy[ 2 * i ];
+			final float y = xy[ 2 * i + 1 ];
+			if ( Float.isNaN( x ) || Float.isNaN( y ) )
+				continue;
+			minX = Math.min( minX, x );
+			maxX = Math.max( maxX, x );
+			minY = Math.min( minY, y );
+			maxY = Math.max( maxY, y );
+		}
+		if ( minX > maxX )
+		{
+			// No valid point.
+			minX = maxX = minY = maxY = 0f;
+		}
+		// Avoid empty extents.
+		if ( maxX <= minX )
+			maxX = minX + 1f;
+		if ( maxY <= minY )
+			maxY = minY + 1f;
+
+		final float[] counts = new float[ resolution * resolution ];
+		final float sx = resolution / ( maxX - minX );
+		final float sy = resolution / ( maxY - minY );
+		float maxCount = 0f;
+		for ( int i = 0; i < n; i++ )
+		{
+			final float x = xy[ 2 * i ];
+			final float y = xy[ 2 * i + 1 ];
+			if ( Float.isNaN( x ) || Float.isNaN( y ) )
+				continue;
+			// Points on the max border go in the last cell.
+			final int cx = Math.min( resolution - 1, ( int ) ( ( x - minX ) * sx ) );
+			final int cy = Math.min( resolution - 1, ( int ) ( ( y - minY ) * sy ) );
+			final float c = ++counts[ cy * resolution + cx ];
+			maxCount = Math.max( maxCount, c );
+		}
+		return new DensityGrid( minX, maxX, minY, maxY, resolution, resolution, counts, maxCount );
+	}
+}
@@ -0,0 +1,113 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.BitSet;
+
+import org.mastodon.RefPool;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Collects the edges of a graph whose source and target both belong to a set
+ * of vertices.
+ * <p>
+ * The vertex set is given as an array of vertex pool indices, and as a bitset
+ * over pool indices for membership queries. Each edge is visited once, from
+ * its source vertex, so that no hash lookup is needed.
+ */
+public class InducedEdges
+{
+
+	/**
+	 * Returns the pool indices of the edges between vertices of the specified
+	 * set. Edges are returned in the order of their source vertex in the
+	 * specified array, whether they are collected in parallel or not.
+	 *
+	 * @param graph
+	 *            the graph.
+	 * @param vertexPool
+	 *            the pool of the graph vertices.
+	 * @param edgePool
+	 *            the pool of the graph edges.
+	 * @param vertexIds
+	 *            the pool indices of the vertices in the set.
+	 * @param members
+	 *            a bitset over vertex pool indices, set for the vertices in
+	 *            the set.
+	 * @param parallel
+	 *            if <code>true</code>, the edges are collected with several
+	 *            threads.
+	 * @return a new array of edge pool indices.
+	 */
+	public static < V extends Vertex< E >, E extends Edge< V > > int[] collect(
+			final ReadOnlyGraph< V, E > graph,
+			final RefPool< V > vertexPool,
+			final RefPool< E > edgePool,
+			final int[] vertexIds,
+			final BitSet members,
+			final boolean parallel )
+	{
+		final int nChunks = Parallel.numChunks( vertexIds.length, parallel );
+		final TIntArrayList[] chunkEdges = new TIntArrayList[ nChunks ];
+		Parallel.forEachChunk( vertexIds.length, parallel, ( chunk, from, to ) -> {
+			final TIntArrayList out = new TIntArrayList( to - from );
+			final V vref = graph.vertexRef();
+			final V tref = graph.vertexRef();
+			try
+			{
+				for ( int i = from; i < to; i++ )
+				{
+					final V v = vertexPool.getObject( vertexIds[ i ], vref );
+					for ( final E e : v.outgoingEdges() )
+					{
+						final V target = e.getTarget( tref );
+						if ( members.get( vertexPool.getId( target ) ) )
+							out.add( edgePool.getId( e ) );
+					}
+				}
+			}
+			finally
+			{
+				graph.releaseRef( vref );
+				graph.releaseRef( tref );
+			}
+			chunkEdges[ chunk ] = out;
+		} );
+
+		// Concatenate in chunk order.
+		int n = 0;
+		for ( final TIntArrayList list : chunkEdges )
+			n += list.size();
+		final int[] edgeIds = new int[ n ];
+		int offset = 0;
+		for ( final TIntArrayList list : chunkEdges )
+		{
+			list.toArray( edgeIds, 0, offset, list.size() );
+			offset += list.size();
+		}
+		return edgeIds;
+	}
+
+	/**
+	 * Returns a bitset over pool indices, set for the specified indices.
+	 *
+	 * @param ids
+	 *            the pool indices.
+	 * @return a new bitset.
+	 */
+	public static BitSet toBitSet( final int[] ids )
+	{
+		int max = -1;
+		for ( final int id : ids )
+			max = Math.max( max, id );
+		final BitSet bs = new BitSet( max + 1 );
+		for ( final int id : ids )
+			bs.set( id );
+		return bs;
+	}
+
+	private InducedEdges()
+	{}
+}
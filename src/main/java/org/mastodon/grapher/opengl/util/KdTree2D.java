@@ -0,0 +1,438 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A 2D kd-tree over points given as flat arrays of coordinates and object ids,
+ * such as the vertex positions and pool indices of a layout.
+ * <p>
+ * The tree is implicit: the points are reordered in place so that the median
+ * of each range of points, along X at even depths and Y at odd depths, is at
+ * the middle of the range. The points before it are not larger, the points
+ * after it not smaller. Small ranges are leaves, scanned linearly. The tree
+ * therefore only stores one <code>float[]</code> and one <code>int[]</code>,
+ * with no per-node object.
+ * <p>
+ * The tree copies the points when it is built, and is not modified
+ * afterwards. It can be queried concurrently.
+ */
+public class KdTree2D
+{
+
+	/**
+	 * Ranges of at most this many points are not split.
+	 */
+	private static final int LEAF_SIZE = 8;
+
+	/**
+	 * Ranges of at most this many points are built on a single thread.
+	 */
+	private static final int PARALLEL_BUILD_SIZE = Parallel.MIN_CHUNK_SIZE;
+
+	/**
+	 * X and Y coordinates of the points, interleaved, in tree order.
+	 */
+	private final float[] xy;
+
+	/**
+	 * Id of each point, in tree order.
+	 */
+	private final int[] ids;
+
+	private final int size;
+
+	private KdTree2D( final float[] xy, final int[] ids, final int size )
+	{
+		this.xy = xy;
+		this.ids = ids;
+		this.size = size;
+	}
+
+	/**
+	 * Builds a kd-tree over the specified points. Points with a NaN coordinate
+	 * are not included.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved. Not
+	 *            modified.
+	 * @param ids
+	 *            the id of each point, returned by queries. Not modified.
+	 * @param n
+	 *            the number of points.
+	 * @param parallel
+	 *            if <code>true</code>, the tree is built with several threads.
+	 * @return a new kd-tree.
+	 */
+	public static KdTree2D build( final float[] xy, final int[] ids, final int n, final boolean parallel )
+	{
+		int size = 0;
+		for ( int i = 0; i < n; i++ )
+			if ( !Float.isNaN( xy[ 2 * i ] ) && !Float.isNaN( xy[ 2 * i + 1 ] ) )
+				size++;
+
+		final float[] treeXY = new float[ 2 * size ];
+		final int[] treeIds = new int[ size ];
+		int k = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			final float x = xy[ 2 * i ];
+			final float y = xy[ 2 * i + 1 ];
+			if ( Float.isNaN( x ) || Float.isNaN( y ) )
+				continue;
+			treeXY[ 2 * k ] = x;
+			treeXY[ 2 * k + 1 ] = y;
+			treeIds[ k++ ] = ids[ i ];
+		}
+
+		final KdTree2D tree = new KdTree2D( treeXY, treeIds, size );
+		if ( parallel && size > PARALLEL_BUILD_SIZE )
+			ForkJoinPool.commonPool().invoke( tree.new BuildTask( 0, size, 0 ) );
+		else
+			tree.build( 0, size, 0 );
+		return tree;
+	}
+
+	/**
+	 * Returns the number of points in the tree.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Collects the ids of the points in the specified rectangle, bounds
+	 * included.
+	 *
+	 * @param minX
+	 *            the min X of the rectangle.
+	 * @param maxX
+	 *            the max X of the rectangle.
+	 * @param minY
+	 *            the min Y of the rectangle.
+	 * @param maxY
+	 *            the max Y of the rectangle.
+	 * @param out
+	 *            receives the ids of the points.
+	 */
+	public void range( final double minX, final double maxX, final double minY, final double maxY, final TIntArrayList out )
+	{
+		final int start = out.size();
+		collect( 0, size, 0, minX, maxX, minY, maxY, out );
+		for ( int i = start; i < out.size(); i++ )
+			out.setQuick( i, ids[ out.getQuick( i ) ] );
+	}
+
+	/**
+	 * Collects the ids of the points inside the specified polygon. The points
+	 * in its bounding box are found with the tree, and then tested against
+	 * the polygon, in parallel chunks. Ids are added in the same order whether
+	 * they are tested in parallel or not.
+	 *
+	 * @param polygon
+	 *            the polygon.
+	 * @param parallel
+	 *            if <code>true</code>, the candidates are tested with several
+	 *            threads.
+	 * @param out
+	 *            receives the ids of the points.
+	 */
+	public void polygon( final Polygon2D polygon, final boolean parallel, final TIntArrayList out )
+	{
+		if ( polygon.numVertices() < 3 )
+			return;
+		final TIntArrayList candidates = new TIntArrayList();
+		collect( 0, size, 0, polygon.minX, polygon.maxX, polygon.minY, polygon.maxY, candidates );
+
+		final int n = candidates.size();
+		final TIntArrayList[] chunkIds = new TIntArrayList[ Parallel.numChunks( n, parallel ) ];
+		Parallel.forEachChunk( n, parallel, ( chunk, from, to ) -> {
+			final TIntArrayList found = new TIntArrayList();
+			for ( int c = from; c < to; c++ )
+			{
+				final int i = candidates.getQuick( c );
+				if ( polygon.contains( xy[ 2 * i ], xy[ 2 * i + 1 ] ) )
+					found.add( ids[ i ] );
+			}
+			chunkIds[ chunk ] = found;
+		} );
+		for ( final TIntArrayList found : chunkIds )
+			out.addAll( found );
+	}
+
+	/**
+	 * Finds the points nearest to the specified position, within a maximal
+	 * distance. The distance can be measured with a different scale along X
+	 * and Y, for instance in screen pixels when the layout is scaled
+	 * anisotropically.
+	 * <p>
+	 * At most <code>ids.length</code> points are returned.
+	 *
+	 * @param x
+	 *            the X coordinate of the position.
+	 * @param y
+	 *            the Y coordinate of the position.
+	 * @param scaleX
+	 *            the factor applied to X differences.
+	 * @param scaleY
+	 *            the factor applied to Y differences.
+	 * @param maxDistance
+	 *            the maximal scaled distance of the points, inclusive. Use
+	 *            {@link Double#POSITIVE_INFINITY} for no limit.
+	 * @param ids
+	 *            output, receives the ids of the points, nearest first.
+	 * @param distances
+	 *            output, receives the scaled distances of the points. Must be
+	 *            as long as <code>ids</code>.
+	 * @return the number of points found.
+	 */
+	public int nearest(
+			final double x,
+			final double y,
+			final double scaleX,
+			final double scaleY,
+			final double maxDistance,
+			final int[] ids,
+			final double[] distances )
+	{
+		final Search search = new Search( x, y, scaleX, scaleY, maxDistance * maxDistance, ids, distances );
+		search.search( 0, size, 0 );
+		for ( int i = 0; i < search.count; i++ )
+		{
+			ids[ i ] = this.ids[ ids[ i ] ];
+			distances[ i ] = Math.sqrt( distances[ i ] );
+		}
+		return search.count;
+	}
+
+	/**
+	 * Collects the tree indices of the points in the specified rectangle.
+	 */
+	private void collect(
+			final int from,
+			final int to,
+			final int depth,
+			final double minX,
+			final double maxX,
+			final double minY,
+			final double maxY,
+			final TIntArrayList out )
+	{
+		if ( to - from <= LEAF_SIZE )
+		{
+			for ( int i = from; i < to; i++ )
+			{
+				final float x = xy[ 2 * i ];
+				final float y = xy[ 2 * i + 1 ];
+				if ( x >= minX && x <= maxX && y >= minY && y <= maxY )
+					out.add( i );
+			}
+			return;
+		}
+
+		final int mid = ( from + to ) >>> 1;
+		final int dim = depth & 1;
+		final float split = xy[ 2 * mid + dim ];
+		final double min = dim == 0 ? minX : minY;
+		final double max = dim == 0 ? maxX : maxY;
+		if ( min <= split )
+			collect( from, mid, depth + 1, minX, maxX, minY, maxY, out );
+		final float x = xy[ 2 * mid ];
+		final float y = xy[ 2 * mid + 1 ];
+		if ( x >= minX && x <= maxX && y >= minY && y <= maxY )
+			out.add( mid );
+		if ( max >= split )
+			collect( mid + 1, to, depth + 1, minX, maxX, minY, maxY, out );
+	}
+
+	/**
+	 * State of a nearest neighbor search. Found points are kept sorted by
+	 * squared distance in the output arrays, and converted at the end.
+	 */
+	private final class Search
+	{
+
+		private final double x;
+
+		private final double y;
+
+		private final double scaleX;
+
+		private final double scaleY;
+
+		private final double maxSqDistance;
+
+		private final int[] found;
+
+		private final double[] sqDistances;
+
+		private int count;
+
+		private Search( final double x, final double y, final double scaleX, final double scaleY, final double maxSqDistance, final int[] found, final double[] sqDistances )
+		{
+			this.x = x;
+			this.y = y;
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+			this.maxSqDistance = maxSqDistance;
+			this.found = found;
+			this.sqDistances = sqDistances;
+		}
+
+		/**
+		 * The squared distance a point must not exceed to be found.
+		 */
+		private double bound()
+		{
+			return count < found.length ? maxSqDistance : sqDistances[ count - 1 ];
+		}
+
+		private void search( final int from, final int to, final int depth )
+		{
+			if ( to - from <= LEAF_SIZE )
+			{
+				for ( int i = from; i < to; i++ )
+					offer( i );
+				return;
+			}
+
+			final int mid = ( from + to ) >>> 1;
+			final int dim = depth & 1;
+			final double diff = dim == 0
+					? ( x - xy[ 2 * mid ] ) * scaleX
+					: ( y - xy[ 2 * mid + 1 ] ) * scaleY;
+			if ( diff < 0 )
+				search( from, mid, depth + 1 );
+			else
+				search( mid + 1, to, depth + 1 );
+			offer( mid );
+			if ( diff * diff <= bound() )
+			{
+				if ( diff < 0 )
+					search( mid + 1, to, depth + 1 );
+				else
+					search( from, mid, depth + 1 );
+			}
+		}
+
+		private void offer( final int i )
+		{
+			if ( found.length == 0 )
+				return;
+			final double dx = ( xy[ 2 * i ] - x ) * scaleX;
+			final double dy = ( xy[ 2 * i + 1 ] - y ) * scaleY;
+			final double d2 = dx * dx + dy * dy;
+			if ( count < found.length ? d2 > maxSqDistance : d2 >= sqDistances[ count - 1 ] )
+				return;
+
+			// Insertion in the sorted arrays, dropping the farthest if full.
+			int k = count < found.length ? count++ : count - 1;
+			while ( k > 0 && sqDistances[ k - 1 ] > d2 )
+			{
+				sqDistances[ k ] = sqDistances[ k - 1 ];
+				found[ k ] = found[ k - 1 ];
+				k--;
+			}
+			sqDistances[ k ] = d2;
+			found[ k ] = i;
+		}
+	}
+
+	/*
+	 * Construction.
+	 */
+
+	private void build( final int from, final int to, final int depth )
+	{
+		if ( to - from <= LEAF_SIZE )
+			return;
+		final int mid = ( from + to ) >>> 1;
+		select( from, to, mid, depth & 1 );
+		build( from, mid, depth + 1 );
+		build( mid + 1, to, depth + 1 );
+	}
+
+	private final class BuildTask extends RecursiveAction
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		private final int depth;
+
+		private BuildTask( final int from, final int to, final int depth )
+		{
+			this.from = from;
+			this.to = to;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= PARALLEL_BUILD_SIZE )
+			{
+				build( from, to, depth );
+				return;
+			}
+			final int mid = ( from + to ) >>> 1;
+			select( from, to, mid, depth & 1 );
+			invokeAll(
+					new BuildTask( from, mid, depth + 1 ),
+					new BuildTask( mid + 1, to, depth + 1 ) );
+		}
+	}
+
+	/**
+	 * Reorders the points in <code>[from, to[</code> so that the point at
+	 * <code>k</code> has the coordinate it would have if they were sorted
+	 * along the specified dimension, with no larger coordinate before and no
+	 * smaller after. Quickselect with Hoare partitioning, which handles many
+	 * equal coordinates well.
+	 */
+	private void select( final int from, final int to, final int k, final int dim )
+	{
+		int lo = from;
+		int hi = to - 1;
+		while ( hi > lo )
+		{
+			final float pivot = xy[ 2 * ( ( lo + hi ) >>> 1 ) + dim ];
+			int i = lo;
+			int j = hi;
+			while ( i <= j )
+			{
+				while ( xy[ 2 * i + dim ] < pivot )
+					i++;
+				while ( xy[ 2 * j + dim ] > pivot )
+					j--;
+				if ( i <= j )
+					swap( i++, j-- );
+			}
+			if ( k <= j )
+				hi = j;
+			else if ( k >= i )
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private void swap( final int i, final int j )
+	{
+		final float x = xy[ 2 * i ];
+		final float y = xy[ 2 * i + 1 ];
+		xy[ 2 * i ] = xy[ 2 * j ];
+		xy[ 2 * i + 1 ] = xy[ 2 * j + 1 ];
+		xy[ 2 * j ] = x;
+		xy[ 2 * j + 1 ] = y;
+		final int id = ids[ i ];
+		ids[ i ] = ids[ j ];
+		ids[ j ] = id;
+	}
+}
@@ -0,0 +1,41 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.nio.ByteOrder;
+
+/**
+ * Static utilities to pack colors as 32-bit RGBA integers.
+ * <p>
+ * A packed color is an <code>int</code> whose bytes, in native order, are the
+ * red, green, blue and alpha channels. An array of packed colors can therefore
+ * be uploaded to OpenGL as is, and read as 4 normalized
+ * <code>GL_UNSIGNED_BYTE</code> per element.
+ */
+public class PackedColors
+{
+
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * Converts an ARGB color, as returned by {@link java.awt.Color#getRGB()},
+	 * to a packed RGBA color.
+	 *
+	 * @param argb
+	 *            the ARGB color.
+	 * @return the packed RGBA color.
+	 */
+	public static int fromARGB( final int argb )
+	{
+		if ( LITTLE_ENDIAN )
+		{
+			// Bytes in memory: R, G, B, A. Swap R and B in place.
+			return ( argb & 0xFF00FF00 )
+					| ( ( argb >> 16 ) & 0xFF )
+					| ( ( argb & 0xFF ) << 16 );
+		}
+		// Rotate alpha to the lowest byte.
+		return ( argb << 8 ) | ( argb >>> 24 );
+	}
+
+	private PackedColors()
+	{}
+}
@@ -0,0 +1,93 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Splits index ranges in chunks processed in parallel on the common
+ * {@link ForkJoinPool}.
+ * <p>
+ * The chunks only depend on the number of elements and on whether processing
+ * is parallel, so that workers writing to disjoint slices of output arrays
+ * produce deterministic results.
+ */
+public class Parallel
+{
+
+	/**
+	 * Ranges smaller than this are not split.
+	 */
+	public static final int MIN_CHUNK_SIZE = 16 * 1024;
+
+	/**
+	 * Receives a chunk of a range.
+	 */
+	@FunctionalInterface
+	public interface RangeConsumer
+	{
+		/**
+		 * Processes the elements in the range <code>[from, to[</code>.
+		 *
+		 * @param chunk
+		 *            the index of the chunk.
+		 * @param from
+		 *            the first index of the chunk, inclusive.
+		 * @param to
+		 *            the last index of the chunk, exclusive.
+		 */
+		void accept( int chunk, int from, int to );
+	}
+
+	/**
+	 * Returns the number of chunks the range <code>[0, n[</code> is split in.
+	 *
+	 * @param n
+	 *            the number of elements.
+	 * @param parallel
+	 *            whether the elements are processed in parallel. If
+	 *            <code>false</code>, there is a single chunk.
+	 * @return the number of chunks.
+	 */
+	public static int numChunks( final int n, final boolean parallel )
+	{
+		if ( !parallel || n <= MIN_CHUNK_SIZE )
+			return 1;
+		final int maxChunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+		return Math.max( 1, Math.min( maxChunks, n / MIN_CHUNK_SIZE ) );
+	}
+
+	/**
+	 * Processes the range <code>[0, n[</code> in chunks.
+	 *
+	 * @param n
+	 *            the number of elements.
+	 * @param parallel
+	 *            if <code>true</code> the chunks are processed in parallel,
+	 *            otherwise the whole range is processed on the calling thread.
+	 * @param consumer
+	 *            the chunk consumer.
+	 * @return the number of chunks.
+	 */
+	public static int forEachChunk( final int n, final boolean parallel, final RangeConsumer consumer )
+	{
+		final int nChunks = numChunks( n, parallel );
+		if ( nChunks == 1 )
+		{
+			consumer.accept( 0, 0, n );
+			return 1;
+		}
+		IntStream.range( 0, nChunks ).parallel().forEach( chunk -> consumer.accept(
+				chunk,
+				chunkStart( n, nChunks, chunk ),
+				chunkStart( n, nChunks, chunk + 1 ) ) );
+		return nChunks;
+	}
+
+	private static int chunkStart( final int n, final int nChunks, final int chunk )
+	{
+		return ( int ) ( ( long ) n * chunk / nChunks );
+	}
+
+	private Parallel()
+	{}
+}
@@ -0,0 +1,206 @@
+package org.mastodon.grapher.opengl.util;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Answers range queries over points given as flat arrays of coordinates and
+ * ids by scanning all of them, in parallel chunks. No index needs to be built,
+ * so this is faster than a {@link KdTree2D} when the points change more often
+ * than they are queried.
+ */
+public class PointScan
+{
+
+	/**
+	 * Collects the ids of the points in the specified rectangle, bounds
+	 * included. Points with a NaN coordinate are never found. Ids are added in
+	 * the order of the points, whether they are scanned in parallel or not.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param ids
+	 *            the id of each point.
+	 * @param n
+	 *            the number of points.
+	 * @param minX
+	 *            the min X of the rectangle.
+	 * @param maxX
+	 *            the max X of the rectangle.
+	 * @param minY
+	 *            the min Y of the rectangle.
+	 * @param maxY
+	 *            the max Y of the rectangle.
+	 * @param parallel
+	 *            if <code>true</code>, the points are scanned with several
+	 *            threads.
+	 * @param out
+	 *            receives the ids of the points.
+	 */
+	public static void range(
+			final float[] xy,
+			final int[] ids,
+			final int n,
+			final double minX,
+			final double maxX,
+			final double minY,
+			final double maxY,
+			final boolean parallel,
+			final TIntArrayList out )
+	{
+		final int nChunks = Parallel.numChunks( n, parallel );
+		if ( nChunks == 1 )
+		{
+			scan( xy, ids, 0, n, minX, maxX, minY, maxY, out );
+			return;
+		}
+
+		final TIntArrayList[] chunkIds = new TIntArrayList[ nChunks ];
+		Parallel.forEachChunk( n, parallel, ( chunk, from, to ) -> {
+			final TIntArrayList found = new TIntArrayList();
+			scan( xy, ids, from, to, minX, maxX, minY, maxY, found );
+			chunkIds[ chunk ] = found;
+		} );
+		for ( final TIntArrayList found : chunkIds )
+			out.addAll( found );
+	}
+
+	/**
+	 * Collects the ids of the points inside the specified polygon. Points
+	 * outside of its bounding box are rejected before the exact test. Ids are
+	 * added in the order of the points, whether they are scanned in parallel
+	 * or not.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param ids
+	 *            the id of each point.
+	 * @param n
+	 *            the number of points.
+	 * @param polygon
+	 *            the polygon.
+	 * @param parallel
+	 *            if <code>true</code>, the points are scanned with several
+	 *            threads.
+	 * @param out
+	 *            receives the ids of the points.
+	 */
+	public static void polygon(
+			final float[] xy,
+			final int[] ids,
+			final int n,
+			final Polygon2D polygon,
+			final boolean parallel,
+			final TIntArrayList out )
+	{
+		if ( polygon.numVertices() < 3 )
+			return;
+		final TIntArrayList[] chunkIds = new TIntArrayList[ Parallel.numChunks( n, parallel ) ];
+		Parallel.forEachChunk( n, parallel, ( chunk, from, to ) -> {
+			final TIntArrayList found = new TIntArrayList();
+			for ( int i = from; i < to; i++ )
+				if ( polygon.contains( xy[ 2 * i ], xy[ 2 * i + 1 ] ) )
+					found.add( ids[ i ] );
+			chunkIds[ chunk ] = found;
+		} );
+		for ( final TIntArrayList found : chunkIds )
+			out.addAll( found );
+	}
+
+	/**
+	 * Returns the id of the point nearest to the specified position, within
+	 * a maximal distance. The distance can be measured with a different scale
+	 * along X and Y, as in {@link KdTree2D#nearest}. Ties are resolved in
+	 * favor of the first point, whether the points are scanned in parallel or
+	 * not.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param ids
+	 *            the id of each point.
+	 * @param n
+	 *            the number of points.
+	 * @param x
+	 *            the X coordinate of the position.
+	 * @param y
+	 *            the Y coordinate of the position.
+	 * @param scaleX
+	 *            the factor applied to X differences.
+	 * @param scaleY
+	 *            the factor applied to Y differences.
+	 * @param maxDistance
+	 *            the maximal scaled distance of the point, inclusive.
+	 * @param parallel
+	 *            if <code>true</code>, the points are scanned with several
+	 *            threads.
+	 * @return the id of the nearest point, or -1 if there is no point within
+	 *         the maximal distance.
+	 */
+	public static int nearest(
+			final float[] xy,
+			final int[] ids,
+			final int n,
+			final double x,
+			final double y,
+			final double scaleX,
+			final double scaleY,
+			final double maxDistance,
+			final boolean parallel )
+	{
+		final int nChunks = Parallel.numChunks( n, parallel );
+		final int[] chunkBest = new int[ nChunks ];
+		final double[] chunkDistance = new double[ nChunks ];
+		final double maxSqDistance = maxDistance * maxDistance;
+		Parallel.forEachChunk( n, parallel, ( chunk, from, to ) -> {
+			int best = -1;
+			double bestSqDistance = maxSqDistance;
+			for ( int i = from; i < to; i++ )
+			{
+				final double dx = ( xy[ 2 * i ] - x ) * scaleX;
+				final double dy = ( xy[ 2 * i + 1 ] - y ) * scaleY;
+				final double d2 = dx * dx + dy * dy;
+				if ( d2 < bestSqDistance || ( best < 0 && d2 <= bestSqDistance ) )
+				{
+					best = i;
+					bestSqDistance = d2;
+				}
+			}
+			chunkBest[ chunk ] = best;
+			chunkDistance[ chunk ] = bestSqDistance;
+		} );
+
+		int best = -1;
+		double bestSqDistance = Double.POSITIVE_INFINITY;
+		for ( int chunk = 0; chunk < nChunks; chunk++ )
+		{
+			if ( chunkBest[ chunk ] >= 0 && chunkDistance[ chunk ] < bestSqDistance )
+			{
+				best = chunkBest[ chunk ];
+				bestSqDistance = chunkDistance[ chunk ];
+			}
+		}
+		return best < 0 ? -1 : ids[ best ];
+	}
+
+	private static void scan(
+			final float[] xy,
+			final int[] ids,
+			final int from,
+			final int to,
+			final double minX,
+			final double maxX,
+			final double minY,
+			final double maxY,
+			final TIntArrayList out )
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			final float x = xy[ 2 * i ];
+			final float y = xy[ 2 * i + 1 ];
+			if ( x >= minX && x <= maxX && y >= minY && y <= maxY )
+				out.add( ids[ i ] );
+		}
+	}
+
+	private PointScan()
+	{}
+}
@@ -0,0 +1,163 @@
+package org.mastodon.grapher.opengl.util;
+
+/**
+ * A closed polygon, not necessarily convex, with a fast point-in-polygon test
+ * for polygons with many vertices, such as a freehand lasso.
+ * <p>
+ * The bounding box of the polygon is split in horizontal bands, and each band
+ * lists the edges that overlap it. A point is tested with the even-odd rule
+ * against the edges of its band only, instead of all the edges.
+ * <p>
+ * The polygon is not modified after it is created, and can be queried
+ * concurrently.
+ */
+public class Polygon2D
+{
+
+	/**
+	 * Average number of edges per band, for polygons with edges of similar
+	 * heights.
+	 */
+	private static final int EDGES_PER_BAND = 4;
+
+	public final double minX;
+
+	public final double maxX;
+
+	public final double minY;
+
+	public final double maxY;
+
+	/**
+	 * X and Y coordinates of the vertices, interleaved.
+	 */
+	private final double[] xy;
+
+	private final int nBands;
+
+	private final double bandHeight;
+
+	/**
+	 * First index in {@link #bandEdges} of each band, plus the total number
+	 * of band edges.
+	 */
+	private final int[] bandStarts;
+
+	/**
+	 * Edges overlapping each band. Edge <code>i</code> goes from vertex
+	 * <code>i</code> to vertex <code>i + 1</code>, modulo the number of
+	 * vertices.
+	 */
+	private final int[] bandEdges;
+
+	/**
+	 * Creates a polygon.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the vertices, interleaved. The
+	 *            polygon is implicitly closed. Not copied, must not be
+	 *            modified afterwards.
+	 */
+	public Polygon2D( final double[] xy )
+	{
+		this.xy = xy;
+		final int n = xy.length / 2;
+		double x0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		for ( int i = 0; i < n; i++ )
+		{
+			x0 = Math.min( x0, xy[ 2 * i ] );
+			x1 = Math.max( x1, xy[ 2 * i ] );
+			y0 = Math.min( y0, xy[ 2 * i + 1 ] );
+			y1 = Math.max( y1, xy[ 2 * i + 1 ] );
+		}
+		minX = x0;
+		maxX = x1;
+		minY = y0;
+		maxY = y1;
+
+		nBands = Math.max( 1, n / EDGES_PER_BAND );
+		bandHeight = ( n == 0 || maxY <= minY ) ? 1. : ( maxY - minY ) / nBands;
+
+		// Counting sort of the edges in the bands they overlap.
+		bandStarts = new int[ nBands + 1 ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final int b0 = firstBand( i );
+			final int b1 = lastBand( i );
+			for ( int b = b0; b <= b1; b++ )
+				bandStarts[ b + 1 ]++;
+		}
+		for ( int b = 0; b < nBands; b++ )
+			bandStarts[ b + 1 ] += bandStarts[ b ];
+		bandEdges = new int[ bandStarts[ nBands ] ];
+		final int[] next = new int[ nBands ];
+		System.arraycopy( bandStarts, 0, next, 0, nBands );
+		for ( int i = 0; i < n; i++ )
+		{
+			final int b0 = firstBand( i );
+			final int b1 = lastBand( i );
+			for ( int b = b0; b <= b1; b++ )
+				bandEdges[ next[ b ]++ ] = i;
+		}
+	}
+
+	/**
+	 * Returns the number of vertices of the polygon.
+	 */
+	public int numVertices()
+	{
+		return xy.length / 2;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified point is inside the polygon,
+	 * with the even-odd rule.
+	 *
+	 * @param x
+	 *            the X coordinate of the point.
+	 * @param y
+	 *            the Y coordinate of the point.
+	 * @return whether the point is in the polygon.
+	 */
+	public boolean contains( final double x, final double y )
+	{
+		if ( !( x >= minX && x <= maxX && y >= minY && y <= maxY ) )
+			return false;
+
+		final int band = band( y );
+		final int n = xy.length / 2;
+		boolean inside = false;
+		for ( int k = bandStarts[ band ]; k < bandStarts[ band + 1 ]; k++ )
+		{
+			final int i = bandEdges[ k ];
+			final int j = ( i + 1 == n ) ? 0 : i + 1;
+			final double xi = xy[ 2 * i ];
+			final double yi = xy[ 2 * i + 1 ];
+			final double xj = xy[ 2 * j ];
+			final double yj = xy[ 2 * j + 1 ];
+			if ( ( yi > y ) != ( yj > y ) && x < ( xj - xi ) * ( y - yi ) / ( yj - yi ) + xi )
+				inside = !inside;
+		}
+		return inside;
+	}
+
+	private int band( final double y )
+	{
+		return Math.max( 0, Math.min( nBands - 1, ( int ) ( ( y - minY ) / bandHeight ) ) );
+	}
+
+	private int firstBand( final int edge )
+	{
+		final int j = ( edge + 1 == xy.length / 2 ) ? 0 : edge + 1;
+		return band( Math.min( xy[ 2 * edge + 1 ], xy[ 2 * j + 1 ] ) );
+	}
+
+	private int lastBand( final int edge )
+	{
+		final int j = ( edge + 1 == xy.length / 2 ) ? 0 : edge + 1;
+		return band( Math.max( xy[ 2 * edge + 1 ], xy[ 2 * j + 1 ] ) );
+	}
+}
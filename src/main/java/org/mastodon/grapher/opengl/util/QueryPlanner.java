@@ -0,0 +1,160 @@
+package org.mastodon.grapher.opengl.util;
+
+/**
+ * Chooses between scanning the points with {@link PointScan} and building a
+ * {@link KdTree2D} to answer range queries, from the number of points and from
+ * the rates at which they change and are queried.
+ * <p>
+ * Building the tree is assumed to cost about as much as
+ * {@value #BUILD_COST_PER_LEVEL} scans per level of the tree, after which a
+ * query is almost free. This cost is an estimate, not a measurement:
+ * <code>RangeQueryBenchmark</code> can be used to check it. The tree is
+ * therefore worth building if more queries than that are expected before the
+ * points change again, which is estimated from smoothed intervals between
+ * changes and between queries. When nothing happened for longer than the
+ * smoothed interval, the time since the last event is used instead, so that a
+ * plot that stops changing gets indexed.
+ * <p>
+ * Times are given by the caller, in nanoseconds.
+ */
+public class QueryPlanner
+{
+
+	public enum Mode
+	{
+		/**
+		 * Index the points when it pays off.
+		 */
+		AUTO,
+
+		/**
+		 * Never index the points.
+		 */
+		SCAN,
+
+		/**
+		 * Always index the points.
+		 */
+		INDEX
+	}
+
+	/**
+	 * Below this number of points, a scan takes about a millisecond and the
+	 * points are never indexed in {@link Mode#AUTO}.
+	 */
+	public static final int MIN_INDEXED_POINTS = 100_000;
+
+	/**
+	 * Estimated cost of building the tree, in scans per level. Not measured.
+	 */
+	public static final double BUILD_COST_PER_LEVEL = 2.;
+
+	/**
+	 * Weight of the last interval in the smoothed intervals.
+	 */
+	private static final double SMOOTHING = 0.3;
+
+	private Mode mode = Mode.AUTO;
+
+	private final Rate changes = new Rate();
+
+	private final Rate queries = new Rate();
+
+	public synchronized void setMode( final Mode mode )
+	{
+		this.mode = mode;
+	}
+
+	public synchronized Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Records that the points changed.
+	 *
+	 * @param time
+	 *            the time of the change.
+	 */
+	public synchronized void changed( final long time )
+	{
+		changes.record( time );
+	}
+
+	/**
+	 * Records that the points were queried.
+	 *
+	 * @param time
+	 *            the time of the query.
+	 */
+	public synchronized void queried( final long time )
+	{
+		queries.record( time );
+	}
+
+	/**
+	 * Returns <code>true</code> if the points should be indexed.
+	 *
+	 * @param n
+	 *            the number of points.
+	 * @param time
+	 *            the current time.
+	 * @return whether to build a {@link KdTree2D}.
+	 */
+	public synchronized boolean shouldIndex( final int n, final long time )
+	{
+		if ( n == 0 )
+			return false;
+		switch ( mode )
+		{
+		case SCAN:
+			return false;
+		case INDEX:
+			return true;
+		default:
+			break;
+		}
+		if ( n < MIN_INDEXED_POINTS )
+			return false;
+		final double changeInterval = changes.interval( time );
+		if ( changeInterval == Double.POSITIVE_INFINITY )
+			return true;
+		final double expectedQueries = changeInterval / queries.interval( time );
+		return expectedQueries >= BUILD_COST_PER_LEVEL * Math.log( n ) / Math.log( 2 );
+	}
+
+	/**
+	 * Smoothed interval between events.
+	 */
+	private static final class Rate
+	{
+
+		private boolean started;
+
+		private long last;
+
+		private double interval = Double.POSITIVE_INFINITY;
+
+		private void record( final long time )
+		{
+			if ( started )
+			{
+				final double dt = time - last;
+				interval = ( interval == Double.POSITIVE_INFINITY )
+						? dt
+						: SMOOTHING * dt + ( 1. - SMOOTHING ) * interval;
+			}
+			started = true;
+			last = time;
+		}
+
+		/**
+		 * Returns the expected interval between events, infinite if there
+		 * were less than two events.
+		 */
+		private double interval( final long time )
+		{
+			return started ? Math.max( interval, time - last ) : Double.POSITIVE_INFINITY;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package org.mastodon.grapher.opengl.util;
+
+import org.mastodon.RefPool;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.model.SelectionModel;
+
+/**
+ * Applies a selection given as arrays of vertex and edge pool indices to a
+ * {@link SelectionModel}, with its listeners paused so that they are notified
+ * once for the whole batch.
+ */
+public class SelectionBatch
+{
+
+	/**
+	 * Selects the specified vertices and edges.
+	 * <p>
+	 * The caller must hold the read lock of the graph.
+	 *
+	 * @param graph
+	 *            the graph.
+	 * @param vertexPool
+	 *            the pool of the graph vertices.
+	 * @param edgePool
+	 *            the pool of the graph edges.
+	 * @param selection
+	 *            the selection model.
+	 * @param vertexIds
+	 *            the pool indices of the vertices to select.
+	 * @param edgeIds
+	 *            the pool indices of the edges to select.
+	 * @param addToSelection
+	 *            if <code>false</code>, the selection is cleared first.
+	 */
+	public static < V extends Vertex< E >, E extends Edge< V > > void select(
+			final ReadOnlyGraph< V, E > graph,
+			final RefPool< V > vertexPool,
+			final RefPool< E > edgePool,
+			final SelectionModel< V, E > selection,
+			final int[] vertexIds,
+			final int[] edgeIds,
+			final boolean addToSelection )
+	{
+		final V vref = graph.vertexRef();
+		final E eref = graph.edgeRef();
+		selection.pauseListeners();
+		try
+		{
+			if ( !addToSelection )
+				selection.clearSelection();
+			for ( final int id : vertexIds )
+				selection.setSelected( vertexPool.getObject( id, vref ), true );
+			for ( final int id : edgeIds )
+				selection.setSelected( edgePool.getObject( id, eref ), true );
+		}
+		finally
+		{
+			selection.resumeListeners();
+			graph.releaseRef( vref );
+			graph.releaseRef( eref );
+		}
+	}
+
+	private SelectionBatch()
+	{}
+}
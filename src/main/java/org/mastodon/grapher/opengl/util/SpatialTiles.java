@@ -0,0 +1,383 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.Arrays;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Splits a range of slots in tiles, each a contiguous range of slots with the
+ * bounding box of their content in layout coordinates.
+ * <p>
+ * Tiles cover the slots <code>[0, tiledCount[</code>. Slots after them, used
+ * by objects added after the tiles were built, are not culled. The bounds of
+ * a tile are only ever expanded by {@link #include(int, float, float)} when
+ * objects move or are swapped in a tile, so that culling stays conservative
+ * even though the tiles are not spatially coherent anymore.
+ * <p>
+ * Bounds may be read while another thread expands them. A tile may then be
+ * culled for one frame with stale bounds, until the change that expanded
+ * them triggers the next repaint.
+ */
+public class SpatialTiles
+{
+
+	/**
+	 * Default maximal number of points in a quadtree tile.
+	 */
+	public static final int DEFAULT_MAX_PER_TILE = 4096;
+
+	/**
+	 * Quadtree nodes are not split further than this depth, so that many
+	 * points at the same position do not recurse forever.
+	 */
+	private static final int MAX_DEPTH = 16;
+
+	/**
+	 * First slot of each tile, plus the number of tiled slots.
+	 */
+	private final int[] starts;
+
+	/**
+	 * Min X, max X, min Y and max Y of each tile.
+	 */
+	private final float[] bounds;
+
+	/**
+	 * Creates tiles over the specified slot ranges, with empty bounds.
+	 *
+	 * @param starts
+	 *            the first slot of each tile, in increasing order, followed
+	 *            by the number of tiled slots.
+	 */
+	public SpatialTiles( final int[] starts )
+	{
+		this.starts = starts;
+		this.bounds = new float[ 4 * ( starts.length - 1 ) ];
+		resetBounds();
+	}
+
+	public int numTiles()
+	{
+		return starts.length - 1;
+	}
+
+	/**
+	 * Returns the number of slots covered by the tiles.
+	 */
+	public int tiledCount()
+	{
+		return starts[ starts.length - 1 ];
+	}
+
+	/**
+	 * Returns the tile containing the specified slot, or -1 if the slot is
+	 * not tiled.
+	 *
+	 * @param slot
+	 *            the slot.
+	 * @return the tile index.
+	 */
+	public int tileOf( final int slot )
+	{
+		if ( slot < 0 || slot >= tiledCount() )
+			return -1;
+		final int i = Arrays.binarySearch( starts, slot );
+		if ( i >= 0 )
+		{
+			// Skip empty tiles starting at the same slot.
+			int t = i;
+			while ( starts[ t + 1 ] == slot )
+				t++;
+			return t;
+		}
+		return -i - 2;
+	}
+
+	/**
+	 * Sets the bounds of all tiles to empty.
+	 */
+	public void resetBounds()
+	{
+		for ( int t = 0; t < numTiles(); t++ )
+		{
+			bounds[ 4 * t ] = Float.POSITIVE_INFINITY;
+			bounds[ 4 * t + 1 ] = Float.NEGATIVE_INFINITY;
+			bounds[ 4 * t + 2 ] = Float.POSITIVE_INFINITY;
+			bounds[ 4 * t + 3 ] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Expands the bounds of the tile containing the specified slot to include
+	 * the specified position. Does nothing if the slot is not tiled or if the
+	 * position has a NaN coordinate.
+	 *
+	 * @param slot
+	 *            the slot.
+	 * @param x
+	 *            the X position.
+	 * @param y
+	 *            the Y position.
+	 */
+	public void include( final int slot, final float x, final float y )
+	{
+		if ( Float.isNaN( x ) || Float.isNaN( y ) )
+			return;
+		final int t = tileOf( slot );
+		if ( t < 0 )
+			return;
+		bounds[ 4 * t ] = Math.min( bounds[ 4 * t ], x );
+		bounds[ 4 * t + 1 ] = Math.max( bounds[ 4 * t + 1 ], x );
+		bounds[ 4 * t + 2 ] = Math.min( bounds[ 4 * t + 2 ], y );
+		bounds[ 4 * t + 3 ] = Math.max( bounds[ 4 * t + 3 ], y );
+	}
+
+	/**
+	 * Writes the slot ranges to draw for the specified window, in layout
+	 * coordinates. Ranges of consecutive visible tiles are merged. The slots
+	 * after the tiles are always drawn.
+	 *
+	 * @param minX
+	 *            the window min X.
+	 * @param maxX
+	 *            the window max X.
+	 * @param minY
+	 *            the window min Y.
+	 * @param maxY
+	 *            the window max Y.
+	 * @param n
+	 *            the number of slots in use.
+	 * @param ranges
+	 *            output, the first (inclusive) and last (exclusive) slot of
+	 *            each range, interleaved. Must be at least
+	 *            <code>2 * ( numTiles() + 1 )</code> long.
+	 * @return the number of ranges.
+	 */
+	public int visibleRanges( final double minX, final double maxX, final double minY, final double maxY, final int n, final int[] ranges )
+	{
+		return visibleRanges( minX, maxX, minY, maxY, 0, n, ranges );
+	}
+
+	/**
+	 * Writes the slot ranges to draw for the specified window, in layout
+	 * coordinates, restricted to the slots <code>[from, to[</code>. Ranges of
+	 * consecutive visible tiles are merged. The slots after the tiles are
+	 * always drawn.
+	 *
+	 * @param minX
+	 *            the window min X.
+	 * @param maxX
+	 *            the window max X.
+	 * @param minY
+	 *            the window min Y.
+	 * @param maxY
+	 *            the window max Y.
+	 * @param from
+	 *            the first slot to draw.
+	 * @param to
+	 *            the slot after the last slot to draw, at most the number of
+	 *            slots in use.
+	 * @param ranges
+	 *            output, the first (inclusive) and last (exclusive) slot of
+	 *            each range, interleaved. Must be at least
+	 *            <code>2 * ( numTiles() + 1 )</code> long.
+	 * @return the number of ranges.
+	 */
+	public int visibleRanges( final double minX, final double maxX, final double minY, final double maxY, final int from, final int to, final int[] ranges )
+	{
+		int nRanges = 0;
+		// Skip the tiles before the first slot to draw.
+		final int firstTile = from <= 0 ? 0 : tileOf( from );
+		for ( int t = firstTile < 0 ? numTiles() : firstTile; t < numTiles() && starts[ t ] < to; t++ )
+		{
+			final int start = Math.max( from, starts[ t ] );
+			final int end = Math.min( to, starts[ t + 1 ] );
+			if ( start >= end )
+				continue;
+			if ( bounds[ 4 * t ] > maxX || bounds[ 4 * t + 1 ] < minX
+					|| bounds[ 4 * t + 2 ] > maxY || bounds[ 4 * t + 3 ] < minY )
+				continue;
+			nRanges = addRange( ranges, nRanges, start, end );
+		}
+		if ( to > tiledCount() )
+			nRanges = addRange( ranges, nRanges, Math.max( from, tiledCount() ), to );
+		return nRanges;
+	}
+
+	private static int addRange( final int[] ranges, final int nRanges, final int from, final int to )
+	{
+		if ( nRanges > 0 && ranges[ 2 * nRanges - 1 ] == from )
+		{
+			ranges[ 2 * nRanges - 1 ] = to;
+			return nRanges;
+		}
+		ranges[ 2 * nRanges ] = from;
+		ranges[ 2 * nRanges + 1 ] = to;
+		return nRanges + 1;
+	}
+
+	/**
+	 * Sorts points in the leaves of a quadtree over their bounding box. Each
+	 * leaf becomes a tile, in depth-first order so that neighbor tiles are
+	 * mostly close in space. Points with a NaN coordinate are put in a last
+	 * tile, which is never culled.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param n
+	 *            the number of points.
+	 * @param maxPerTile
+	 *            the maximal number of points in a tile, unless they are
+	 *            too close to be split.
+	 * @param order
+	 *            output, at least <code>n</code> long. Receives the index of
+	 *            the point to store in each sorted slot.
+	 * @return new tiles over the sorted slots.
+	 */
+	public static SpatialTiles quadtree( final float[] xy, final int n, final int maxPerTile, final int[] order )
+	{
+		for ( int i = 0; i < n; i++ )
+			order[ i ] = i;
+		return quadtree( xy, new int[] { 0, n }, maxPerTile, order );
+	}
+
+	/**
+	 * Sorts the points of each group of slots in the leaves of a quadtree over
+	 * the bounding box of the group. The groups keep their slots, and each
+	 * group is split in its own tiles, so that a range of groups is also a
+	 * range of tiles. Points with a NaN coordinate are put in a last tile of
+	 * their group, which is never culled.
+	 *
+	 * @param xy
+	 *            the X and Y coordinates of the points, interleaved.
+	 * @param groupStarts
+	 *            the first slot of each group, in increasing order, followed
+	 *            by the number of points.
+	 * @param maxPerTile
+	 *            the maximal number of points in a tile, unless they are
+	 *            too close to be split.
+	 * @param order
+	 *            the index of the point stored in each slot, grouped. On
+	 *            output, the points are sorted within each group.
+	 * @return new tiles over the sorted slots.
+	 */
+	public static SpatialTiles quadtree( final float[] xy, final int[] groupStarts, final int maxPerTile, final int[] order )
+	{
+		final int n = groupStarts[ groupStarts.length - 1 ];
+		final int[] tmp = new int[ n ];
+		final TIntArrayList starts = new TIntArrayList();
+		final TIntArrayList nanTiles = new TIntArrayList();
+		for ( int g = 0; g < groupStarts.length - 1; g++ )
+		{
+			final int from = groupStarts[ g ];
+			final int to = groupStarts[ g + 1 ];
+
+			// Valid points first, NaN last.
+			System.arraycopy( order, from, tmp, from, to - from );
+			float minX = Float.POSITIVE_INFINITY;
+			float maxX = Float.NEGATIVE_INFINITY;
+			float minY = Float.POSITIVE_INFINITY;
+			float maxY = Float.NEGATIVE_INFINITY;
+			int nValid = from;
+			int nanSlot = to;
+			for ( int s = from; s < to; s++ )
+			{
+				final int i = tmp[ s ];
+				final float x = xy[ 2 * i ];
+				final float y = xy[ 2 * i + 1 ];
+				if ( Float.isNaN( x ) || Float.isNaN( y ) )
+				{
+					order[ --nanSlot ] = i;
+					continue;
+				}
+				order[ nValid++ ] = i;
+				minX = Math.min( minX, x );
+				maxX = Math.max( maxX, x );
+				minY = Math.min( minY, y );
+				maxY = Math.max( maxY, y );
+			}
+
+			if ( nValid > from )
+				split( xy, order, tmp, from, nValid, minX, maxX, minY, maxY, 0, maxPerTile, starts );
+			if ( nValid < to )
+			{
+				nanTiles.add( starts.size() );
+				starts.add( nValid );
+			}
+		}
+		starts.add( n );
+
+		final SpatialTiles tiles = new SpatialTiles( starts.toArray() );
+		for ( int s = 0; s < n; s++ )
+		{
+			final int i = order[ s ];
+			tiles.include( s, xy[ 2 * i ], xy[ 2 * i + 1 ] );
+		}
+		for ( int k = 0; k < nanTiles.size(); k++ )
+		{
+			// Never culled.
+			final int t = nanTiles.get( k );
+			tiles.bounds[ 4 * t ] = Float.NEGATIVE_INFINITY;
+			tiles.bounds[ 4 * t + 1 ] = Float.POSITIVE_INFINITY;
+			tiles.bounds[ 4 * t + 2 ] = Float.NEGATIVE_INFINITY;
+			tiles.bounds[ 4 * t + 3 ] = Float.POSITIVE_INFINITY;
+		}
+		return tiles;
+	}
+
+	private static void split(
+			final float[] xy,
+			final int[] order,
+			final int[] tmp,
+			final int from,
+			final int to,
+			final float minX,
+			final float maxX,
+			final float minY,
+			final float maxY,
+			final int depth,
+			final int maxPerTile,
+			final TIntArrayList starts )
+	{
+		if ( to - from <= maxPerTile || depth >= MAX_DEPTH )
+		{
+			starts.add( from );
+			return;
+		}
+
+		// Stable partition in 4 quadrants.
+		final float cx = 0.5f * ( minX + maxX );
+		final float cy = 0.5f * ( minY + maxY );
+		final int[] counts = new int[ 4 ];
+		for ( int s = from; s < to; s++ )
+			counts[ quadrant( xy, order[ s ], cx, cy ) ]++;
+		final int[] offsets = new int[ 5 ];
+		offsets[ 0 ] = from;
+		for ( int q = 0; q < 4; q++ )
+			offsets[ q + 1 ] = offsets[ q ] + counts[ q ];
+		final int[] next = Arrays.copyOf( offsets, 4 );
+		for ( int s = from; s < to; s++ )
+		{
+			final int i = order[ s ];
+			tmp[ next[ quadrant( xy, i, cx, cy ) ]++ ] = i;
+		}
+		System.arraycopy( tmp, from, order, from, to - from );
+
+		for ( int q = 0; q < 4; q++ )
+		{
+			if ( offsets[ q ] == offsets[ q + 1 ] )
+				continue;
+			final boolean right = ( q & 1 ) != 0;
+			final boolean top = ( q & 2 ) != 0;
+			split( xy, order, tmp, offsets[ q ], offsets[ q + 1 ],
+					right ? cx : minX, right ? maxX : cx,
+					top ? cy : minY, top ? maxY : cy,
+					depth + 1, maxPerTile, starts );
+		}
+	}
+
+	private static int quadrant( final float[] xy, final int i, final float cx, final float cy )
+	{
+		return ( xy[ 2 * i ] >= cx ? 1 : 0 ) + ( xy[ 2 * i + 1 ] >= cy ? 2 : 0 );
+	}
+}
@@ -0,0 +1,223 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.Arrays;
+
+/**
+ * Offset table of slots sorted by timepoint: the slots of each timepoint are
+ * a contiguous range, and the timepoints are in increasing order. The slots
+ * of a time window <code>[t0, t1]</code> are then the single range
+ * <code>[from( t0 ), to( t1 )[</code>.
+ * <p>
+ * The table is patched with {@link #insert(int, SlotMover)} and
+ * {@link #remove(int, SlotMover)} when a slot is added to or removed from a
+ * timepoint, which move a few slots so that the timepoints stay contiguous.
+ * Ranges may be read while another thread patches the table. They may then be
+ * off by one slot for one frame, until the change that patched the table
+ * triggers the next repaint.
+ */
+public class TimepointOffsets
+{
+
+	/**
+	 * Moves the content of a slot to another slot.
+	 */
+	public interface SlotMover
+	{
+		void move( int from, int to );
+	}
+
+	/**
+	 * First slot of each timepoint, plus the number of slots. Replaced, not
+	 * modified, when the table is patched.
+	 */
+	private volatile int[] starts;
+
+	/**
+	 * Creates an offset table over the specified slot ranges.
+	 *
+	 * @param starts
+	 *            the first slot of each timepoint, from timepoint 0, in
+	 *            increasing order, followed by the number of slots.
+	 */
+	public TimepointOffsets( final int[] starts )
+	{
+		this.starts = starts;
+	}
+
+	/**
+	 * Returns the number of timepoints in the table, that is the last
+	 * timepoint plus one.
+	 */
+	public int numTimepoints()
+	{
+		return starts.length - 1;
+	}
+
+	/**
+	 * Returns the number of slots.
+	 */
+	public int count()
+	{
+		final int[] s = starts;
+		return s[ s.length - 1 ];
+	}
+
+	/**
+	 * Returns the first slot of the specified timepoint, or of the first
+	 * timepoint after it that has slots.
+	 *
+	 * @param t
+	 *            the timepoint, may be out of the table.
+	 * @return the first slot.
+	 */
+	public int from( final int t )
+	{
+		final int[] s = starts;
+		if ( t <= 0 )
+			return 0;
+		return t >= s.length ? s[ s.length - 1 ] : s[ t ];
+	}
+
+	/**
+	 * Returns the slot after the last slot of the specified timepoint.
+	 *
+	 * @param t
+	 *            the timepoint, may be out of the table.
+	 * @return the end slot, exclusive.
+	 */
+	public int to( final int t )
+	{
+		final int[] s = starts;
+		if ( t < 0 )
+			return 0;
+		return t >= s.length - 2 ? s[ s.length - 1 ] : s[ t + 1 ];
+	}
+
+	/**
+	 * Returns the timepoint of the specified slot.
+	 *
+	 * @param slot
+	 *            the slot, must be less than {@link #count()}.
+	 * @return the timepoint.
+	 */
+	public int timepointOf( final int slot )
+	{
+		final int[] s = starts;
+		int i = Arrays.binarySearch( s, slot );
+		if ( i < 0 )
+			return -i - 2;
+		// Skip empty timepoints starting at the same slot.
+		while ( s[ i + 1 ] == slot )
+			i++;
+		return i;
+	}
+
+	/**
+	 * Frees a slot at the end of the specified timepoint, for a new item. The
+	 * first slot of each following timepoint is moved after its last slot, so
+	 * that the timepoints stay contiguous: at most one slot is moved per
+	 * following timepoint. The table is extended if the timepoint is after its
+	 * last timepoint.
+	 *
+	 * @param t
+	 *            the timepoint, positive.
+	 * @param mover
+	 *            moves the content of the slots.
+	 * @return the free slot.
+	 */
+	public synchronized int insert( final int t, final SlotMover mover )
+	{
+		final int[] s;
+		if ( t + 2 > starts.length )
+		{
+			final int n = count();
+			final int oldLength = starts.length;
+			s = Arrays.copyOf( starts, t + 2 );
+			Arrays.fill( s, oldLength, s.length, n );
+		}
+		else
+		{
+			s = starts.clone();
+		}
+
+		int free = s[ s.length - 1 ];
+		for ( int g = s.length - 2; g > t; g-- )
+		{
+			if ( s[ g ] != free )
+				mover.move( s[ g ], free );
+			free = s[ g ];
+		}
+		for ( int i = t + 1; i < s.length; i++ )
+			s[ i ]++;
+		starts = s;
+		return free;
+	}
+
+	/**
+	 * Removes the specified slot. The last slot of its timepoint is moved to
+	 * it, and the last slot of each following timepoint is moved to the slot
+	 * freed before it, so that the timepoints stay contiguous: at most one
+	 * slot is moved per timepoint. The last slot is then free.
+	 *
+	 * @param slot
+	 *            the slot to remove.
+	 * @param mover
+	 *            moves the content of the slots.
+	 */
+	public synchronized void remove( final int slot, final SlotMover mover )
+	{
+		final int[] s = starts.clone();
+		final int t = timepointOf( slot );
+		int free = slot;
+		for ( int g = t; g < s.length - 1; g++ )
+		{
+			final int last = s[ g + 1 ] - 1;
+			if ( last != free )
+				mover.move( last, free );
+			free = last;
+		}
+		for ( int i = t + 1; i < s.length; i++ )
+			s[ i ]--;
+		starts = s;
+	}
+
+	/**
+	 * Returns the first slot of each timepoint, followed by the number of
+	 * slots.
+	 *
+	 * @return a new array.
+	 */
+	public int[] starts()
+	{
+		return starts.clone();
+	}
+
+	/**
+	 * Sorts items by timepoint, keeping their order within a timepoint.
+	 * Counting sort.
+	 *
+	 * @param timepoints
+	 *            the timepoint of each item, positive.
+	 * @param n
+	 *            the number of items.
+	 * @param order
+	 *            output, at least <code>n</code> long. Receives the index of
+	 *            the item to store in each sorted slot.
+	 * @return the offset table of the sorted slots.
+	 */
+	public static TimepointOffsets sort( final int[] timepoints, final int n, final int[] order )
+	{
+		int maxT = -1;
+		for ( int i = 0; i < n; i++ )
+			maxT = Math.max( maxT, timepoints[ i ] );
+		final int[] starts = new int[ maxT + 2 ];
+		for ( int i = 0; i < n; i++ )
+			starts[ timepoints[ i ] + 1 ]++;
+		for ( int t = 0; t <= maxT; t++ )
+			starts[ t + 1 ] += starts[ t ];
+		final int[] next = Arrays.copyOf( starts, maxT + 1 );
+		for ( int i = 0; i < n; i++ )
+			order[ next[ timepoints[ i ] ]++ ] = i;
+		return new TimepointOffsets( starts );
+	}
+}
@@ -0,0 +1,45 @@
+#version 330 core
+
+// Data points. The base color comes from the color generator, and is
+// replaced by the style selection color when the point is selected.
+// Points with a filter value out of its range are moved out of the clip
+// volume, so that they are not drawn: vertex shaders cannot discard.
+
+layout( std140 ) uniform View
+{
+	mat4 projection;
+};
+
+in vec2 position;
+in vec4 color;
+in float selected;
+in vec4 filterValues;
+in float exploredX;
+in float exploredY;
+
+uniform vec4 selectedColor;
+uniform vec4 filterMin;
+uniform vec4 filterMax;
+
+// 1 if the axes are explored features, read from their columns instead of
+// the positions.
+uniform int explored;
+
+// Fades the points out when the density heatmap is drawn instead.
+uniform float opacity;
+
+out vec4 vertexColor;
+
+void main()
+{
+	if ( any( lessThan( filterValues, filterMin ) ) || any( greaterThan( filterValues, filterMax ) ) )
+	{
+		gl_Position = vec4( 2.0, 2.0, 2.0, 1.0 );
+		vertexColor = vec4( 0.0 );
+		return;
+	}
+	vec2 xy = ( explored != 0 ) ? vec2( exploredX, exploredY ) : position;
+	gl_Position = projection * vec4( xy, 0.0, 1.0 );
+	vertexColor = ( selected > 0.5 ) ? selectedColor : color;
+	vertexColor.a *= opacity;
+}
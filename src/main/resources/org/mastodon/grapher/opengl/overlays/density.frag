@@ -0,0 +1,31 @@
+#version 330 core
+
+// Density heatmap. The mipmapped density texture gives the mean point count
+// per grid cell over the pixel footprint; multiplied by the number of cells
+// under the pixel, it gives the point count of the pixel.
+
+in vec2 gridCoord;
+
+uniform sampler2D density;
+uniform sampler2D colormap;
+uniform vec2 gridSize;
+uniform float maxCount;
+uniform float opacity;
+
+out vec4 fragColor;
+
+void main()
+{
+	vec2 cell = gridCoord * gridSize;
+	vec2 dx = dFdx( cell );
+	vec2 dy = dFdy( cell );
+	float cells = max( 1.0, abs( dx.x * dy.y - dx.y * dy.x ) );
+	float count = texture( density, gridCoord ).r * cells;
+	if ( count < 0.5 )
+		discard;
+
+	// Log scale, relative to the densest pixel possible at this zoom.
+	float v = clamp( log( 1.0 + count ) / log( 1.0 + maxCount * cells ), 0.0, 1.0 );
+	vec4 color = texture( colormap, vec2( v, 0.5 ) );
+	fragColor = vec4( color.rgb, color.a * opacity );
+}
@@ -0,0 +1,21 @@
+#version 330 core
+
+// Quad covering the density grid, in layout coordinates.
+
+layout( std140 ) uniform View
+{
+	mat4 projection;
+};
+
+in vec2 position;
+
+uniform vec2 gridMin;
+uniform vec2 gridMax;
+
+out vec2 gridCoord;
+
+void main()
+{
+	gl_Position = projection * vec4( position, 0.0, 1.0 );
+	gridCoord = ( position - gridMin ) / ( gridMax - gridMin );
+}
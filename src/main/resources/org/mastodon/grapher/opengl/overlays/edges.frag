@@ -0,0 +1,26 @@
+#version 330 core
+
+// Edge colors and selection state are stored once per edge in buffer
+// textures, and looked up with the index of the line being drawn. Edges
+// are drawn in ranges of visible tiles, and the primitive index restarts at
+// 0 with each range.
+
+uniform samplerBuffer edgeColors;
+uniform usamplerBuffer edgeSelection;
+uniform vec4 selectedColor;
+uniform int firstEdge;
+
+in float hidden;
+
+out vec4 fragColor;
+
+void main()
+{
+	if ( hidden > 0.0 )
+		discard;
+	int edge = firstEdge + gl_PrimitiveID;
+	if ( texelFetch( edgeSelection, edge ).r != 0u )
+		fragColor = selectedColor;
+	else
+		fragColor = texelFetch( edgeColors, edge );
+}
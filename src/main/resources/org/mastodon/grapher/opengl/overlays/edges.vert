@@ -0,0 +1,33 @@
+#version 330 core
+
+// Edges are drawn from the vertex position buffer, indexed by vertex slot.
+// An edge is hidden if one of its vertices has a filter value out of its
+// range: its fragments are then discarded.
+
+layout( std140 ) uniform View
+{
+	mat4 projection;
+};
+
+in vec2 position;
+in vec4 filterValues;
+in float exploredX;
+in float exploredY;
+
+uniform vec4 filterMin;
+uniform vec4 filterMax;
+
+// 1 if the axes are explored features, read from their columns instead of
+// the positions.
+uniform int explored;
+
+// 1 at a hidden vertex: interpolated along the line, it is positive for all
+// the fragments of an edge with a hidden vertex.
+out float hidden;
+
+void main()
+{
+	vec2 xy = ( explored != 0 ) ? vec2( exploredX, exploredY ) : position;
+	gl_Position = projection * vec4( xy, 0.0, 1.0 );
+	hidden = ( any( lessThan( filterValues, filterMin ) ) || any( greaterThan( filterValues, filterMax ) ) ) ? 1.0 : 0.0;
+}
@@ -0,0 +1,13 @@
+#version 330 core
+
+layout( std140 ) uniform View
+{
+	mat4 projection;
+};
+
+in vec2 position;
+
+void main()
+{
+	gl_Position = projection * vec4( position, 0.0, 1.0 );
+}
@@ -0,0 +1,346 @@
+package org.mastodon.grapher.opengl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.feature.Dimension;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureProjectionKey;
+import org.mastodon.feature.FeatureProjectionSpec;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.feature.Multiplicity;
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultHighlightModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.views.grapher.display.DataDisplayOptions;
+import org.mastodon.views.grapher.display.FeatureGraphConfig;
+import org.mastodon.views.grapher.display.FeatureGraphConfig.GraphDataItemsSource;
+import org.mastodon.views.grapher.display.FeatureSpecPair;
+
+/**
+ * Checks that the layout patched after changes in the graph plots the same
+ * points and edges as a layout computed from scratch.
+ */
+public class DataLayoutMakerTest
+{
+
+	private static final int N_TIMEPOINTS = 5;
+
+	private static final int N_PER_TIMEPOINT = 50;
+
+	private ModelGraph graph;
+
+	private DataLayoutMaker maker;
+
+	@Before
+	public void setUp()
+	{
+		graph = new ModelGraph();
+		final FeatureModel featureModel = new FeatureModel();
+		featureModel.declareFeature( new PositionFeature() );
+		final Spot ref = graph.vertexRef();
+		final Spot previous = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		final double[] pos = new double[ 3 ];
+		for ( int t = 0; t < N_TIMEPOINTS; t++ )
+		{
+			for ( int i = 0; i < N_PER_TIMEPOINT; i++ )
+			{
+				pos[ 0 ] = i;
+				pos[ 1 ] = t * i % 17;
+				graph.addVertex( ref ).init( t, pos, 1. );
+				if ( t > 0 )
+				{
+					graph.vertices().getRefPool().getObject( ref.getInternalPoolIndex() - N_PER_TIMEPOINT, previous );
+					graph.addEdge( previous, ref, eref ).init();
+				}
+			}
+		}
+		graph.releaseRef( ref );
+		graph.releaseRef( previous );
+		graph.releaseRef( eref );
+
+		maker = new DataLayoutMaker(
+				graph,
+				new DefaultHighlightModel<>( graph.getGraphIdBimap() ),
+				new DefaultSelectionModel<>( graph, graph.getGraphIdBimap() ),
+				featureModel,
+				DataDisplayOptions.options() );
+		maker.setParallel( false );
+	}
+
+	@After
+	public void tearDown()
+	{
+		maker.close();
+	}
+
+	@Test
+	public void testPatchedLayoutMatchesNewLayout()
+	{
+		plot( false );
+		editGraph();
+		assertSameAsNewLayout();
+	}
+
+	@Test
+	public void testPatchedLayoutSortedByTimeMatchesNewLayout()
+	{
+		plot( true );
+		editGraph();
+		assertSortedByTime();
+		assertSameAsNewLayout();
+	}
+
+	@Test
+	public void testClosedMakerIgnoresChanges()
+	{
+		plot( false );
+		final int nVertices = maker.getCurrentLayout().nVertices;
+		maker.close();
+		final Spot ref = graph.vertexRef();
+		graph.addVertex( ref ).init( 0, new double[ 3 ], 1. );
+		graph.releaseRef( ref );
+		assertEquals( "A closed layout should not be patched.", nVertices, maker.getCurrentLayout().nVertices );
+	}
+
+	@Test
+	public void testNearestSpotId()
+	{
+		plot( false );
+		// Spot 7 of timepoint 4 is alone at ( 7, 11 ). 10 pixels per unit.
+		assertEquals( "A spot within the radius should be found.", 4 * N_PER_TIMEPOINT + 7,
+				maker.getNearestSpotId( 7.1, 11.1, 10., 10., 5. ) );
+		assertEquals( "A spot beyond the radius should not be found.", -1,
+				maker.getNearestSpotId( -5., -5., 10., 10., 5. ) );
+		assertEquals( "The radius should be in pixels along each axis.", -1,
+				maker.getNearestSpotId( 7.1, 11.6, 10., 20., 5. ) );
+	}
+
+	private void plot( final boolean sortByTime )
+	{
+		final FeatureGraphConfig gc = new FeatureGraphConfig(
+				new FeatureSpecPair( PositionFeature.SPEC, PositionFeature.X, false, false ),
+				new FeatureSpecPair( PositionFeature.SPEC, PositionFeature.Y, false, false ),
+				GraphDataItemsSource.CONTEXT,
+				true );
+		maker.setSortByTime( sortByTime );
+		maker.setConfig( gc );
+		maker.layout();
+		maker.color();
+	}
+
+	/**
+	 * Adds, removes and moves spots and links, so that slots are appended,
+	 * freed and patched in place.
+	 */
+	private void editGraph()
+	{
+		final Spot ref = graph.vertexRef();
+		final Spot other = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		final double[] pos = new double[ 3 ];
+
+		// New spots linked to existing spots, in several timepoints.
+		for ( int t = 1; t < N_TIMEPOINTS; t += 2 )
+		{
+			pos[ 0 ] = 100 + t;
+			pos[ 1 ] = -t;
+			graph.addVertex( ref ).init( t, pos, 1. );
+			graph.vertices().getRefPool().getObject( ( t - 1 ) * N_PER_TIMEPOINT + 3, other );
+			graph.addEdge( other, ref, eref ).init();
+		}
+
+		// Removed links, and spots with their links.
+		graph.remove( graph.vertices().getRefPool().getObject( N_PER_TIMEPOINT + 7, ref ).incomingEdges().get( 0, eref ) );
+		graph.remove( graph.vertices().getRefPool().getObject( 2 * N_PER_TIMEPOINT + 11, ref ) );
+		graph.remove( graph.vertices().getRefPool().getObject( 5, ref ) );
+
+		// Moved spots.
+		for ( int i = 20; i < 25; i++ )
+		{
+			final Spot v = graph.vertices().getRefPool().getObject( 3 * N_PER_TIMEPOINT + i, ref );
+			pos[ 0 ] = -i;
+			pos[ 1 ] = 2 * i;
+			v.setPosition( pos );
+			graph.notifyVertexPositionChanged( v );
+		}
+
+		graph.releaseRef( ref );
+		graph.releaseRef( other );
+		graph.releaseRef( eref );
+	}
+
+	private void assertSortedByTime()
+	{
+		final int[] ids = maker.getVertexIds();
+		final Spot ref = graph.vertexRef();
+		int previous = Integer.MIN_VALUE;
+		for ( final int id : ids )
+		{
+			final int t = graph.vertices().getRefPool().getObject( id, ref ).getTimepoint();
+			assertTrue( "Vertex slots should stay sorted by timepoint.", t >= previous );
+			previous = t;
+		}
+		graph.releaseRef( ref );
+	}
+
+	private void assertSameAsNewLayout()
+	{
+		final Map< Integer, String > patchedVertices = vertices();
+		final Set< String > patchedEdges = edges();
+		maker.layout();
+		assertEquals( "Unexpected vertices after patching the layout.", vertices(), patchedVertices );
+		assertEquals( "Unexpected edges after patching the layout.", edges(), patchedEdges );
+		assertEquals( "All the vertices should be plotted.", graph.vertices().size(), patchedVertices.size() );
+		assertEquals( "All the edges should be plotted.", graph.edges().size(), patchedEdges.size() );
+	}
+
+	/**
+	 * Returns the position of each plotted vertex, by pool index.
+	 */
+	private Map< Integer, String > vertices()
+	{
+		final DataLayout l = maker.getCurrentLayout();
+		final int[] ids = maker.getVertexIds();
+		assertEquals( "Unexpected number of vertex slots.", l.nVertices, ids.length );
+		final Map< Integer, String > map = new HashMap<>();
+		for ( int slot = 0; slot < ids.length; slot++ )
+			map.put( ids[ slot ], l.verticesPos[ 2 * slot ] + " " + l.verticesPos[ 2 * slot + 1 ] );
+		assertEquals( "Vertices should be plotted once.", ids.length, map.size() );
+		return map;
+	}
+
+	/**
+	 * Returns the pool indices of each plotted edge and of the vertices in the
+	 * slots it points to.
+	 */
+	private Set< String > edges()
+	{
+		final DataLayout l = maker.getCurrentLayout();
+		final int[] vertexIds = maker.getVertexIds();
+		final int[] edgeIds = maker.getEdgeIds();
+		assertEquals( "Unexpected number of edge slots.", l.nEdges, edgeIds.length );
+		final Set< String > set = new HashSet<>();
+		final Link ref = graph.edgeRef();
+		final Spot sref = graph.vertexRef();
+		final Spot tref = graph.vertexRef();
+		for ( int slot = 0; slot < edgeIds.length; slot++ )
+		{
+			final int source = vertexIds[ l.edgeIndices[ 2 * slot ] ];
+			final int target = vertexIds[ l.edgeIndices[ 2 * slot + 1 ] ];
+			final Link e = graph.edges().getRefPool().getObject( edgeIds[ slot ], ref );
+			assertEquals( "Edge should point to the slot of its source.", e.getSource( sref ).getInternalPoolIndex(), source );
+			assertEquals( "Edge should point to the slot of its target.", e.getTarget( tref ).getInternalPoolIndex(), target );
+			set.add( edgeIds[ slot ] + " " + source + " " + target );
+		}
+		graph.releaseRef( ref );
+		graph.releaseRef( sref );
+		graph.releaseRef( tref );
+		assertEquals( "Edges should be plotted once.", edgeIds.length, set.size() );
+		return set;
+	}
+
+	/**
+	 * The X and Y position of spots, as a feature the layout can plot.
+	 */
+	private static class PositionFeature implements Feature< Spot >
+	{
+
+		private static final FeatureProjectionSpec X = new FeatureProjectionSpec( "X", Dimension.POSITION );
+
+		private static final FeatureProjectionSpec Y = new FeatureProjectionSpec( "Y", Dimension.POSITION );
+
+		private static final Spec SPEC = new Spec();
+
+		private final Map< FeatureProjectionKey, FeatureProjection< Spot > > projections = new HashMap<>();
+
+		private PositionFeature()
+		{
+			projections.put( FeatureProjectionKey.key( X ), new PositionProjection( FeatureProjectionKey.key( X ), 0 ) );
+			projections.put( FeatureProjectionKey.key( Y ), new PositionProjection( FeatureProjectionKey.key( Y ), 1 ) );
+		}
+
+		@Override
+		public FeatureProjection< Spot > project( final FeatureProjectionKey key )
+		{
+			return projections.get( key );
+		}
+
+		@Override
+		public Set< FeatureProjection< Spot > > projections()
+		{
+			return Collections.unmodifiableSet( new HashSet<>( projections.values() ) );
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+
+		@Override
+		public void invalidate( final Spot spot )
+		{}
+
+		private static class Spec extends FeatureSpec< PositionFeature, Spot >
+		{
+			private Spec()
+			{
+				super( "Test position", "Position of the spots, for tests.", PositionFeature.class, Spot.class, Multiplicity.SINGLE, X, Y );
+			}
+		}
+	}
+
+	private static class PositionProjection implements FeatureProjection< Spot >
+	{
+
+		private final FeatureProjectionKey key;
+
+		private final int d;
+
+		private PositionProjection( final FeatureProjectionKey key, final int d )
+		{
+			this.key = key;
+			this.d = d;
+		}
+
+		@Override
+		public FeatureProjectionKey getKey()
+		{
+			return key;
+		}
+
+		@Override
+		public boolean isSet( final Spot spot )
+		{
+			return true;
+		}
+
+		@Override
+		public double value( final Spot spot )
+		{
+			return spot.getDoublePosition( d );
+		}
+
+		@Override
+		public String units()
+		{
+			return "";
+		}
+	}
+}
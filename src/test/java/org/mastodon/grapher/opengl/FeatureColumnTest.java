@@ -0,0 +1,152 @@
+package org.mastodon.grapher.opengl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.feature.Dimension;
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureProjectionKey;
+import org.mastodon.feature.FeatureProjectionSpec;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * Checks that the feature columns serve cached values, and read them again
+ * from the projection once they are invalidated.
+ */
+public class FeatureColumnTest
+{
+
+	private static final int N_SPOTS = 10;
+
+	private ModelGraph graph;
+
+	private FeatureColumnCache cache;
+
+	private CountingProjection projection;
+
+	private FeatureColumn column;
+
+	@Before
+	public void setUp()
+	{
+		graph = new ModelGraph();
+		addSpots( N_SPOTS );
+		cache = new FeatureColumnCache( graph, new FeatureModel() );
+		projection = new CountingProjection();
+		column = cache.vertexColumn( projection );
+	}
+
+	@After
+	public void tearDown()
+	{
+		cache.close();
+	}
+
+	@Test
+	public void testFill()
+	{
+		assertValues( N_SPOTS );
+		assertEquals( "Values should be read once from the projection.", N_SPOTS, projection.count );
+		assertValues( N_SPOTS );
+		assertEquals( "Cached values should not be read again.", N_SPOTS, projection.count );
+	}
+
+	@Test
+	public void testInvalidateSpot()
+	{
+		assertValues( N_SPOTS );
+		final Spot ref = graph.vertexRef();
+		final Spot v = graph.vertices().getRefPool().getObject( 3, ref );
+		v.setPosition( new double[] { -5., 0., 0. } );
+		graph.notifyVertexPositionChanged( v );
+		graph.releaseRef( ref );
+
+		assertValues( N_SPOTS );
+		assertEquals( "Only the moved spot should be read again.", N_SPOTS + 1, projection.count );
+	}
+
+	@Test
+	public void testFeatureModelChanged()
+	{
+		assertValues( N_SPOTS );
+		cache.featureModelChanged();
+		assertValues( N_SPOTS );
+		assertEquals( "All the values should be read again.", 2 * N_SPOTS, projection.count );
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		column.ensureCapacity( 1 );
+		assertValues( N_SPOTS );
+		addSpots( 1000 );
+		assertValues( N_SPOTS + 1000 );
+		assertEquals( "Growing the column should keep the cached values.", N_SPOTS + 1000, projection.count );
+	}
+
+	private void addSpots( final int n )
+	{
+		final Spot ref = graph.vertexRef();
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < n; i++ )
+		{
+			pos[ 0 ] = graph.vertices().size();
+			graph.addVertex( ref ).init( 0, pos, 1. );
+		}
+		graph.releaseRef( ref );
+	}
+
+	/**
+	 * Checks the values of the spots with a pool index smaller than n.
+	 */
+	private void assertValues( final int n )
+	{
+		final Spot ref = graph.vertexRef();
+		for ( int id = 0; id < n; id++ )
+		{
+			final Spot v = graph.vertices().getRefPool().getObject( id, ref );
+			assertEquals( "Unexpected value for spot " + id + ".", v.getDoublePosition( 0 ), column.get( v ), 0. );
+		}
+		graph.releaseRef( ref );
+	}
+
+	/**
+	 * The X position of spots, counting how many times it is read.
+	 */
+	private static class CountingProjection implements FeatureProjection< Spot >
+	{
+
+		private static final FeatureProjectionKey KEY = FeatureProjectionKey.key( new FeatureProjectionSpec( "X", Dimension.POSITION ) );
+
+		private int count;
+
+		@Override
+		public FeatureProjectionKey getKey()
+		{
+			return KEY;
+		}
+
+		@Override
+		public boolean isSet( final Spot spot )
+		{
+			return true;
+		}
+
+		@Override
+		public double value( final Spot spot )
+		{
+			count++;
+			return spot.getDoublePosition( 0 );
+		}
+
+		@Override
+		public String units()
+		{
+			return "";
+		}
+	}
+}
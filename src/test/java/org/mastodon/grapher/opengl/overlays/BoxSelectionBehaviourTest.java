@@ -0,0 +1,94 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultFocusModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.model.FocusModel;
+import org.mastodon.model.SelectionModel;
+
+/**
+ * Checks the selection made by a click on a vertex, or next to all the
+ * vertices.
+ */
+public class BoxSelectionBehaviourTest
+{
+
+	private ModelGraph graph;
+
+	private SelectionModel< Spot, Link > selection;
+
+	private FocusModel< Spot > focus;
+
+	@Before
+	public void setUp()
+	{
+		graph = new ModelGraph();
+		final Spot ref = graph.vertexRef();
+		for ( int i = 0; i < 3; i++ )
+			graph.addVertex( ref ).init( 0, new double[] { i, 0., 0. }, 1. );
+		graph.releaseRef( ref );
+		selection = new DefaultSelectionModel<>( graph, graph.getGraphIdBimap() );
+		focus = new DefaultFocusModel<>( graph.getGraphIdBimap() );
+	}
+
+	@Test
+	public void testClick()
+	{
+		click( 0, false );
+		click( 1, false );
+		assertSelected( "A click should select the clicked vertex only.", false, true, false );
+		final Spot ref = graph.vertexRef();
+		assertEquals( "A click should focus the clicked vertex.", 1, focus.getFocusedVertex( ref ).getInternalPoolIndex() );
+		graph.releaseRef( ref );
+
+		click( -1, false );
+		assertSelected( "A click next to the vertices should clear the selection.", false, false, false );
+	}
+
+	@Test
+	public void testShiftClick()
+	{
+		click( 0, false );
+		click( 2, true );
+		assertSelected( "A shift click should add the clicked vertex.", true, false, true );
+		click( 0, true );
+		assertSelected( "A shift click should toggle the clicked vertex.", false, false, true );
+		click( -1, true );
+		assertSelected( "A shift click next to the vertices should keep the selection.", false, false, true );
+	}
+
+	private void click( final int id, final boolean addToSelection )
+	{
+		graph.getLock().readLock().lock();
+		try
+		{
+			BoxSelectionBehaviour.selectClicked( graph, focus, selection, id, addToSelection );
+		}
+		finally
+		{
+			graph.getLock().readLock().unlock();
+		}
+	}
+
+	private void assertSelected( final String message, final boolean... expected )
+	{
+		final Spot ref = graph.vertexRef();
+		for ( int id = 0; id < expected.length; id++ )
+		{
+			final boolean selected = selection.isSelected( graph.vertices().getRefPool().getObject( id, ref ) );
+			if ( expected[ id ] )
+				assertTrue( message, selected );
+			else
+				assertFalse( message, selected );
+		}
+		graph.releaseRef( ref );
+	}
+}
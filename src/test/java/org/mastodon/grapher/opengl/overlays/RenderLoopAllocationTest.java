@@ -0,0 +1,229 @@
+package org.mastodon.grapher.opengl.overlays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataColor;
+import org.mastodon.grapher.opengl.DataLayoutMaker.DataLayout;
+import org.mastodon.grapher.opengl.InertialScreenTransformEventHandlerOpenGL;
+import org.mastodon.grapher.opengl.util.SpatialTiles;
+import org.mastodon.grapher.opengl.util.TimepointOffsets;
+import org.mastodon.views.grapher.datagraph.ScreenTransform;
+import org.mastodon.views.grapher.display.ScreenTransformState;
+import org.mastodon.views.grapher.display.style.DataDisplayStyle;
+
+/**
+ * Checks that the work done on the CPU at each frame by the canvas and the
+ * data overlays does not allocate: the view snapshot, the filter ranges and
+ * time window, the visible tile ranges and the bookkeeping of the patched
+ * slots. The OpenGL calls themselves cannot run without a display, and use
+ * the primitive array overloads of LWJGL, which do not allocate on the heap.
+ * Also checks which buffers the overlays plan to upload.
+ */
+public class RenderLoopAllocationTest
+{
+
+	private static final int N_FRAMES = 10_000;
+
+	private static final int N_TIMEPOINTS = 4;
+
+	private static final int N_PER_TIMEPOINT = 25_000;
+
+	private static final int WIDTH = 800;
+
+	private static final int HEIGHT = 600;
+
+	@Test
+	public void testFrameDoesNotAllocate()
+	{
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue( bean instanceof com.sun.management.ThreadMXBean );
+		final com.sun.management.ThreadMXBean threads = ( com.sun.management.ThreadMXBean ) bean;
+		assumeTrue( threads.isThreadAllocatedMemorySupported() );
+		threads.setThreadAllocatedMemoryEnabled( true );
+
+		final ScreenTransform transform = new ScreenTransform( 10, 30, 10, 30, WIDTH, HEIGHT );
+		final DataDisplayStyle style = DataDisplayStyle.defaultStyle();
+		final LevelOfDetail lod = new LevelOfDetail();
+		final DataPointsOverlay points = new DataPointsOverlay( style,
+				new InertialScreenTransformEventHandlerOpenGL( new ScreenTransformState( transform ) ), lod );
+		final DataEdgesOverlay edges = new DataEdgesOverlay( points, style );
+		final DataLayout layout = createLayout();
+		final DataColor color = new DataColor(
+				new int[ layout.nVertices ], new int[ layout.nEdges ],
+				new byte[ layout.nVertices ], new byte[ layout.nEdges ] );
+		points.draw( layout, color );
+		edges.draw( layout, color );
+		points.setCanvasSize( WIDTH, HEIGHT );
+		edges.setCanvasSize( WIDTH, HEIGHT );
+		points.setTimeWindow( 1, 2 );
+		edges.setTimeWindow( 1, 2 );
+		points.setFilterRange( 0, 10f, 50f );
+		lod.setView( transform );
+		final FrameView view = new FrameView();
+		final int[] selectedSlots = new int[] { 3, 4, 5 };
+
+		// Warm up, so that the frame code is compiled.
+		long sink = 0;
+		for ( int i = 0; i < N_FRAMES; i++ )
+			sink += frame( view, transform, points, edges, lod, layout, color, selectedSlots, i );
+
+		final long id = Thread.currentThread().getId();
+		final long before = threads.getThreadAllocatedBytes( id );
+		for ( int i = 0; i < N_FRAMES; i++ )
+			sink += frame( view, transform, points, edges, lod, layout, color, selectedSlots, i );
+		final long allocated = threads.getThreadAllocatedBytes( id ) - before;
+
+		assertEquals( "Bytes allocated per frame (sink " + sink + ").", 0L, allocated / N_FRAMES );
+	}
+
+	@Test
+	public void testAxisSwapDoesNotUploadPositions()
+	{
+		final ScreenTransform transform = new ScreenTransform( 10, 30, 10, 30, WIDTH, HEIGHT );
+		final DataPointsOverlay points = new DataPointsOverlay( DataDisplayStyle.defaultStyle(),
+				new InertialScreenTransformEventHandlerOpenGL( new ScreenTransformState( transform ) ), new LevelOfDetail() );
+		final DataLayout plotted = createLayout();
+		final DataColor color = new DataColor(
+				new int[ plotted.nVertices ], new int[ plotted.nEdges ],
+				new byte[ plotted.nVertices ], new byte[ plotted.nEdges ] );
+		points.draw( plotted, color );
+		assertTrue( "A new layout should be uploaded.", points.takePositionUpload() );
+
+		// Positions swapped as in DataLayoutMaker.swapAxes().
+		final DataLayout explored = withAxes( plotted, plotted.verticesPos, 0, 1 );
+		points.dataLayoutUpdated( explored, color, 0, 0, 0, 0 );
+		final DataLayout swapped = withAxes( explored, swap( plotted.verticesPos ), 1, 0 );
+		points.dataLayoutUpdated( swapped, color, 0, 0, 0, 0 );
+		assertFalse( "Swapping explored axes should not upload the positions.", points.takePositionUpload() );
+
+		// Drawn from the positions again.
+		points.dataLayoutUpdated( withAxes( swapped, swapped.verticesPos, -1, -1 ), color, 0, 0, 0, 0 );
+		assertTrue( "The positions should be uploaded when they are drawn again.", points.takePositionUpload() );
+	}
+
+	/**
+	 * The CPU side of a frame, as in the canvas and the overlays, after a
+	 * patch of the layout and of the selection. The view moves with the frame
+	 * index.
+	 */
+	private static long frame(
+			final FrameView view,
+			final ScreenTransform transform,
+			final DataPointsOverlay points,
+			final DataEdgesOverlay edges,
+			final LevelOfDetail lod,
+			final DataLayout layout,
+			final DataColor color,
+			final int[] selectedSlots,
+			final int i )
+	{
+		// Changes notified between frames.
+		final int slot = i % layout.nVertices;
+		points.dataLayoutUpdated( layout, color, slot, slot + 1, slot % layout.nEdges, slot % layout.nEdges + 1 );
+		edges.dataLayoutUpdated( layout, color, slot, slot + 1, slot % layout.nEdges, slot % layout.nEdges + 1 );
+		points.dataSelectionUpdated( color, selectedSlots, selectedSlots );
+		edges.dataSelectionUpdated( color, selectedSlots, selectedSlots );
+
+		// Canvas.
+		transform.shiftLayoutX( ( i % 2 == 0 ) ? 1. : -1. );
+		view.set( transform, WIDTH, HEIGHT );
+		long out = view.isDataLayerStale() ? 1 : 0;
+		points.setView( view.getMinX(), view.getMaxX(), view.getMinY(), view.getMaxY() );
+		edges.setView( view.getMinX(), view.getMaxX(), view.getMinY(), view.getMaxY() );
+
+		// Points overlay.
+		out += points.snapshotFrame();
+		out += points.mergeDirtySelection() ? 1 : 0;
+		points.clearDirtySlots();
+		out += lod.getDensityWeight() > 0.5f ? 1 : 0;
+
+		// Edges overlay.
+		out += edges.snapshotFrame();
+		edges.snapshotFilterRanges();
+		out += edges.mergeDirtySelection() ? 1 : 0;
+		edges.clearDirtySlots();
+		return out;
+	}
+
+	/**
+	 * Creates a layout sorted by timepoint and tiled, with edges from each
+	 * vertex to a vertex of the next timepoint.
+	 */
+	private static DataLayout createLayout()
+	{
+		final int n = N_TIMEPOINTS * N_PER_TIMEPOINT;
+		final Random ran = new Random( 1l );
+		final float[] xy = new float[ 2 * n ];
+		for ( int i = 0; i < xy.length; i++ )
+			xy[ i ] = 100f * ran.nextFloat();
+
+		// Vertices, tiled within each timepoint.
+		final int[] vertexStarts = new int[ N_TIMEPOINTS + 1 ];
+		for ( int t = 0; t <= N_TIMEPOINTS; t++ )
+			vertexStarts[ t ] = t * N_PER_TIMEPOINT;
+		final int[] order = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			order[ i ] = i;
+		final SpatialTiles vertexTiles = SpatialTiles.quadtree( xy, vertexStarts, 1000, order );
+		final float[] sorted = new float[ 2 * n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			sorted[ 2 * i ] = xy[ 2 * order[ i ] ];
+			sorted[ 2 * i + 1 ] = xy[ 2 * order[ i ] + 1 ];
+		}
+
+		// Edges, by the timepoint of their target.
+		final int nEdges = n - N_PER_TIMEPOINT;
+		final int[] edgeIndices = new int[ 2 * nEdges ];
+		final int[] edgeStarts = new int[ N_TIMEPOINTS + 1 ];
+		for ( int t = 1; t <= N_TIMEPOINTS; t++ )
+			edgeStarts[ t ] = ( t - 1 ) * N_PER_TIMEPOINT;
+		final int[] tileStarts = new int[ nEdges / 1000 + 1 ];
+		for ( int k = 0; k < tileStarts.length; k++ )
+			tileStarts[ k ] = Math.min( nEdges, k * 1000 );
+		final SpatialTiles edgeTiles = new SpatialTiles( tileStarts );
+		for ( int e = 0; e < nEdges; e++ )
+		{
+			final int source = e;
+			final int target = e + N_PER_TIMEPOINT;
+			edgeIndices[ 2 * e ] = source;
+			edgeIndices[ 2 * e + 1 ] = target;
+			edgeTiles.include( e, sorted[ 2 * source ], sorted[ 2 * source + 1 ] );
+			edgeTiles.include( e, sorted[ 2 * target ], sorted[ 2 * target + 1 ] );
+		}
+
+		// The positions are explored, but not drawn from the explored values.
+		return new DataLayout( sorted, new float[ DataPointsOverlay.FILTER_NUM_COLUMNS * n ], sorted.clone(), 2, -1, -1,
+				edgeIndices, n, nEdges, vertexTiles, edgeTiles,
+				new TimepointOffsets( vertexStarts ), new TimepointOffsets( edgeStarts ) );
+	}
+
+	/**
+	 * Returns a copy of the layout with the specified positions, drawn from
+	 * the specified explored columns.
+	 */
+	private static DataLayout withAxes( final DataLayout l, final float[] xy, final int xExplored, final int yExplored )
+	{
+		return new DataLayout( xy, l.verticesFilter, l.verticesExplored, l.nExplored, xExplored, yExplored,
+				l.edgeIndices, l.nVertices, l.nEdges, l.vertexTiles, l.edgeTiles,
+				l.vertexTimepoints, l.edgeTimepoints );
+	}
+
+	private static float[] swap( final float[] xy )
+	{
+		final float[] yx = new float[ xy.length ];
+		for ( int i = 0; i < xy.length; i += 2 )
+		{
+			yx[ i ] = xy[ i + 1 ];
+			yx[ i + 1 ] = xy[ i ];
+		}
+		return yx;
+	}
+}
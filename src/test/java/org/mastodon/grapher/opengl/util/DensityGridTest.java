@@ -0,0 +1,38 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DensityGridTest
+{
+
+	@Test
+	public void testCountsSumToNumberOfPoints()
+	{
+		final int n = 10_000;
+		final float[] xy = new float[ 2 * n ];
+		final Random ran = new Random( 1l );
+		for ( int i = 0; i < xy.length; i++ )
+			xy[ i ] = ( float ) ran.nextGaussian();
+		final DensityGrid grid = DensityGrid.compute( xy, n, 64 );
+		float sum = 0f;
+		for ( final float c : grid.counts )
+			sum += c;
+		assertEquals( n, sum, 0f );
+	}
+
+	@Test
+	public void testBorderPoints()
+	{
+		final float[] xy = new float[] { 0f, 0f, 10f, 10f, Float.NaN, 5f };
+		final DensityGrid grid = DensityGrid.compute( xy, 3, 4 );
+		assertEquals( 0f, grid.minX, 0f );
+		assertEquals( 10f, grid.maxX, 0f );
+		assertEquals( "Min corner should be in the first cell.", 1f, grid.counts[ 0 ], 0f );
+		assertEquals( "Max corner should be in the last cell.", 1f, grid.counts[ 15 ], 0f );
+		assertEquals( 1f, grid.maxCount, 0f );
+	}
+}
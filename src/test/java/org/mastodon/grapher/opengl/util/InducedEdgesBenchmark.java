@@ -0,0 +1,92 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.BitSet;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefSet;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * Compares the time taken to collect the edges between the plotted vertices
+ * with {@link RefSet} lookups on both ends of every edge, and with
+ * {@link InducedEdges}, for graphs of 1M and 10M edges.
+ * <p>
+ * Run with a large heap, e.g. <code>-Xmx8g</code>.
+ */
+public class InducedEdgesBenchmark
+{
+
+	private static final int DEGREE = 4;
+
+	private static final int N_RUNS = 5;
+
+	public static void main( final String[] args )
+	{
+		for ( final int nEdges : new int[] { 1_000_000, 10_000_000 } )
+		{
+			final int nVertices = nEdges / DEGREE + DEGREE;
+			System.out.println( String.format( "Creating a graph with %d vertices and %d edges.", nVertices, nEdges ) );
+			final ModelGraph graph = InducedEdgesTest.createGraph( nVertices, DEGREE );
+			final RefSet< Spot > vertices = RefCollections.createRefSet( graph.vertices(), nVertices );
+			vertices.addAll( graph.vertices() );
+
+			for ( int run = 0; run < N_RUNS; run++ )
+			{
+				final long t0 = System.nanoTime();
+				final int n0 = collectWithRefSet( graph, vertices );
+				final long t1 = System.nanoTime();
+				final int n1 = collectWithBitSet( graph, vertices, false );
+				final long t2 = System.nanoTime();
+				final int n2 = collectWithBitSet( graph, vertices, true );
+				final long t3 = System.nanoTime();
+
+				if ( n0 != n1 || n0 != n2 )
+					throw new IllegalStateException( "Edge counts differ: " + n0 + ", " + n1 + ", " + n2 );
+
+				System.out.println( String.format( "  run %d - RefSet: %6d ms - bitset: %6d ms (x%.1f) - bitset parallel: %6d ms (x%.1f)",
+						run,
+						( t1 - t0 ) / 1_000_000,
+						( t2 - t1 ) / 1_000_000,
+						( double ) ( t1 - t0 ) / ( t2 - t1 ),
+						( t3 - t2 ) / 1_000_000,
+						( double ) ( t1 - t0 ) / ( t3 - t2 ) ) );
+			}
+		}
+	}
+
+	/**
+	 * The previous approach: visit all edges of all vertices and look up both
+	 * ends in the vertex set.
+	 */
+	private static int collectWithRefSet( final ModelGraph graph, final RefSet< Spot > vertices )
+	{
+		final RefSet< Link > edges = RefCollections.createRefSet( graph.edges(), vertices.size() );
+		final Spot sref = vertices.createRef();
+		final Spot tref = vertices.createRef();
+		for ( final Spot v : vertices )
+		{
+			for ( final Link e : v.edges() )
+			{
+				final Spot source = e.getSource( sref );
+				final Spot target = e.getTarget( tref );
+				if ( vertices.contains( source ) && vertices.contains( target ) )
+					edges.add( e );
+			}
+		}
+		vertices.releaseRef( sref );
+		vertices.releaseRef( tref );
+		return edges.size();
+	}
+
+	private static int collectWithBitSet( final ModelGraph graph, final RefSet< Spot > vertices, final boolean parallel )
+	{
+		final int[] ids = new int[ vertices.size() ];
+		int i = 0;
+		for ( final Spot v : vertices )
+			ids[ i++ ] = v.getInternalPoolIndex();
+		final BitSet members = InducedEdges.toBitSet( ids );
+		return InducedEdges.collect( graph, graph.vertices().getRefPool(), graph.edges().getRefPool(), ids, members, parallel ).length;
+	}
+}
@@ -0,0 +1,108 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefSet;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+public class InducedEdgesTest
+{
+
+	@Test
+	public void testSameEdgesAsRefSetLookup()
+	{
+		final ModelGraph graph = createGraph( 1000, 3 );
+
+		// Keep every other vertex.
+		final RefSet< Spot > vertices = RefCollections.createRefSet( graph.vertices() );
+		for ( final Spot v : graph.vertices() )
+			if ( v.getInternalPoolIndex() % 2 == 0 || v.getInternalPoolIndex() % 3 == 0 )
+				vertices.add( v );
+
+		// Expected: edges found with RefSet lookups on both ends.
+		final RefSet< Link > expected = RefCollections.createRefSet( graph.edges() );
+		final Spot ref = graph.vertexRef();
+		for ( final Spot v : vertices )
+			for ( final Link e : v.edges() )
+				if ( vertices.contains( e.getSource( ref ) ) && vertices.contains( e.getTarget( ref ) ) )
+					expected.add( e );
+		graph.releaseRef( ref );
+		assertTrue( "The test graph should have edges between the vertices.", expected.size() > 0 );
+
+		final int[] ids = new int[ vertices.size() ];
+		int i = 0;
+		for ( final Spot v : vertices )
+			ids[ i++ ] = v.getInternalPoolIndex();
+		final BitSet members = InducedEdges.toBitSet( ids );
+		final int[] actual = InducedEdges.collect( graph, graph.vertices().getRefPool(), graph.edges().getRefPool(), ids, members, false );
+
+		assertEquals( "Unexpected number of edges.", expected.size(), actual.length );
+		for ( final int id : actual )
+			assertTrue( "Unexpected edge " + id, expected.contains( graph.edges().getRefPool().getObject( id, graph.edgeRef() ) ) );
+		assertEquals( "Edges should be found only once.", actual.length, Arrays.stream( actual ).distinct().count() );
+	}
+
+	@Test
+	public void testParallelMatchesSerial()
+	{
+		final ModelGraph graph = createGraph( 10 * Parallel.MIN_CHUNK_SIZE, 2 );
+		final int[] ids = new int[ graph.vertices().size() ];
+		int i = 0;
+		for ( final Spot v : graph.vertices() )
+			ids[ i++ ] = v.getInternalPoolIndex();
+		final BitSet members = InducedEdges.toBitSet( ids );
+
+		final int[] serial = InducedEdges.collect( graph, graph.vertices().getRefPool(), graph.edges().getRefPool(), ids, members, false );
+		final int[] parallel = InducedEdges.collect( graph, graph.vertices().getRefPool(), graph.edges().getRefPool(), ids, members, true );
+		assertArrayEquals( "Parallel collection should give the same edges in the same order.", serial, parallel );
+		assertEquals( "All edges should be collected.", graph.edges().size(), serial.length );
+	}
+
+	/**
+	 * Creates a graph where each vertex is linked to the next
+	 * <code>degree</code> vertices.
+	 */
+	static ModelGraph createGraph( final int nVertices, final int degree )
+	{
+		final ModelGraph graph = new ModelGraph( nVertices );
+		final Spot vref = graph.vertexRef();
+		final Spot sref = graph.vertexRef();
+		final Spot tref = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		try
+		{
+			final double[] pos = new double[ 3 ];
+			for ( int i = 0; i < nVertices; i++ )
+			{
+				pos[ 0 ] = i;
+				graph.addVertex( vref ).init( i, pos, 1. );
+			}
+			for ( int i = 0; i < nVertices; i++ )
+			{
+				for ( int d = 1; d <= degree && i + d < nVertices; d++ )
+				{
+					final Spot source = graph.vertices().getRefPool().getObject( i, sref );
+					final Spot target = graph.vertices().getRefPool().getObject( i + d, tref );
+					graph.addEdge( source, target, eref ).init();
+				}
+			}
+		}
+		finally
+		{
+			graph.releaseRef( vref );
+			graph.releaseRef( sref );
+			graph.releaseRef( tref );
+			graph.releaseRef( eref );
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,106 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefSet;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import net.imglib2.algorithm.kdtree.ConvexPolytope;
+import net.imglib2.algorithm.kdtree.HyperPlane;
+
+/**
+ * Compares the time taken to build a {@link KdTreeWrapper} over the vertices
+ * of a graph, with coordinates read through functions, and a
+ * {@link KdTree2D} over the same coordinates stored in flat arrays, for 1M and
+ * 10M vertices. Also prints the approximate memory retained by each tree, and
+ * the time of a box query.
+ * <p>
+ * Run with a large heap, e.g. <code>-Xmx8g</code>.
+ */
+public class KdTree2DBenchmark
+{
+
+	private static final int N_RUNS = 5;
+
+	public static void main( final String[] args )
+	{
+		for ( final int n : new int[] { 1_000_000, 10_000_000 } )
+		{
+			System.out.println( String.format( "Creating a graph with %d vertices.", n ) );
+			final ModelGraph graph = InducedEdgesTest.createGraph( n, 0 );
+			final RefSet< Spot > vertices = RefCollections.createRefSet( graph.vertices(), n );
+			vertices.addAll( graph.vertices() );
+
+			// Coordinates indexed by pool index, as read from feature columns.
+			final Random ran = new Random( 1l );
+			final float[] xy = new float[ 2 * n ];
+			final int[] ids = new int[ n ];
+			for ( int i = 0; i < n; i++ )
+			{
+				xy[ 2 * i ] = ( float ) ran.nextGaussian();
+				xy[ 2 * i + 1 ] = ( float ) ran.nextGaussian();
+				ids[ i ] = i;
+			}
+			final List< ToDoubleFunction< Spot > > posFuns = new ArrayList<>( 2 );
+			posFuns.add( v -> xy[ 2 * v.getInternalPoolIndex() ] );
+			posFuns.add( v -> xy[ 2 * v.getInternalPoolIndex() + 1 ] );
+
+			final ConvexPolytope box = new ConvexPolytope(
+					new HyperPlane( new double[] { 1., 0. }, -0.5 ),
+					new HyperPlane( new double[] { 0., 1. }, -0.5 ),
+					new HyperPlane( new double[] { -1., 0. }, -0.5 ),
+					new HyperPlane( new double[] { 0., -1. }, -0.5 ) );
+
+			for ( int run = 0; run < N_RUNS; run++ )
+			{
+				final long m0 = usedMemory();
+				final long t0 = System.nanoTime();
+				final KdTreeWrapper< Spot > wrapper = new KdTreeWrapper<>( vertices, graph.vertices().getRefPool(), posFuns );
+				final long t1 = System.nanoTime();
+				final long m1 = usedMemory();
+				final KdTree2D serial = KdTree2D.build( xy, ids, n, false );
+				final long t2 = System.nanoTime();
+				final long m2 = usedMemory();
+				final KdTree2D parallel = KdTree2D.build( xy, ids, n, true );
+				final long t3 = System.nanoTime();
+
+				final int n0 = wrapper.getObjsWithin( box ).size();
+				final long t4 = System.nanoTime();
+				final TIntArrayList found = new TIntArrayList();
+				parallel.range( -0.5, 0.5, -0.5, 0.5, found );
+				final long t5 = System.nanoTime();
+				if ( n0 != found.size() || serial.size() != parallel.size() )
+					throw new IllegalStateException( "Query results differ: " + n0 + ", " + found.size() );
+
+				System.out.println( String.format( "  run %d - build KdTreeWrapper: %5d ms, %4d MB - KdTree2D: %5d ms (x%.1f), %4d MB - KdTree2D parallel: %5d ms (x%.1f)",
+						run,
+						( t1 - t0 ) / 1_000_000,
+						( m1 - m0 ) >> 20,
+						( t2 - t1 ) / 1_000_000,
+						( double ) ( t1 - t0 ) / ( t2 - t1 ),
+						( m2 - m1 ) >> 20,
+						( t3 - t2 ) / 1_000_000,
+						( double ) ( t1 - t0 ) / ( t3 - t2 ) ) );
+				System.out.println( String.format( "          query %d points - KdTreeWrapper: %5d ms - KdTree2D: %5d ms",
+						n0,
+						( t4 - t3 ) / 1_000_000,
+						( t5 - t4 ) / 1_000_000 ) );
+			}
+		}
+	}
+
+	private static long usedMemory()
+	{
+		final Runtime runtime = Runtime.getRuntime();
+		for ( int i = 0; i < 3; i++ )
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
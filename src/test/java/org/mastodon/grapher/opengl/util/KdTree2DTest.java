@@ -0,0 +1,152 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class KdTree2DTest
+{
+
+	private static float[] randomPoints( final int n, final long seed )
+	{
+		final float[] xy = new float[ 2 * n ];
+		final Random ran = new Random( seed );
+		for ( int i = 0; i < n; i++ )
+		{
+			// Many points share the same coordinates.
+			xy[ 2 * i ] = ran.nextInt( 200 ) / 2f;
+			xy[ 2 * i + 1 ] = 100f * ran.nextFloat();
+		}
+		return xy;
+	}
+
+	private static int[] ids( final int n )
+	{
+		final int[] ids = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			ids[ i ] = 3 * i + 1;
+		return ids;
+	}
+
+	private static int[] sorted( final TIntArrayList list )
+	{
+		final int[] arr = list.toArray();
+		Arrays.sort( arr );
+		return arr;
+	}
+
+	@Test
+	public void testRangeSameAsScan()
+	{
+		final int n = 10_000;
+		final float[] xy = randomPoints( n, 1l );
+		xy[ 0 ] = Float.NaN;
+		final int[] ids = ids( n );
+		final KdTree2D tree = KdTree2D.build( xy, ids, n, false );
+		assertEquals( "NaN points should not be in the tree.", n - 1, tree.size() );
+
+		final Random ran = new Random( 2l );
+		for ( int q = 0; q < 100; q++ )
+		{
+			final double minX = 100. * ran.nextDouble();
+			final double maxX = minX + 30. * ran.nextDouble();
+			final double minY = 100. * ran.nextDouble();
+			final double maxY = minY + 30. * ran.nextDouble();
+			final TIntArrayList expected = new TIntArrayList();
+			for ( int i = 0; i < n; i++ )
+				if ( xy[ 2 * i ] >= minX && xy[ 2 * i ] <= maxX && xy[ 2 * i + 1 ] >= minY && xy[ 2 * i + 1 ] <= maxY )
+					expected.add( ids[ i ] );
+			final TIntArrayList actual = new TIntArrayList();
+			tree.range( minX, maxX, minY, maxY, actual );
+			assertArrayEquals( sorted( expected ), sorted( actual ) );
+		}
+	}
+
+	@Test
+	public void testParallelBuildSameAsSerial()
+	{
+		final int n = 10 * Parallel.MIN_CHUNK_SIZE;
+		final float[] xy = randomPoints( n, 3l );
+		final int[] ids = ids( n );
+		final KdTree2D serial = KdTree2D.build( xy, ids, n, false );
+		final KdTree2D parallel = KdTree2D.build( xy, ids, n, true );
+		final TIntArrayList a = new TIntArrayList();
+		final TIntArrayList b = new TIntArrayList();
+		serial.range( 20., 40., 10., 90., a );
+		parallel.range( 20., 40., 10., 90., b );
+		assertTrue( a.size() > 0 );
+		assertArrayEquals( sorted( a ), sorted( b ) );
+	}
+
+	@Test
+	public void testPolygonSameAsScan()
+	{
+		final int n = 10_000;
+		final float[] xy = randomPoints( n, 4l );
+		final int[] ids = ids( n );
+		final KdTree2D tree = KdTree2D.build( xy, ids, n, false );
+
+		// A non-convex U shape.
+		final Polygon2D polygon = new Polygon2D( new double[] { 10, 10, 90, 10, 90, 90, 70, 90, 70, 30, 30, 30, 30, 90, 10, 90 } );
+		final TIntArrayList expected = new TIntArrayList();
+		for ( int i = 0; i < n; i++ )
+			if ( polygon.contains( xy[ 2 * i ], xy[ 2 * i + 1 ] ) )
+				expected.add( ids[ i ] );
+		final TIntArrayList actual = new TIntArrayList();
+		tree.polygon( polygon, false, actual );
+		assertTrue( expected.size() > 0 );
+		assertArrayEquals( sorted( expected ), sorted( actual ) );
+
+		final TIntArrayList scanned = new TIntArrayList();
+		PointScan.polygon( xy, ids, n, polygon, true, scanned );
+		assertArrayEquals( sorted( expected ), sorted( scanned ) );
+	}
+
+	@Test
+	public void testNearestSameAsScan()
+	{
+		final int n = 10_000;
+		final float[] xy = randomPoints( n, 5l );
+		final int[] ids = ids( n );
+		final KdTree2D tree = KdTree2D.build( xy, ids, n, false );
+
+		final int k = 5;
+		final double sx = 3.;
+		final double sy = 0.5;
+		final Random ran = new Random( 6l );
+		for ( int q = 0; q < 100; q++ )
+		{
+			final double x = 100. * ran.nextDouble();
+			final double y = 100. * ran.nextDouble();
+			final double[] expected = new double[ n ];
+			for ( int i = 0; i < n; i++ )
+				expected[ i ] = Math.hypot( ( xy[ 2 * i ] - x ) * sx, ( xy[ 2 * i + 1 ] - y ) * sy );
+			Arrays.sort( expected );
+
+			final int[] found = new int[ k ];
+			final double[] distances = new double[ k ];
+			assertEquals( k, tree.nearest( x, y, sx, sy, Double.POSITIVE_INFINITY, found, distances ) );
+			for ( int j = 0; j < k; j++ )
+				assertEquals( expected[ j ], distances[ j ], 1e-9 );
+
+			// The scan finds a point at the same distance as the nearest.
+			final int id = PointScan.nearest( xy, ids, n, x, y, sx, sy, Double.POSITIVE_INFINITY, true );
+			final int i = ( id - 1 ) / 3;
+			assertEquals( expected[ 0 ], Math.hypot( ( xy[ 2 * i ] - x ) * sx, ( xy[ 2 * i + 1 ] - y ) * sy ), 1e-9 );
+
+			// Within a radius, with some slack for rounding.
+			final double radius = expected[ 2 ] + 1e-9;
+			final int nWithin = tree.nearest( x, y, sx, sy, radius, found, distances );
+			assertTrue( nWithin >= 3 );
+			for ( int j = 0; j < nWithin; j++ )
+				assertTrue( distances[ j ] <= radius );
+		}
+	}
+}
@@ -20,6 +20,9 @@ import net.imglib2.algorithm.kdtree.ConvexPolytope;
 /**
  * Wraps a collection of {@link RefPool} objects so that they can be used for
  * Kd-tree searches, specifying their coordinates with user-specified functions.
+ * <p>
+ * Replaced by {@link KdTree2D} for the selection queries of the layout, and
+ * only kept as the baseline of {@link KdTree2DBenchmark}.
  * 
  * @param <O>
  *            the type of objects to wrap. Does not have to be
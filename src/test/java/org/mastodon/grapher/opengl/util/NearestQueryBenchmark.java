@@ -0,0 +1,69 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.Random;
+
+/**
+ * Measures the latency of the nearest point queries used to highlight the
+ * vertex under the mouse, with a {@link KdTree2D} and with a parallel
+ * {@link PointScan}, for 1M and 10M points. The budget is 1 ms per query.
+ * <p>
+ * Run with a large heap, e.g. <code>-Xmx8g</code>.
+ */
+public class NearestQueryBenchmark
+{
+
+	private static final int N_QUERIES = 10_000;
+
+	private static final int N_SCANS = 10;
+
+	public static void main( final String[] args )
+	{
+		for ( final int n : new int[] { 1_000_000, 10_000_000 } )
+		{
+			final Random ran = new Random( 1l );
+			final float[] xy = new float[ 2 * n ];
+			final int[] ids = new int[ n ];
+			for ( int i = 0; i < n; i++ )
+			{
+				xy[ 2 * i ] = ( float ) ran.nextGaussian();
+				xy[ 2 * i + 1 ] = ( float ) ran.nextGaussian();
+				ids[ i ] = i;
+			}
+			final KdTree2D tree = KdTree2D.build( xy, ids, n, true );
+
+			// A 1000 x 1000 pixels view over [-4, 4], and a 10 pixels radius.
+			final double scale = 1000. / 8.;
+			final double radius = 10.;
+			final int[] found = new int[ 1 ];
+			final double[] distance = new double[ 1 ];
+			for ( int run = 0; run < 3; run++ )
+			{
+				long max = 0;
+				long sum = 0;
+				int nFound = 0;
+				for ( int q = 0; q < N_QUERIES; q++ )
+				{
+					final double x = 8. * ran.nextDouble() - 4.;
+					final double y = 8. * ran.nextDouble() - 4.;
+					final long t0 = System.nanoTime();
+					nFound += tree.nearest( x, y, scale, scale, radius, found, distance );
+					final long dt = System.nanoTime() - t0;
+					sum += dt;
+					max = Math.max( max, dt );
+				}
+
+				final long t1 = System.nanoTime();
+				for ( int q = 0; q < N_SCANS; q++ )
+					PointScan.nearest( xy, ids, n, 8. * ran.nextDouble() - 4., 8. * ran.nextDouble() - 4., scale, scale, radius, true );
+				final long t2 = System.nanoTime();
+
+				System.out.println( String.format( "%8d points, run %d - tree: mean %6.1f µs, max %7.1f µs, %d found - scan: mean %7.1f µs",
+						n, run,
+						sum / 1e3 / N_QUERIES,
+						max / 1e3,
+						nFound,
+						( t2 - t1 ) / 1e3 / N_SCANS ) );
+			}
+		}
+	}
+}
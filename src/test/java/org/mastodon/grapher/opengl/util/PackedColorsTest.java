@@ -0,0 +1,24 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class PackedColorsTest
+{
+
+	@Test
+	public void testBytesAreRGBAInNativeOrder()
+	{
+		final int argb = 0x80112233;
+		final ByteBuffer buffer = ByteBuffer.allocate( Integer.BYTES ).order( ByteOrder.nativeOrder() );
+		buffer.putInt( 0, PackedColors.fromARGB( argb ) );
+		assertEquals( "Red channel", 0x11, buffer.get( 0 ) & 0xFF );
+		assertEquals( "Green channel", 0x22, buffer.get( 1 ) & 0xFF );
+		assertEquals( "Blue channel", 0x33, buffer.get( 2 ) & 0xFF );
+		assertEquals( "Alpha channel", 0x80, buffer.get( 3 ) & 0xFF );
+	}
+}
@@ -0,0 +1,50 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+public class ParallelTest
+{
+
+	@Test
+	public void testChunksCoverRangeOnce()
+	{
+		final int n = 10 * Parallel.MIN_CHUNK_SIZE + 17;
+		final AtomicIntegerArray visits = new AtomicIntegerArray( n );
+		Parallel.forEachChunk( n, true, ( chunk, from, to ) -> {
+			for ( int i = from; i < to; i++ )
+				visits.incrementAndGet( i );
+		} );
+		for ( int i = 0; i < n; i++ )
+			assertEquals( "Index " + i + " should be visited exactly once.", 1, visits.get( i ) );
+	}
+
+	@Test
+	public void testParallelMatchesSerial()
+	{
+		final int n = 5 * Parallel.MIN_CHUNK_SIZE + 3;
+		final float[] serial = new float[ n ];
+		final float[] parallel = new float[ n ];
+		Parallel.forEachChunk( n, false, ( chunk, from, to ) -> {
+			for ( int i = from; i < to; i++ )
+				serial[ i ] = ( float ) Math.sqrt( i );
+		} );
+		Parallel.forEachChunk( n, true, ( chunk, from, to ) -> {
+			for ( int i = from; i < to; i++ )
+				parallel[ i ] = ( float ) Math.sqrt( i );
+		} );
+		assertArrayEquals( "Parallel output should not differ from serial output.", serial, parallel, 0f );
+	}
+
+	@Test
+	public void testSerialIsSingleChunk()
+	{
+		final int n = 100 * Parallel.MIN_CHUNK_SIZE;
+		assertEquals( 1, Parallel.forEachChunk( n, false, ( chunk, from, to ) -> {} ) );
+		assertEquals( 1, Parallel.numChunks( Parallel.MIN_CHUNK_SIZE, true ) );
+	}
+}
@@ -0,0 +1,71 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Polygon2DTest
+{
+
+	/**
+	 * Even-odd test against all the edges.
+	 */
+	private static boolean containsNaive( final double[] xy, final double x, final double y )
+	{
+		boolean inside = false;
+		final int n = xy.length / 2;
+		for ( int i = 0, j = n - 1; i < n; j = i++ )
+		{
+			final double xi = xy[ 2 * i ];
+			final double yi = xy[ 2 * i + 1 ];
+			final double xj = xy[ 2 * j ];
+			final double yj = xy[ 2 * j + 1 ];
+			if ( ( yi > y ) != ( yj > y ) && x < ( xj - xi ) * ( y - yi ) / ( yj - yi ) + xi )
+				inside = !inside;
+		}
+		return inside;
+	}
+
+	@Test
+	public void testSameAsNaiveOnFreehandLasso()
+	{
+		// A star-shaped, non-convex lasso with many vertices.
+		final int n = 2000;
+		final Random ran = new Random( 1l );
+		final double[] xy = new double[ 2 * n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final double angle = 2. * Math.PI * i / n;
+			final double radius = 50. + 40. * Math.sin( 13. * angle ) + ran.nextDouble();
+			xy[ 2 * i ] = 100. + radius * Math.cos( angle );
+			xy[ 2 * i + 1 ] = 100. + radius * Math.sin( angle );
+		}
+		final Polygon2D polygon = new Polygon2D( xy );
+		assertEquals( n, polygon.numVertices() );
+
+		int nInside = 0;
+		for ( int k = 0; k < 100_000; k++ )
+		{
+			final double x = 220. * ran.nextDouble() - 10.;
+			final double y = 220. * ran.nextDouble() - 10.;
+			final boolean expected = containsNaive( xy, x, y );
+			assertEquals( "Point " + x + ", " + y, expected, polygon.contains( x, y ) );
+			if ( expected )
+				nInside++;
+		}
+		assertTrue( "Some points should be inside.", nInside > 0 );
+	}
+
+	@Test
+	public void testDegeneratePolygons()
+	{
+		assertFalse( new Polygon2D( new double[ 0 ] ).contains( 0, 0 ) );
+		assertFalse( new Polygon2D( new double[] { 0, 0, 1, 1 } ).contains( 0.5, 0.5 ) );
+		// Flat polygon.
+		assertFalse( new Polygon2D( new double[] { 0, 0, 1, 0, 2, 0 } ).contains( 1, 0 ) );
+	}
+}
@@ -0,0 +1,76 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mastodon.grapher.opengl.util.QueryPlanner.Mode;
+
+public class QueryPlannerTest
+{
+
+	private static final long MS = 1_000_000l;
+
+	private static final int N = 10 * QueryPlanner.MIN_INDEXED_POINTS;
+
+	@Test
+	public void testStablePointsAreIndexed()
+	{
+		final QueryPlanner planner = new QueryPlanner();
+		planner.changed( 0 );
+		assertTrue( planner.shouldIndex( N, 10 * MS ) );
+		assertFalse( "Few points should be scanned.", planner.shouldIndex( QueryPlanner.MIN_INDEXED_POINTS - 1, 10 * MS ) );
+		assertFalse( planner.shouldIndex( 0, 10 * MS ) );
+	}
+
+	@Test
+	public void testFastChangingPointsAreScanned()
+	{
+		final QueryPlanner planner = new QueryPlanner();
+		long t = 0;
+		// Changes every 50 ms, a query every 100 ms.
+		for ( int i = 0; i < 20; i++ )
+		{
+			planner.changed( t );
+			if ( i % 2 == 0 )
+				planner.queried( t + MS );
+			t += 50 * MS;
+		}
+		assertFalse( planner.shouldIndex( N, t ) );
+
+		// Once the points stop changing, the index pays off.
+		for ( int i = 0; i < 50; i++ )
+		{
+			t += 10 * MS;
+			planner.queried( t );
+		}
+		assertTrue( planner.shouldIndex( N, t + 10 * MS ) );
+	}
+
+	@Test
+	public void testFrequentQueriesAreIndexed()
+	{
+		final QueryPlanner planner = new QueryPlanner();
+		long t = 0;
+		// Changes every second, a query every 10 ms.
+		for ( int i = 0; i < 500; i++ )
+		{
+			if ( i % 100 == 0 )
+				planner.changed( t );
+			planner.queried( t );
+			t += 10 * MS;
+		}
+		assertTrue( planner.shouldIndex( N, t ) );
+	}
+
+	@Test
+	public void testModes()
+	{
+		final QueryPlanner planner = new QueryPlanner();
+		planner.changed( 0 );
+		planner.setMode( Mode.SCAN );
+		assertFalse( planner.shouldIndex( N, MS ) );
+		planner.setMode( Mode.INDEX );
+		assertTrue( planner.shouldIndex( 10, MS ) );
+	}
+}
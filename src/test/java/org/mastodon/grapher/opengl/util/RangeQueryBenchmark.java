@@ -0,0 +1,81 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.Random;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Measures the time taken to build a {@link KdTree2D} and to answer a box
+ * query with it, against a serial and a parallel {@link PointScan}, for 100k,
+ * 1M and 10M points. Prints the number of queries after which the tree pays
+ * off, and that number divided by the depth of the tree, to compare with
+ * {@link QueryPlanner#BUILD_COST_PER_LEVEL}.
+ * <p>
+ * Run with a large heap, e.g. <code>-Xmx8g</code>.
+ */
+public class RangeQueryBenchmark
+{
+
+	private static final int N_RUNS = 5;
+
+	private static final int N_QUERIES = 20;
+
+	public static void main( final String[] args )
+	{
+		for ( final int n : new int[] { 100_000, 1_000_000, 10_000_000 } )
+		{
+			System.out.println( String.format( "%d points.", n ) );
+			final Random ran = new Random( 1l );
+			final float[] xy = new float[ 2 * n ];
+			final int[] ids = new int[ n ];
+			for ( int i = 0; i < n; i++ )
+			{
+				xy[ 2 * i ] = ( float ) ran.nextGaussian();
+				xy[ 2 * i + 1 ] = ( float ) ran.nextGaussian();
+				ids[ i ] = i;
+			}
+
+			for ( int run = 0; run < N_RUNS; run++ )
+			{
+				final long t0 = System.nanoTime();
+				final KdTree2D tree = KdTree2D.build( xy, ids, n, true );
+				final long t1 = System.nanoTime();
+				final int n0 = query( tree, xy, ids, n, 0 );
+				final long t2 = System.nanoTime();
+				final int n1 = query( tree, xy, ids, n, 1 );
+				final long t3 = System.nanoTime();
+				final int n2 = query( tree, xy, ids, n, 2 );
+				final long t4 = System.nanoTime();
+				if ( n0 != n1 || n0 != n2 )
+					throw new IllegalStateException( "Query results differ: " + n0 + ", " + n1 + ", " + n2 );
+
+				final double build = ( t1 - t0 ) / 1e6;
+				final double treeQuery = ( t2 - t1 ) / 1e6 / N_QUERIES;
+				final double scan = ( t3 - t2 ) / 1e6 / N_QUERIES;
+				final double parallelScan = ( t4 - t3 ) / 1e6 / N_QUERIES;
+				final double crossover = build / ( parallelScan - treeQuery );
+				System.out.println( String.format( "  run %d - build: %7.1f ms - query tree: %6.3f ms - scan: %6.3f ms - parallel scan: %6.3f ms - crossover: %5.1f queries, %4.2f per level",
+						run, build, treeQuery, scan, parallelScan, crossover, crossover / ( Math.log( n ) / Math.log( 2 ) ) ) );
+			}
+		}
+	}
+
+	/**
+	 * Runs box queries, with the tree (mode 0), a serial scan (1) or a
+	 * parallel scan (2), and returns the number of points found by the last.
+	 */
+	private static int query( final KdTree2D tree, final float[] xy, final int[] ids, final int n, final int mode )
+	{
+		final TIntArrayList found = new TIntArrayList();
+		for ( int q = 0; q < N_QUERIES; q++ )
+		{
+			found.resetQuick();
+			final double x = -1. + 0.1 * q;
+			if ( mode == 0 )
+				tree.range( x, x + 0.2, -0.1, 0.1, found );
+			else
+				PointScan.range( xy, ids, n, x, x + 0.2, -0.1, 0.1, mode == 2, found );
+		}
+		return found.size();
+	}
+}
@@ -0,0 +1,108 @@
+package org.mastodon.grapher.opengl.util;
+
+import java.util.concurrent.locks.Lock;
+
+import org.mastodon.RefPool;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefSet;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.model.SelectionModel;
+
+/**
+ * Compares how long the graph read lock is held to select 1M vertices and the
+ * edges between them, as a box selection does: with one
+ * <code>setSelected</code> call per vertex and a {@link RefSet} lookup per
+ * outgoing edge, and with {@link InducedEdges} and {@link SelectionBatch}.
+ * <p>
+ * Run with a large heap, e.g. <code>-Xmx8g</code>.
+ */
+public class SelectionBatchBenchmark
+{
+
+	private static final int N_VERTICES = 1_000_000;
+
+	private static final int DEGREE = 2;
+
+	private static final int N_RUNS = 5;
+
+	public static void main( final String[] args )
+	{
+		System.out.println( String.format( "Creating a graph with %d vertices.", N_VERTICES ) );
+		final ModelGraph graph = InducedEdgesTest.createGraph( N_VERTICES, DEGREE );
+		final SelectionModel< Spot, Link > selection = new DefaultSelectionModel<>( graph, graph.getGraphIdBimap() );
+		final RefPool< Spot > vertexPool = graph.vertices().getRefPool();
+		final RefPool< Link > edgePool = graph.edges().getRefPool();
+
+		// Every other vertex is in the box.
+		final int[] ids = new int[ N_VERTICES / 2 ];
+		for ( int i = 0; i < ids.length; i++ )
+			ids[ i ] = 2 * i;
+
+		final Lock lock = graph.getLock().readLock();
+		for ( int run = 0; run < N_RUNS; run++ )
+		{
+			selection.clearSelection();
+			lock.lock();
+			final long t0 = System.nanoTime();
+			final int n0;
+			try
+			{
+				n0 = selectOneByOne( graph, selection, ids );
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			final long t1 = System.nanoTime();
+			selection.clearSelection();
+			lock.lock();
+			final long t2 = System.nanoTime();
+			try
+			{
+				final int[] edgeIds = InducedEdges.collect( graph, vertexPool, edgePool, ids, InducedEdges.toBitSet( ids ), true );
+				SelectionBatch.select( graph, vertexPool, edgePool, selection, ids, edgeIds, false );
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			final long t3 = System.nanoTime();
+			final int n1 = selection.getSelectedVertices().size() + selection.getSelectedEdges().size();
+			if ( n0 != n1 )
+				throw new IllegalStateException( "Selection sizes differ: " + n0 + ", " + n1 );
+
+			System.out.println( String.format( "  run %d - %d objects - lock held one by one: %6d ms - in batch: %6d ms (x%.1f)",
+					run,
+					n1,
+					( t1 - t0 ) / 1_000_000,
+					( t3 - t2 ) / 1_000_000,
+					( double ) ( t1 - t0 ) / ( t3 - t2 ) ) );
+		}
+	}
+
+	/**
+	 * The previous approach of the box selection.
+	 */
+	private static int selectOneByOne( final ModelGraph graph, final SelectionModel< Spot, Link > selection, final int[] ids )
+	{
+		final RefSet< Spot > vs = RefCollections.createRefSet( graph.vertices(), ids.length );
+		final Spot ref = graph.vertexRef();
+		for ( final int id : ids )
+			vs.add( graph.vertices().getRefPool().getObject( id, ref ) );
+
+		selection.pauseListeners();
+		for ( final Spot v : vs )
+		{
+			selection.setSelected( v, true );
+			for ( final Link e : v.outgoingEdges() )
+				if ( vs.contains( e.getTarget( ref ) ) )
+					selection.setSelected( e, true );
+		}
+		selection.resumeListeners();
+		graph.releaseRef( ref );
+		return selection.getSelectedVertices().size() + selection.getSelectedEdges().size();
+	}
+}
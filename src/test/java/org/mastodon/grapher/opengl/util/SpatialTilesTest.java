@@ -0,0 +1,127 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpatialTilesTest
+{
+
+	private static float[] randomPoints( final int n, final long seed )
+	{
+		final float[] xy = new float[ 2 * n ];
+		final Random ran = new Random( seed );
+		for ( int i = 0; i < n; i++ )
+		{
+			// A dense cluster in a sparse background.
+			final boolean cluster = ran.nextBoolean();
+			xy[ 2 * i ] = cluster ? ( float ) ran.nextGaussian() : 100f * ran.nextFloat();
+			xy[ 2 * i + 1 ] = cluster ? ( float ) ran.nextGaussian() : 100f * ran.nextFloat();
+		}
+		return xy;
+	}
+
+	@Test
+	public void testQuadtreeOrderIsPermutation()
+	{
+		final int n = 20_000;
+		final float[] xy = randomPoints( n, 1l );
+		xy[ 10 ] = Float.NaN;
+		final int[] order = new int[ n ];
+		final SpatialTiles tiles = SpatialTiles.quadtree( xy, n, 100, order );
+		assertEquals( n, tiles.tiledCount() );
+		assertTrue( "Points should be split in several tiles.", tiles.numTiles() > 1 );
+		final BitSet seen = new BitSet( n );
+		for ( final int i : order )
+			seen.set( i );
+		assertEquals( "Each point should be in exactly one slot.", n, seen.cardinality() );
+		assertEquals( "NaN points should be in the last slots.", 5, order[ n - 1 ] );
+	}
+
+	@Test
+	public void testVisibleRangesContainPointsInWindow()
+	{
+		final int n = 20_000;
+		final float[] xy = randomPoints( n, 2l );
+		final int[] order = new int[ n ];
+		final SpatialTiles tiles = SpatialTiles.quadtree( xy, n, 100, order );
+		final int[] ranges = new int[ 2 * ( tiles.numTiles() + 1 ) ];
+		final double minX = -0.5, maxX = 0.7, minY = -1., maxY = 0.2;
+		final int nRanges = tiles.visibleRanges( minX, maxX, minY, maxY, n, ranges );
+
+		final BitSet drawn = new BitSet( n );
+		for ( int r = 0; r < nRanges; r++ )
+			drawn.set( ranges[ 2 * r ], ranges[ 2 * r + 1 ] );
+		for ( int slot = 0; slot < n; slot++ )
+		{
+			final float x = xy[ 2 * order[ slot ] ];
+			final float y = xy[ 2 * order[ slot ] + 1 ];
+			if ( x >= minX && x <= maxX && y >= minY && y <= maxY )
+				assertTrue( "Point in the window should be drawn.", drawn.get( slot ) );
+		}
+		assertTrue( "Tiles outside of the window should be culled.", drawn.cardinality() < n / 2 );
+	}
+
+	@Test
+	public void testIncludeAndUntiledSlots()
+	{
+		final SpatialTiles tiles = new SpatialTiles( new int[] { 0, 2, 2, 5 } );
+		assertEquals( 0, tiles.tileOf( 1 ) );
+		assertEquals( "Empty tiles should be skipped.", 2, tiles.tileOf( 2 ) );
+		assertEquals( -1, tiles.tileOf( 5 ) );
+
+		tiles.include( 0, 0f, 0f );
+		tiles.include( 3, 10f, 10f );
+		final int[] ranges = new int[ 2 * 4 ];
+		// Only the first tile, plus the untiled slots.
+		int nRanges = tiles.visibleRanges( -1., 1., -1., 1., 7, ranges );
+		assertEquals( 2, nRanges );
+		assertEquals( 0, ranges[ 0 ] );
+		assertEquals( 2, ranges[ 1 ] );
+		assertEquals( 5, ranges[ 2 ] );
+		assertEquals( 7, ranges[ 3 ] );
+
+		// A point moved in the first tile expands it.
+		tiles.include( 1, 20f, 20f );
+		nRanges = tiles.visibleRanges( 19., 21., 19., 21., 5, ranges );
+		assertEquals( 1, nRanges );
+		assertEquals( 0, ranges[ 0 ] );
+		assertEquals( 2, ranges[ 1 ] );
+	}
+
+	@Test
+	public void testGroupedQuadtreeKeepsGroupsAndClipsRanges()
+	{
+		final int n = 20_000;
+		final float[] xy = randomPoints( n, 3l );
+		xy[ 2 * 7 ] = Float.NaN;
+		// Three groups of points, the middle one empty.
+		final int[] groupStarts = new int[] { 0, 5_000, 5_000, n };
+		final int[] order = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			order[ i ] = i;
+		final SpatialTiles tiles = SpatialTiles.quadtree( xy, groupStarts, 100, order );
+		assertEquals( n, tiles.tiledCount() );
+		for ( int slot = 0; slot < n; slot++ )
+			assertEquals( "Points should stay in their group.", slot < 5_000, order[ slot ] < 5_000 );
+		assertTrue( "A group should start a tile.", tiles.tileOf( 5_000 ) != tiles.tileOf( 4_999 ) );
+
+		// Only the slots of the second group, in the whole plane.
+		final int[] ranges = new int[ 2 * ( tiles.numTiles() + 1 ) ];
+		final double inf = Double.POSITIVE_INFINITY;
+		final int nRanges = tiles.visibleRanges( -inf, inf, -inf, inf, 5_000, n, ranges );
+		assertEquals( 1, nRanges );
+		assertEquals( 5_000, ranges[ 0 ] );
+		assertEquals( n, ranges[ 1 ] );
+
+		// A window inside a tile is clipped.
+		final int nClipped = tiles.visibleRanges( -inf, inf, -inf, inf, 10, 20, ranges );
+		assertEquals( 1, nClipped );
+		assertEquals( 10, ranges[ 0 ] );
+		assertEquals( 20, ranges[ 1 ] );
+	}
+}
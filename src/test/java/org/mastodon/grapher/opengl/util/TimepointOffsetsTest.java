@@ -0,0 +1,90 @@
+package org.mastodon.grapher.opengl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimepointOffsetsTest
+{
+
+	/**
+	 * Checks that the slots of each timepoint are the range given by the
+	 * table.
+	 */
+	private static void assertContiguous( final TimepointOffsets offsets, final int[] slotTimepoints, final int n )
+	{
+		assertEquals( n, offsets.count() );
+		for ( int slot = 0; slot < n; slot++ )
+		{
+			final int t = slotTimepoints[ slot ];
+			assertEquals( "Timepoint of slot " + slot, t, offsets.timepointOf( slot ) );
+			assertTrue( "Slot " + slot + " should be in the range of its timepoint.", slot >= offsets.from( t ) && slot < offsets.to( t ) );
+		}
+	}
+
+	@Test
+	public void testSortAndWindows()
+	{
+		final int[] timepoints = new int[] { 3, 0, 3, 1, 0, 3 };
+		final int[] order = new int[ timepoints.length ];
+		final TimepointOffsets offsets = TimepointOffsets.sort( timepoints, timepoints.length, order );
+		assertEquals( 4, offsets.numTimepoints() );
+		// Stable within a timepoint.
+		final int[] expected = new int[] { 1, 4, 3, 0, 2, 5 };
+		for ( int slot = 0; slot < order.length; slot++ )
+			assertEquals( expected[ slot ], order[ slot ] );
+
+		// Timepoint 2 is empty.
+		assertEquals( 1, offsets.timepointOf( 2 ) );
+		assertEquals( 3, offsets.timepointOf( 3 ) );
+		assertEquals( 3, offsets.from( 2 ) );
+		assertEquals( 3, offsets.to( 2 ) );
+
+		// Windows, also out of the table.
+		assertEquals( 2, offsets.from( 1 ) );
+		assertEquals( 6, offsets.to( 3 ) );
+		assertEquals( 0, offsets.from( Integer.MIN_VALUE ) );
+		assertEquals( 6, offsets.to( Integer.MAX_VALUE ) );
+		assertEquals( 6, offsets.from( 10 ) );
+		assertEquals( 0, offsets.to( -1 ) );
+	}
+
+	@Test
+	public void testInsertAndRemoveKeepTimepointsContiguous()
+	{
+		final int capacity = 10_000;
+		final int[] slotTimepoints = new int[ capacity ];
+		final Random ran = new Random( 1l );
+		int n = 1_000;
+		final int[] timepoints = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			timepoints[ i ] = ran.nextInt( 20 );
+		final int[] order = new int[ n ];
+		final TimepointOffsets offsets = TimepointOffsets.sort( timepoints, n, order );
+		for ( int slot = 0; slot < n; slot++ )
+			slotTimepoints[ slot ] = timepoints[ order[ slot ] ];
+		assertContiguous( offsets, slotTimepoints, n );
+
+		final TimepointOffsets.SlotMover mover = ( from, to ) -> slotTimepoints[ to ] = slotTimepoints[ from ];
+		for ( int k = 0; k < 5_000; k++ )
+		{
+			if ( n > 0 && ran.nextBoolean() )
+			{
+				offsets.remove( ran.nextInt( n ), mover );
+				n--;
+			}
+			else
+			{
+				// Sometimes after the last timepoint.
+				final int t = ran.nextInt( 25 );
+				final int slot = offsets.insert( t, mover );
+				slotTimepoints[ slot ] = t;
+				n++;
+			}
+			assertContiguous( offsets, slotTimepoints, n );
+		}
+	}
+}